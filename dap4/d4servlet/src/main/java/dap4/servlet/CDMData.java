@@ -12,8 +12,13 @@ import dap4.dap4lib.D4Index;
 import dap4.dap4lib.cdm.CDMTypeFcns;
 import dap4.dap4lib.cdm.CDMUtil;
 import ucar.ma2.*;
+import ucar.nc2.Variable;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * Wrap a CDM Array and metadata to provide a DAP4 read API
@@ -29,6 +34,7 @@ public class CDMData {
   protected CDMData container;
 
   protected ucar.ma2.Array array = null;
+  protected Variable variable = null; // scheme == ATOMIC; read when needed
   protected ucar.ma2.StructureData structdata = null; // scheme == STRUCTURE
   ucar.ma2.StructureMembers.Member member = null; // for field cursors
 
@@ -271,7 +277,151 @@ public class CDMData {
     assert (this.scheme == scheme.ATOMIC);
     DapVariable atomvar = (DapVariable) getTemplate();
     assert slices != null && ((atomvar.getRank() == 0 && slices.size() == 1) || (slices.size() == atomvar.getRank()));
-    return sliceAtomic(slices, this.array, atomvar);
+    return sliceAtomic(slices, getAtomicArray(), atomvar);
+  }
+
+  // Read the whole variable, if not already done
+  protected Array getAtomicArray() throws DapException {
+    if (this.array == null && this.variable != null) {
+      try {
+        this.array = this.variable.read();
+      } catch (IOException e) {
+        throw new DapException(e);
+      }
+    }
+    return this.array;
+  }
+
+  //////////////////////////////////////////////////
+  // Slab reads
+
+  /**
+   * Can the constrained values be read a slab at a time
+   * instead of reading the whole variable first?
+   * True for unread arrays of fixed size atomic types.
+   *
+   * @param slices the constrained slices
+   * @return true if slabs() and readSlab() may be used
+   */
+  public boolean canReadSlabs(List<Slice> slices) {
+    if (this.scheme != ArrayScheme.ATOMIC || this.array != null || this.variable == null)
+      return false;
+    DapVariable var = (DapVariable) getTemplate();
+    if (var.getRank() == 0 || slices.size() != var.getRank() || this.variable.getRank() != var.getRank())
+      return false;
+    switch (var.getBaseType().getTypeSort()) {
+      case Char:
+      case Int8:
+      case UInt8:
+      case Int16:
+      case UInt16:
+      case Int32:
+      case UInt32:
+      case Int64:
+      case UInt64:
+      case Float32:
+      case Float64:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Split the constrained values into sections of about maxbytes,
+   * along the outer dimensions, in the order they are serialized.
+   *
+   * @param slices the constrained slices
+   * @param maxbytes slab size; at least one value per slab
+   * @return the sections to pass to readSlab()
+   */
+  public Iterator<Section> slabs(List<Slice> slices, long maxbytes) throws DapException {
+    DapVariable var = (DapVariable) getTemplate();
+    long elemsize = TypeSort.getSize(var.getBaseType().getAtomicType());
+    return new SlabIterator(CDMUtil.createCDMRanges(slices), elemsize, maxbytes);
+  }
+
+  /**
+   * Read one slab of an unread atomic variable.
+   *
+   * @param slab section from slabs()
+   * @return the values as a java primitive array
+   */
+  public Object readSlab(Section slab) throws DapException {
+    DataType datatype = CDMTypeFcns.daptype2cdmtype(((DapVariable) getTemplate()).getBaseType());
+    if (datatype == null)
+      throw new DapException("Unknown basetype: " + ((DapVariable) getTemplate()).getBaseType());
+    try {
+      return this.variable.read(slab).get1DJavaArray(datatype);
+    } catch (IOException | InvalidRangeException e) {
+      throw new DapException(e);
+    }
+  }
+
+  /**
+   * Walk a set of ranges a slab at a time: the dimensions before
+   * the split dimension one index at a time, the split dimension
+   * several indices at a time, and the remaining dimensions whole.
+   */
+  protected static class SlabIterator implements Iterator<Section> {
+    protected final List<Range> ranges;
+    protected final int split; // the dimension being split
+    protected final int rows; // indices of the split dimension per slab
+    protected final int[] counter; // next index into each range, up to split
+    protected boolean done = false;
+
+    SlabIterator(List<Range> ranges, long elemsize, long maxbytes) {
+      this.ranges = ranges;
+      // find the outermost dimension whose rows fit in a slab
+      int d = ranges.size() - 1;
+      long rowbytes = elemsize;
+      while (d > 0 && rowbytes * ranges.get(d).length() <= maxbytes) {
+        rowbytes *= ranges.get(d).length();
+        d--;
+      }
+      this.split = d;
+      this.rows = (int) Math.min(ranges.get(d).length(), Math.max(1, maxbytes / Math.max(1, rowbytes)));
+      this.counter = new int[d + 1];
+      for (Range r : ranges) {
+        if (r.length() == 0)
+          this.done = true;
+      }
+    }
+
+    public boolean hasNext() {
+      return !done;
+    }
+
+    public Section next() {
+      if (done)
+        throw new NoSuchElementException();
+      List<Range> slab = new ArrayList<>(this.ranges);
+      for (int i = 0; i < split; i++)
+        slab.set(i, subrange(ranges.get(i), counter[i], counter[i]));
+      int last = Math.min(counter[split] + rows, ranges.get(split).length()) - 1;
+      slab.set(split, subrange(ranges.get(split), counter[split], last));
+      // move to the next slab
+      counter[split] = last + 1;
+      int i = split;
+      while (counter[i] >= ranges.get(i).length()) {
+        counter[i] = 0;
+        if (--i < 0) {
+          done = true;
+          break;
+        }
+        counter[i]++;
+      }
+      return new Section(slab);
+    }
+
+    // the part of r from its index first to its index last
+    protected static Range subrange(Range r, int first, int last) {
+      try {
+        return new Range(r.first() + first * r.stride(), r.first() + last * r.stride(), r.stride());
+      } catch (InvalidRangeException e) {
+        throw new IllegalStateException(e);
+      }
+    }
   }
 
   protected Object sliceAtomic(List<Slice> slices, Array array, DapVariable var) throws DapException {
@@ -361,6 +511,11 @@ public class CDMData {
     return this.array;
   }
 
+  public CDMData setVariable(Variable v) {
+    this.variable = v;
+    return this;
+  }
+
   public CDMData setStructureData(ucar.ma2.StructureData sd) {
     this.structdata = sd;
     return this;
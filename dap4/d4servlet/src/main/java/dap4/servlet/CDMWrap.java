@@ -47,6 +47,46 @@ public class CDMWrap {
 
   protected static boolean nc4loaded = false;
 
+  // Built DMRs, keyed by location, so that a DMR is
+  // built once per version of a file. Nothing of the
+  // file that built it is kept, so it can be closed.
+  public static final int DEFAULTDMRCACHESIZE = 100;
+
+  protected static int dmrcachesize = DEFAULTDMRCACHESIZE;
+
+  protected static final Map<String, CachedDMR> dmrcache = new LinkedHashMap<String, CachedDMR>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, CachedDMR> eldest) {
+      return size() > dmrcachesize;
+    }
+  };
+
+  protected static class CachedDMR {
+    final long lastmodified;
+    final DapDataset dmr;
+    final Map<DapVariable, String> varnames; // escaped full names of the Variables, found again in each open
+
+    CachedDMR(long lastmodified, DapDataset dmr, NodeMap<Variable, DapVariable> varmap) {
+      this.lastmodified = lastmodified;
+      this.dmr = dmr;
+      this.varnames = new HashMap<>();
+      for (Map.Entry<DapVariable, Variable> entry : varmap.getCDMMap().entrySet())
+        this.varnames.put(entry.getKey(), entry.getValue().getFullNameEscaped());
+    }
+  }
+
+  /**
+   * Set the number of built DMRs to keep.
+   *
+   * @param maxentries 0 => do not keep any
+   */
+  public static void setDMRCacheSize(int maxentries) {
+    synchronized (dmrcache) {
+      dmrcachesize = maxentries;
+      dmrcache.clear();
+    }
+  }
+
   //////////////////////////////////////////////////
   // Instance variables
 
@@ -119,7 +159,10 @@ public class CDMWrap {
       ArrayScheme scheme = ArrayScheme.schemeFor(var);
       try {
         vardata = new CDMData(scheme, this, var, null);
-        vardata.setArray(cdmvar.read());
+        if (scheme == ArrayScheme.ATOMIC)
+          vardata.setVariable(cdmvar); // read when serialized, possibly in slabs
+        else
+          vardata.setArray(cdmvar.read());
       } catch (IOException e) {
         throw new DapException(e);
       }
@@ -148,13 +191,28 @@ public class CDMWrap {
   public CDMWrap open(String filepath) throws DapException {
     try {
       NetcdfFile ncfile = createNetcdfFile(filepath, null);
-      NetcdfDataset ncd = new NetcdfDataset(ncfile, ENHANCEMENT);
-      return open(ncd);
+      return open(ncfile);
     } catch (IOException ioe) {
       throw new DapException("CDMDSP: cannot process: " + filepath, ioe);
     }
   }
 
+  /**
+   * @param ncfile an open file, eg from a file cache; closed on failure
+   * @return CDMDSP instance
+   * @throws IOException
+   */
+  public CDMWrap open(NetcdfFile ncfile) throws IOException {
+    try {
+      NetcdfDataset ncd =
+          (ncfile instanceof NetcdfDataset) ? (NetcdfDataset) ncfile : new NetcdfDataset(ncfile, ENHANCEMENT);
+      return open(ncd);
+    } catch (IOException | RuntimeException e) {
+      ncfile.close();
+      throw e;
+    }
+  }
+
   /**
    * @param ncd netcdf dataset
    * @return the cdmdsp
@@ -164,10 +222,46 @@ public class CDMWrap {
     this.dmrfactory = new DMRFactory();
     this.ncdfile = ncd;
     setLocation(this.ncdfile.getLocation());
-    buildDMR();
+    long lastmodified = this.ncdfile.getLastModified();
+    if (!useCachedDMR(lastmodified)) {
+      buildDMR();
+      if (lastmodified > 0 && getLocation() != null) {
+        synchronized (dmrcache) {
+          dmrcache.put(getLocation(), new CachedDMR(lastmodified, getDMR(), this.varmap));
+        }
+      }
+    }
     return this;
   }
 
+  /**
+   * Use the DMR built from another open of the same file version, if any.
+   * The DMR variables are mapped onto the variables of this open.
+   *
+   * @param lastmodified of this file; <= 0 if not known
+   * @return true if the cached DMR is used
+   */
+  protected boolean useCachedDMR(long lastmodified) {
+    if (lastmodified <= 0 || getLocation() == null)
+      return false;
+    CachedDMR cached;
+    synchronized (dmrcache) {
+      cached = dmrcache.get(getLocation());
+    }
+    if (cached == null || cached.lastmodified != lastmodified)
+      return false;
+    NodeMap<Variable, DapVariable> map = new NodeMap<>();
+    for (Map.Entry<DapVariable, String> entry : cached.varnames.entrySet()) {
+      Variable cdmvar = this.ncdfile.findVariable(entry.getValue());
+      if (cdmvar == null)
+        return false; // file was changed in place
+      map.put(CDMUtil.unwrap(cdmvar), entry.getKey());
+    }
+    this.varmap = map;
+    this.dmr = cached.dmr;
+    return true;
+  }
+
   public void close() throws IOException {
     if (this.ncdfile != null)
       this.ncdfile.close();
@@ -266,7 +360,8 @@ public class CDMWrap {
       if (index >= 0)
         name = name.substring(index + 1, name.length());
       // Initialize the root dataset node
-      setDMR((DapDataset) this.dmrfactory.newDataset(name).annotate(NetcdfDataset.class, this.ncdfile));
+      // Not annotated with the file: the DMR may be kept after it is closed
+      setDMR((DapDataset) this.dmrfactory.newDataset(name));
       // Map the CDM root group to this group
       recordNode(this.ncdfile.getRootGroup(), getDMR());
       getDMR().setBase(DapUtil.canonicalpath(this.ncdfile.getLocation()));
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package dap4.servlet;
+
+import dap4.core.dmr.DapDataset;
+import dap4.core.dmr.DapVariable;
+
+import java.io.File;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remember the variable checksums computed for a file and constraint,
+ * so that a checksummed request does not have to serialize all the
+ * data once just to put the checksums into the DMR.
+ * Entries are keyed by the file, its last modified time and size,
+ * the constraint and the byte order, so a changed file misses.
+ * Least recently used entries are dropped.
+ */
+
+public class ChecksumCache {
+  //////////////////////////////////////////////////
+  // Constants
+
+  public static final int DEFAULTMAXENTRIES = 1000;
+
+  //////////////////////////////////////////////////
+  // Instance variables
+
+  protected final Map<String, Map<String, Long>> cache; // key -> (variable fqn -> checksum)
+
+  protected long hits = 0;
+  protected long misses = 0;
+
+  //////////////////////////////////////////////////
+  // Constructor(s)
+
+  public ChecksumCache(final int maxentries) {
+    this.cache = new LinkedHashMap<String, Map<String, Long>>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Map<String, Long>> eldest) {
+        return size() > maxentries;
+      }
+    };
+  }
+
+  //////////////////////////////////////////////////
+  // Accessors
+
+  /**
+   * Make the cache key.
+   *
+   * @param realpath the file being served
+   * @param constraint the constraint expression; may be null
+   * @param order byte order of the response
+   * @return the key, or null if the file cannot be found
+   */
+  public static String makeKey(String realpath, String constraint, ByteOrder order) {
+    File f = new File(realpath);
+    long lastmodified = f.lastModified();
+    if (lastmodified <= 0)
+      return null;
+    return realpath + "|" + lastmodified + "|" + f.length() + "|" + order + "|" + (constraint == null ? "" : constraint);
+  }
+
+  /**
+   * Get the checksums for the variables of this dmr.
+   *
+   * @param key from makeKey()
+   * @param dmr the dataset whose variables are to be used as keys
+   * @return the checksums, or null if not cached
+   */
+  public synchronized Map<DapVariable, Long> get(String key, DapDataset dmr) {
+    Map<String, Long> byname = this.cache.get(key);
+    if (byname == null) {
+      misses++;
+      return null;
+    }
+    Map<DapVariable, Long> checksums = new HashMap<>();
+    for (Map.Entry<String, Long> entry : byname.entrySet()) {
+      DapVariable var = dmr.findVariable(entry.getKey());
+      if (var == null) { // should not happen, since the file has not changed
+        this.cache.remove(key);
+        misses++;
+        return null;
+      }
+      checksums.put(var, entry.getValue());
+    }
+    hits++;
+    return checksums;
+  }
+
+  public synchronized void put(String key, Map<DapVariable, Long> checksums) {
+    Map<String, Long> byname = new HashMap<>();
+    if (checksums != null) {
+      for (Map.Entry<DapVariable, Long> entry : checksums.entrySet())
+        byname.put(entry.getKey().getFQN(), entry.getValue());
+    }
+    this.cache.put(key, byname);
+  }
+
+  public synchronized void clear() {
+    this.cache.clear();
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+}
@@ -432,17 +432,12 @@ public class ChunkWriter extends OutputStream {
     int left = len;
     int offset = off;
     while (left > 0) {
-      int avail = chunk.remaining();
-      do {
-        if (avail == 0) {
-          writeChunk(DapConstants.CHUNK_DATA);
-          avail = chunk.remaining();
-        }
-        int towrite = (left < avail ? left : avail);
-        chunk.put(b, off, towrite);
-        left -= towrite;
-        avail -= towrite;
-      } while (left > 0);
+      if (chunk.remaining() == 0)
+        writeChunk(DapConstants.CHUNK_DATA);
+      int towrite = Math.min(left, chunk.remaining());
+      chunk.put(b, offset, towrite);
+      offset += towrite;
+      left -= towrite;
     }
     writecount += len;
   }
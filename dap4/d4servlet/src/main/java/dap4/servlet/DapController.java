@@ -45,9 +45,25 @@ abstract public class DapController extends HttpServlet {
   //////////////////////////////////////////////////
   // static variables
 
+  // Checksums already computed, shared by all controllers; null => do not cache
+  protected static ChecksumCache checksumcache = new ChecksumCache(ChecksumCache.DEFAULTMAXENTRIES);
+
   //////////////////////////////////////////////////
   // Static accessors
 
+  /**
+   * Set the number of (file,constraint) checksum sets to remember.
+   *
+   * @param maxentries 0 => do not remember any
+   */
+  public static void setChecksumCacheSize(int maxentries) {
+    checksumcache = (maxentries <= 0 ? null : new ChecksumCache(maxentries));
+  }
+
+  public static ChecksumCache getChecksumCache() {
+    return checksumcache;
+  }
+
   public static String printDMR(DapDataset dmr) {
     StringWriter sw = new StringWriter();
     PrintWriter pw = new PrintWriter(sw);
@@ -260,42 +276,46 @@ abstract public class DapController extends HttpServlet {
     // Convert the url to an absolute path
     String realpath = drq.getResourcePath(drq.getDatasetPath());
 
-    CDMWrap c4 = new CDMWrap().open(realpath); // Create the wrapper
-    DapDataset dmr = c4.getDMR();
-    CEConstraint ce = constrainDapContext(cxt, dmr);
-    ChecksumMode csummode = (ChecksumMode) cxt.get(DapConstants.CHECKSUMTAG);
-    ByteOrder order = (ByteOrder) cxt.get(DapConstants.DAP4ENDIANTAG);
-
-    // If the user calls for checksums, then we need to compute them
-    if (csummode == ChecksumMode.TRUE) {
-      Map<DapVariable, Long> checksummap = computeDMRChecksums(c4, cxt);
-      // Add to context
-      cxt.put("checksummap", checksummap);
-    }
+    CDMWrap c4 = openWrap(drq, realpath); // Create the wrapper
+    if (c4 == null)
+      return; // response already sent
+    try {
+      DapDataset dmr = c4.getDMR();
+      CEConstraint ce = constrainDapContext(cxt, dmr);
+      ChecksumMode csummode = (ChecksumMode) cxt.get(DapConstants.CHECKSUMTAG);
+      ByteOrder order = (ByteOrder) cxt.get(DapConstants.DAP4ENDIANTAG);
 
-    // Provide a PrintWriter for capturing the DMR.
-    StringWriter sw = new StringWriter();
-    PrintWriter pw = new PrintWriter(sw);
+      // If the user calls for checksums, then we need to compute them
+      if (csummode == ChecksumMode.TRUE) {
+        Map<DapVariable, Long> checksummap = getDMRChecksums(realpath, c4, cxt);
+        // Add to context
+        cxt.put("checksummap", checksummap);
+      }
 
-    // Get the DMR as a string
-    DMRPrinter dapprinter = new DMRPrinter(dmr, ce, pw, drq.getFormat(), cxt);
-    dapprinter.print();
-    pw.close();
-    sw.close();
+      // Provide a PrintWriter for capturing the DMR.
+      StringWriter sw = new StringWriter();
+      PrintWriter pw = new PrintWriter(sw);
 
-    String sdmr = sw.toString();
-    if (DEBUG)
-      System.err.println("Sending: DMR:\n" + sdmr);
+      // Get the DMR as a string
+      DMRPrinter dapprinter = new DMRPrinter(dmr, ce, pw, drq.getFormat(), cxt);
+      dapprinter.print();
+      pw.close();
+      sw.close();
 
-    addCommonHeaders(drq);// Add relevant headers
+      String sdmr = sw.toString();
+      if (DEBUG)
+        System.err.println("Sending: DMR:\n" + sdmr);
 
-    OutputStream out = drq.getOutputStream();
-    // Wrap the outputstream with a Chunk writer
-    ChunkWriter cw = new ChunkWriter(out, RequestMode.DMR, order);
-    cw.cacheDMR(sdmr);
-    cw.close();
+      addCommonHeaders(drq);// Add relevant headers
 
-    c4.close();
+      OutputStream out = drq.getOutputStream();
+      // Wrap the outputstream with a Chunk writer
+      ChunkWriter cw = new ChunkWriter(out, RequestMode.DMR, order);
+      cw.cacheDMR(sdmr);
+      cw.close();
+    } finally {
+      c4.close();
+    }
 
   }
 
@@ -313,69 +333,86 @@ abstract public class DapController extends HttpServlet {
     // Convert the url to an absolute path
     String realpath = drq.getResourcePath(drq.getDatasetPath());
 
-    CDMWrap c4 = new CDMWrap().open(realpath);
+    CDMWrap c4 = openWrap(drq, realpath);
     if (c4 == null)
-      throw new DapException("No such file: " + realpath);
+      return; // response already sent
 
-    DapDataset dmr = c4.getDMR();
-    CEConstraint ce = constrainDapContext(cxt, dmr);
-    ChecksumMode csummode = (ChecksumMode) cxt.get(DapConstants.CHECKSUMTAG);
-    ByteOrder order = (ByteOrder) cxt.get(DapConstants.DAP4ENDIANTAG);
+    try {
+      DapDataset dmr = c4.getDMR();
+      CEConstraint ce = constrainDapContext(cxt, dmr);
+      ChecksumMode csummode = (ChecksumMode) cxt.get(DapConstants.CHECKSUMTAG);
+      ByteOrder order = (ByteOrder) cxt.get(DapConstants.DAP4ENDIANTAG);
 
-    StringWriter sw = new StringWriter();
-    PrintWriter pw = new PrintWriter(sw);
+      StringWriter sw = new StringWriter();
+      PrintWriter pw = new PrintWriter(sw);
+
+      // If the user calls for checksums, then we need to compute them
+      // This, unfortunately, will require computation twice: one to insert
+      // into the DMR and one to insert into the serialized DAP stream.
+      // The first is remembered, so only the first request for a
+      // given file and constraint pays for it.
+      if (csummode == ChecksumMode.TRUE) {
+        Map<DapVariable, Long> checksummap = getDMRChecksums(realpath, c4, cxt);
+        // Add to context
+        cxt.put("checksummap", checksummap);
+      }
 
-    // If the user calls for checksums, then we need to compute them
-    // This, unfortunately, will require computation twice: one to insert
-    // into the DMR and one to insert into the serialized DAP stream. Sigh!
-    if (csummode == ChecksumMode.TRUE) {
-      Map<DapVariable, Long> checksummap = computeDMRChecksums(c4, cxt);
-      // Add to context
-      cxt.put("checksummap", checksummap);
-    }
+      // Get the DMR as a string
+      DMRPrinter dapprinter = new DMRPrinter(dmr, ce, pw, drq.getFormat(), cxt);
+      dapprinter.print();
+      pw.close();
+      sw.close();
 
-    // Get the DMR as a string
-    DMRPrinter dapprinter = new DMRPrinter(dmr, ce, pw, drq.getFormat(), cxt);
-    dapprinter.print();
-    pw.close();
-    sw.close();
-
-    // Wrap the outputstream with a Chunk writer
-    OutputStream out = drq.getOutputStream();
-    ChunkWriter cw = new ChunkWriter(out, RequestMode.DAP, order);
-    cw.setWriteLimit(getBinaryWriteLimit());
-    String sdmr = sw.toString();
-    cw.cacheDMR(sdmr);
-    cw.flush();
-
-    addCommonHeaders(drq);
-
-    // Dump the databuffer part
-    switch (drq.getFormat()) {
-      case TEXT:
-      case XML:
-      case HTML:
-        throw new IOException("Unsupported return format: " + drq.getFormat());
-      /*
-       * sw = new StringWriter();
-       * DAPPrint dp = new DAPPrint(sw);
-       * dp.print(dsp.getDataset(), ce);
-       * break;
-       */
-      case NONE:
-      default:
-        DapSerializer writer = new DapSerializer(c4, ce, cw, order, drq.getChecksumMode());
-        writer.write(c4.getDMR());
-        cw.flush();
-        cw.close();
-        break;
+      // Wrap the outputstream with a Chunk writer
+      OutputStream out = drq.getOutputStream();
+      ChunkWriter cw = new ChunkWriter(out, RequestMode.DAP, order);
+      cw.setWriteLimit(getBinaryWriteLimit());
+      String sdmr = sw.toString();
+      cw.cacheDMR(sdmr);
+      cw.flush();
+
+      addCommonHeaders(drq);
+
+      // Dump the databuffer part
+      switch (drq.getFormat()) {
+        case TEXT:
+        case XML:
+        case HTML:
+          throw new IOException("Unsupported return format: " + drq.getFormat());
+        /*
+         * sw = new StringWriter();
+         * DAPPrint dp = new DAPPrint(sw);
+         * dp.print(dsp.getDataset(), ce);
+         * break;
+         */
+        case NONE:
+        default:
+          DapSerializer writer = new DapSerializer(c4, ce, cw, order, drq.getChecksumMode());
+          writer.write(c4.getDMR());
+          cw.flush();
+          cw.close();
+          break;
+      }
+    } finally {
+      c4.close();
     }
-    c4.close();
   }
 
   //////////////////////////////////////////////////////////
   // Utility Methods
 
+  /**
+   * Open the dataset and wrap it.
+   * Subclasses may override to get the file from a file cache.
+   *
+   * @param drq dap request
+   * @param realpath absolute path of the dataset, from getResourcePath()
+   * @return the wrapped dataset, or null if the response has already been sent
+   */
+  protected CDMWrap openWrap(DapRequest drq, String realpath) throws IOException {
+    return new CDMWrap().open(realpath);
+  }
+
   protected void addCommonHeaders(DapRequest drq) throws DapException {
     // Add relevant headers
     ResponseFormat format = drq.getFormat();
@@ -496,6 +533,35 @@ abstract public class DapController extends HttpServlet {
     return ce;
   }
 
+  /**
+   * Get the checksums for the DMR, from the checksum cache if possible,
+   * else by serializing the data.
+   *
+   * @param realpath the file being served
+   * @param c4 the wrapped file
+   * @param cxt the dap context; must contain the constraint
+   * @return the checksums
+   */
+  protected Map<DapVariable, Long> getDMRChecksums(String realpath, CDMWrap c4, DapContext cxt)
+      throws DapException {
+    ChecksumCache cache = checksumcache;
+    String key = null;
+    if (cache != null) {
+      DapRequest drq = (DapRequest) cxt.get(DapRequest.class);
+      ByteOrder order = (ByteOrder) cxt.get(DapConstants.DAP4ENDIANTAG);
+      key = ChecksumCache.makeKey(realpath, drq.queryLookup(DapConstants.CONSTRAINTTAG), order);
+    }
+    if (key != null) {
+      Map<DapVariable, Long> checksummap = cache.get(key, c4.getDMR());
+      if (checksummap != null)
+        return checksummap;
+    }
+    Map<DapVariable, Long> checksummap = computeDMRChecksums(c4, cxt);
+    if (key != null)
+      cache.put(key, checksummap);
+    return checksummap;
+  }
+
   protected Map<DapVariable, Long> computeDMRChecksums(CDMWrap c4, DapContext cxt) throws DapException {
     ByteOrder order = (ByteOrder) cxt.get(DapConstants.DAP4ENDIANTAG);
     ChecksumMode csum = (ChecksumMode) cxt.get(DapConstants.CHECKSUMTAG);
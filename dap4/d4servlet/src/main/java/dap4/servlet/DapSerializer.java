@@ -10,11 +10,13 @@ import dap4.core.dmr.*;
 import dap4.core.interfaces.ArrayScheme;
 import dap4.core.util.*;
 import ucar.ma2.Index;
+import ucar.ma2.Section;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteOrder;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -24,6 +26,12 @@ import java.util.Map;
  */
 
 public class DapSerializer {
+  //////////////////////////////////////////////////
+  // Constants
+
+  // Bytes read at a time from an atomic variable
+  public static long SLABSIZE = 0x10000; // make it mutable
+
   //////////////////////////////////////////////////
   // Instance variables
 
@@ -132,6 +140,15 @@ public class DapSerializer {
     List<Slice> slices = ce.getConstrainedSlices(template);
     if (slices == null)
       throw new DapException("Unknown variable: " + template.getFQN());
+    if (data.canReadSlabs(slices)) {
+      // Read and write a slab at a time, so that the
+      // whole variable is never in memory
+      Iterator<Section> slabs = data.slabs(slices, SLABSIZE);
+      while (slabs.hasNext()) {
+        dst.writeAtomicArray(basetype, data.readSlab(slabs.next()));
+      }
+      return;
+    }
     Object values = data.read(slices);
     dst.writeAtomicArray(basetype, values);
   }
@@ -49,6 +49,9 @@ public class SerialWriter {
 
   static final int COUNTSIZE = 8;
 
+  // Size of the buffer used to encode fixed size arrays
+  static final int ENCODESIZE = 0x10000;
+
   //////////////////////////////////////////////////
   // Instance variables
 
@@ -63,6 +66,7 @@ public class SerialWriter {
 
   protected ByteBuffer crcbuffer = null;
   protected ByteBuffer countbuffer = null;
+  protected ByteBuffer encodebuffer = null; // reused for every fixed size array
 
   //////////////////////////////////////////////////
   // Constructor(s)
@@ -207,6 +211,77 @@ public class SerialWriter {
     return buf;
   }
 
+  /**
+   * Encode part of an array of fixed size values.
+   *
+   * @param atomtype The atomic type of the values
+   * @param values The value array
+   * @param first index of the first value to encode
+   * @param count number of values to encode
+   * @param buf where to put the encoded values; must have room for them
+   */
+
+  protected static void encodeArray(TypeSort atomtype, Object values, int first, int count, ByteBuffer buf)
+      throws IOException {
+    int pos = buf.position();
+    switch (atomtype) {
+      case Char:
+        char[] datac = (char[]) values;
+        for (int i = 0; i < count; i++) {
+          buf.put((byte) (0xFFL & (long) (datac[first + i])));
+        }
+        break;
+      case UInt8:
+      case Int8:
+        buf.put((byte[]) values, first, count);
+        break;
+      case Int16:
+      case UInt16:
+        buf.asShortBuffer().put((short[]) values, first, count);
+        buf.position(pos + 2 * count); // because we are using asXXXBuffer
+        break;
+      case Int32:
+      case UInt32:
+        buf.asIntBuffer().put((int[]) values, first, count);
+        buf.position(pos + 4 * count);
+        break;
+      case Int64:
+      case UInt64:
+        buf.asLongBuffer().put((long[]) values, first, count);
+        buf.position(pos + 8 * count);
+        break;
+      case Float32:
+        buf.asFloatBuffer().put((float[]) values, first, count);
+        buf.position(pos + 4 * count);
+        break;
+      case Float64:
+        buf.asDoubleBuffer().put((double[]) values, first, count);
+        buf.position(pos + 8 * count);
+        break;
+      default:
+        throw new DapException("Not a fixed size type: " + atomtype);
+    }
+  }
+
+  protected static boolean isFixedSize(TypeSort atomtype) {
+    switch (atomtype) {
+      case Char:
+      case UInt8:
+      case Int8:
+      case Int16:
+      case UInt16:
+      case Int32:
+      case UInt32:
+      case Int64:
+      case UInt64:
+      case Float32:
+      case Float64:
+        return true;
+      default:
+        return false;
+    }
+  }
+
   //////////////////////////////////////////////////
   // Dataset oriented writes
 
@@ -273,6 +348,27 @@ public class SerialWriter {
    */
   public void writeAtomicArray(DapType daptype, Object values) throws IOException {
     assert values != null && values.getClass().isArray();
+    TypeSort atomtype = daptype.getAtomicType();
+    if (!DEBUG && isFixedSize(atomtype)) {
+      // Encode a piece at a time into a buffer that is reused,
+      // rather than encoding the whole array into a new one.
+      int count = Array.getLength(values);
+      if (atomtype == TypeSort.Int8 || atomtype == TypeSort.UInt8) {
+        writeBytes((byte[]) values, 0, count); // already encoded
+        return;
+      }
+      if (this.encodebuffer == null)
+        this.encodebuffer = ByteBuffer.allocate(ENCODESIZE).order(this.order);
+      int size = (int) TypeSort.getSize(atomtype);
+      int perbuffer = ENCODESIZE / size;
+      for (int first = 0; first < count; first += perbuffer) {
+        int n = Math.min(perbuffer, count - first);
+        this.encodebuffer.clear();
+        encodeArray(atomtype, values, first, n, this.encodebuffer);
+        writeBytes(this.encodebuffer.array(), this.encodebuffer.position());
+      }
+      return;
+    }
     ByteBuffer buf = SerialWriter.encodeArray(daptype, values, this.order);
     byte[] bytes = buf.array();
     int len = buf.position();
@@ -295,12 +391,24 @@ public class SerialWriter {
    * @throws IOException
    */
   public void writeBytes(byte[] bytes, int len) throws IOException {
-    outputBytes(bytes, 0, len);
+    writeBytes(bytes, 0, len);
+  }
+
+  /**
+   * Write out a set of bytes
+   *
+   * @param bytes
+   * @param start
+   * @param len
+   * @throws IOException
+   */
+  public void writeBytes(byte[] bytes, int start, int len) throws IOException {
+    outputBytes(bytes, start, len);
     if (this.checksummode == ChecksumMode.TRUE) {
-      this.checksum.update(bytes, 0, len);
+      this.checksum.update(bytes, start, len);
       if (DUMPCSUM) {
         System.err.print("SSS ");
-        for (int i = 0; i < len; i++) {
+        for (int i = start; i < start + len; i++) {
           System.err.printf("%02x", bytes[i]);
         }
         System.err.println();
@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package opendap.servers;
+
+import java.util.ArrayList;
+import java.util.List;
+import opendap.dap.*;
+import opendap.servers.parsers.ExprParserConstants;
+
+/**
+ * A <code>RelOpClause</code> between primitive variables and constants, compiled
+ * once per request into a typed comparison. The comparison follows the
+ * <code>Operator</code> rules for each pair of types (which operand is unsigned,
+ * and whether the comparison is done in long, float or double), without going
+ * through <code>Operator.op</code> for every row.
+ * <p/>
+ * Clauses that are not compiled (functions, regular expressions, array
+ * elements, constant clauses, comparisons that <code>Operator</code> rejects)
+ * are left to <code>TopLevelClause.evaluate()</code>.
+ *
+ * @see RelOpClause
+ * @see Operator
+ */
+public class CompiledClause implements ExprParserConstants {
+
+  // the type an operand is dispatched as by Operator.op
+  private enum Kind {
+    BYTE, FLOAT32, FLOAT64, INT16, INT32, STRING, UINT16, UINT32
+  }
+
+  // the type the comparison is done in, from the java promotion rules
+  private enum Mode {
+    LONG, FLOAT, DOUBLE, STRING
+  }
+
+  /**
+   * Compile a clause.
+   *
+   * @param clause a top level clause of a <code>CEEvaluator</code>
+   * @return the compiled clause, or null if the clause must be evaluated
+   *         with <code>TopLevelClause.evaluate()</code>
+   */
+  public static CompiledClause compile(Clause clause) {
+    if (!(clause instanceof RelOpClause) || clause.isConstant())
+      return null;
+    RelOpClause roc = (RelOpClause) clause;
+    int operator = roc.getOperator();
+    switch (operator) {
+      case LESS:
+      case LESS_EQL:
+      case GREATER:
+      case GREATER_EQL:
+      case EQUAL:
+      case NOT_EQUAL:
+        break;
+      default:
+        return null; // regexps are matched by Operator
+    }
+
+    Kind lkind = kind(roc.getLHS());
+    if (lkind == null)
+      return null;
+    Operand lhs = new Operand(roc.getLHS(), lkind, false);
+    List<Operand> rhs = new ArrayList<>();
+    Mode mode = null;
+    for (Object o : roc.getRHS()) {
+      SubClause sc = (SubClause) o;
+      Kind rkind = kind(sc);
+      if (rkind == null)
+        return null;
+      Mode m = mode(lkind, rkind);
+      if (m == null || (mode != null && m != mode))
+        return null; // string vs number is an error; mixed modes are rare
+      mode = m;
+      // a byte is unsigned on the left, but on the right only when compared with another byte
+      rhs.add(new Operand(sc, rkind, rkind == Kind.BYTE && lkind != Kind.BYTE));
+    }
+    if (rhs.isEmpty())
+      return null;
+    return new CompiledClause(roc, operator, mode, lhs, rhs);
+  }
+
+  // same order as Operator.op, so subclasses (eg DUInt16 of DInt16) are dispatched the same way
+  private static Kind kind(SubClause sc) {
+    if (!(sc instanceof ValueClause))
+      return null; // functions and dereferences
+    BaseType bt = ((ValueClause) sc).getValue();
+    if (bt instanceof DByte)
+      return Kind.BYTE;
+    else if (bt instanceof DFloat32)
+      return Kind.FLOAT32;
+    else if (bt instanceof DFloat64)
+      return Kind.FLOAT64;
+    else if (bt instanceof DInt16)
+      return Kind.INT16;
+    else if (bt instanceof DInt32)
+      return Kind.INT32;
+    else if (bt instanceof DString)
+      return Kind.STRING;
+    else if (bt instanceof DUInt16)
+      return Kind.UINT16;
+    else if (bt instanceof DUInt32)
+      return Kind.UINT32;
+    else if (bt instanceof DURL)
+      return Kind.STRING;
+    return null; // arrays, constructors
+  }
+
+  private static Mode mode(Kind left, Kind right) {
+    boolean lstring = left == Kind.STRING;
+    boolean rstring = right == Kind.STRING;
+    if (lstring || rstring)
+      return lstring && rstring ? Mode.STRING : null;
+    if (left == Kind.FLOAT64 || right == Kind.FLOAT64)
+      return Mode.DOUBLE;
+    if (left == Kind.FLOAT32 || right == Kind.FLOAT32)
+      return Mode.FLOAT;
+    return Mode.LONG;
+  }
+
+  //////////////////////////////////////////////////////////////////
+
+  private final RelOpClause clause;
+  private final int operator;
+  private final Mode mode;
+  private final Operand lhs;
+  private final List<Operand> rhs;
+
+  private CompiledClause(RelOpClause clause, int operator, Mode mode, Operand lhs, List<Operand> rhs) {
+    this.clause = clause;
+    this.operator = operator;
+    this.mode = mode;
+    this.lhs = lhs;
+    this.rhs = rhs;
+  }
+
+  /**
+   * @return the clause this was compiled from
+   */
+  public RelOpClause getClause() {
+    return clause;
+  }
+
+  /**
+   * Evaluate with the current values of the variables, like <code>RelOpClause.evaluate()</code>.
+   */
+  public boolean evaluate() {
+    for (Operand r : rhs) {
+      boolean value;
+      switch (mode) {
+        case LONG:
+          value = compare(operator, lhs.longValue(), r.longValue());
+          break;
+        case FLOAT:
+          value = compare(operator, lhs.floatValue(), r.floatValue());
+          break;
+        case DOUBLE:
+          value = compare(operator, lhs.doubleValue(), r.doubleValue());
+          break;
+        default:
+          value = compare(operator, lhs.stringValue().compareTo(r.stringValue()));
+      }
+      if (value)
+        return true;
+    }
+    return false;
+  }
+
+  //////////////////////////////////////////////////////////////////
+  // comparisons, with the same java operators as Operator (NaN is never equal)
+
+  private static boolean compare(int operator, long l, long r) {
+    switch (operator) {
+      case LESS:
+        return l < r;
+      case LESS_EQL:
+        return l <= r;
+      case GREATER:
+        return l > r;
+      case GREATER_EQL:
+        return l >= r;
+      case EQUAL:
+        return l == r;
+      default:
+        return l != r;
+    }
+  }
+
+  private static boolean compare(int operator, float l, float r) {
+    switch (operator) {
+      case LESS:
+        return l < r;
+      case LESS_EQL:
+        return l <= r;
+      case GREATER:
+        return l > r;
+      case GREATER_EQL:
+        return l >= r;
+      case EQUAL:
+        return l == r;
+      default:
+        return l != r;
+    }
+  }
+
+  private static boolean compare(int operator, double l, double r) {
+    switch (operator) {
+      case LESS:
+        return l < r;
+      case LESS_EQL:
+        return l <= r;
+      case GREATER:
+        return l > r;
+      case GREATER_EQL:
+        return l >= r;
+      case EQUAL:
+        return l == r;
+      default:
+        return l != r;
+    }
+  }
+
+  private static boolean compare(int operator, int cmp) {
+    return compare(operator, cmp, 0L);
+  }
+
+  //////////////////////////////////////////////////////////////////
+
+  // one side of the comparison: a variable, or a constant
+  private static class Operand {
+    private final BaseType bt;
+    private final Kind kind;
+    private final boolean signedByte;
+
+    Operand(SubClause sc, Kind kind, boolean signedByte) {
+      this.bt = ((ValueClause) sc).getValue();
+      this.kind = kind;
+      this.signedByte = signedByte;
+    }
+
+    long longValue() {
+      switch (kind) {
+        case BYTE:
+          byte b = ((DByte) bt).getValue();
+          return signedByte ? b : b & 0xFF;
+        case INT16:
+          return ((DInt16) bt).getValue();
+        case INT32:
+          return ((DInt32) bt).getValue();
+        case UINT16:
+          return ((DUInt16) bt).getValue() & 0xFFFF;
+        case UINT32:
+          return ((DUInt32) bt).getValue() & 0xFFFFFFFFL;
+        default:
+          throw new IllegalStateException(kind.toString());
+      }
+    }
+
+    float floatValue() {
+      return kind == Kind.FLOAT32 ? ((DFloat32) bt).getValue() : (float) longValue();
+    }
+
+    double doubleValue() {
+      switch (kind) {
+        case FLOAT64:
+          return ((DFloat64) bt).getValue();
+        case FLOAT32:
+          return ((DFloat32) bt).getValue();
+        default:
+          return longValue();
+      }
+    }
+
+    String stringValue() {
+      return ((DString) bt).getValue();
+    }
+  }
+
+}
@@ -422,6 +422,13 @@ public abstract class SDSequence extends DSequence implements ServerMethods, Rel
   public void serialize(String dataset, DataOutputStream sink, CEEvaluator ce, Object specialO)
       throws NoSuchVariableException, DAP2ServerSideException, IOException {
 
+    // The relational clauses are compiled once, instead of dispatched through Operator for every row
+    Vector<TopLevelClause> clauses = new Vector<>();
+    for (Enumeration e = ce.getClauses(); e.hasMoreElements();)
+      clauses.add((TopLevelClause) e.nextElement());
+    CompiledClause[] compiled = new CompiledClause[clauses.size()];
+    for (int i = 0; i < compiled.length; i++)
+      compiled[i] = CompiledClause.compile(clauses.get(i));
 
     boolean moreToRead = true;
 
@@ -436,7 +443,7 @@ public abstract class SDSequence extends DSequence implements ServerMethods, Rel
       }
 
       // System.out.println("Evaluating Clauses...");
-      if (ce.evalClauses(specialO)) {
+      if (evalClauses(clauses, compiled)) {
         // System.out.println("Clauses evaluated true");
 
         // ************* Pulled out the getLevel() check in order to support the "new"
@@ -467,6 +474,16 @@ public abstract class SDSequence extends DSequence implements ServerMethods, Rel
     return;
   }
 
+  // Evaluate all of the clauses in order, like CEEvaluator.evalClauses()
+  private static boolean evalClauses(Vector<TopLevelClause> clauses, CompiledClause[] compiled)
+      throws NoSuchVariableException, DAP2ServerSideException, IOException {
+    for (int i = 0; i < compiled.length; i++) {
+      boolean result = (compiled[i] != null) ? compiled[i].evaluate() : clauses.get(i).evaluate();
+      if (!result)
+        return false;
+    }
+    return true;
+  }
 
   /**
    * Write the variable's declaration in XML. This
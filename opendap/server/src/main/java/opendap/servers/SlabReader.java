@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package opendap.servers;
+
+import java.io.IOException;
+
+/**
+ * An array of a primitive type that can be read a slab at a time along its outer dimension,
+ * so that it can be written out without holding the whole constrained array in memory.
+ *
+ * @see opendap.servlet.AsciiWriter
+ */
+public interface SlabReader {
+
+  /**
+   * Receives the values of one slab.
+   */
+  interface Consumer {
+    /**
+     * @param values the values in row-major order, as a java array of the primitive type:
+     *        byte[], short[], int[], float[] or double[]
+     */
+    void accept(Object values) throws IOException;
+  }
+
+  /**
+   * @return true if the constrained array can be read with <code>readSlabs()</code>
+   */
+  boolean canReadSlabs();
+
+  /**
+   * Read the constrained array, using the start, stop and stride values set by the constraint evaluator,
+   * and pass each slab to consumer in order.
+   *
+   * @param datasetName String identifying the file or other data store
+   * @param specialO the goody passed to <code>read()</code>
+   * @param consumer receives the slabs
+   */
+  void readSlabs(String datasetName, Object specialO, Consumer consumer) throws IOException;
+}
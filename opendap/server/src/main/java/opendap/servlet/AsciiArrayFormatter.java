@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package opendap.servlet;
+
+import java.io.PrintWriter;
+import opendap.dap.BaseType;
+import opendap.dap.DByte;
+import opendap.dap.DUInt16;
+import opendap.dap.DUInt32;
+
+/**
+ * Formats the values of an array of numbers as AsciiWriter does, one row of the inner dimension per line,
+ * eg "[0][1], 1.5, 2.5, 3.5". Values are formatted into a reused buffer, and written out a slab at a time.
+ *
+ * @see AsciiWriter
+ */
+class AsciiArrayFormatter {
+  private static final int BUFFER_SIZE = 8 * 1024;
+
+  private final PrintWriter pw;
+  private final boolean unsigned;
+  private final int[] shape;
+  private final int rowLength;
+  private final int[] rowIndex; // index in the outer dimensions of the current row
+  private int col;
+
+  private final StringBuilder sbuff = new StringBuilder(2 * BUFFER_SIZE);
+  private char[] chars = new char[2 * BUFFER_SIZE];
+
+  /**
+   * @param pw write to this
+   * @param template the element type of the array
+   * @param shape the constrained shape of the array, all lengths > 0
+   */
+  AsciiArrayFormatter(PrintWriter pw, BaseType template, int[] shape) {
+    this.pw = pw;
+    this.unsigned = template instanceof DByte || template instanceof DUInt16 || template instanceof DUInt32;
+    this.shape = shape;
+    this.rowLength = shape[shape.length - 1];
+    this.rowIndex = new int[shape.length - 1];
+  }
+
+  /**
+   * Format the next values, and write them out.
+   *
+   * @param values byte[], short[], int[], long[], float[] or double[]
+   */
+  void write(Object values) {
+    if (values instanceof float[]) {
+      for (float v : (float[]) values) {
+        startValue();
+        sbuff.append(v);
+        endValue();
+      }
+    } else if (values instanceof double[]) {
+      for (double v : (double[]) values) {
+        startValue();
+        sbuff.append(v);
+        endValue();
+      }
+    } else if (values instanceof int[]) {
+      for (int v : (int[]) values) {
+        startValue();
+        if (unsigned) // UInt32, written unsigned, as showPrimitive() does
+          sbuff.append(v & 0xFFFFFFFFL);
+        else
+          sbuff.append(v);
+        endValue();
+      }
+    } else if (values instanceof short[]) {
+      for (short v : (short[]) values) {
+        startValue();
+        sbuff.append(unsigned ? v & 0xFFFF : v);
+        endValue();
+      }
+    } else if (values instanceof byte[]) {
+      for (byte v : (byte[]) values) {
+        startValue();
+        sbuff.append(unsigned ? v & 0xFF : v);
+        endValue();
+      }
+    } else if (values instanceof long[]) {
+      for (long v : (long[]) values) {
+        startValue();
+        sbuff.append(v);
+        endValue();
+      }
+    } else {
+      throw new IllegalArgumentException("AsciiArrayFormatter: unexpected type " + values.getClass().getName());
+    }
+    flush();
+  }
+
+  /**
+   * Write out what has been formatted.
+   */
+  void flush() {
+    writeBuffer();
+    pw.flush();
+  }
+
+  private void startValue() {
+    if (col > 0) {
+      sbuff.append(", ");
+    } else if (rowIndex.length > 0) {
+      for (int index : rowIndex)
+        sbuff.append('[').append(index).append(']');
+      sbuff.append(", ");
+    }
+  }
+
+  private void endValue() {
+    if (++col == rowLength) {
+      col = 0;
+      sbuff.append('\n');
+      for (int k = rowIndex.length - 1; k >= 0; k--) { // next row
+        if (++rowIndex[k] < shape[k])
+          break;
+        rowIndex[k] = 0;
+      }
+    }
+    if (sbuff.length() >= BUFFER_SIZE)
+      writeBuffer();
+  }
+
+  private void writeBuffer() {
+    int n = sbuff.length();
+    if (n == 0)
+      return;
+    if (chars.length < n)
+      chars = new char[n];
+    sbuff.getChars(0, n, chars, 0);
+    pw.write(chars, 0, n);
+    sbuff.setLength(0);
+  }
+}
@@ -7,6 +7,7 @@ package opendap.servlet;
 
 import opendap.dap.*;
 import opendap.servers.ServerMethods;
+import opendap.servers.SlabReader;
 import java.io.PrintWriter;
 import java.io.IOException;
 import java.util.Enumeration;
@@ -71,6 +72,13 @@ public class AsciiWriter {
         }
       }
 
+    } else if (bt instanceof DArray && bt instanceof SlabReader && ((SlabReader) bt).canReadSlabs()
+        && streamArray((DArray) bt, null, datasetName, pw, specialO)) {
+      // written as it was read
+
+    } else if (bt instanceof DGrid) {
+      streamGrid((DGrid) bt, datasetName, pw, specialO);
+
     } else {
       if (!((ServerMethods) bt).isRead()) // make sure data is in memory, but don't read it twice!
         ((ServerMethods) bt).read(datasetName, specialO);
@@ -78,6 +86,61 @@ public class AsciiWriter {
     }
   }
 
+  /**
+   * Write a grid in the same format as showGrid(), streaming the array and maps that can be, and reading the others.
+   */
+  private void streamGrid(DGrid dgrid, String datasetName, PrintWriter pw, Object specialO)
+      throws IOException, NoSuchVariableException {
+    String rootName = (dgrid.projectedComponents(true) > 1) ? dgrid.getEncodedName() : null;
+
+    Enumeration e = dgrid.getVariables();
+    while (e.hasMoreElements()) {
+      BaseType ta = (BaseType) e.nextElement();
+      if (!ta.isProject())
+        continue;
+      if (ta instanceof DArray && ta instanceof SlabReader && ((SlabReader) ta).canReadSlabs()
+          && streamArray((DArray) ta, rootName, datasetName, pw, specialO))
+        continue;
+
+      if (!((ServerMethods) ta).isRead())
+        ((ServerMethods) ta).read(datasetName, specialO);
+      toASCII(ta, pw, true, rootName, true);
+    }
+    pw.print("\n");
+  }
+
+  /**
+   * Write an array of numbers as it is read, a slab at a time, in the same format as showArray().
+   *
+   * @return false if the array can't be streamed, and nothing was written
+   */
+  private boolean streamArray(DArray data, String rootName, String datasetName, PrintWriter pw, Object specialO)
+      throws IOException {
+    BaseType template = data.getPrimitiveVector().getTemplate();
+    if (!(template instanceof DPrimitive) || template instanceof DString)
+      return false;
+
+    int dims = data.numDimensions();
+    if (dims == 0)
+      return false;
+    int[] shape = new int[dims];
+    int i = 0;
+    for (Enumeration e = data.getDimensions(); e.hasMoreElements();) {
+      DArrayDimension d = (DArrayDimension) e.nextElement();
+      shape[i] = d.getSize();
+      if (shape[i++] <= 0)
+        return false;
+    }
+
+    pw.print(toASCIIFlatName(data, rootName));
+    pw.print("\n");
+    AsciiArrayFormatter formatter = new AsciiArrayFormatter(pw, template, shape);
+    ((SlabReader) data).readSlabs(datasetName, specialO, formatter::write);
+    formatter.flush();
+    pw.print("\n");
+    return true;
+  }
+
 
   public void toASCII(BaseType dtype, PrintWriter pw) {
     toASCII(dtype, pw, true, null, true);
@@ -105,19 +168,19 @@ public class AsciiWriter {
     if (data instanceof DString) // covers DURL case
       showString(pw, ((DString) data).getValue());
     else if (data instanceof DFloat32)
-      pw.print((Float.valueOf(((DFloat32) data).getValue())).toString());
+      pw.print(((DFloat32) data).getValue());
     else if (data instanceof DFloat64)
-      pw.print((Double.valueOf(((DFloat64) data).getValue())).toString());
+      pw.print(((DFloat64) data).getValue());
     else if (data instanceof DUInt32)
-      pw.print((Long.valueOf(((DUInt32) data).getValue() & ((long) 0xFFFFFFFF))).toString());
+      pw.print(((DUInt32) data).getValue() & 0xFFFFFFFFL);
     else if (data instanceof DUInt16)
-      pw.print((Integer.valueOf(((DUInt16) data).getValue() & 0xFFFF)).toString());
+      pw.print(((DUInt16) data).getValue() & 0xFFFF);
     else if (data instanceof DInt32)
-      pw.print((Integer.valueOf(((DInt32) data).getValue())).toString());
+      pw.print(((DInt32) data).getValue());
     else if (data instanceof DInt16)
-      pw.print((Short.valueOf(((DInt16) data).getValue())).toString());
+      pw.print(((DInt16) data).getValue());
     else if (data instanceof DByte)
-      pw.print((Integer.valueOf(((DByte) data).getValue() & 0xFF)).toString());
+      pw.print(((DByte) data).getValue() & 0xFF);
     else
       pw.print("Not implemented type = " + data.getTypeName() + " " + data.getEncodedName() + "\n");
 
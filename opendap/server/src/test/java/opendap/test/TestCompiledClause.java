@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package opendap.test;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.Random;
+import java.util.function.IntPredicate;
+import opendap.dap.*;
+import opendap.servers.*;
+import org.junit.Test;
+
+// Test that compiled selection clauses select the same rows as the clauses they come from
+public class TestCompiledClause {
+
+  static final String sequenceDDS = "Dataset {\n" + "Sequence {\n" + "byte b;\n" + "int16 i16;\n" + "uint16 u16;\n"
+      + "int32 i32;\n" + "uint32 u32;\n" + "float32 f32;\n" + "float64 f64;\n" + "String s;\n" + "} sq;\n" + "} d;\n";
+
+  static final String[] names = {"b", "i16", "u16", "i32", "u32", "f32", "f64", "s"};
+  static final String[] constants = {"0", "-1", "200", "40000", "3000000000", "1.5", "-0.5", "\"m\""};
+  static final String[] operators = {"<", "<=", ">", ">=", "=", "!="};
+
+  @Test
+  public void testSameAsOperator() throws Exception {
+    Random random = new Random(1234);
+    int ncompiled = 0;
+    for (String op : operators) {
+      for (String left : names) {
+        for (String right : names)
+          ncompiled += check("sq&sq." + left + op + "sq." + right, random);
+        for (String constant : constants) {
+          ncompiled += check("sq&sq." + left + op + constant, random);
+          ncompiled += check("sq&" + constant + op + "sq." + left, random);
+        }
+        ncompiled += check("sq&sq." + left + op + "{1,200,-7}", random);
+      }
+    }
+    assertThat(ncompiled).isGreaterThan(0);
+  }
+
+  @Test
+  public void testRegexpNotCompiled() throws Exception {
+    ServerDDS dds = parseDDS(new TestSDFactory());
+    CEEvaluator ce = new CEEvaluator(dds);
+    ce.parseConstraint("sq&sq.s=~\"a.*\"", null);
+    assertThat(CompiledClause.compile((Clause) ce.getClauses().nextElement())).isNull();
+  }
+
+  // returns 1 if the clause was compiled
+  private int check(String constraint, Random random) throws Exception {
+    ServerDDS dds = parseDDS(new TestSDFactory());
+    CEEvaluator ce = new CEEvaluator(dds);
+    try {
+      ce.parseConstraint(constraint, null);
+    } catch (Exception e) {
+      return 0; // not every combination parses
+    }
+    Enumeration clauses = ce.getClauses();
+    if (!clauses.hasMoreElements())
+      return 0;
+    TopLevelClause clause = (TopLevelClause) clauses.nextElement();
+    CompiledClause compiled = CompiledClause.compile(clause);
+    DSequence sq = (DSequence) dds.getVariable("sq");
+
+    for (int i = 0; i < 100; i++) {
+      setRandomRow(sq, random);
+      boolean expected;
+      try {
+        expected = clause.evaluate();
+      } catch (InvalidOperatorException e) {
+        assertThat(compiled).isNull();
+        return 0;
+      }
+      if (compiled != null)
+        assertWithMessage(constraint).that(compiled.evaluate()).isEqualTo(expected);
+    }
+    return compiled == null ? 0 : 1;
+  }
+
+  static final byte[] bytes = {0, 1, -1, 127, -128, 100, -56};
+  static final short[] shorts = {0, 1, -1, 200, -200, Short.MAX_VALUE, Short.MIN_VALUE, (short) 40000};
+  static final int[] ints = {0, 1, -1, 200, -7, Integer.MAX_VALUE, Integer.MIN_VALUE, (int) 3000000000L};
+  static final double[] doubles = {0, 1, -1, 1.5, -0.5, 200, 3.0e9, Double.NaN, 1.0e-40};
+  static final String[] strings = {"", "a", "m", "z", "mm"};
+
+  private static void setRandomRow(DSequence sq, Random random) throws NoSuchVariableException {
+    ((DByte) sq.getVariable("b")).setValue(bytes[random.nextInt(bytes.length)]);
+    ((DInt16) sq.getVariable("i16")).setValue(shorts[random.nextInt(shorts.length)]);
+    ((DUInt16) sq.getVariable("u16")).setValue(shorts[random.nextInt(shorts.length)]);
+    ((DInt32) sq.getVariable("i32")).setValue(ints[random.nextInt(ints.length)]);
+    ((DUInt32) sq.getVariable("u32")).setValue(ints[random.nextInt(ints.length)]);
+    ((DFloat32) sq.getVariable("f32")).setValue((float) doubles[random.nextInt(doubles.length)]);
+    ((DFloat64) sq.getVariable("f64")).setValue(doubles[random.nextInt(doubles.length)]);
+    ((DString) sq.getVariable("s")).setValue(strings[random.nextInt(strings.length)]);
+  }
+
+  //////////////////////////////////////////////////
+
+  @Test
+  public void testSendsSelectedRows() throws Exception {
+    // each row of "sq.i32" is a marker and an int, then the end of sequence marker
+    byte[] all = send("sq.i32");
+    assertThat(all.length).isEqualTo(ColumnSequence.NROWS * 8 + 4);
+
+    assertThat(send("sq.i32&sq.i32<3")).isEqualTo(select(all, row -> row % 13 < 3));
+    assertThat(send("sq.i32&sq.f64>100&sq.u32!=0")).isEqualTo(select(all, row -> Math.sin(row) * 200 > 100));
+    // a regexp is left to Operator, after the compiled clause before it
+    assertThat(send("sq.i32&sq.i16<=0&sq.s=~\"m.*\""))
+        .isEqualTo(select(all, row -> (short) (row * 37) <= 0 && row % 26 == 12));
+  }
+
+  // the rows of the unselected response that pass the test, and the end marker
+  private static byte[] select(byte[] all, IntPredicate test) {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    for (int row = 0; row < ColumnSequence.NROWS; row++) {
+      if (test.test(row))
+        bos.write(all, row * 8, 8);
+    }
+    bos.write(all, all.length - 4, 4);
+    return bos.toByteArray();
+  }
+
+  private static byte[] send(String constraint) throws Exception {
+    ServerDDS dds = parseDDS(new TestSDFactory() {
+      @Override
+      public DSequence newDSequence() {
+        return new ColumnSequence();
+      }
+
+      @Override
+      public DSequence newDSequence(String n) {
+        return new ColumnSequence(n);
+      }
+    });
+    CEEvaluator ce = new CEEvaluator(dds);
+    ce.parseConstraint(constraint, null);
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    DataOutputStream sink = new DataOutputStream(bos);
+    ce.send(dds.getEncodedName(), sink, null);
+    sink.flush();
+    return bos.toByteArray();
+  }
+
+  private static ServerDDS parseDDS(BaseTypeFactory factory) throws Exception {
+    ServerDDS dds = new ServerDDS(factory);
+    if (!dds.parse(new ByteArrayInputStream(sequenceDDS.getBytes(StandardCharsets.UTF_8))))
+      throw new IOException("Cannot parse DDS");
+    return dds;
+  }
+
+  // A sequence of 10000 rows, with values made up from the row number
+  static class ColumnSequence extends SDSequence {
+    static final int NROWS = 10000;
+    private int next = 0;
+
+    ColumnSequence() {
+      super();
+    }
+
+    ColumnSequence(String n) {
+      super(n);
+    }
+
+    @Override
+    public boolean read(String datasetName, Object specialO) throws NoSuchVariableException, IOException {
+      int row = next++;
+      ((DByte) getVariable("b")).setValue((byte) row);
+      ((DInt16) getVariable("i16")).setValue((short) (row * 37));
+      ((DUInt16) getVariable("u16")).setValue((short) (row * 41));
+      ((DInt32) getVariable("i32")).setValue(row % 13);
+      ((DUInt32) getVariable("u32")).setValue(row * 104729);
+      ((DFloat32) getVariable("f32")).setValue(row / 7.0f);
+      ((DFloat64) getVariable("f64")).setValue(Math.sin(row) * 200);
+      ((DString) getVariable("s")).setValue(Character.toString((char) ('a' + row % 26)) + row);
+      setAllReadFlags(true);
+      return next < NROWS;
+    }
+  }
+}
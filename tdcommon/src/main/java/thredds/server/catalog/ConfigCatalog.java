@@ -28,6 +28,8 @@ import java.util.Map;
  */
 @Immutable
 public class ConfigCatalog extends Catalog {
+  // local field on datasetScan, featureCollection and catalogScan: a standalone catalog holding just that element
+  public static final String DataRootConfigXml = "DataRootConfigXml";
 
   public ConfigCatalog(URI baseURI, String name, Map<String, Object> flds, List<DatasetBuilder> datasets) {
     super(baseURI, name, flds, datasets);
@@ -67,6 +67,10 @@ public class ConfigCatalogCache implements CatalogReader {
     cache.invalidateAll();
   }
 
+  public void invalidate(String catKey) {
+    cache.invalidate(catKey);
+  }
+
   public ConfigCatalog getFromAbsolutePath(String catalogFullPath) throws IOException {
     catalogFullPath = catalogFullPath.replace("\\", "/"); // nasty microsnot
     if (catalogFullPath.startsWith(rootPath)) {
@@ -130,6 +134,32 @@ public class ConfigCatalogCache implements CatalogReader {
     return cat;
   }
 
+  /**
+   * Build a ConfigCatalog from XML that was taken from the catalog catKey, eg a DataRoot's config.
+   * Resolves relative references against the location of catKey. Not cached.
+   *
+   * @param catKey key of the catalog the XML came from
+   * @param catalogXml the catalog as a string
+   * @return the ConfigCatalog
+   * @throws IOException on read error or invalid catalog
+   */
+  public ConfigCatalog readCatalogFromString(String catKey, String catalogXml) throws IOException {
+    String catalogFullPath = rootPath + catKey;
+    URI uri;
+    try {
+      uri = new URI("file:" + StringUtil2.escape(catalogFullPath, "/:-_.")); // same as readCatalog
+    } catch (URISyntaxException e) {
+      throw new IOException(e);
+    }
+
+    ConfigCatalogBuilder builder = new ConfigCatalogBuilder(context == null ? "thredds" : context);
+    ConfigCatalog cat = (ConfigCatalog) builder.buildFromString(catalogXml, uri);
+    if (builder.hasFatalError()) {
+      throw new IOException("invalid catalog: " + getFileName(catalogFullPath) + " " + builder.getErrorMessage());
+    }
+    return cat;
+  }
+
   private static String getFileName(String catalogFullPath) {
     final String contentDirName = "/thredds/";
     int pos = catalogFullPath.lastIndexOf(contentDirName);
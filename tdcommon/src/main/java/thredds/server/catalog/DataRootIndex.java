@@ -0,0 +1,177 @@
+/* Copyright */
+package thredds.server.catalog;
+
+import com.google.common.collect.ImmutableMap;
+import javax.annotation.concurrent.Immutable;
+import java.util.*;
+
+/**
+ * An immutable index of dataRoot paths, used to find the longest dataRoot that matches a request path.
+ * Implemented as a compressed radix trie keyed on path segments, so lookup cost depends on the depth of the
+ * request path, not on the number of dataRoots.
+ * Because it is immutable, it can be shared between threads without locking; a new index is built and published
+ * when the dataRoots change.
+ *
+ * @since 10/16/2026
+ */
+@Immutable
+public class DataRootIndex {
+  public static final DataRootIndex EMPTY = new DataRootIndex(Collections.emptyList());
+
+  private static class Node {
+    final String[] edge; // the path segments on the edge from the parent to this node
+    final String key; // the dataRoot path ending at this node, or null
+    final Map<String, Node> children; // keyed by the first segment of the child's edge
+
+    Node(String[] edge, String key, Map<String, Node> children) {
+      this.edge = edge;
+      this.key = key;
+      this.children = children;
+    }
+  }
+
+  // mutable tree, only used while building
+  private static class Builder {
+    String key;
+    final Map<String, Builder> children = new HashMap<>();
+
+    Node compress(List<String> edge) {
+      // a node with no key and a single child is merged with the child
+      if (key == null && children.size() == 1) {
+        Map.Entry<String, Builder> entry = children.entrySet().iterator().next();
+        edge.add(entry.getKey());
+        return entry.getValue().compress(edge);
+      }
+      ImmutableMap.Builder<String, Node> nodes = ImmutableMap.builder();
+      for (Map.Entry<String, Builder> entry : children.entrySet()) {
+        List<String> childEdge = new ArrayList<>();
+        childEdge.add(entry.getKey());
+        nodes.put(entry.getKey(), entry.getValue().compress(childEdge));
+      }
+      return new Node(edge.toArray(new String[0]), key, nodes.build());
+    }
+  }
+
+  private final Node root;
+  private final int size;
+
+  /**
+   * Build an index from a collection of dataRoot paths.
+   *
+   * @param paths the dataRoot paths
+   */
+  public DataRootIndex(Collection<String> paths) {
+    Builder top = new Builder();
+    int count = 0;
+    for (String path : paths) {
+      String key = stripTrailingSlash(path);
+      Builder node = top;
+      for (String segment : split(key))
+        node = node.children.computeIfAbsent(segment, k -> new Builder());
+      if (node.key == null)
+        count++;
+      node.key = key;
+    }
+
+    // the root node always has an empty edge
+    ImmutableMap.Builder<String, Node> nodes = ImmutableMap.builder();
+    for (Map.Entry<String, Builder> entry : top.children.entrySet()) {
+      List<String> childEdge = new ArrayList<>();
+      childEdge.add(entry.getKey());
+      nodes.put(entry.getKey(), entry.getValue().compress(childEdge));
+    }
+    this.root = new Node(new String[0], null, nodes.build());
+    this.size = count;
+  }
+
+  /** @return number of distinct dataRoot paths in the index */
+  public int size() {
+    return size;
+  }
+
+  /** @return the most nodes a lookup visits, ie the number of nodes on the longest path from the root */
+  int height() {
+    return height(root) - 1; // the root is not visited
+  }
+
+  private static int height(Node node) {
+    int max = 0;
+    for (Node child : node.children.values())
+      max = Math.max(max, height(child));
+    return max + 1;
+  }
+
+  /**
+   * Find the longest dataRoot path that matches the request path on a segment boundary.
+   *
+   * @param reqPath the request path
+   * @return the matching dataRoot path, without trailing '/', or null if none
+   */
+  public String findLongestPathMatch(String reqPath) {
+    String path = stripTrailingSlash(reqPath);
+    int len = path.length();
+    String best = null;
+    Node node = root;
+    int start = 0; // start of the next segment in path
+
+    while (start <= len) {
+      int end = segmentEnd(path, start);
+      Node child = node.children.get(path.substring(start, end));
+      if (child == null)
+        break;
+
+      // the rest of the edge must match too
+      String[] edge = child.edge;
+      boolean matched = true;
+      int pos = end;
+      for (int i = 1; i < edge.length; i++) {
+        if (pos >= len) {
+          matched = false;
+          break;
+        }
+        int segStart = pos + 1;
+        int segEnd = segmentEnd(path, segStart);
+        String seg = edge[i];
+        if (segEnd - segStart != seg.length() || !path.regionMatches(segStart, seg, 0, seg.length())) {
+          matched = false;
+          break;
+        }
+        pos = segEnd;
+      }
+      if (!matched)
+        break;
+
+      node = child;
+      if (node.key != null)
+        best = node.key;
+      if (pos >= len)
+        break;
+      start = pos + 1;
+    }
+
+    return best;
+  }
+
+  private static int segmentEnd(String path, int start) {
+    int end = path.indexOf('/', start);
+    return (end < 0) ? path.length() : end;
+  }
+
+  private static String stripTrailingSlash(String path) {
+    return path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+  }
+
+  // split on '/', keeping empty segments, so that leading slashes are significant
+  private static List<String> split(String path) {
+    List<String> result = new ArrayList<>();
+    int start = 0;
+    while (true) {
+      int end = segmentEnd(path, start);
+      result.add(path.substring(start, end));
+      if (end >= path.length())
+        break;
+      start = end + 1;
+    }
+    return result;
+  }
+}
@@ -8,15 +8,16 @@ import thredds.client.catalog.Dataset;
 import thredds.server.catalog.tracker.DataRootExt;
 import thredds.server.catalog.tracker.DataRootTracker;
 import ucar.nc2.util.AliasTranslator;
-import ucar.unidata.util.StringUtil2;
 import javax.annotation.Nonnull;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Find the dataRoot path from the request, by getting the longest match.
- * Use a TreeSet for minimum in-memory use.
+ * Lookups go through an immutable {@link DataRootIndex}, which is rebuilt and republished when the dataRoots change,
+ * so that request threads never lock.
  * Keep the objects in a separate map that could be off-heap and persistent.
  *
  * @author caron
@@ -25,27 +26,18 @@ import java.util.*;
 public class DataRootPathMatcher {
   static private final Logger logger = LoggerFactory.getLogger(DataRootPathMatcher.class);
   static private org.slf4j.Logger logCatalogInit = org.slf4j.LoggerFactory.getLogger("catalogInit");
-  static private final boolean debug = false;
   static private final String ERROR = "*** ERROR: ";
   static private boolean skipTestDataDir = true;
 
-  private static class PathComparator implements Comparator<String> {
-    public int compare(String s1, String s2) {
-      int compare = s2.compareTo(s1); // reverse sort
-      if (debug)
-        System.out.println(" compare " + s1 + " to " + s2 + " = " + compare);
-      return compare;
-    }
-  }
-
   /////////////////////////////////////////////////////////////////////////////////////////
 
   private ConfigCatalogCache ccc;
   private DataRootTracker tracker;
 
-  private final TreeSet<String> treeSet = new TreeSet<>(new PathComparator()); // this should be in-memory for speed
-  private final Map<String, DataRootExt> map = new HashMap<>(); // this could be turned into an off-heap cache if
-                                                                // needed, with persistence.
+  private volatile DataRootIndex index = DataRootIndex.EMPTY; // snapshot, replaced on publish()
+  private volatile boolean published;
+  private final Map<String, DataRootExt> map = new ConcurrentHashMap<>(); // this could be turned into an off-heap
+                                                                          // cache if needed, with persistence.
 
   public DataRootPathMatcher(ConfigCatalogCache ccc, DataRootTracker tracker) {
     this.ccc = ccc;
@@ -54,20 +46,64 @@ public class DataRootPathMatcher {
     for (DataRootExt dre : tracker.getDataRoots()) {
       put(dre);
     }
+    index = new DataRootIndex(map.keySet()); // roots added after this are not visible until publish()
   }
 
   /**
-   * Add a dataRootExt to in-memory tree.
+   * Add a dataRootExt to the map. If the index has already been published and this is a new path,
+   * a new index is published.
    * 
    * @return true if not already exist
    */
   private boolean put(DataRootExt dataRootExt) {
-    map.put(dataRootExt.getPath(), dataRootExt);
-    String path = dataRootExt.getPath();
-    if (!path.endsWith("/")) {
-      path += "/";
+    boolean isNew = map.put(dataRootExt.getPath(), dataRootExt) == null;
+    if (isNew && published)
+      publish();
+    return isNew;
+  }
+
+  /**
+   * Build a new index from the current dataRoots and make it visible to readers.
+   * Call when done adding dataRoots, before the matcher is used to serve requests.
+   * After that, any new dataRoot path republishes the index.
+   */
+  public synchronized void publish() {
+    index = new DataRootIndex(map.keySet());
+    published = true;
+  }
+
+  /**
+   * Remove the dataRoot with this path. If the index has already been published, a new index is published;
+   * otherwise the removal is seen at the next publish().
+   *
+   * @param path the dataRoot path
+   * @return the removed dataRoot, or null if none
+   */
+  public DataRootExt remove(String path) {
+    DataRootExt dataRootExt = map.remove(path);
+    if (dataRootExt != null) {
+      synchronized (this) {
+        tracker.removeDataRoot(dataRootExt);
+        if (published)
+          index = new DataRootIndex(map.keySet());
+      }
+    }
+    return dataRootExt;
+  }
+
+  /**
+   * Find the dataRoots defined in a catalog.
+   *
+   * @param catalogRelPath the catalog path, relative to the content root
+   * @return the dataRoots defined in that catalog
+   */
+  public List<DataRootExt> getDataRootsForCatalog(String catalogRelPath) {
+    List<DataRootExt> result = new ArrayList<>();
+    for (DataRootExt dataRootExt : map.values()) {
+      if (catalogRelPath.equals(dataRootExt.getCatLocation()))
+        result.add(dataRootExt);
     }
-    return treeSet.add(path);
+    return result;
   }
 
   /**
@@ -77,7 +113,7 @@ public class DataRootPathMatcher {
    * @return true if already contains the key
    */
   public boolean contains(String path) {
-    return treeSet.contains(path);
+    return map.containsKey(path);
   }
 
   public DataRootExt get(String path) {
@@ -100,27 +136,7 @@ public class DataRootPathMatcher {
    * @return the value whose key is the longest that matches path, or null if none
    */
   public String findLongestPathMatch(String reqPath) {
-    if (!reqPath.endsWith("/")) {
-      reqPath += "/";
-    }
-    SortedSet<String> tail = treeSet.tailSet(reqPath);
-    if (tail.isEmpty()) {
-      return null;
-    }
-
-    // check for common starting chars
-    for (String key : tail) {
-      if (reqPath.startsWith(key)) {
-        return key.endsWith("/") ? key.substring(0, key.length() - 1) : key;
-      }
-
-      // terminate when there's no match at all.
-      if (StringUtil2.match(reqPath, key) == 0) {
-        break;
-      }
-    }
-
-    return null;
+    return index.findLongestPathMatch(reqPath);
   }
 
   /**
@@ -139,6 +155,7 @@ public class DataRootPathMatcher {
       logger.error("DataRootPathMatcher found path {} but not in map", path);
       return null;
     }
+    dataRootExt.addHit();
     return convert2DataRoot(dataRootExt);
   }
 
@@ -148,12 +165,63 @@ public class DataRootPathMatcher {
     if (dataRoot != null)
       return dataRoot;
 
-    // otherwise must read the catalog that its in
-    dataRoot = readDataRootFromCatalog(dataRootExt);
+    // rebuild it from the config saved in the tracker, if we have it
+    dataRoot = readDataRootFromConfig(dataRootExt);
+    if (dataRoot != null) {
+      dataRootExt.setDataRoot(dataRoot);
+      return dataRoot;
+    }
+
+    // otherwise must read the catalog that its in; serialize this, since it updates the map and the tracker
+    synchronized (this) {
+      dataRoot = dataRootExt.getDataRoot();
+      if (dataRoot != null)
+        return dataRoot;
+      dataRoot = readDataRootFromCatalog(dataRootExt);
+    }
     dataRootExt.setDataRoot(dataRoot);
     return dataRoot;
   }
 
+  // rebuild the DataRoot from the standalone catalog saved in the DataRootExt, return null if not possible
+  private DataRoot readDataRootFromConfig(DataRootExt dataRootExt) {
+    String configXml = dataRootExt.getConfigXml();
+    if (configXml == null || ccc == null)
+      return null;
+
+    try {
+      ConfigCatalog cat = ccc.readCatalogFromString(dataRootExt.getCatLocation(), configXml);
+      DataRoot dataRoot = findDataRoot(cat.getDatasetsLocal(), dataRootExt.getPath());
+      if (dataRoot == null)
+        logger.warn("DataRoot config for path={} does not contain it; will read catalog {}", dataRootExt.getPath(),
+            dataRootExt.getCatLocation());
+      return dataRoot;
+
+    } catch (IOException e) {
+      logger.warn("Error reading DataRoot config for path={}; will read catalog {}: {}", dataRootExt.getPath(),
+          dataRootExt.getCatLocation(), e.getMessage());
+      return null;
+    }
+  }
+
+  private DataRoot findDataRoot(List<Dataset> dsList, String path) {
+    for (Dataset dataset : dsList) {
+      if (dataset instanceof DatasetScan && path.equals(((DatasetScan) dataset).getPath()))
+        return new DataRoot((DatasetScan) dataset);
+      if (dataset instanceof FeatureCollectionRef && path.equals(((FeatureCollectionRef) dataset).getPath()))
+        return new DataRoot((FeatureCollectionRef) dataset);
+      if (dataset instanceof CatalogScan && path.equals(((CatalogScan) dataset).getPath()))
+        return new DataRoot((CatalogScan) dataset);
+
+      if (!(dataset instanceof CatalogRef)) {
+        DataRoot result = findDataRoot(dataset.getDatasetsLocal(), path);
+        if (result != null)
+          return result;
+      }
+    }
+    return null;
+  }
+
   private @Nonnull DataRoot readDataRootFromCatalog(DataRootExt dataRootExt) {
     try {
       ConfigCatalog cat = ccc.get(dataRootExt.getCatLocation());
@@ -167,6 +235,8 @@ public class DataRootPathMatcher {
         throw new IllegalStateException("Reading catalog " + dataRootExt.getCatLocation()
             + " failed to find dataRoot path=" + dataRootExt.getPath());
       }
+      if (dataRootExtNew != dataRootExt)
+        dataRootExtNew.addHits(dataRootExt.getHits());
       return dataRootExtNew.getDataRoot();
 
     } catch (IOException e) {
@@ -174,6 +244,50 @@ public class DataRootPathMatcher {
     }
   }
 
+  /**
+   * Copy request counts from the matcher being replaced, so that traffic ranking survives a reread.
+   *
+   * @param previous the matcher being replaced, may be null
+   */
+  public void copyHits(DataRootPathMatcher previous) {
+    if (previous == null || previous == this)
+      return;
+    for (DataRootExt old : previous.map.values()) {
+      DataRootExt dre = map.get(old.getPath());
+      if (dre != null && dre != old && old.getHits() > dre.getHits())
+        dre.addHits(old.getHits() - dre.getHits()); // dre may already have the counts persisted in the tracker
+    }
+  }
+
+  /**
+   * Materialize the DataRoots that have seen the most requests, so the first requests after a restart or reread
+   * dont have to wait for it. Intended to be run in a background thread.
+   *
+   * @param max maximum number of DataRoots to materialize
+   * @return number of DataRoots materialized
+   */
+  public int warmUp(int max) {
+    List<DataRootExt> ranked = new ArrayList<>(map.values());
+    ranked.sort((o1, o2) -> Long.compare(o2.getHits(), o1.getHits()));
+
+    int count = 0;
+    for (DataRootExt dre : ranked) {
+      if (count >= max || Thread.currentThread().isInterrupted())
+        break;
+      if (dre.getHits() == 0)
+        break; // no traffic, leave it lazy
+      if (dre.getDataRoot() != null)
+        continue;
+      try {
+        convert2DataRoot(dre);
+        count++;
+      } catch (RuntimeException e) {
+        logger.warn("DataRoot warmUp failed for path={}: {}", dre.getPath(), e.getMessage());
+      }
+    }
+    return count;
+  }
+
   ///////////////////////////////////////////////////////////////////////////////////////////////////////////////
   // building up the data roots after reading catalogs
 
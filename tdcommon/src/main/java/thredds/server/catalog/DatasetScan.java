@@ -32,6 +32,8 @@
 
 package thredds.server.catalog;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import thredds.client.catalog.*;
 import thredds.client.catalog.builder.AccessBuilder;
 import thredds.client.catalog.builder.CatalogBuilder;
@@ -56,6 +58,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 /**
  * DatasetScan
@@ -81,11 +84,33 @@ public class DatasetScan extends CatalogRef {
     allowedServices = _allowedServices;
   }
 
+  // directory listings, shared by all DatasetScans; weight is number of files
+  static private final long MTIME_RESOLUTION = 2000; // msecs; dont trust a listing made this soon after a change
+  static private volatile Cache<String, Listing> listingCache = makeListingCache(1000 * 1000, 60);
+
+  /**
+   * Configure the directory listing cache.
+   *
+   * @param maxFiles maximum number of files in all cached listings; 0 = no cache
+   * @param maxAgeSecs listings are reread after this long even if the directory has not changed,
+   *        so that changes to file sizes and dates show up.
+   */
+  static public void setListingCache(long maxFiles, int maxAgeSecs) {
+    listingCache = (maxFiles > 0) ? makeListingCache(maxFiles, maxAgeSecs) : null;
+  }
+
+  static private Cache<String, Listing> makeListingCache(long maxFiles, int maxAgeSecs) {
+    return CacheBuilder.newBuilder().maximumWeight(maxFiles)
+        .weigher((String key, Listing value) -> value.files.size() + value.dirs.size() + 1)
+        .expireAfterWrite(maxAgeSecs, TimeUnit.SECONDS).build();
+  }
+
   private final DatasetScanConfig config;
   private final AddTimeCoverageEnhancer addTimeCoverage;
   private final List<RegExpNamer> namers;
   private final CompositeMFileFilter fileFilters;
   private final CompositeMFileFilter dirFilters;
+  private final boolean timeDependentFilters; // listings cant be cached
 
   public DatasetScan(DatasetNode parent, String name, String xlink, Map<String, Object> flds,
       List<AccessBuilder> accessBuilders, List<DatasetBuilder> datasetBuilders, DatasetScanConfig config) {
@@ -104,20 +129,23 @@ public class DatasetScan extends CatalogRef {
     }
 
     // filters
+    boolean timeDependent = false;
     if (config.filters != null && config.filters.size() > 0) {
       fileFilters = new CompositeMFileFilter();
       dirFilters = new CompositeMFileFilter();
       for (DatasetScanConfig.Filter cfilter : config.filters) {
-        makeFilter(cfilter);
+        if (makeFilter(cfilter) instanceof LastModifiedLimit)
+          timeDependent = true; // files pass the filter as they get older
       }
     } else {
       fileFilters = null;
       dirFilters = null;
     }
+    timeDependentFilters = timeDependent;
 
   }
 
-  private void makeFilter(DatasetScanConfig.Filter cfilter) {
+  private MFileFilter makeFilter(DatasetScanConfig.Filter cfilter) {
     MFileFilter filter;
     if (cfilter.wildcardAttVal != null) {
       filter = new WildcardMatchOnName(cfilter.wildcardAttVal); // always on name, not path
@@ -130,13 +158,14 @@ public class DatasetScan extends CatalogRef {
 
     } else {
       log.error("Unimplemented DatasetScan filter " + cfilter);
-      return;
+      return null;
     }
 
     if (cfilter.collection)
       dirFilters.addFilter(filter, cfilter.includer);
     if (cfilter.atomic)
       fileFilters.addFilter(filter, cfilter.includer);
+    return filter;
   }
 
   public String getPath() {
@@ -164,6 +193,22 @@ public class DatasetScan extends CatalogRef {
    * @return the catalog for this path or null if build unsuccessful.
    */
   public CatalogBuilder makeCatalogForDirectory(String orgPath, URI baseURI) throws IOException {
+    return makeCatalogForDirectory(orgPath, baseURI, 0, -1);
+  }
+
+  /**
+   * Build a catalog for one page of the given directory.
+   * When the catalog is paged, the top dataset has a DatasetScanTotal property with the number of entries in the
+   * directory, and if there are more entries, a DatasetScanNext property with the relative URL of the next page.
+   *
+   * @param orgPath the part of the baseURI that is the path
+   * @param baseURI the base URL for the catalog, used to resolve relative URLs.
+   * @param offset skip this many entries of the sorted directory
+   * @param limit at most this many entries; <= 0 means all
+   * @return the catalog for this path or null if build unsuccessful.
+   */
+  public CatalogBuilder makeCatalogForDirectory(String orgPath, URI baseURI, int offset, int limit)
+      throws IOException {
 
     // Get the dataset location.
     String dataDirRelative = translatePathToReletiveLocation(orgPath, config.path);
@@ -229,13 +274,25 @@ public class DatasetScan extends CatalogRef {
     }
 
     // scan and sort the directory
-    List<MFile> mfiles = getSortedFiles(directory, config.getSortFilesAscending());
+    Listing listing = getListing(directory);
+    boolean ascending = config.getSortFilesAscending();
+    int total = listing.size();
+    int start = Math.min(Math.max(offset, 0), total);
+    int end = (limit > 0) ? Math.min(start + limit, total) : total;
+    boolean isPaged = start > 0 || end < total;
+    if (isPaged) {
+      top.addToList(Dataset.Properties, new Property("DatasetScanTotal", Integer.toString(total)));
+      if (end < total)
+        top.addToList(Dataset.Properties,
+            new Property("DatasetScanNext", "catalog.xml?offset=" + end + "&limit=" + (end - start)));
+    }
 
-    if (config.addLatest != null && config.addLatest.latestOnTop)
+    if (config.addLatest != null && config.addLatest.latestOnTop && start == 0)
       top.addDataset(makeLatestProxy(top, parentId));
 
     // create Datasets
-    for (MFile mfile : mfiles) {
+    for (int i = start; i < end; i++) {
+      MFile mfile = listing.get(i, ascending);
       DatasetBuilder ds;
 
       if (mfile.isDirectory()) {
@@ -270,7 +327,7 @@ public class DatasetScan extends CatalogRef {
       ds.put(Dataset.Id, parentId + mfile.getName());
     }
 
-    if (config.addLatest != null && !config.addLatest.latestOnTop)
+    if (config.addLatest != null && !config.addLatest.latestOnTop && end == total)
       top.addDataset(makeLatestProxy(top, parentId));
 
     // make the catalog
@@ -289,25 +346,115 @@ public class DatasetScan extends CatalogRef {
   ///////////////////////
   // Scan and sort
 
-  private List<MFile> getSortedFiles(MFile directory, final boolean isSortIncreasing) throws IOException {
+  /*
+   * A directory listing, sorted by name. Files come before directories, in either sort order.
+   * Cached listings are valid while the directory modification time is unchanged; creating, deleting or renaming
+   * an entry changes it. Listings of DatasetScans with lastModified filters are not cached.
+   */
+  private static class Listing {
+    final DatasetScan owner; // the filters that were used
+    final long dirLastModified;
+    final long listed;
+    final List<MFile> files; // ascending
+    final List<MFile> dirs; // ascending
+
+    Listing(DatasetScan owner, long dirLastModified, long listed, List<MFile> files, List<MFile> dirs) {
+      this.owner = owner;
+      this.dirLastModified = dirLastModified;
+      this.listed = listed;
+      this.files = files;
+      this.dirs = dirs;
+    }
+
+    int size() {
+      return files.size() + dirs.size();
+    }
+
+    MFile get(int index, boolean ascending) {
+      int nfiles = files.size();
+      if (index < nfiles)
+        return files.get(ascending ? index : nfiles - 1 - index);
+      int d = index - nfiles;
+      return dirs.get(ascending ? d : dirs.size() - 1 - d);
+    }
+
+    boolean isValid(DatasetScan scan, long dirLastModified) {
+      return owner == scan && this.dirLastModified == dirLastModified
+          && this.listed - dirLastModified > MTIME_RESOLUTION;
+    }
+  }
+
+  private Listing getListing(MFile directory) throws IOException {
+    Cache<String, Listing> cache = timeDependentFilters ? null : listingCache;
+    long dirLastModified = directory.getLastModified();
+    if (cache != null) {
+      Listing cached = cache.getIfPresent(listingKey(directory));
+      if (cached != null && cached.isValid(this, dirLastModified))
+        return cached;
+    }
+
+    long listed = System.currentTimeMillis();
+    List<MFile> files = new ArrayList<>();
+    List<MFile> dirs = new ArrayList<>();
+    for (MFile mfile : getFiles(directory))
+      (mfile.isDirectory() ? dirs : files).add(mfile);
+    Listing listing = new Listing(this, dirLastModified, listed, sortByName(files), sortByName(dirs));
+
+    if (cache != null)
+      cache.put(listingKey(directory), listing);
+    return listing;
+  }
+
+  private String listingKey(MFile directory) {
+    return config.path + "|" + directory.getPath();
+  }
 
-    // scan the directory
-    List<MFile> mfiles = getFiles(directory);
+  // get each name once, not once per comparison
+  private static List<MFile> sortByName(List<MFile> mfiles) {
+    int n = mfiles.size();
+    String[] names = new String[n];
+    Integer[] order = new Integer[n];
+    for (int i = 0; i < n; i++) {
+      names[i] = mfiles.get(i).getName();
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> names[a].compareTo(names[b]));
 
-    // sort them
-    Collections.sort(mfiles, new Comparator<MFile>() {
-      public int compare(MFile o1, MFile o2) {
-        if (o1.isDirectory() != o2.isDirectory())
-          return o1.isDirectory() ? 1 : -1;
+    List<MFile> result = new ArrayList<>(n);
+    for (Integer i : order)
+      result.add(mfiles.get(i));
+    return result;
+  }
 
-        if (isSortIncreasing)
-          return o1.getName().compareTo(o2.getName());
-        else
-          return o2.getName().compareTo(o1.getName());
+  // the latest file is the last one by name that is old enough. Only the cached listing is sorted.
+  private MFile findLatest(MFile directory) throws IOException {
+    long now = System.currentTimeMillis();
+    long lastModLimit = config.addLatest.lastModLimit;
+
+    if (!timeDependentFilters && listingCache != null) {
+      List<MFile> files = getListing(directory).files;
+      for (int i = files.size() - 1; i >= 0; i--) {
+        MFile mfile = files.get(i);
+        if (lastModLimit <= 0 || now - mfile.getLastModified() >= lastModLimit)
+          return mfile;
       }
-    });
+      return null;
+    }
 
-    return mfiles;
+    MFile latest = null;
+    String latestName = null;
+    for (MFile mfile : getFiles(directory)) {
+      if (mfile.isDirectory())
+        continue;
+      if (lastModLimit > 0 && now - mfile.getLastModified() < lastModLimit)
+        continue;
+      String name = mfile.getName();
+      if (latestName == null || name.compareTo(latestName) > 0) {
+        latest = mfile;
+        latestName = name;
+      }
+    }
+    return latest;
   }
 
   private List<MFile> getFiles(MFile directory) throws IOException {
@@ -480,21 +627,8 @@ public class DatasetScan extends CatalogRef {
       throw new FileNotFoundException("Not a directory. URL path = " + orgPath);
     }
 
-    // scan and sort the directory
-    List<MFile> mfiles = getSortedFiles(directory, false); // latest on top
-
-    long now = System.currentTimeMillis();
-
-    for (MFile mfile : mfiles) {
-      if (mfile.isDirectory())
-        continue;
-
-      if (config.addLatest.lastModLimit > 0) {
-        if (now - mfile.getLastModified() < config.addLatest.lastModLimit)
-          continue;
-      }
-
-      // this is the one we want
+    MFile mfile = findLatest(directory);
+    if (mfile != null) {
       DatasetBuilder ds = new DatasetBuilder(null);
       ds.transferMetadata(this, true);
 
@@ -511,7 +645,6 @@ public class DatasetScan extends CatalogRef {
         addTimeCoverage.addMetadata(ds, mfile);
 
       catBuilder.addDataset(ds);
-      break; // only the one
     }
 
     // make the catalog
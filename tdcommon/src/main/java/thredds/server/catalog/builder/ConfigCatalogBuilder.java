@@ -4,7 +4,11 @@
  */
 package thredds.server.catalog.builder;
 
+import org.jdom2.Attribute;
 import org.jdom2.Element;
+import org.jdom2.Namespace;
+import org.jdom2.output.Format;
+import org.jdom2.output.XMLOutputter;
 import thredds.client.catalog.Catalog;
 import thredds.client.catalog.Dataset;
 import thredds.client.catalog.Service;
@@ -79,7 +83,9 @@ public class ConfigCatalogBuilder extends CatalogBuilder {
     String path = s.getAttributeValue("path");
     String location = s.getAttributeValue("location");
     String watch = s.getAttributeValue("watch");
-    return new CatalogScanBuilder(parent, name, path, location, watch, context);
+    CatalogScanBuilder catScan = new CatalogScanBuilder(parent, name, path, location, watch, context);
+    catScan.put(ConfigCatalog.DataRootConfigXml, makeDataRootConfigXml(s));
+    return catScan;
   }
 
   @Override
@@ -98,6 +104,7 @@ public class ConfigCatalogBuilder extends CatalogBuilder {
   }
 
   private DatasetBuilder readDatasetScan(DatasetBuilder parent, Element dsElem) {
+    String configXml = makeDataRootConfigXml(dsElem); // before ncml is detached
     DatasetScanConfigBuilder configBuilder = new DatasetScanConfigBuilder(errlog);
     DatasetScanConfig config = configBuilder.readDatasetScanConfig(dsElem);
     if (configBuilder.fatalError) {
@@ -107,6 +114,7 @@ public class ConfigCatalogBuilder extends CatalogBuilder {
     } else {
       DatasetScanBuilder dataset = new DatasetScanBuilder(parent, config, context);
       readDatasetInfo(dataset, dsElem);
+      dataset.put(ConfigCatalog.DataRootConfigXml, configXml);
       for (Element elem : dsElem.getChildren("netcdf", Catalog.ncmlNS)) {
         dataset.put(Dataset.Ncml, elem.detach());
       }
@@ -115,6 +123,7 @@ public class ConfigCatalogBuilder extends CatalogBuilder {
   }
 
   private DatasetBuilder readFeatureCollection(DatasetBuilder parent, Element fcElem) {
+    String configXml = makeDataRootConfigXml(fcElem); // before ncml is detached
     thredds.featurecollection.FeatureCollectionConfigBuilder configBuilder =
         new thredds.featurecollection.FeatureCollectionConfigBuilder(errlog);
     FeatureCollectionConfig config = configBuilder.readConfig(fcElem);
@@ -125,6 +134,7 @@ public class ConfigCatalogBuilder extends CatalogBuilder {
     } else {
       FeatureCollectionRefBuilder dataset = new FeatureCollectionRefBuilder(parent, config, context);
       readDatasetInfo(dataset, fcElem);
+      dataset.put(ConfigCatalog.DataRootConfigXml, configXml);
       for (Element elem : fcElem.getChildren("netcdf", Catalog.ncmlNS)) { // ??
         dataset.put(Dataset.Ncml, elem.detach());
       }
@@ -132,6 +142,48 @@ public class ConfigCatalogBuilder extends CatalogBuilder {
     }
   }
 
+  /**
+   * Make a standalone catalog containing only this dataRoot element, so that its DataRoot can be rebuilt
+   * without reading the whole config catalog. Keeps the catalog's services and the ancestor datasets' own
+   * metadata, so that inherited metadata is the same; all other datasets are dropped.
+   *
+   * @param elem datasetScan, featureCollection or catalogScan element
+   * @return the catalog as an XML string
+   */
+  private String makeDataRootConfigXml(Element elem) {
+    Element child = elem.clone();
+    Element prev = elem;
+    for (Element parent = elem.getParentElement(); parent != null; parent = parent.getParentElement()) {
+      Element copy = new Element(parent.getName(), parent.getNamespace());
+      for (Namespace ns : parent.getAdditionalNamespaces())
+        copy.addNamespaceDeclaration(ns);
+      for (Attribute att : parent.getAttributes())
+        copy.setAttribute(att.clone());
+      for (Element sib : parent.getChildren()) {
+        if (sib == prev)
+          copy.addContent(child);
+        else if (!isDatasetElement(sib))
+          copy.addContent(sib.clone());
+      }
+      child = copy;
+      prev = parent;
+    }
+    return new XMLOutputter(Format.getCompactFormat()).outputString(child);
+  }
+
+  private static boolean isDatasetElement(Element elem) {
+    switch (elem.getName()) {
+      case "dataset":
+      case "catalogRef":
+      case "datasetRoot":
+      case "datasetScan":
+      case "featureCollection":
+      case "catalogScan":
+        return true;
+      default:
+        return false;
+    }
+  }
 
   public ConfigCatalog makeCatalog() {
     Map<String, Object> flds = setFields();
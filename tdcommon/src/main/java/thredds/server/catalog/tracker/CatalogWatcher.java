@@ -1,8 +1,11 @@
 /* Copyright */
 package thredds.server.catalog.tracker;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import java.io.Closeable;
 import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
 import java.nio.file.FileSystems;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
@@ -12,8 +15,12 @@ import java.nio.file.WatchEvent;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
 import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
 import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
@@ -21,33 +28,42 @@ import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
 import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
 
 /**
- * Put a watch on directories for when catalogs change. not used yet
+ * Put a watch on directories for when catalogs change.
+ * Events are debounced: changes are collected until no new event has arrived for debounceMsecs
+ * (or at most 10 * debounceMsecs), then passed to the Listener in one call.
  *
  * @author caron
  * @since 6/9/2015
  */
 public class CatalogWatcher implements Closeable {
+  static private final Logger logger = LoggerFactory.getLogger(CatalogWatcher.class);
+
+  public interface Listener {
+    /** Called with the catalog files (*.xml) that were created, modified or deleted. */
+    void catalogsChanged(Set<Path> changed);
+
+    /** Called when events were lost, so the listener must check everything. */
+    void overflow();
+  }
 
   private final WatchService watcher;
-  private final DatasetTracker tracker;
+  private final Listener listener;
   private final boolean enable;
-  private final Map<WatchKey, Path> keys;
+  private final long debounceMsecs;
+  private final Map<WatchKey, Path> keys; // registered from another thread than processEvents
   private boolean recursive = true;
-  private boolean trace = true;
 
   @SuppressWarnings("unchecked")
   static <T> WatchEvent<T> cast(WatchEvent<?> event) {
     return (WatchEvent<T>) event;
   }
 
-  public CatalogWatcher(DatasetTracker tracker, boolean enable) throws IOException {
-    this.tracker = tracker;
+  public CatalogWatcher(Listener listener, boolean enable, long debounceMsecs) throws IOException {
+    this.listener = listener;
     this.enable = enable;
+    this.debounceMsecs = debounceMsecs;
     this.watcher = FileSystems.getDefault().newWatchService();
-    this.keys = new HashMap<>();
-
-    // enable trace after initial registration
-    this.trace = true;
+    this.keys = new ConcurrentHashMap<>();
   }
 
   /**
@@ -58,17 +74,12 @@ public class CatalogWatcher implements Closeable {
       return;
 
     WatchKey key = dir.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
-    if (trace) {
-      Path prev = keys.get(key);
-      if (prev == null) {
-        System.out.format("CatalogWatcher register: %s%n", dir);
-      } else {
-        if (!dir.equals(prev)) {
-          System.out.format("update: %s -> %s%n", prev, dir);
-        }
-      }
+    Path prev = keys.put(key, dir);
+    if (prev == null) {
+      logger.debug("CatalogWatcher register: {}", dir);
+    } else if (!dir.equals(prev)) {
+      logger.debug("CatalogWatcher update: {} -> {}", prev, dir);
     }
-    keys.put(key, dir);
   }
 
   /**
@@ -90,68 +101,91 @@ public class CatalogWatcher implements Closeable {
   }
 
   /**
-   * Process all events for keys queued to the watcher
+   * Process all events for keys queued to the watcher, until the watcher is closed or the thread is interrupted.
    */
   public void processEvents() {
     if (!enable)
       return;
 
-    for (;;) {
+    try {
+      for (;;) {
+        // wait for key to be signalled
+        WatchKey key = watcher.take();
+
+        // collect until its quiet
+        Set<Path> changed = new HashSet<>();
+        boolean overflow = false;
+        long burstEnd = System.currentTimeMillis() + 10 * debounceMsecs;
+        while (key != null) {
+          overflow |= processKey(key, changed);
+          if (System.currentTimeMillis() > burstEnd)
+            break;
+          key = watcher.poll(debounceMsecs, TimeUnit.MILLISECONDS);
+        }
 
-      // wait for key to be signalled
-      WatchKey key;
-      try {
-        key = watcher.take();
-      } catch (InterruptedException x) {
-        return;
+        try {
+          if (overflow)
+            listener.overflow();
+          else if (!changed.isEmpty())
+            listener.catalogsChanged(changed);
+        } catch (RuntimeException e) {
+          logger.error("CatalogWatcher listener failed", e);
+        }
       }
 
-      Path dir = keys.get(key);
-      if (dir == null) {
-        System.err.println("WatchKey not recognized!!");
-        continue;
-      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      // done
+    }
+  }
 
-      for (WatchEvent<?> event : key.pollEvents()) {
-        WatchEvent.Kind kind = event.kind();
+  // return true if events were lost
+  private boolean processKey(WatchKey key, Set<Path> changed) {
+    boolean overflow = false;
+    Path dir = keys.get(key);
+    if (dir == null) {
+      logger.warn("CatalogWatcher WatchKey not recognized");
+      key.reset();
+      return false;
+    }
 
-        // TBD - provide example of how OVERFLOW event is handled
-        if (kind == OVERFLOW) {
-          continue;
-        }
+    for (WatchEvent<?> event : key.pollEvents()) {
+      WatchEvent.Kind kind = event.kind();
+      if (kind == OVERFLOW) {
+        overflow = true;
+        continue;
+      }
 
-        // Context for directory entry event is the file name of entry
-        WatchEvent<Path> ev = cast(event);
-        Path name = ev.context();
-        Path child = dir.resolve(name);
+      // Context for directory entry event is the file name of entry
+      WatchEvent<Path> ev = cast(event);
+      Path child = dir.resolve(ev.context());
+      logger.debug("CatalogWatcher {}: {}", event.kind().name(), child);
 
-        // print out event
-        System.out.format("%s: %s%n", event.kind().name(), child);
+      if (child.getFileName().toString().endsWith(".xml")) {
+        changed.add(child);
+      }
 
-        // if directory is created, and watching recursively, then
-        // register it and its sub-directories
-        if (recursive && (kind == ENTRY_CREATE)) {
-          try {
-            if (Files.isDirectory(child, NOFOLLOW_LINKS)) {
-              registerAll(child);
+      // if directory is created, and watching recursively, then
+      // register it and its sub-directories, and pick up any catalogs already in it
+      if (recursive && (kind == ENTRY_CREATE)) {
+        try {
+          if (Files.isDirectory(child, NOFOLLOW_LINKS)) {
+            registerAll(child);
+            try (Stream<Path> files = Files.walk(child)) {
+              files.filter(p -> p.getFileName().toString().endsWith(".xml")).forEach(changed::add);
             }
-          } catch (IOException x) {
-            // ignore to keep sample readbale
           }
+        } catch (IOException x) {
+          logger.warn("CatalogWatcher failed to register {}: {}", child, x.getMessage());
         }
       }
+    }
 
-      // reset key and remove from set if directory no longer accessible
-      boolean valid = key.reset();
-      if (!valid) {
-        keys.remove(key);
-
-        // all directories are inaccessible
-        if (keys.isEmpty()) {
-          break;
-        }
-      }
+    // reset key and remove from set if directory no longer accessible
+    boolean valid = key.reset();
+    if (!valid) {
+      keys.remove(key);
     }
+    return overflow;
   }
 
   @Override
@@ -1,9 +1,12 @@
 /* Copyright */
 package thredds.server.catalog.tracker;
 
+import thredds.client.catalog.Dataset;
+import thredds.server.catalog.ConfigCatalog;
 import thredds.server.catalog.DataRoot;
 import java.io.*;
 import java.util.Formatter;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Externalized DataRoot.
@@ -22,8 +25,10 @@ public class DataRootExt implements Comparable<DataRootExt> {
   private String catLocation;
   private String name;
   private String restrict;
+  private String configXml; // enough to rebuild the DataRoot without reading its catalog
+  private final LongAdder hits = new LongAdder();
 
-  private DataRoot dataRoot;
+  private volatile DataRoot dataRoot; // may be set lazily from a request thread
 
   public DataRootExt() {}
 
@@ -35,6 +40,25 @@ public class DataRootExt implements Comparable<DataRootExt> {
     this.name = dataRoot.getName();
     this.catLocation = catLocation;
     this.restrict = dataRoot.getRestrict();
+    this.configXml = findConfigXml(dataRoot);
+  }
+
+  private static String findConfigXml(DataRoot dataRoot) {
+    Dataset ds;
+    switch (dataRoot.getType()) {
+      case datasetScan:
+        ds = dataRoot.getDatasetScan();
+        break;
+      case featureCollection:
+        ds = dataRoot.getFeatureCollection();
+        break;
+      case catalogScan:
+        ds = dataRoot.getCatalogScan();
+        break;
+      default:
+        return null;
+    }
+    return (ds == null) ? null : (String) ds.getLocalField(ConfigCatalog.DataRootConfigXml);
   }
 
   public String getPath() {
@@ -75,12 +99,34 @@ public class DataRootExt implements Comparable<DataRootExt> {
     return restrict;
   }
 
+  /** @return standalone catalog containing only the element that defines this DataRoot, or null if unknown */
+  public String getConfigXml() {
+    return configXml;
+  }
+
+  /** Count a request matched to this DataRoot. */
+  public void addHit() {
+    hits.increment();
+  }
+
+  public void addHits(long n) {
+    hits.add(n);
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
   /*
    * message DataRoot {
    * required string urlPath = 1;
    * required string dirLocation = 2;
    * required DataRootType type = 3;
-   * optional string catLocation = 4; // omit for simple dataset root
+   * optional string catLocation = 4;
+   * optional string name = 5; // omit for simple dataset root
+   * optional string restrict = 6;
+   * optional string configXml = 7; // omit for simple dataset root
+   * optional uint64 hits = 8;
    * }
    */
   public void writeExternal(DataOutputStream out) throws IOException {
@@ -88,12 +134,15 @@ public class DataRootExt implements Comparable<DataRootExt> {
     builder.setUrlPath(path);
     builder.setDirLocation(dirLocation);
     builder.setType(convertDataRootType(type));
-    if (type != DataRoot.Type.datasetRoot) {
+    if (catLocation != null) // also for a datasetRoot, so it can be removed with its catalog
       builder.setCatLocation(catLocation);
+    if (type != DataRoot.Type.datasetRoot)
       builder.setName(name);
-    }
     if (restrict != null)
       builder.setRestrict(restrict);
+    if (configXml != null)
+      builder.setConfigXml(configXml);
+    builder.setHits(getHits());
 
     ConfigCatalogExtProto.DataRoot index = builder.build();
     byte[] b = index.toByteArray();
@@ -132,6 +181,9 @@ public class DataRootExt implements Comparable<DataRootExt> {
       name = dsp.getName();
     if (dsp.getRestrict().length() > 0)
       restrict = dsp.getRestrict();
+    if (dsp.getConfigXml().length() > 0)
+      configXml = dsp.getConfigXml();
+    hits.add(dsp.getHits());
   }
 
   ////////////////////////////
@@ -1,12 +1,13 @@
 package thredds.server.catalog.tracker;
 
 import java.io.*;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Track the list of dataRoots.
  * Used to check if any have changed, without having to read the catalog tree.
+ * Catalogs reread while serving requests change it from another thread, so the map is concurrent.
  *
  * @author John
  * @since 6/22/2015
@@ -14,8 +15,8 @@ import java.util.Set;
 public class DataRootTracker {
   private static final String dbname = "/datarootTracker.dat";
   String filepath;
-  Set<DataRootExt> dataRoots;
-  boolean changed;
+  Map<String, DataRootExt> dataRoots; // key = path, so a reread or restart replaces the old record
+  volatile boolean changed;
   DatasetTracker.Callback callback;
 
   public DataRootTracker(String pathname, boolean startOver, DatasetTracker.Callback callback) {
@@ -25,7 +26,7 @@ public class DataRootTracker {
     if (startOver)
       reinit();
     if (!file.exists() || startOver || readDataRoots() <= 0) {
-      dataRoots = new HashSet<>();
+      dataRoots = new ConcurrentHashMap<>();
       changed = true;
     }
   }
@@ -38,34 +39,40 @@ public class DataRootTracker {
         throw new IllegalStateException("DatasetTrackerMapDB not able to delete " + filepath);
       }
     }
-    dataRoots = new HashSet<>();
+    dataRoots = new ConcurrentHashMap<>();
     changed = true;
   }
 
+  /**
+   * Track a dataRoot, replacing any dataRoot with the same path.
+   *
+   * @return true if there was no dataRoot with this path
+   */
   public boolean trackDataRoot(DataRootExt ds) {
     changed = true;
     if (callback != null)
       callback.hasDataRoot(ds);
-    return dataRoots.add(ds);
+    return dataRoots.put(ds.getPath(), ds) == null;
   }
 
-  boolean removeDataRoot(DataRootExt ds) {
+  /** Remove the dataRoot with the same path. */
+  public boolean removeDataRoot(DataRootExt ds) {
     changed = true;
-    return dataRoots.remove(ds);
+    return dataRoots.remove(ds.getPath()) != null;
   }
 
   public Iterable<? extends DataRootExt> getDataRoots() {
-    return dataRoots;
+    return dataRoots.values();
   }
 
   private int readDataRoots() {
-    dataRoots = new HashSet<>();
+    dataRoots = new ConcurrentHashMap<>();
     int count = 0;
     try (DataInputStream in = new DataInputStream(new FileInputStream(filepath))) {
       while (in.available() > 0) {
         DataRootExt ext = new DataRootExt();
         ext.readExternal(in);
-        dataRoots.add(ext);
+        dataRoots.put(ext.getPath(), ext);
         count++;
       }
 
@@ -76,11 +83,19 @@ public class DataRootTracker {
     return count;
   }
 
+  /**
+   * Save even if no dataRoots were added or removed, eg to persist the request counts.
+   */
+  public void saveAll() throws IOException {
+    changed = true;
+    save();
+  }
+
   public void save() throws IOException {
     if (!changed)
       return;
     try (DataOutputStream out = new DataOutputStream(new FileOutputStream(filepath))) {
-      for (DataRootExt ext : dataRoots) {
+      for (DataRootExt ext : dataRoots.values()) {
         ext.writeExternal(out);
       }
     }
@@ -3,7 +3,9 @@ package thredds.server.catalog.tracker;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Formatter;
+import java.util.List;
 import thredds.client.catalog.Dataset;
 import thredds.server.catalog.ConfigCatalog;
 
@@ -34,6 +36,16 @@ public interface DatasetTracker extends Closeable {
 
   String findNcml(String path);
 
+  // the paths of the datasets tracked for this catalog
+  default List<String> findDatasets(long catId) {
+    return Collections.emptyList();
+  }
+
+  // stop tracking the datasets of this catalog, eg an old version of it; return their paths
+  default List<String> removeDatasets(long catId) {
+    return Collections.emptyList();
+  }
+
   // debug
   void showDB(Formatter f);
 
@@ -50,6 +62,9 @@ public interface DatasetTracker extends Closeable {
 
     void hasCatalogRef(ConfigCatalog dd);
 
+    // a phase of catalog initialization took this long
+    default void phase(String name, long msecs) {}
+
     void finish();
   }
 }
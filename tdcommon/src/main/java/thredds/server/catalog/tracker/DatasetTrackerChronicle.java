@@ -13,7 +13,9 @@ import thredds.server.catalog.DatasetScan;
 import thredds.server.catalog.FeatureCollectionRef;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Formatter;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -236,6 +238,29 @@ public class DatasetTrackerChronicle implements DatasetTracker {
     return dext.getNcml();
   }
 
+  // a scan of the whole map, catId is not a key
+  @Override
+  public List<String> findDatasets(long catId) {
+    List<String> result = new ArrayList<>();
+    if (datasetMap == null)
+      return result;
+    for (Map.Entry<String, DatasetExt> entry : datasetMap.entrySet()) {
+      if (entry.getValue().catId == catId)
+        result.add(entry.getKey());
+    }
+    return result;
+  }
+
+  @Override
+  public List<String> removeDatasets(long catId) {
+    List<String> result = findDatasets(catId);
+    for (String path : result)
+      datasetMap.remove(path);
+    if (!result.isEmpty())
+      changed = true;
+    return result;
+  }
+
   @Override
   public void showDB(Formatter f) {
     if (datasetMap == null) {
@@ -8,8 +8,10 @@ import org.slf4j.LoggerFactory;
 import thredds.client.catalog.Dataset;
 import thredds.server.catalog.DatasetScan;
 import thredds.server.catalog.FeatureCollectionRef;
+import java.util.ArrayList;
 import java.util.Formatter;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -30,6 +32,8 @@ public class DatasetTrackerInMem implements DatasetTracker {
 
   // InvDataset (not DatasetScan, DatasetFmrc) that have an NcML element in it. key is the request Path
   private Map<String, String> ncmlDatasetHash = new HashMap<>();
+  // the catId of each dataset in the other maps
+  private Map<String, Long> catIdHash = new HashMap<>();
   // private int count;
 
   public boolean init(String dirPath, long maxDatasets) {
@@ -43,8 +47,10 @@ public class DatasetTrackerInMem implements DatasetTracker {
     if (dataset.getRestrictAccess() != null) {
       if (callback != null)
         callback.hasRestriction(dataset);
-      else
+      else {
         putResourceControl(dataset);
+        catIdHash.put(dataset.getUrlPath(), catId);
+      }
     }
 
     // dont track ncml for DatasetScan or FeatureCollectionRef
@@ -62,6 +68,7 @@ public class DatasetTrackerInMem implements DatasetTracker {
       String ncml = xmlOut.outputString(ncmlElem);
       System.out.printf("%s%n", ncml);
       ncmlDatasetHash.put(dataset.getUrlPath(), ncml);
+      catIdHash.put(dataset.getUrlPath(), catId);
     }
     return true;
   }
@@ -121,6 +128,27 @@ public class DatasetTrackerInMem implements DatasetTracker {
     return ncmlDatasetHash.get(path);
   }
 
+  @Override
+  public List<String> findDatasets(long catId) {
+    List<String> result = new ArrayList<>();
+    for (Map.Entry<String, Long> entry : catIdHash.entrySet()) {
+      if (entry.getValue() == catId)
+        result.add(entry.getKey());
+    }
+    return result;
+  }
+
+  @Override
+  public List<String> removeDatasets(long catId) {
+    List<String> result = findDatasets(catId);
+    for (String path : result) {
+      resourceControlHash.remove(path);
+      ncmlDatasetHash.remove(path);
+      catIdHash.remove(path);
+    }
+    return result;
+  }
+
   @Override
   public boolean exists() {
     return false;
@@ -130,6 +158,7 @@ public class DatasetTrackerInMem implements DatasetTracker {
   public boolean reinit() {
     resourceControlHash = new HashMap<>(); // path, restrictAccess string for datasets
     ncmlDatasetHash = new HashMap<>();
+    catIdHash = new HashMap<>();
     return true;
   }
 
@@ -0,0 +1,68 @@
+package thredds.server.catalog;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class TestDataRootIndex {
+  private static final List<String> DATA_ROOTS = Arrays.asList("/thredds/dods/test/longer", "/thredds/dods/test",
+      "/thredds-test/dods/test", "/thredds/dods/tester", "/thredds/dods/short", "/actionable", "myworld", "mynot",
+      "ncmodels", "ncmodels/bzipped", "trailing/slash/", "a/b/c/d/e");
+
+  @Test
+  public void shouldFindLongestMatch() {
+    DataRootIndex index = new DataRootIndex(DATA_ROOTS);
+    assertThat(index.size()).isEqualTo(DATA_ROOTS.size());
+
+    assertThat(index.findLongestPathMatch("nope")).isNull();
+    assertThat(index.findLongestPathMatch("/thredds/dods/test")).isEqualTo("/thredds/dods/test");
+    assertThat(index.findLongestPathMatch("/thredds/dods/test/")).isEqualTo("/thredds/dods/test");
+    assertThat(index.findLongestPathMatch("/thredds/dods/test/lo")).isEqualTo("/thredds/dods/test");
+    assertThat(index.findLongestPathMatch("/thredds-test/dods/test/longer")).isEqualTo("/thredds-test/dods/test");
+    assertThat(index.findLongestPathMatch("/thredds/dods/test/longer/donger")).isEqualTo("/thredds/dods/test/longer");
+    assertThat(index.findLongestPathMatch("/thredds/dods/tester/file.nc")).isEqualTo("/thredds/dods/tester");
+    assertThat(index.findLongestPathMatch("myworldly")).isNull();
+    assertThat(index.findLongestPathMatch("/my")).isNull();
+    assertThat(index.findLongestPathMatch("mysnot")).isNull();
+    assertThat(index.findLongestPathMatch("ncmodels/canonical")).isEqualTo("ncmodels");
+    assertThat(index.findLongestPathMatch("ncmodels/bzipped/file.bz2")).isEqualTo("ncmodels/bzipped");
+    assertThat(index.findLongestPathMatch("trailing/slash/file.nc")).isEqualTo("trailing/slash");
+  }
+
+  @Test
+  public void shouldNotMatchPartialCompressedEdge() {
+    DataRootIndex index = new DataRootIndex(DATA_ROOTS);
+    assertThat(index.findLongestPathMatch("a/b/c")).isNull();
+    assertThat(index.findLongestPathMatch("a/b/c/x/e")).isNull();
+    assertThat(index.findLongestPathMatch("a/b/c/d/e")).isEqualTo("a/b/c/d/e");
+    assertThat(index.findLongestPathMatch("a/b/c/d/e/f.nc")).isEqualTo("a/b/c/d/e");
+  }
+
+  @Test
+  public void shouldHandleEmptyIndex() {
+    assertThat(DataRootIndex.EMPTY.size()).isEqualTo(0);
+    assertThat(DataRootIndex.EMPTY.findLongestPathMatch("any/path")).isNull();
+  }
+
+  // a lookup visits at most height() nodes, which depends on the depth of the paths, not on how many there are
+  @Test
+  public void lookupCostShouldStayFlat() {
+    DataRootIndex small = new DataRootIndex(makeRoots(100));
+    DataRootIndex large = new DataRootIndex(makeRoots(20000));
+    assertThat(small.size()).isEqualTo(100);
+    assertThat(large.size()).isEqualTo(20000);
+    assertThat(large.height()).isEqualTo(small.height());
+    assertThat(large.height()).isAtMost(3); // model, groupN, runN
+    assertThat(large.findLongestPathMatch("model/group7/run19957/sub/dir/file.nc")).isEqualTo("model/group7/run19957");
+  }
+
+  private static List<String> makeRoots(int n) {
+    List<String> roots = new ArrayList<>();
+    for (int i = 0; i < n; i++)
+      roots.add(String.format("model/group%d/run%d", i % 50, i));
+    return roots;
+  }
+}
@@ -0,0 +1,87 @@
+package thredds.server.catalog.tracker;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestCatalogWatcher {
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private final BlockingQueue<Set<Path>> changes = new LinkedBlockingQueue<>();
+  private CatalogWatcher watcher;
+  private Thread thread;
+
+  @After
+  public void stop() throws IOException {
+    if (watcher != null)
+      watcher.close();
+    if (thread != null)
+      thread.interrupt();
+  }
+
+  @Test
+  public void shouldReportCreatedModifiedAndDeletedCatalogs() throws Exception {
+    Path dir = tempFolder.getRoot().toPath();
+    Path modified = Files.write(dir.resolve("modified.xml"), new byte[] {1});
+    Path deleted = Files.write(dir.resolve("deleted.xml"), new byte[] {1});
+    start(dir);
+
+    Path created = Files.write(dir.resolve("created.xml"), new byte[] {1});
+    Files.write(modified, new byte[] {2});
+    Files.delete(deleted);
+    Files.write(dir.resolve("notACatalog.txt"), new byte[] {1});
+
+    assertThat(waitFor(3)).containsExactly(created, modified, deleted);
+  }
+
+  @Test
+  public void shouldPickUpCatalogsInNewDirectory() throws Exception {
+    Path dir = tempFolder.getRoot().toPath();
+    start(dir);
+
+    Path sub = Files.createDirectory(dir.resolve("sub"));
+    Path catalog = Files.write(sub.resolve("catalog.xml"), new byte[] {1});
+
+    assertThat(waitFor(1)).contains(catalog);
+  }
+
+  private void start(Path dir) throws IOException {
+    watcher = new CatalogWatcher(new CatalogWatcher.Listener() {
+      @Override
+      public void catalogsChanged(Set<Path> changed) {
+        changes.add(changed);
+      }
+
+      @Override
+      public void overflow() {}
+    }, true, 100);
+    watcher.registerAll(dir);
+    thread = new Thread(watcher::processEvents);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  // the changes reported, until there are n or nothing more comes
+  private Set<Path> waitFor(int n) throws InterruptedException {
+    Set<Path> result = new HashSet<>();
+    while (result.size() < n) {
+      Set<Path> changed = changes.poll(10, TimeUnit.SECONDS);
+      if (changed == null)
+        break;
+      result.addAll(changed);
+    }
+    return result;
+  }
+}
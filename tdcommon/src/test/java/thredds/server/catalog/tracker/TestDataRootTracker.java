@@ -0,0 +1,48 @@
+package thredds.server.catalog.tracker;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import thredds.server.catalog.DataRoot;
+
+public class TestDataRootTracker {
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void shouldReplaceDataRootWithSamePath() throws Exception {
+    String dir = tempFolder.getRoot().getAbsolutePath();
+    DataRootTracker tracker = new DataRootTracker(dir, true, null);
+    assertThat(tracker.trackDataRoot(new DataRootExt(new DataRoot("path", "/old", null), "cat.xml"))).isTrue();
+    tracker.save();
+
+    // as after a restart or reread: the record read from disk is replaced by the one from the catalog
+    tracker = new DataRootTracker(dir, false, null);
+    assertThat(tracker.trackDataRoot(new DataRootExt(new DataRoot("path", "/new", null), "cat.xml"))).isFalse();
+    assertThat(dirLocations(tracker)).containsExactly("/new");
+
+    tracker.save();
+    tracker = new DataRootTracker(dir, false, null);
+    assertThat(dirLocations(tracker)).containsExactly("/new");
+  }
+
+  @Test
+  public void shouldRemoveDataRootWithSamePath() {
+    DataRootTracker tracker = new DataRootTracker(tempFolder.getRoot().getAbsolutePath(), true, null);
+    tracker.trackDataRoot(new DataRootExt(new DataRoot("path", "/old", null), "cat.xml"));
+
+    assertThat(tracker.removeDataRoot(new DataRootExt(new DataRoot("path", "/new", null), "cat.xml"))).isTrue();
+    assertThat(dirLocations(tracker)).isEmpty();
+  }
+
+  private static List<String> dirLocations(DataRootTracker tracker) {
+    List<String> result = new ArrayList<>();
+    for (DataRootExt dre : tracker.getDataRoots())
+      result.add(dre.getDirLocation());
+    return result;
+  }
+}
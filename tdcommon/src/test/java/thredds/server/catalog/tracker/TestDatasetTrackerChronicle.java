@@ -83,6 +83,24 @@ public class TestDatasetTrackerChronicle {
     }
   }
 
+  @Test
+  public void shouldRemoveDatasetsOfCatalog() throws IOException {
+    try (DatasetTrackerChronicle datasetTracker =
+        new DatasetTrackerChronicle(tempFolder.getRoot().getAbsolutePath(), 10, 1)) {
+      datasetTracker.trackDataset(1, mockDataset(100, "path1"), null);
+      datasetTracker.trackDataset(1, mockDataset(100, "path2"), null);
+      datasetTracker.trackDataset(2, mockDataset(100, "path3"), null);
+      datasetTracker.trackDataset(3, mockDataset(100, "path1"), null); // a new version of catalog 1 kept path1
+
+      assertThat(datasetTracker.findDatasets(1)).containsExactly("path2");
+      assertThat(datasetTracker.removeDatasets(1)).containsExactly("path2");
+      assertThat(datasetTracker.getCount()).isEqualTo(2);
+      assertThat(datasetTracker.findNcml("path2")).isNull();
+      assertThat(datasetTracker.findNcml("path1")).isNotNull();
+      assertThat(datasetTracker.findDatasets(3)).containsExactly("path1");
+    }
+  }
+
   private static Dataset mockDataset(int ncmlLength, String path) {
     final Dataset dataset = mock(Dataset.class);
     when(dataset.getNcmlElement()).thenReturn(createNcml(ncmlLength));
@@ -4,6 +4,9 @@
  */
 package thredds.core;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import thredds.client.catalog.Catalog;
@@ -11,6 +14,7 @@ import thredds.client.catalog.Dataset;
 import thredds.client.catalog.Service;
 import thredds.client.catalog.builder.CatalogBuilder;
 import thredds.client.catalog.builder.DatasetBuilder;
+import thredds.client.catalog.tools.CatalogXmlWriter;
 import thredds.featurecollection.FeatureCollectionCache;
 import thredds.featurecollection.InvDatasetFeatureCollection;
 import thredds.server.catalog.CatalogScan;
@@ -18,6 +22,7 @@ import thredds.server.catalog.ConfigCatalog;
 import thredds.server.catalog.ConfigCatalogCache;
 import thredds.server.catalog.DatasetScan;
 import thredds.server.config.TdsContext;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
@@ -50,6 +55,54 @@ public class CatalogManager {
   @Autowired
   private AllowedServices globalServices;
 
+  // serialized static catalogs, keyed by path, baseURI and dataset subset
+  private final Cache<String, CatalogResponse> responseCache = CacheBuilder.newBuilder()
+      .maximumWeight(50 * 1000 * 1000).weigher((String key, CatalogResponse value) -> value.bytes.length).build();
+
+  /**
+   * A static catalog serialized to XML, with validators for conditional requests.
+   * Only valid as long as the ConfigCatalog it was made from is the one in the ConfigCatalogCache.
+   */
+  public static class CatalogResponse {
+    private final ConfigCatalog source;
+    private final Catalog catalog;
+    private final byte[] bytes;
+    private final String etag;
+    private final long lastModified;
+
+    private CatalogResponse(ConfigCatalog source, Catalog catalog, byte[] bytes) {
+      this.source = source;
+      this.catalog = catalog;
+      this.bytes = bytes;
+      this.etag = "\"" + Hashing.sha256().hashBytes(bytes) + "\"";
+      this.lastModified = (System.currentTimeMillis() / 1000) * 1000; // http dates have second resolution
+    }
+
+    /** The catalog, or the subset catalog if a dataset was requested */
+    public Catalog getCatalog() {
+      return catalog;
+    }
+
+    /** The catalog serialized as XML */
+    public byte[] getBytes() {
+      return bytes;
+    }
+
+    /** Strong ETag of the XML */
+    public String getETag() {
+      return etag;
+    }
+
+    /** Strong ETag of the HTML view, which changes when the XML does */
+    public String getHtmlETag() {
+      return "\"html-" + etag.substring(1, etag.length() - 1) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+    public long getLastModified() {
+      return lastModified;
+    }
+  }
+
   ///////////////////////////////////////////////////////////
 
   /**
@@ -64,6 +117,19 @@ public class CatalogManager {
    * @return the requested Catalog, or null if catalog does not exist or is not allowed.
    */
   public Catalog getCatalog(String path, URI baseURI) throws IOException {
+    return getCatalog(path, baseURI, 0, -1);
+  }
+
+  /**
+   * Same as getCatalog(path, baseURI), but a DatasetScan directory catalog only contains one page of the directory.
+   *
+   * @param path the path for the requested catalog.
+   * @param baseURI the base URI for the catalog, used to resolve relative URLs.
+   * @param offset skip this many entries of a DatasetScan directory
+   * @param limit at most this many entries of a DatasetScan directory; <= 0 means all
+   * @return the requested Catalog, or null if catalog does not exist or is not allowed.
+   */
+  public Catalog getCatalog(String path, URI baseURI, int offset, int limit) throws IOException {
     if (path == null)
       return null;
 
@@ -72,7 +138,7 @@ public class CatalogManager {
       workPath = workPath.substring(1);
 
     // Check if it's a CatalogBuilder or ConfigCatalog
-    Object dyno = makeDynamicCatalog(workPath, baseURI);
+    Object dyno = makeDynamicCatalog(workPath, baseURI, offset, limit);
     if (dyno != null) {
       CatalogBuilder catBuilder;
       if (dyno instanceof CatalogBuilder) {
@@ -94,8 +160,79 @@ public class CatalogManager {
     return catBuilder.makeCatalog();
   }
 
+  /**
+   * If the path is a static (non-dynamic) catalog, return it serialized to XML, from the cache if possible.
+   * The cached bytes are reused until the catalog is reread.
+   *
+   * @param path the path for the requested catalog.
+   * @param baseURI the base URI for the catalog, used to resolve relative URLs.
+   * @param datasetId if not null, subset the catalog on this dataset
+   * @return the serialized catalog, or null if the catalog is dynamic, does not exist, or has no such dataset.
+   */
+  public CatalogResponse getStaticCatalogResponse(String path, URI baseURI, String datasetId) throws IOException {
+    if (path == null)
+      return null;
+
+    String workPath = path;
+    if (workPath.startsWith("/"))
+      workPath = workPath.substring(1);
+    if (isDynamicCatalog(workPath))
+      return null;
+
+    ConfigCatalog configCatalog = ccc.get(workPath);
+    if (configCatalog == null)
+      return null;
+
+    String key = workPath + "|" + baseURI + "|" + (datasetId == null ? "" : datasetId);
+    CatalogResponse cached = responseCache.getIfPresent(key);
+    if (cached != null && cached.source == configCatalog)
+      return cached;
+
+    CatalogBuilder catBuilder = configCatalog.makeCatalogBuilder(tdsContext.getContextPath());
+    addGlobalServices(catBuilder);
+    Catalog catalog = catBuilder.makeCatalog();
+    if (datasetId != null) {
+      Dataset dataset = catalog.findDatasetByID(datasetId);
+      if (dataset == null)
+        return null;
+      catalog = catalog.subsetCatalogOnDataset(dataset);
+    }
+
+    ByteArrayOutputStream bos = new ByteArrayOutputStream(10 * 1000);
+    new CatalogXmlWriter().writeXML(catalog, bos);
+    CatalogResponse response = new CatalogResponse(configCatalog, catalog, bos.toByteArray());
+    responseCache.put(key, response);
+    return response;
+  }
+
+  /** Discard all serialized catalogs, eg when the catalogs are reread. */
+  public void invalidateCatalogResponses() {
+    responseCache.invalidateAll();
+  }
+
+  /**
+   * Discard the serialized versions of one catalog, eg when just that catalog is reread.
+   *
+   * @param catalogRelPath the catalog path, relative to the content root
+   */
+  public void invalidateCatalogResponses(String catalogRelPath) {
+    String prefix = catalogRelPath + "|";
+    responseCache.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+  }
+
+  // same logic as makeDynamicCatalog, without making anything
+  private boolean isDynamicCatalog(String path) {
+    int pos = path.lastIndexOf("/");
+    String workPath = (pos >= 0) ? path.substring(0, pos) : path;
+    DataRootManager.DataRootMatch match = dataRootManager.findDataRootMatch(workPath);
+    if (match == null)
+      return false;
+    return match.dataRoot.getFeatureCollection() != null || match.dataRoot.getDatasetScan() != null
+        || match.dataRoot.getCatalogScan() != null;
+  }
+
   // barfola on the return type
-  private Object makeDynamicCatalog(String path, URI baseURI) throws IOException {
+  private Object makeDynamicCatalog(String path, URI baseURI, int offset, int limit) throws IOException {
     boolean isLatest = path.endsWith("/latest.xml");
 
     // strip off the filename
@@ -128,7 +265,7 @@ public class CatalogManager {
       if (isLatest)
         cat = dscan.makeCatalogForLatest(workPath, baseURI);
       else
-        cat = dscan.makeCatalogForDirectory(workPath, baseURI);
+        cat = dscan.makeCatalogForDirectory(workPath, baseURI, offset, limit);
 
       if (null == cat)
         log.error("makeDynamicCatalog(): DatasetScan.makeCatalogForDirectory failed = " + workPath);
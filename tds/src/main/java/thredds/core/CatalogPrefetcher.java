@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package thredds.core;
+
+import org.springframework.util.StringUtils;
+import thredds.client.catalog.CatalogRef;
+import thredds.client.catalog.Dataset;
+import thredds.core.ConfigCatalogInitialization.ReadMode;
+import thredds.server.catalog.CatalogScan;
+import thredds.server.catalog.ConfigCatalog;
+import thredds.server.catalog.DatasetScan;
+import thredds.server.catalog.FeatureCollectionRef;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parses config catalogs on a bounded thread pool, following catalogRefs and catalogScans, ahead of the serial crawl
+ * of ConfigCatalogInitialization. The serial crawl still decides what to track and in what order, so loop and
+ * duplicate detection and the tracker contents are the same as without it; it just gets already parsed catalogs from
+ * here.
+ * <p/>
+ * A parsed catalog is dropped as soon as the crawl takes it. At most maxAhead catalogs are parsed and not yet taken;
+ * past that, catalogs are left for the crawl to read itself. When the crawl reads a catalog itself, the catalogs it
+ * refers to are submitted from there, so the rest of that subtree is still parsed ahead.
+ *
+ * @since 10/17/2026
+ */
+class CatalogPrefetcher {
+  static private final org.slf4j.Logger logCatalogInit =
+      org.slf4j.LoggerFactory.getLogger(ConfigCatalogInitialization.class);
+  static private final String ERROR = "*** ERROR: ";
+
+  /** How the catalogs are read; implemented by ConfigCatalogInitialization. */
+  interface Reader {
+    /** @return the Catalog, or null if failure */
+    ConfigCatalog readCatalog(String catalogRelPath, String catalogFullPath);
+
+    /** @return catalog path relative to the rootDir, or null if it should not be followed */
+    String resolveCatalogRef(CatalogRef catref, String dirPath);
+  }
+
+  private final ReadMode readMode;
+  private final File contentRootPath;
+  private final Map<String, Long> lastReadMap; // snapshot, catalogTracker changes while we run
+  private final Reader reader;
+  private final ExecutorService pool;
+  private final Semaphore ahead; // a permit for each catalog parsed or being parsed, and not taken yet
+
+  private static final Object TAKEN = new Object();
+
+  // path -> the Future of a catalog submitted and not taken yet, or TAKEN; a path is never parsed twice
+  private final Map<String, Object> entries = new ConcurrentHashMap<>();
+  final AtomicLong parseMsecs = new AtomicLong(); // summed over threads
+  final AtomicInteger nparsed = new AtomicInteger();
+
+  CatalogPrefetcher(ReadMode readMode, int nthreads, int maxAhead, File contentRootPath, Map<String, Long> lastReadMap,
+      Reader reader) {
+    this.readMode = readMode;
+    this.contentRootPath = contentRootPath;
+    this.lastReadMap = lastReadMap;
+    this.reader = reader;
+    this.ahead = new Semaphore(Math.max(1, maxAhead));
+
+    AtomicInteger count = new AtomicInteger();
+    this.pool = Executors.newFixedThreadPool(nthreads, r -> {
+      Thread t = new Thread(r, "ConfigCatalogRead-" + count.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+  // same skip logic as checkCatalogToRead
+  void submit(String catalogRelPath, boolean isRoot, long lastRead) {
+    String path = StringUtils.cleanPath(catalogRelPath);
+    File catalogFile = new File(contentRootPath, path);
+    if (!catalogFile.exists())
+      return;
+    if (!isRoot && readMode != ReadMode.always && catalogFile.lastModified() < lastRead)
+      return;
+    if (!isRoot && readMode == ReadMode.triggerOnly)
+      return;
+    if (entries.containsKey(path) || !ahead.tryAcquire())
+      return; // already done, or too many waiting to be taken: the crawl will read it
+    FutureTask<ConfigCatalog> task = new FutureTask<>(() -> parse(path, catalogFile, isRoot));
+    if (entries.putIfAbsent(path, task) != null) { // same map as get(), so it either sees this task or we see TAKEN
+      ahead.release();
+      return;
+    }
+    try {
+      pool.execute(task);
+    } catch (RejectedExecutionException e) {
+      entries.remove(path, task);
+      ahead.release(); // shut down, serial crawl will read it
+    }
+  }
+
+  private ConfigCatalog parse(String catalogRelPath, File catalogFile, boolean isRoot) {
+    long start = System.currentTimeMillis();
+    ConfigCatalog cat = reader.readCatalog(catalogRelPath, catalogFile.getPath());
+    parseMsecs.addAndGet(System.currentTimeMillis() - start);
+    nparsed.incrementAndGet();
+    if (cat == null || (isRoot && readMode == ReadMode.triggerOnly))
+      return cat;
+    submitChildren(catalogRelPath, catalogFile, cat);
+    return cat;
+  }
+
+  // the catalogs that cat refers to, and the ones in its catalogScans
+  private void submitChildren(String catalogRelPath, File catalogFile, ConfigCatalog cat) {
+    int pos = catalogRelPath.lastIndexOf("/");
+    String dirPath = (pos > 0) ? catalogRelPath.substring(0, pos + 1) : "";
+    submitCatalogRefs(dirPath, cat.getDatasetsLocal());
+
+    for (CatalogScan catScan : cat.getCatalogScans()) {
+      Path relLocation = Paths.get(dirPath, catScan.getLocation());
+      Path absLocation = Paths.get(catalogFile.getParent(), catScan.getLocation());
+      submitDirectory(relLocation.toString(), absLocation);
+    }
+  }
+
+  // same traversal as processDatasets
+  private void submitCatalogRefs(String dirPath, List<Dataset> datasets) {
+    for (Dataset ds : datasets) {
+      if ((ds instanceof DatasetScan) || (ds instanceof FeatureCollectionRef) || (ds instanceof CatalogScan))
+        continue;
+      if (ds instanceof CatalogRef) {
+        String path = reader.resolveCatalogRef((CatalogRef) ds, dirPath);
+        if (path != null)
+          submit(path, false, lastReadMap.getOrDefault(path, 0L));
+      } else {
+        submitCatalogRefs(dirPath, ds.getDatasetsLocal());
+      }
+    }
+  }
+
+  // same traversal as readCatsInDirectory, each subdirectory is listed in its own task
+  private void submitDirectory(String dirPath, Path directory) {
+    try {
+      pool.execute(() -> {
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(directory)) {
+          for (Path p : ds) {
+            String filename = p.getFileName().toString();
+            if (Files.isDirectory(p)) {
+              submitDirectory(dirPath + "/" + filename, p);
+            } else if (filename.endsWith(".xml")) {
+              String path = dirPath.length() == 0 ? filename : dirPath + "/" + filename;
+              submit(path, false, lastReadMap.getOrDefault(path, 0L));
+            }
+          }
+        } catch (IOException e) {
+          logCatalogInit.debug("CatalogPrefetcher failed to list {}: {}", directory, e.getMessage());
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      // shut down
+    }
+  }
+
+  /**
+   * Take the parsed catalog, waiting for it if its still being parsed, or parse it in this thread if it was
+   * never submitted, and then submit the catalogs it refers to.
+   */
+  @SuppressWarnings("unchecked")
+  ConfigCatalog get(String catalogRelPath, String catalogFullPath) {
+    Object entry = entries.put(catalogRelPath, TAKEN); // dont submit it later
+    if (!(entry instanceof Future)) { // not found yet, so read it here
+      ConfigCatalog cat = reader.readCatalog(catalogRelPath, catalogFullPath);
+      if (cat != null)
+        submitChildren(catalogRelPath, new File(catalogFullPath), cat);
+      return cat;
+    }
+    Future<ConfigCatalog> future = (Future<ConfigCatalog>) entry;
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } catch (ExecutionException e) {
+      logCatalogInit.error(ERROR + "  Exception on catalog=" + catalogFullPath, e.getCause());
+      return null;
+    } finally {
+      ahead.release();
+    }
+  }
+
+  /** @return number of catalogs submitted and not taken yet */
+  int getPending() {
+    int n = 0;
+    for (Object entry : entries.values()) {
+      if (entry != TAKEN)
+        n++;
+    }
+    return n;
+  }
+
+  void shutdown() {
+    pool.shutdownNow();
+    entries.clear();
+  }
+}
@@ -18,6 +18,7 @@ import thredds.server.catalog.builder.ConfigCatalogBuilder;
 import thredds.server.catalog.tracker.*;
 import thredds.server.config.TdsContext;
 import thredds.server.config.ThreddsConfig;
+import thredds.server.opendap.GuardedDatasetCacheAndClone;
 import ucar.nc2.time.CalendarDate;
 import ucar.nc2.util.Counters;
 import ucar.util.prefs.PreferencesExt;
@@ -27,6 +28,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Reads in the Config catalogs on startup, and if triggered.
@@ -42,6 +44,7 @@ public class ConfigCatalogInitialization {
   static private final String ERROR = "*** ERROR: ";
   static private final boolean show = true;
   static private final ReadMode defaultReadMode = ReadMode.check;
+  static private final int PREFETCH_AHEAD_PER_THREAD = 50; // parsed catalogs waiting for the crawl, per thread
 
   @Autowired
   private TdsContext tdsContext; // used for getContentDirectory, contextPath
@@ -64,6 +67,9 @@ public class ConfigCatalogInitialization {
   @Autowired
   private FeatureCollectionCache fcCache;
 
+  @Autowired
+  private CatalogManager catalogManager;
+
   ///////////////////////////////////////////////////////
   public enum ReadMode {
     always, check, triggerOnly;
@@ -87,6 +93,14 @@ public class ConfigCatalogInitialization {
   private String trackerDir; // the tracker "databases" are kept in this directory
   private long maxDatasets; // chronicle limit
   private String averageValueSize;
+  private int warmUpDataRoots; // number of DataRoots to materialize in the background after reading catalogs
+  private int readThreads = 1; // number of threads used to parse catalogs; 1 = serial
+  private boolean watch; // watch catalog directories, reread only the catalogs that change
+  private int watchDelaySecs = 2; // wait until no changes for this long before reading changed catalogs
+  private CatalogWatcher catalogWatcher;
+  private Thread watcherThread;
+  private final Set<Path> catalogScanDirs = ConcurrentHashMap.newKeySet(); // absolute
+  private Thread warmUpThread;
 
   // on reread, construct new objects, so cant be spring beans
   private DataRootPathMatcher dataRootPathMatcher;
@@ -97,6 +111,8 @@ public class ConfigCatalogInitialization {
   private CatalogTracker catalogTracker;
   private Set<String> catPathMap; // Hash of paths, to look for duplicate catalogs
   private Map<String, String> fcNameMap; // Hash of featureCollection ids, to look for duplicates
+  private Map<String, Long> rereadCatIds; // catalogs read by rereadCatalogs -> catId of their previous version
+  private CatalogPrefetcher prefetcher; // parses catalogs in parallel, ahead of the serial crawl; may be null
 
   // track stats
   private DatasetTracker.Callback callback;
@@ -115,6 +131,19 @@ public class ConfigCatalogInitialization {
     this.averageValueSize = averageValueSize;
   }
 
+  public void setReadThreads(int readThreads) {
+    this.readThreads = Math.max(1, readThreads);
+  }
+
+  public void setWatch(boolean watch, int watchDelaySecs) {
+    this.watch = watch;
+    this.watchDelaySecs = watchDelaySecs;
+  }
+
+  public void setWarmUpDataRoots(int warmUpDataRoots) {
+    this.warmUpDataRoots = warmUpDataRoots;
+  }
+
   // called from TdsInit on spring-managed auto-wired bean
   public synchronized void init(ReadMode readMode, PreferencesExt prefs) {
     if (readMode == null)
@@ -127,6 +156,8 @@ public class ConfigCatalogInitialization {
     makeDebugActions();
     this.contentRootPath = this.tdsContext.getThreddsDirectory();
     this.contextPath = tdsContext.getContextPath();
+    if (watch)
+      startWatching();
 
     reread(readMode, true);
   }
@@ -142,6 +173,9 @@ public class ConfigCatalogInitialization {
       ccc.invalidateAll(); // remove anything in cache
     if (fcCache != null)
       fcCache.invalidateAll(); // remove anything in cache
+    if (catalogManager != null)
+      catalogManager.invalidateCatalogResponses(); // global services may change
+    GuardedDatasetCacheAndClone.resetCache(); // NcML in the catalogs may change
 
     if (!isStartup && readMode == ReadMode.always)
       trackerNumber++; // must write a new database if TDS is already running and rereading all
@@ -161,6 +195,7 @@ public class ConfigCatalogInitialization {
     // going to reread global services
     allowedServices.clearGlobalServices();
 
+    long phaseStart = System.currentTimeMillis();
     switch (readMode) {
       case always:
         // if the database already exists, we need to close it
@@ -178,7 +213,9 @@ public class ConfigCatalogInitialization {
         this.catalogTracker = new CatalogTracker(trackerDir, true, numberCatalogs, nextCatId);
         this.dataRootTracker = new DataRootTracker(trackerDir, true, callback);
         this.dataRootPathMatcher = new DataRootPathMatcher(ccc, dataRootTracker); // starting over
+        startPrefetch(readMode);
         ccc.setRootCatalogKeys(readRootCatalogs(readMode));
+        phaseStart = phaseDone("readCatalogs", phaseStart);
         break;
 
       case check:
@@ -186,8 +223,11 @@ public class ConfigCatalogInitialization {
                                                                                                 // list
         this.dataRootTracker = new DataRootTracker(trackerDir, false, callback); // use existing data roots
         this.dataRootPathMatcher = new DataRootPathMatcher(ccc, dataRootTracker);
+        startPrefetch(readMode);
         ccc.setRootCatalogKeys(readRootCatalogs(readMode)); // read just roots to get global services
+        phaseStart = phaseDone("readRootCatalogs", phaseStart);
         checkExistingCatalogs(readMode);
+        phaseStart = phaseDone("checkCatalogs", phaseStart);
         break;
 
       case triggerOnly:
@@ -196,8 +236,10 @@ public class ConfigCatalogInitialization {
         this.dataRootTracker = new DataRootTracker(trackerDir, false, callback); // use existing data roots
         this.dataRootPathMatcher = new DataRootPathMatcher(ccc, dataRootTracker);
         ccc.setRootCatalogKeys(readRootCatalogs(readMode)); // read just roots to get global services
+        phaseStart = phaseDone("readRootCatalogs", phaseStart);
         break;
     }
+    stopPrefetch();
 
     numberCatalogs = catalogTracker.size();
     nextCatId = catalogTracker.getNextCatId();
@@ -206,8 +248,6 @@ public class ConfigCatalogInitialization {
       prefs.putLong("nextCatId", nextCatId);
       prefs.putInt("numberCatalogs", numberCatalogs);
     }
-    callback.finish();
-    logCatalogInit.info("\nConfigCatalogInitializion stats\n" + callback);
 
     try {
       datasetTracker.save();
@@ -217,10 +257,17 @@ public class ConfigCatalogInitialization {
       // e.printStackTrace();
       logCatalogInit.error("datasetTracker.save() failed", e);
     }
+    phaseDone("saveTrackers", phaseStart);
+    callback.finish();
+    logCatalogInit.info("\nConfigCatalogInitializion stats\n" + callback);
 
     // heres where we may be doing a switcheroo in a running TDS
-    if (dataRootManager != null)
+    dataRootPathMatcher.publish(); // build the lookup index before anyone can see it
+    if (dataRootManager != null) {
+      dataRootPathMatcher.copyHits(dataRootManager.getDataRootPathMatcher());
       dataRootManager.setDataRootPathMatcher(dataRootPathMatcher);
+    }
+    startWarmUp(dataRootPathMatcher);
     if (datasetManager != null)
       datasetManager.setDatasetTracker(datasetTracker);
 
@@ -240,12 +287,98 @@ public class ConfigCatalogInitialization {
     return true; // ok
   }
 
-  private List<String> readRootCatalogs(ReadMode readMode) {
+  private long phaseDone(String name, long phaseStart) {
+    long now = System.currentTimeMillis();
+    if (callback != null)
+      callback.phase(name, now - phaseStart);
+    return now;
+  }
+
+  private void startPrefetch(ReadMode readMode) {
+    if (readThreads <= 1)
+      return;
+    Map<String, Long> lastReadMap = new HashMap<>(); // snapshot, catalogTracker changes while we run
+    for (CatalogExt ext : catalogTracker.getCatalogs())
+      lastReadMap.put(ext.getCatRelLocation(), ext.getLastRead());
+    prefetcher = new CatalogPrefetcher(readMode, readThreads, readThreads * PREFETCH_AHEAD_PER_THREAD,
+        contentRootPath, lastReadMap, new CatalogPrefetcher.Reader() {
+          @Override
+          public ConfigCatalog readCatalog(String catalogRelPath, String catalogFullPath) {
+            return ConfigCatalogInitialization.this.readCatalog(catalogRelPath, catalogFullPath);
+          }
+
+          @Override
+          public String resolveCatalogRef(CatalogRef catref, String dirPath) {
+            return ConfigCatalogInitialization.this.resolveCatalogRef(catref, dirPath, false);
+          }
+        });
+    for (String pathname : makeRootCatalogKeys())
+      prefetcher.submit(pathname, true, 0);
+    if (readMode == ReadMode.check) { // these will be checked after the roots
+      for (CatalogExt catalogExt : catalogTracker.getCatalogs())
+        if (!catalogExt.isRoot())
+          prefetcher.submit(catalogExt.getCatRelLocation(), false, catalogExt.getLastRead());
+    }
+  }
+
+  private void stopPrefetch() {
+    if (prefetcher == null)
+      return;
+    prefetcher.shutdown();
+    if (callback != null) {
+      callback.phase("parseCatalogs(threads=" + readThreads + ",n=" + prefetcher.nparsed + ")",
+          prefetcher.parseMsecs.get());
+    }
+    prefetcher = null;
+  }
+
+  // materialize the busiest DataRoots in the background, so the first requests dont wait for it
+  private void startWarmUp(final DataRootPathMatcher matcher) {
+    if (warmUpThread != null)
+      warmUpThread.interrupt(); // previous matcher has been replaced
+    warmUpThread = null;
+    if (warmUpDataRoots <= 0)
+      return;
+
+    warmUpThread = new Thread(() -> {
+      long start = System.currentTimeMillis();
+      int count = matcher.warmUp(warmUpDataRoots);
+      logCatalogInit.info("ConfigCatalogInitializion warmed up {} dataRoots took={} msecs", count,
+          System.currentTimeMillis() - start);
+    }, "DataRootWarmUp");
+    warmUpThread.setDaemon(true);
+    warmUpThread.start();
+  }
+
+  // save the dataRoot request counts, so warm up after a restart knows which are busiest
+  // used from outside of tomcat/spring for testing
+  DataRootPathMatcher getDataRootPathMatcher() {
+    return dataRootPathMatcher;
+  }
+
+  public synchronized void saveDataRootTracker() {
+    if (warmUpThread != null)
+      warmUpThread.interrupt();
+    if (dataRootTracker == null)
+      return;
+    try {
+      dataRootTracker.saveAll();
+    } catch (IOException e) {
+      logCatalogInit.error("dataRootTracker.save() failed", e);
+    }
+  }
+
+  private List<String> makeRootCatalogKeys() {
     ArrayList<String> rootCatalogKeys = new ArrayList<>();
     rootCatalogKeys.add("catalog.xml"); // always first
     // add any others listed in ThreddsConfig
     for (String location : ThreddsConfig.getRootList("catalogRoot"))
       rootCatalogKeys.add(location);
+    return rootCatalogKeys;
+  }
+
+  private List<String> readRootCatalogs(ReadMode readMode) {
+    List<String> rootCatalogKeys = makeRootCatalogKeys();
     logCatalogInit.info("ConfigCatalogInit: initializing " + rootCatalogKeys.size() + " root catalogs.");
 
     // all root catalogs are checked
@@ -288,10 +421,11 @@ public class ConfigCatalogInitialization {
     catalogRelPath = StringUtils.cleanPath(catalogRelPath);
     File catalogFile = new File(this.contentRootPath, catalogRelPath);
     if (!catalogFile.exists()) {
-      catalogTracker.removeCatalog(catalogRelPath);
+      removeCatalog(catalogRelPath);
       logCatalogInit.error(ERROR + "initCatalog(): Catalog [" + catalogRelPath + "] does not exist.");
       return;
     }
+    watchDirectory(catalogFile.getParentFile().toPath(), false);
     long lastModified = catalogFile.lastModified();
     if (!isRoot && readMode != ReadMode.always && lastModified < lastRead)
       return; // skip catalogs that havent changed
@@ -311,13 +445,17 @@ public class ConfigCatalogInitialization {
 
     // if (logCatalogInit.isDebugEnabled()) logCatalogInit.debug("initCatalog {} -> {}", path, f.getAbsolutePath());
 
-    // read it
-    ConfigCatalog cat = readCatalog(catalogRelPath, catalogFile.getPath());
+    // read it, or get it from the parallel prefetch
+    ConfigCatalog cat = (prefetcher != null) ? prefetcher.get(catalogRelPath, catalogFile.getPath())
+        : readCatalog(catalogRelPath, catalogFile.getPath());
     if (cat == null) {
       logCatalogInit.error(ERROR + "initCatalog(): failed to read catalog <" + catalogFile.getPath() + ">.");
       return;
     }
+    CatalogExt previous = catalogTracker.get(catalogRelPath);
     long catId = catalogTracker.put(new CatalogExt(0, catalogRelPath, isRoot, readNow));
+    if (rereadCatIds != null && previous != null && previous.getCatId() != catId)
+      rereadCatIds.putIfAbsent(catalogRelPath, previous.getCatId());
 
     if (isRoot) {
       if (ccc != null)
@@ -360,11 +498,29 @@ public class ConfigCatalogInitialization {
         return;
       Path relLocation = Paths.get(dirPath, catScan.getLocation());
       Path absLocation = Paths.get(catalogFile.getParent(), catScan.getLocation());
-      // if (catalogWatcher != null) catalogWatcher.registerAll(absLocation);
+      watchDirectory(absLocation, true);
       readCatsInDirectory(readMode, relLocation.toString(), absLocation);
     }
   }
 
+  // the catalog file is gone: stop tracking it, and remove the dataRoots it defined
+  private void removeCatalog(String catalogRelPath) {
+    CatalogExt ext = catalogTracker.removeCatalog(catalogRelPath);
+    if (ext != null)
+      forgetDatasets(ext.getCatId(), -1);
+    if (ccc != null)
+      ccc.invalidate(catalogRelPath);
+    if (catalogManager != null)
+      catalogManager.invalidateCatalogResponses(catalogRelPath);
+    for (DataRootExt old : dataRootPathMatcher.getDataRootsForCatalog(catalogRelPath)) {
+      if (old.getType() == DataRoot.Type.featureCollection && fcCache != null)
+        fcCache.invalidate(old.getName());
+      dataRootPathMatcher.remove(old.getPath());
+      logCatalogInit.info("ConfigCatalogInitializion removed dataRoot {} of deleted catalog {}", old.getPath(),
+          catalogRelPath);
+    }
+  }
+
   /**
    * Does the actual work of reading a catalog.
    *
@@ -432,32 +588,8 @@ public class ConfigCatalogInitialization {
         continue;
 
       if (ds instanceof CatalogRef) { // follow catalog refs
-        CatalogRef catref = (CatalogRef) ds;
-        String href = catref.getXlinkHref();
-        // if (logCatalogInit.isDebugEnabled()) logCatalogInit.debug(" catref.getXlinkHref=" + href);
-
-        // Check that catRef is relative
-        if (!href.startsWith("http:")) {
-          // Clean up relative URLs that start with "./"
-          if (href.startsWith("./")) {
-            href = href.substring(2);
-          }
-
-          String path;
-          String contextPathPlus = this.contextPath + "/";
-          if (href.startsWith(contextPathPlus)) {
-            path = href.substring(contextPathPlus.length()); // absolute starting from content root
-          } else if (href.startsWith("/")) {
-            // Drop the catRef because it points to a non-TDS served catalog.
-            logCatalogInit.error(ERROR + "Skipping catalogRef <xlink:href=" + href
-                + ">. Reference is relative to the server outside the context path [" + contextPathPlus + "]. "
-                + "Parent catalog info: Name=\"" + catref.getParentCatalog().getName() + "\"; Base URI=\""
-                + catref.getParentCatalog().getUriString() + "\"; dirPath=\"" + dirPath + "\".");
-            continue;
-          } else {
-            path = dirPath + href; // relative starting from current directory
-          }
-
+        String path = resolveCatalogRef((CatalogRef) ds, dirPath, true);
+        if (path != null) {
           CatalogExt ext = catalogTracker.get(path);
           long lastRead = (ext == null) ? 0 : ext.getLastRead();
           checkCatalogToRead(readMode, path, false, lastRead);
@@ -470,6 +602,43 @@ public class ConfigCatalogInitialization {
     }
   }
 
+  /**
+   * Find the catalog that a catalogRef points to, if it is served by this TDS.
+   *
+   * @param catref the catalogRef
+   * @param dirPath directory of the catalog containing the catalogRef, relative to the rootDir
+   * @param logErrors log catalogRefs that cant be followed
+   * @return catalog path relative to the rootDir, or null if it should not be followed
+   */
+  private String resolveCatalogRef(CatalogRef catref, String dirPath, boolean logErrors) {
+    String href = catref.getXlinkHref();
+    // if (logCatalogInit.isDebugEnabled()) logCatalogInit.debug(" catref.getXlinkHref=" + href);
+
+    // Check that catRef is relative
+    if (href.startsWith("http:"))
+      return null;
+
+    // Clean up relative URLs that start with "./"
+    if (href.startsWith("./")) {
+      href = href.substring(2);
+    }
+
+    String contextPathPlus = this.contextPath + "/";
+    if (href.startsWith(contextPathPlus)) {
+      return href.substring(contextPathPlus.length()); // absolute starting from content root
+    } else if (href.startsWith("/")) {
+      // Drop the catRef because it points to a non-TDS served catalog.
+      if (logErrors)
+        logCatalogInit.error(ERROR + "Skipping catalogRef <xlink:href=" + href
+            + ">. Reference is relative to the server outside the context path [" + contextPathPlus + "]. "
+            + "Parent catalog info: Name=\"" + catref.getParentCatalog().getName() + "\"; Base URI=\""
+            + catref.getParentCatalog().getUriString() + "\"; dirPath=\"" + dirPath + "\".");
+      return null;
+    } else {
+      return dirPath + href; // relative starting from current directory
+    }
+  }
+
   // dirPath is the directory relative to rootDir, directory is absolute
   private void readCatsInDirectory(ReadMode readMode, String dirPath, Path directory) throws IOException {
     if (exceedLimit)
@@ -503,6 +672,180 @@ public class ConfigCatalogInitialization {
     }
   }
 
+  ///////////////////////////////////////////////////////////////////////////////////////////////////////////////
+  // watch mode
+
+  private void startWatching() {
+    try {
+      catalogWatcher = new CatalogWatcher(new CatalogWatcher.Listener() {
+        public void catalogsChanged(Set<Path> changed) {
+          rereadChanged(changed);
+        }
+
+        public void overflow() {
+          logCatalogInit.warn("ConfigCatalogInitializion catalog watch events were lost, checking all catalogs");
+          reread(ReadMode.check, false);
+        }
+      }, true, 1000L * watchDelaySecs);
+    } catch (IOException e) {
+      logCatalogInit.error(ERROR + "ConfigCatalogInitializion cannot watch catalogs", e);
+      return;
+    }
+
+    watcherThread = new Thread(catalogWatcher::processEvents, "ConfigCatalogWatcher");
+    watcherThread.setDaemon(true);
+    watcherThread.start();
+  }
+
+  private void watchDirectory(Path dir, boolean isCatalogScan) {
+    if (catalogWatcher == null)
+      return;
+    try {
+      if (isCatalogScan) {
+        catalogWatcher.registerAll(dir);
+        catalogScanDirs.add(dir.toAbsolutePath().normalize());
+      } else {
+        catalogWatcher.register(dir);
+      }
+    } catch (IOException e) {
+      logCatalogInit.warn("ConfigCatalogInitializion cannot watch directory {}: {}", dir, e.getMessage());
+    }
+  }
+
+  public synchronized void stopWatching() {
+    if (catalogWatcher == null)
+      return;
+    try {
+      catalogWatcher.close();
+    } catch (IOException e) {
+      logCatalogInit.error("catalogWatcher close failed", e);
+    }
+    watcherThread.interrupt();
+    catalogWatcher = null;
+  }
+
+  // called from the watcher thread with catalog files that were created, modified or deleted
+  private void rereadChanged(Set<Path> changed) {
+    Path root = contentRootPath.toPath().toAbsolutePath().normalize();
+    List<String> catalogRelPaths = new ArrayList<>();
+    for (Path path : changed) {
+      Path abs = path.toAbsolutePath().normalize();
+      if (abs.startsWith(root))
+        catalogRelPaths.add(StringUtils.cleanPath(root.relativize(abs).toString()));
+    }
+    Collections.sort(catalogRelPaths); // deterministic
+    if (!catalogRelPaths.isEmpty())
+      rereadCatalogs(catalogRelPaths);
+  }
+
+  /**
+   * Reread just these catalogs, and the catalogs they reference that have changed.
+   * Their dataRoots, tracked datasets and cache entries are replaced; everything else stays as it is.
+   * If a root catalog changed, do a complete check instead, since global services may have changed.
+   *
+   * @param catalogRelPaths catalog paths relative to the content root
+   */
+  public synchronized void rereadCatalogs(List<String> catalogRelPaths) {
+    if (dataRootPathMatcher == null)
+      return; // not initialized yet
+
+    for (String catalogRelPath : catalogRelPaths) {
+      if (ccc.isRoot(catalogRelPath)) {
+        logCatalogInit.info("ConfigCatalogInitializion root catalog {} changed", catalogRelPath);
+        reread(ReadMode.check, false);
+        return;
+      }
+    }
+
+    readNow = System.currentTimeMillis();
+    catPathMap = new HashSet<>();
+    fcNameMap = new HashMap<>();
+    rereadCatIds = new HashMap<>();
+    catalogTracker = new CatalogTracker(trackerDir, false, numberCatalogs, nextCatId);
+
+    int count = 0;
+    for (String catalogRelPath : catalogRelPaths) {
+      File catalogFile = new File(this.contentRootPath, catalogRelPath);
+      if (catalogTracker.get(catalogRelPath) == null && !isInCatalogScan(catalogFile))
+        continue; // not one of ours
+
+      List<DataRootExt> oldRoots = dataRootPathMatcher.getDataRootsForCatalog(catalogRelPath);
+      ccc.invalidate(catalogRelPath);
+      for (DataRootExt old : oldRoots) {
+        if (old.getType() == DataRoot.Type.featureCollection && fcCache != null)
+          fcCache.invalidate(old.getName());
+      }
+
+      try {
+        logCatalogInit.info("ConfigCatalogInitializion catalog {} changed", catalogRelPath);
+        checkCatalogToRead(ReadMode.check, catalogRelPath, false, 0); // lastRead = 0 forces read
+        count++;
+      } catch (Throwable e) {
+        logCatalogInit.error(ERROR + "rereading catalog " + catalogRelPath + "; " + e.getMessage(), e);
+      }
+
+      // dataRoots that werent put back are no longer in the catalog
+      for (DataRootExt old : oldRoots) {
+        DataRootExt current = dataRootPathMatcher.get(old.getPath());
+        if (current == old)
+          dataRootPathMatcher.remove(old.getPath());
+        else if (current != null)
+          current.addHits(old.getHits());
+      }
+    }
+
+    // the changed catalogs, and the ones they reference that also changed, were read again under a new catId
+    for (Map.Entry<String, Long> entry : rereadCatIds.entrySet()) {
+      String catalogRelPath = entry.getKey();
+      CatalogExt ext = catalogTracker.get(catalogRelPath);
+      forgetDatasets(entry.getValue(), (ext == null) ? -1 : ext.getCatId());
+      if (ccc != null)
+        ccc.invalidate(catalogRelPath);
+      if (catalogManager != null)
+        catalogManager.invalidateCatalogResponses(catalogRelPath);
+    }
+
+    numberCatalogs = catalogTracker.size();
+    nextCatId = catalogTracker.getNextCatId();
+    if (prefs != null) {
+      prefs.putLong("nextCatId", nextCatId);
+      prefs.putInt("numberCatalogs", numberCatalogs);
+    }
+    try {
+      datasetTracker.save();
+      catalogTracker.save();
+      dataRootTracker.save();
+    } catch (IOException e) {
+      logCatalogInit.error("datasetTracker.save() failed", e);
+    }
+
+    logCatalogInit.info("ConfigCatalogInitializion reread {} changed catalogs took={} msecs", count,
+        System.currentTimeMillis() - readNow);
+    catPathMap = null;
+    fcNameMap = null;
+    rereadCatIds = null;
+    catalogTracker = null;
+  }
+
+  // stop tracking the datasets of an old version of a catalog, and drop what is cached for them and for the
+  // datasets of its new version (-1 if none), whose NcML may have changed
+  private void forgetDatasets(long oldCatId, long newCatId) {
+    Set<String> paths = new HashSet<>(datasetTracker.removeDatasets(oldCatId));
+    if (newCatId >= 0)
+      paths.addAll(datasetTracker.findDatasets(newCatId));
+    for (String path : paths)
+      GuardedDatasetCacheAndClone.invalidate(path);
+  }
+
+  private boolean isInCatalogScan(File catalogFile) {
+    Path path = catalogFile.toPath().toAbsolutePath().normalize();
+    for (Path dir : catalogScanDirs) {
+      if (path.startsWith(dir))
+        return true;
+    }
+    return false;
+  }
+
   ///////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
   public void makeDebugActions() {
@@ -594,12 +937,18 @@ public class ConfigCatalogInitialization {
     Stats stat2;
     long start = System.currentTimeMillis();
     double took;
+    Map<String, Long> phases = new LinkedHashMap<>(); // msecs
 
     public StatCallback(ReadMode readMode) {
       this.readMode = readMode;
       stat2 = new Stats();
     }
 
+    @Override
+    public void phase(String name, long msecs) {
+      phases.put(name, msecs);
+    }
+
     @Override
     public void finish() {
       took = (System.currentTimeMillis() - start) / 1000.0;
@@ -673,6 +1022,8 @@ public class ConfigCatalogInitialization {
       Formatter f = new Formatter();
       f.format("ConfigCatalogInitialization started %s took %f secs using readMode=%s%n", CalendarDate.of(start), took,
           readMode);
+      for (Map.Entry<String, Long> phase : phases.entrySet())
+        f.format("  phase %s took %d msecs%n", phase.getKey(), phase.getValue());
       return stat2.show(f);
     }
   }
@@ -697,6 +1048,7 @@ public class ConfigCatalogInitialization {
     this.callback = callback;
     this.maxDatasetsProcess = maxDatasetsProcess;
     this.isDebugMode = true;
+    this.ccc = new ConfigCatalogCache(contentRootPath.getPath() + "/", 100);
 
     File trackerFile = new File(this.trackerDir);
     if (!trackerFile.exists()) {
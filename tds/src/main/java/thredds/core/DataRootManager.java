@@ -50,7 +50,8 @@ public class DataRootManager implements InitializingBean {
   private TdsContext tdsContext;
 
   // injected by catalogInitializer, when catalogs are reread, so cant be spring managed
-  private DataRootPathMatcher dataRootPathMatcher;
+  // volatile so that a new matcher can be swapped in without locking the request path
+  private volatile DataRootPathMatcher dataRootPathMatcher;
 
   @Autowired
   private DebugCommands debugCommands;
@@ -77,10 +78,14 @@ public class DataRootManager implements InitializingBean {
     startupLog.info("DataRootManager:" + AliasTranslator.size() + " aliases set ");
   }
 
-  public synchronized void setDataRootPathMatcher(DataRootPathMatcher dataRootPathMatcher) {
+  public void setDataRootPathMatcher(DataRootPathMatcher dataRootPathMatcher) {
     this.dataRootPathMatcher = dataRootPathMatcher;
   }
 
+  public DataRootPathMatcher getDataRootPathMatcher() {
+    return dataRootPathMatcher;
+  }
+
   ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
   static public class DataRootMatch {
@@ -135,13 +140,13 @@ public class DataRootManager implements InitializingBean {
     return match;
   }
 
-  private synchronized DataRoot findDataRoot(String spath) {
+  private DataRoot findDataRoot(String spath) {
     if (spath == null)
       return null;
     if (spath.startsWith("/"))
       spath = spath.substring(1);
 
-    // LOOK could it be safe to swap dataRootPathMatcher without synchronizing?
+    // the matcher is replaced as a whole on reread, and its index is immutable, so no locking is needed
     return dataRootPathMatcher.findDataRoot(spath);
   }
 
@@ -42,11 +42,13 @@ import ucar.nc2.util.Optional;
 import ucar.nc2.util.cache.FileFactory;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Formatter;
+import java.util.Locale;
 
 /**
  * Provides an API to obtain the various Dataset objects, given the request Path.
@@ -124,6 +126,39 @@ public class DatasetManager implements InitializingBean {
     return location != null ? (location.startsWith("cdms3:") || location.startsWith("s3:")) : false;
   }
 
+  /**
+   * Is the dataset read as it is from one file on disk, so that the file's last modified time tells when it changes.
+   * Not if it is NcML, in a catalog, a datasetScan or a file, which can aggregate or change other files without
+   * its own time changing; or a feature collection, or possibly from a pluggable DatasetSource.
+   */
+  public boolean isPlainFile(String reqPath) {
+    if (reqPath == null || !datasetSources.isEmpty())
+      return false;
+    if (reqPath.startsWith("/"))
+      reqPath = reqPath.substring(1);
+    if (datasetTracker.findNcml(reqPath) != null)
+      return false;
+
+    DataRootMatch match = dataRootManager.findDataRootMatch(reqPath);
+    if (match == null || match.dataRoot.getFeatureCollection() != null || hasDatasetScanNcml(match))
+      return false;
+    return isPlainFileLocation(dataRootManager.getLocationFromRequestPath(reqPath));
+  }
+
+  /**
+   * Is this location a file on disk that is not NcML.
+   */
+  public static boolean isPlainFileLocation(String location) {
+    if (location == null || isLocationObjectStore(location))
+      return false;
+    String lower = location.toLowerCase(Locale.ROOT);
+    if (lower.endsWith(".ncml") || lower.endsWith(".xml"))
+      return false;
+    if (location.startsWith("file:"))
+      location = location.substring(5);
+    return new File(location).isFile();
+  }
+
   ///////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
 
@@ -96,6 +96,10 @@ public class TdsRequestedDataset {
     return (file == null) ? -1 : file.getLastModified();
   }
 
+  public static boolean isPlainFile(String reqPath) {
+    return datasetManager.isPlainFile(reqPath);
+  }
+
   public static File getFile(String reqPath) {
     String location = getLocationFromRequestPath(reqPath);
     return (location == null) ? null : new File(location);
@@ -79,6 +79,10 @@ public class FeatureCollectionCache implements InitializingBean {
     cache.invalidateAll();
   }
 
+  public void invalidate(String collectionName) {
+    cache.invalidate(collectionName);
+  }
+
   public InvDatasetFeatureCollection get(final FeatureCollectionRef fcr) throws IOException {
     try {
       return cache.get(fcr.getCollectionName(), new Callable<InvDatasetFeatureCollection>() {
@@ -19,6 +19,7 @@ import org.springframework.web.servlet.HandlerExceptionResolver;
 import org.springframework.web.servlet.ModelAndView;
 import thredds.server.exception.MethodNotImplementedException;
 import thredds.server.exception.RequestTooLargeException;
+import thredds.server.exception.ServiceBusyException;
 import thredds.server.exception.ServiceNotAllowed;
 import thredds.server.ncss.exception.NcssException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -70,6 +71,17 @@ public class TdsErrorHandling implements HandlerExceptionResolver {
         HttpStatus.FORBIDDEN);
   }
 
+  @ExceptionHandler(ServiceBusyException.class)
+  public ResponseEntity<String> handle(ServiceBusyException ex) {
+    logger.info("TDS Error: {}", ex.getMessage());
+
+    HttpHeaders responseHeaders = new HttpHeaders();
+    responseHeaders.setContentType(MediaType.TEXT_PLAIN);
+    responseHeaders.set(HttpHeaders.RETRY_AFTER, Integer.toString(ex.getRetryAfter()));
+    return new ResponseEntity<>("Service Busy: " + htmlEscape(ex.getMessage()), responseHeaders,
+        HttpStatus.SERVICE_UNAVAILABLE);
+  }
+
   @ExceptionHandler(MethodNotImplementedException.class)
   public ResponseEntity<String> handle(MethodNotImplementedException ex) {
     logger.warn("TDS Error", ex);
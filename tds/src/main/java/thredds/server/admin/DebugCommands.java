@@ -10,7 +10,10 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import thredds.featurecollection.cache.GridInventoryCacheChronicle;
 import thredds.server.config.TdsContext;
+import thredds.server.ncss.controller.DsgInventoryCache;
+import thredds.server.opendap.GuardedDatasetCacheAndClone;
 import thredds.server.wms.ThreddsWmsServlet;
+import thredds.servlet.AdmissionControl;
 import thredds.servlet.ServletUtil;
 import ucar.nc2.dataset.NetcdfDataset;
 import java.io.ByteArrayOutputStream;
@@ -149,10 +152,14 @@ public class DebugCommands {
 
         f.format("%n%n");
         GridInventoryCacheChronicle.showCache(f);
+        DsgInventoryCache.showCache(f);
 
         f.format("%n%n");
         ThreddsWmsServlet.showCache(f);
 
+        f.format("%n%n");
+        GuardedDatasetCacheAndClone.showCache(f);
+
         e.pw.flush();
       }
     };
@@ -161,6 +168,7 @@ public class DebugCommands {
     act = new Action("clearCaches", "Clear All File Object Caches") {
       public void doAction(Event e) {
         ThreddsWmsServlet.resetCache();
+        GuardedDatasetCacheAndClone.resetCache();
         NetcdfDataset.getNetcdfFileCache().clearCache(false);
         NetcdfDatasets.getNetcdfFileCache().clearCache(false);
         RandomAccessFile.getGlobalFileCache().clearCache(false);
@@ -283,6 +291,13 @@ public class DebugCommands {
     };
     debugHandler.addAction(act);
 
+    act = new Action("showAdmission", "Show service admission control") {
+      public void doAction(Event e) {
+        AdmissionControl.showStatus(new Formatter(e.pw));
+      }
+    };
+    debugHandler.addAction(act);
+
     act = new Action("showRuntime", "Show Runtime info") {
       public void doAction(Event e) {
         Runtime runt = Runtime.getRuntime();
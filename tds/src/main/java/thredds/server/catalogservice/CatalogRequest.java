@@ -6,6 +6,8 @@ package thredds.server.catalogservice;
 
 public class CatalogRequest {
   String dataset;
+  int offset; // paging of datasetScan directories
+  int limit;
 
   public String getDataset() {
     return dataset;
@@ -15,4 +17,20 @@ public class CatalogRequest {
     this.dataset = dataset;
   }
 
+  public int getOffset() {
+    return offset;
+  }
+
+  public void setOffset(int offset) {
+    this.offset = offset;
+  }
+
+  public int getLimit() {
+    return limit;
+  }
+
+  public void setLimit(int limit) {
+    this.limit = limit;
+  }
+
 }
@@ -8,6 +8,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.servlet.ModelAndView;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -15,7 +16,9 @@ import thredds.client.catalog.Catalog;
 import thredds.client.catalog.Dataset;
 import thredds.core.CatalogManager;
 import thredds.core.TdsRequestedDataset;
+import thredds.util.ContentType;
 import java.io.FileNotFoundException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
@@ -52,13 +55,29 @@ public class CatalogServiceController {
     String baseUriString = request.getRequestURL().toString();
     try {
       baseUri = new URI(baseUriString);
-      catalog = catalogManager.getCatalog(catalogPath, baseUri);
-
     } catch (URISyntaxException e) {
       String msg = "Bad URI syntax [" + baseUriString + "]: " + e.getMessage();
       throw new URISyntaxException(msg, e.getReason());
     }
 
+    // static catalogs are serialized once, and revalidated with ETag / Last-Modified
+    // the html dataset view needs the whole catalog, not the subset
+    String subsetId = isHtml ? null : params.dataset;
+    CatalogManager.CatalogResponse cached = catalogManager.getStaticCatalogResponse(catalogPath, baseUri, subsetId);
+    if (cached != null) {
+      String etag = isHtml ? cached.getHtmlETag() : cached.getETag();
+      if (new ServletWebRequest(request, response).checkNotModified(etag, cached.getLastModified()))
+        return null; // 304
+
+      if (!isHtml) {
+        writeCachedXml(request, response, cached);
+        return null;
+      }
+      return handleHTMLRequest(request, response, cached.getCatalog(), params);
+    }
+
+    catalog = catalogManager.getCatalog(catalogPath, baseUri, params.offset, params.limit);
+
     // no catalog found
     if (catalog == null)
       throw new FileNotFoundException(request.getRequestURI());
@@ -86,6 +105,18 @@ public class CatalogServiceController {
     }
   }
 
+  private void writeCachedXml(HttpServletRequest request, HttpServletResponse response,
+      CatalogManager.CatalogResponse cached) throws Exception {
+    byte[] bytes = cached.getBytes();
+    response.setContentType(ContentType.xml.getContentHeader());
+    response.setContentLength(bytes.length);
+    if (!request.getMethod().equals("HEAD")) {
+      try (OutputStream os = response.getOutputStream()) {
+        os.write(bytes);
+      }
+    }
+  }
+
   protected ModelAndView handleHTMLRequest(HttpServletRequest request, HttpServletResponse response, Catalog catalog,
       CatalogRequest params) throws Exception {
     if (params.dataset != null) {
@@ -39,6 +39,8 @@ import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.StringTokenizer;
 
 /**
@@ -209,7 +211,6 @@ public class CdmRemoteController {
 
       long size = 0;
       // WritableByteChannel wbc = Channels.newChannel(out);
-      NcStreamWriter ncWriter = new NcStreamWriter(ncfile, ServletUtil.getRequestBase(request));
       String query;
       if (qb.getVar() != null)
         query = qb.getVar();
@@ -222,12 +223,23 @@ public class CdmRemoteController {
       }
 
       // query = EscapeStrings.unescapeURLQuery(query);
+      List<ParsedSectionSpec> sections = new ArrayList<>();
       StringTokenizer stoke = new StringTokenizer(query, ";"); // need UTF/%decode
-      while (stoke.hasMoreTokens()) {
-        ParsedSectionSpec cer = ParsedSectionSpec.parseVariableSection(ncfile, stoke.nextToken());
-        // size += ncWriter.sendData(cer.v, cer.section, out, qb.getCompression());
-        size += ncWriter.sendData2(cer.v, cer.section, out, qb.getCompression());
-        // size += ncWriter.sendData3(cer.v, cer.section, out, qb.getCompression());
+      while (stoke.hasMoreTokens())
+        sections.add(ParsedSectionSpec.parseVariableSection(ncfile, stoke.nextToken()));
+
+      // several variables may be read at once, each from its own NetcdfFile
+      CdmRemoteDataWriter dataWriter = CdmRemoteDataWriter.getDefault();
+      if (dataWriter != null && sections.size() > 1) {
+        size = dataWriter.sendData(ncfile, () -> TdsRequestedDataset.getNetcdfFile(request, response, datasetPath),
+            ServletUtil.getRequestBase(request), sections, out, qb.getCompression());
+      } else {
+        NcStreamWriter ncWriter = new NcStreamWriter(ncfile, ServletUtil.getRequestBase(request));
+        for (ParsedSectionSpec cer : sections) {
+          // size += ncWriter.sendData(cer.v, cer.section, out, qb.getCompression());
+          size += ncWriter.sendData2(cer.v, cer.section, out, qb.getCompression());
+          // size += ncWriter.sendData3(cer.v, cer.section, out, qb.getCompression());
+        }
       }
       out.flush();
 
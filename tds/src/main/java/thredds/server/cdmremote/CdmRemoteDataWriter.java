@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package thredds.server.cdmremote;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.ParsedSectionSpec;
+import ucar.nc2.Variable;
+import ucar.nc2.stream.NcStreamCompression;
+import ucar.nc2.stream.NcStreamWriter;
+
+/**
+ * Send the data of several variables of a cdmremote request, reading (and compressing) them concurrently,
+ * and writing the ncstream messages in request order.
+ * <p/>
+ * A NetcdfFile is not thread safe, so each reader thread uses its own NetcdfFile of the dataset, usually another
+ * instance from the file cache. Sections are read into memory ahead of writing only while their total size is at
+ * most maxReadAhead for the request, and while the budget shared by all requests has room for them; otherwise the
+ * request waits for what it has in flight, or writes the next section directly, as when reading sequentially.
+ *
+ * @since 10/16/2026
+ */
+public class CdmRemoteDataWriter {
+  private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(CdmRemoteDataWriter.class);
+
+  public static final int DEFAULT_CONCURRENCY = 1;
+  public static final long DEFAULT_MAX_READ_AHEAD = 64 * 1000 * 1000;
+  public static final int DEFAULT_THREADS = 16;
+  public static final long DEFAULT_MAX_BUFFERED = 256L * 1000 * 1000;
+  static final int BUDGET_UNIT = 1000; // bytes per permit of the shared budget
+
+  /** Opens another NetcdfFile of the requested dataset. */
+  interface FileOpener {
+    NetcdfFile open() throws IOException;
+  }
+
+  private static volatile CdmRemoteDataWriter defaultWriter = null; // null = read sequentially
+  private static ExecutorService defaultExecutor;
+
+  /**
+   * Set how cdmremote data requests are read. Called from TdsInit.
+   *
+   * @param concurrency variables read at once per request; 1 or less to read sequentially
+   * @param maxReadAhead maximum bytes read ahead per request
+   * @param nthreads threads reading variables, shared by all requests
+   * @param maxBuffered maximum bytes read ahead, over all requests
+   */
+  public static synchronized void setDefault(int concurrency, long maxReadAhead, int nthreads, long maxBuffered) {
+    shutdown();
+    if (concurrency <= 1 || maxReadAhead <= 0 || nthreads <= 0 || maxBuffered < BUDGET_UNIT)
+      return;
+    AtomicInteger count = new AtomicInteger();
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(nthreads, nthreads, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), r -> {
+          Thread t = new Thread(r, "CdmRemoteDataWriter-" + count.incrementAndGet());
+          t.setDaemon(true);
+          return t;
+        });
+    pool.allowCoreThreadTimeOut(true);
+    defaultExecutor = pool;
+    int npermits = (int) Math.min(Integer.MAX_VALUE, maxBuffered / BUDGET_UNIT);
+    defaultWriter = new CdmRemoteDataWriter(defaultExecutor, concurrency, maxReadAhead, new Semaphore(npermits));
+    log.info("CdmRemoteDataWriter: concurrency={} maxReadAhead={} threads={} maxBuffered={}", concurrency,
+        maxReadAhead, nthreads, maxBuffered);
+  }
+
+  /** @return the configured writer, or null to read sequentially */
+  static CdmRemoteDataWriter getDefault() {
+    return defaultWriter;
+  }
+
+  public static synchronized void shutdown() {
+    defaultWriter = null;
+    if (defaultExecutor != null) {
+      defaultExecutor.shutdownNow();
+      defaultExecutor = null;
+    }
+  }
+
+  ///////////////////////////////////////////////////////////////////////
+
+  private final ExecutorService executor;
+  private final int concurrency;
+  private final long maxReadAhead;
+  private final Semaphore budget; // a permit for each BUDGET_UNIT bytes read ahead, over all requests; null = no limit
+
+  CdmRemoteDataWriter(ExecutorService executor, int concurrency, long maxReadAhead) {
+    this(executor, concurrency, maxReadAhead, null);
+  }
+
+  /**
+   * @param executor reads the sections
+   * @param concurrency sections read at once per request
+   * @param maxReadAhead maximum bytes read ahead per request
+   * @param budget a permit for each BUDGET_UNIT bytes read ahead, shared with other writers; null for no limit
+   */
+  CdmRemoteDataWriter(ExecutorService executor, int concurrency, long maxReadAhead, Semaphore budget) {
+    this.executor = executor;
+    this.concurrency = Math.max(1, concurrency);
+    this.maxReadAhead = maxReadAhead;
+    this.budget = budget;
+  }
+
+  /**
+   * Send the data of each section, in order.
+   *
+   * @param ncfile the requested dataset
+   * @param opener opens more NetcdfFiles of the dataset, for the other reader threads
+   * @param location the request base, passed to NcStreamWriter
+   * @param sections parsed against ncfile
+   * @return number of bytes sent
+   */
+  long sendData(NetcdfFile ncfile, FileOpener opener, String location, List<ParsedSectionSpec> sections,
+      OutputStream out, NcStreamCompression compress) throws IOException, InvalidRangeException {
+    Reader primary = new Reader(ncfile, new NcStreamWriter(ncfile, location));
+    int nreaders = Math.min(concurrency, sections.size());
+    BlockingQueue<Reader> readers = new ArrayBlockingQueue<>(nreaders);
+    readers.add(primary);
+
+    List<NetcdfFile> opened = new ArrayList<>();
+    Deque<Pending> inFlight = new ArrayDeque<>();
+    try {
+      while (readers.size() < nreaders) {
+        NetcdfFile other = opener.open();
+        if (other == null)
+          break;
+        opened.add(other);
+        readers.add(new Reader(other, new NcStreamWriter(other, location)));
+      }
+      nreaders = readers.size();
+
+      long size = 0;
+      long buffered = 0; // estimated bytes of the sections in flight
+      int next = 0;
+      for (int done = 0; done < sections.size(); done++) {
+        while (next < sections.size() && inFlight.size() < nreaders) {
+          ParsedSectionSpec spec = sections.get(next);
+          long estimate = estimateSize(spec);
+          if (estimate > maxReadAhead || (!inFlight.isEmpty() && buffered + estimate > maxReadAhead))
+            break;
+          int permits = permits(estimate);
+          if (budget != null && !budget.tryAcquire(permits))
+            break; // other requests are using the memory: wait for ours, or write directly
+          Pending pending = new Pending(estimate, permits);
+          inFlight.add(pending);
+          pending.future = executor.submit(() -> readSection(readers, spec, compress));
+          buffered += estimate;
+          next++;
+        }
+
+        if (inFlight.isEmpty()) {
+          // too big to hold in memory: nothing else is reading, so write it directly
+          ParsedSectionSpec spec = sections.get(next++);
+          size += primary.writer.sendData2(spec.v, spec.section, out, compress);
+        } else {
+          Pending pending = inFlight.remove();
+          try {
+            byte[] data = get(pending.future);
+            out.write(data);
+            size += data.length;
+          } finally {
+            release(pending);
+          }
+          buffered -= pending.estimate;
+        }
+      }
+      return size;
+
+    } finally {
+      for (Pending pending : inFlight) {
+        if (pending.future != null)
+          pending.future.cancel(true); // only if something failed
+      }
+      awaitReaders(readers, 1 + opened.size());
+      for (Pending pending : inFlight)
+        release(pending);
+      for (NetcdfFile other : opened) {
+        try {
+          other.close();
+        } catch (IOException e) {
+          log.warn("CdmRemoteDataWriter: failed to close {}", other.getLocation(), e);
+        }
+      }
+    }
+  }
+
+  private static int permits(long estimate) {
+    return (int) Math.max(1, Math.min(Integer.MAX_VALUE, (estimate + BUDGET_UNIT - 1) / BUDGET_UNIT));
+  }
+
+  private void release(Pending pending) {
+    if (budget != null && pending.permits > 0) {
+      budget.release(pending.permits);
+      pending.permits = 0;
+    }
+  }
+
+  // uncompressed size of the section
+  private static long estimateSize(ParsedSectionSpec spec) {
+    long n = spec.section.computeSize();
+    if (n < 0 || spec.v.isVariableLength())
+      return Long.MAX_VALUE;
+    return n * spec.v.getElementSize();
+  }
+
+  private static byte[] readSection(BlockingQueue<Reader> readers, ParsedSectionSpec spec, NcStreamCompression compress)
+      throws IOException, InvalidRangeException, InterruptedException {
+    Reader reader = readers.take();
+    try {
+      Variable v = reader.ncfile.findVariable(spec.v.getFullNameEscaped());
+      if (v == null)
+        throw new IOException(
+            "CdmRemoteDataWriter: cannot find " + spec.v.getFullName() + " in " + reader.ncfile.getLocation());
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      reader.writer.sendData2(v, spec.section, bos, compress);
+      return bos.toByteArray();
+    } finally {
+      readers.add(reader);
+    }
+  }
+
+  // wait for reads to give back their NetcdfFile, before it is closed, and maybe used by another request
+  private static void awaitReaders(BlockingQueue<Reader> readers, int n) {
+    try {
+      for (int i = 0; i < n; i++)
+        readers.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static byte[] get(Future<byte[]> future) throws IOException, InvalidRangeException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("CdmRemoteDataWriter: interrupted");
+    } catch (CancellationException e) {
+      throw new InterruptedIOException("CdmRemoteDataWriter: cancelled");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException)
+        throw (IOException) cause;
+      if (cause instanceof InvalidRangeException)
+        throw (InvalidRangeException) cause;
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      throw new IOException(cause);
+    }
+  }
+
+  private static class Reader {
+    final NetcdfFile ncfile;
+    final NcStreamWriter writer;
+
+    Reader(NetcdfFile ncfile, NcStreamWriter writer) {
+      this.ncfile = ncfile;
+      this.writer = writer;
+    }
+  }
+
+  private static class Pending {
+    final long estimate;
+    int permits; // taken from the budget, until the data is written
+    Future<byte[]> future;
+
+    Pending(long estimate, int permits) {
+      this.estimate = estimate;
+      this.permits = permits;
+    }
+  }
+}
@@ -5,6 +5,9 @@
 
 package thredds.server.config;
 
+import dap4.servlet.CDMWrap;
+import dap4.servlet.ChecksumCache;
+import dap4.servlet.DapController;
 import org.slf4j.Logger;
 import org.slf4j.MDC;
 import org.springframework.beans.factory.DisposableBean;
@@ -24,10 +27,15 @@ import thredds.featurecollection.cache.GridInventoryCacheChronicle;
 import thredds.featurecollection.InvDatasetFeatureCollection;
 import thredds.server.catalog.ConfigCatalogCache;
 import thredds.server.catalog.DatasetScan;
+import thredds.server.cdmremote.CdmRemoteDataWriter;
+import thredds.server.ncss.controller.DsgInventoryCache;
 import thredds.server.ncss.controller.NcssDiskCache;
 import thredds.server.ncss.format.FormatsAvailabilityService;
 import thredds.server.ncss.format.SupportedFormat;
+import thredds.server.ncss.view.dsg.station.ParallelStationReader;
 import thredds.server.notebook.JupyterNotebookServiceCache;
+import thredds.servlet.AdmissionControl;
+import thredds.servlet.MFileReadAhead;
 import ucar.nc2.NetcdfFile;
 import ucar.nc2.dataset.NetcdfDataset;
 import ucar.nc2.dataset.NetcdfDatasets;
@@ -267,6 +275,26 @@ public class TdsInit implements ApplicationListener<ContextRefreshedEvent>, Disp
     DatasetScan.setSpecialServices(allowedServices.getStandardService(StandardService.resolver),
         allowedServices.getStandardService(StandardService.httpServer));
     DatasetScan.setAllowedServices(allowedServices);
+    DatasetScan.setListingCache(ThreddsConfig.getInt("DatasetScan.listingCacheMaxFiles", 1000 * 1000),
+        ThreddsConfig.getSeconds("DatasetScan.listingCacheMaxAge", 60));
+    int readAheadConcurrency =
+        ThreddsConfig.getInt("FileServer.objectStoreConcurrency", MFileReadAhead.DEFAULT_CONCURRENCY);
+    long readAheadPartSize = ThreddsConfig.getBytes("FileServer.objectStorePartSize", MFileReadAhead.DEFAULT_PART_SIZE);
+    MFileReadAhead.setDefault(readAheadConcurrency, (int) Math.min(readAheadPartSize, Integer.MAX_VALUE - 8),
+        ThreddsConfig.getInt("FileServer.objectStoreThreads", MFileReadAhead.DEFAULT_THREADS),
+        ThreddsConfig.getBytes("FileServer.objectStoreMaxBuffered", MFileReadAhead.DEFAULT_MAX_BUFFERED));
+    CdmRemoteDataWriter.setDefault(
+        ThreddsConfig.getInt("CdmRemote.readConcurrency", CdmRemoteDataWriter.DEFAULT_CONCURRENCY),
+        ThreddsConfig.getBytes("CdmRemote.maxReadAhead", CdmRemoteDataWriter.DEFAULT_MAX_READ_AHEAD),
+        ThreddsConfig.getInt("CdmRemote.readThreads", CdmRemoteDataWriter.DEFAULT_THREADS),
+        ThreddsConfig.getBytes("CdmRemote.maxBuffered", CdmRemoteDataWriter.DEFAULT_MAX_BUFFERED));
+    DapController.setChecksumCacheSize(ThreddsConfig.getInt("Dap4.checksumCacheSize", ChecksumCache.DEFAULTMAXENTRIES));
+    CDMWrap.setDMRCacheSize(ThreddsConfig.getInt("Dap4.dmrCacheSize", CDMWrap.DEFAULTDMRCACHESIZE));
+    ParallelStationReader.setDefault(
+        ThreddsConfig.getInt("NetcdfSubsetService.stationReadConcurrency", ParallelStationReader.DEFAULT_CONCURRENCY),
+        ThreddsConfig.getInt("NetcdfSubsetService.stationReadAhead", ParallelStationReader.DEFAULT_QUEUE_SIZE),
+        ThreddsConfig.getInt("NetcdfSubsetService.stationReadThreads", ParallelStationReader.DEFAULT_THREADS));
+    AdmissionControl.init();
     allowedServices.makeDebugActions();
 
     /*
@@ -391,6 +419,15 @@ public class TdsInit implements ApplicationListener<ContextRefreshedEvent>, Disp
       startupLog.error("TdsInit: Failed initialize GridDatasetInv cache= {}", fcCache, e);
     }
 
+    int dsgInventoryEntries =
+        ThreddsConfig.getInt("NetcdfSubsetService.inventoryMaxEntries", DsgInventoryCache.DEFAULT_ENTRIES);
+    try {
+      DsgInventoryCache.init(fcCacheDir, dsgInventoryEntries, maxBloatFactor);
+      startupLog.info("TdsInit: DsgInventory cache= {} maxEntries= {}", fcCache, dsgInventoryEntries);
+    } catch (Exception e) {
+      startupLog.error("TdsInit: Failed initialize DsgInventory cache= {}", fcCache, e);
+    }
+
     ///////////////////////////////////////////////
     // Object caching
     int min, max, secs;
@@ -446,6 +483,10 @@ public class TdsInit implements ApplicationListener<ContextRefreshedEvent>, Disp
     configCatalogInitializer.setTrackerDir(trackerDir);
     configCatalogInitializer.setMaxDatasetToTrack(trackerMax);
     configCatalogInitializer.setDatasetTrackerAverageValueSize(datasetTrackerAverageValueSize);
+    configCatalogInitializer.setWatch(ThreddsConfig.getBoolean("ConfigCatalog.watch", false),
+        ThreddsConfig.getSeconds("ConfigCatalog.watchDelay", 2));
+    configCatalogInitializer.setReadThreads(ThreddsConfig.getInt("ConfigCatalog.readThreads", 1));
+    configCatalogInitializer.setWarmUpDataRoots(ThreddsConfig.getInt("ConfigCatalog.warmUpDataRoots", 0));
 
     // Jupyter notebook service cache
     if (allowedServices.isAllowed(StandardService.jupyterNotebook)) {
@@ -487,21 +528,21 @@ public class TdsInit implements ApplicationListener<ContextRefreshedEvent>, Disp
       startupLog.error("TdsInit: Prefs save failed", ioe);
     }
 
+    // dataRoot request counts
+    configCatalogInitializer.saveDataRootTracker();
+
     // background threads
     if (cdmDiskCacheTimer != null)
       cdmDiskCacheTimer.cancel();
     FileCache.shutdown(); // this handles background threads for all instances of FileCache
     DiskCache2.exit(); // this handles background threads for all instances of DiskCache2
     GridInventoryCacheChronicle.shutdown();
+    DsgInventoryCache.shutdown();
     executor.shutdownNow();
-    /*
-     * try {
-     * catalogWatcher.close();
-     * } catch (IOException ioe) {
-     * ioe.printStackTrace();
-     * startupLog.error("catalogWatcher close failed", ioe);
-     * }
-     */
+    MFileReadAhead.shutdown();
+    CdmRemoteDataWriter.shutdown();
+    ParallelStationReader.shutdown();
+    configCatalogInitializer.stopWatching();
 
     // open file caches
     RandomAccessFile.shutdown();
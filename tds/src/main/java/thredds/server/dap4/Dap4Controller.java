@@ -9,6 +9,7 @@ import dap4.core.util.DapContext;
 import dap4.core.util.DapException;
 import dap4.core.util.DapUtil;
 import dap4.dap4lib.DapCodes;
+import dap4.servlet.CDMWrap;
 import dap4.servlet.DapController;
 import dap4.servlet.DapRequest;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,6 +17,7 @@ import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
 import thredds.core.TdsRequestedDataset;
 import thredds.server.config.TdsContext;
+import ucar.nc2.NetcdfFile;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -126,6 +128,21 @@ public class Dap4Controller extends DapController {
     return DapUtil.canonicalpath(path);
   }
 
+  /**
+   * Open through TdsRequestedDataset, so that the file comes from the
+   * shared NetcdfFile cache and access is checked as for other services.
+   */
+  @Override
+  protected CDMWrap openWrap(DapRequest drq, String realpath) throws IOException {
+    String location = drq.getDatasetPath();
+    if (location.startsWith(SERVICEID))
+      location = location.substring(SERVICEID.length());
+    NetcdfFile ncfile = TdsRequestedDataset.getNetcdfFile(drq.getRequest(), drq.getResponse(), location);
+    if (ncfile == null)
+      return null; // error already sent
+    return new CDMWrap().open(ncfile);
+  }
+
 }
 
 
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package thredds.server.exception;
+
+/**
+ * A service has as many requests as it is allowed to run and queue; the client should try again later.
+ * Sent as 503 (Service Unavailable) with a Retry-After header.
+ *
+ * @since 10/16/2026
+ */
+public class ServiceBusyException extends RuntimeException {
+
+  private final int retryAfter;
+
+  /**
+   * @param message say which service
+   * @param retryAfter seconds the client should wait before trying again
+   */
+  public ServiceBusyException(String message, int retryAfter) {
+    super(message);
+    this.retryAfter = retryAfter;
+  }
+
+  /** @return seconds the client should wait before trying again */
+  public int getRetryAfter() {
+    return retryAfter;
+  }
+
+}
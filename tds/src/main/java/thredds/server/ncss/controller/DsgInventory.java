@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package thredds.server.ncss.controller;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import ucar.nc2.ft.DsgFeatureCollection;
+import ucar.nc2.ft.PointFeature;
+import ucar.nc2.ft.PointFeatureCollection;
+import ucar.nc2.ft.StationTimeSeriesFeature;
+import ucar.nc2.ft.StationTimeSeriesFeatureCollection;
+import ucar.nc2.ft.point.StationFeature;
+import ucar.nc2.time.CalendarDate;
+import ucar.nc2.time.CalendarDateRange;
+import ucar.unidata.geoloc.LatLonPoint;
+import ucar.unidata.geoloc.LatLonRect;
+
+/**
+ * What is in a point or station feature collection: its time range and bounding box, and for station collections,
+ * the time range of each station. Found by reading every observation once, and kept by DsgInventoryCache
+ * for each version of the file.
+ *
+ * @since 10/16/2026
+ */
+public class DsgInventory {
+  private static final int VERSION = 1;
+
+  private final long lastModified;
+  private final int nobs;
+  private final long minTime, maxTime; // msecs; minTime > maxTime if there are no observations
+  private final double latMin, latMax, lonMin, lonMax; // NaN if there are no locations
+  private final List<StationInfo> stations; // empty if not a station collection
+  private final Map<String, StationInfo> stationMap = new HashMap<>();
+
+  /** The observations of one station. */
+  public static class StationInfo {
+    public final String name;
+    public final double latitude, longitude;
+    public final int nobs;
+    public final long minTime, maxTime;
+
+    StationInfo(String name, double latitude, double longitude, int nobs, long minTime, long maxTime) {
+      this.name = name;
+      this.latitude = latitude;
+      this.longitude = longitude;
+      this.nobs = nobs;
+      this.minTime = minTime;
+      this.maxTime = maxTime;
+    }
+
+    /** @return true if this station may have observations in range; a null range means all times. */
+    public boolean intersects(@Nullable CalendarDateRange range) {
+      if (nobs == 0)
+        return false;
+      return range == null || (minTime <= range.getEnd().getMillis() && maxTime >= range.getStart().getMillis());
+    }
+  }
+
+  private DsgInventory(long lastModified, int nobs, long minTime, long maxTime, double latMin, double latMax,
+      double lonMin, double lonMax, List<StationInfo> stations) {
+    this.lastModified = lastModified;
+    this.nobs = nobs;
+    this.minTime = minTime;
+    this.maxTime = maxTime;
+    this.latMin = latMin;
+    this.latMax = latMax;
+    this.lonMin = lonMin;
+    this.lonMax = lonMax;
+    this.stations = Collections.unmodifiableList(stations);
+    for (StationInfo s : stations)
+      stationMap.put(s.name, s);
+  }
+
+  /**
+   * Read every observation of the collection.
+   *
+   * @param lastModified of the file the collection was read from
+   * @return null if dsg is not a point or station collection
+   */
+  @Nullable
+  public static DsgInventory make(DsgFeatureCollection dsg, long lastModified) throws IOException {
+    Bounds all = new Bounds();
+    List<StationInfo> stations = new ArrayList<>();
+
+    if (dsg instanceof StationTimeSeriesFeatureCollection) {
+      for (StationTimeSeriesFeature stationFeat : (StationTimeSeriesFeatureCollection) dsg) {
+        Bounds station = new Bounds();
+        for (PointFeature pf : stationFeat)
+          station.addTime(pf.getObservationTimeAsCalendarDate().getMillis());
+        all.addLocation(stationFeat.getLatitude(), stationFeat.getLongitude());
+        all.add(station);
+        stations.add(new StationInfo(stationFeat.getName(), stationFeat.getLatitude(), stationFeat.getLongitude(),
+            station.nobs, station.minTime, station.maxTime));
+      }
+
+    } else if (dsg instanceof PointFeatureCollection) {
+      for (PointFeature pf : (PointFeatureCollection) dsg) {
+        all.addTime(pf.getObservationTimeAsCalendarDate().getMillis());
+        all.addLocation(pf.getLocation().getLatitude(), pf.getLocation().getLongitude());
+      }
+
+    } else {
+      return null;
+    }
+
+    return new DsgInventory(lastModified, all.nobs, all.minTime, all.maxTime, all.latMin, all.latMax, all.lonMin,
+        all.lonMax, stations);
+  }
+
+  private static class Bounds {
+    int nobs;
+    long minTime = Long.MAX_VALUE, maxTime = Long.MIN_VALUE;
+    double latMin = Double.NaN, latMax = Double.NaN, lonMin = Double.NaN, lonMax = Double.NaN;
+
+    void addTime(long time) {
+      nobs++;
+      minTime = Math.min(minTime, time);
+      maxTime = Math.max(maxTime, time);
+    }
+
+    void addLocation(double lat, double lon) {
+      if (Double.isNaN(lat) || Double.isNaN(lon))
+        return;
+      latMin = Double.isNaN(latMin) ? lat : Math.min(latMin, lat);
+      latMax = Double.isNaN(latMax) ? lat : Math.max(latMax, lat);
+      lonMin = Double.isNaN(lonMin) ? lon : Math.min(lonMin, lon);
+      lonMax = Double.isNaN(lonMax) ? lon : Math.max(lonMax, lon);
+    }
+
+    void add(Bounds other) {
+      nobs += other.nobs;
+      minTime = Math.min(minTime, other.minTime);
+      maxTime = Math.max(maxTime, other.maxTime);
+    }
+  }
+
+  public long getLastModified() {
+    return lastModified;
+  }
+
+  public int getNobs() {
+    return nobs;
+  }
+
+  /** @return the range of the observation times, or null if there are no observations */
+  @Nullable
+  public CalendarDateRange getCalendarDateRange() {
+    if (minTime > maxTime)
+      return null;
+    return CalendarDateRange.of(CalendarDate.of(minTime), CalendarDate.of(maxTime));
+  }
+
+  /** @return the bounding box of the observations, or of the stations; null if there are none */
+  @Nullable
+  public LatLonRect getBoundingBox() {
+    if (Double.isNaN(latMin))
+      return null;
+    return new LatLonRect(LatLonPoint.create(latMin, lonMin), LatLonPoint.create(latMax, lonMax));
+  }
+
+  /** @return the stations, in the order of the collection; empty if not a station collection */
+  public List<StationInfo> getStations() {
+    return stations;
+  }
+
+  /** @return the station of this name, or null */
+  @Nullable
+  public StationInfo findStation(String name) {
+    return stationMap.get(name);
+  }
+
+  /**
+   * Leave out the stations that have no observations in range. Stations not in this inventory are kept.
+   *
+   * @param range null means all times
+   */
+  public <T extends StationFeature> List<T> filterStations(List<T> wanted, @Nullable CalendarDateRange range) {
+    List<T> result = new ArrayList<>(wanted.size());
+    for (T station : wanted) {
+      StationInfo info = findStation(station.getName());
+      if (info == null || info.intersects(range))
+        result.add(station);
+    }
+    return result;
+  }
+
+  ////////////////////////////////////////////////////////////////
+
+  byte[] toBytes() throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream(64 + 40 * stations.size());
+    try (DataOutputStream out = new DataOutputStream(bos)) {
+      out.writeInt(VERSION);
+      out.writeLong(lastModified);
+      out.writeInt(nobs);
+      out.writeLong(minTime);
+      out.writeLong(maxTime);
+      out.writeDouble(latMin);
+      out.writeDouble(latMax);
+      out.writeDouble(lonMin);
+      out.writeDouble(lonMax);
+      out.writeInt(stations.size());
+      for (StationInfo s : stations) {
+        out.writeUTF(s.name);
+        out.writeDouble(s.latitude);
+        out.writeDouble(s.longitude);
+        out.writeInt(s.nobs);
+        out.writeLong(s.minTime);
+        out.writeLong(s.maxTime);
+      }
+    }
+    return bos.toByteArray();
+  }
+
+  /** @return null if written by a different version */
+  @Nullable
+  static DsgInventory fromBytes(byte[] bytes) throws IOException {
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+      if (in.readInt() != VERSION)
+        return null;
+      long lastModified = in.readLong();
+      int nobs = in.readInt();
+      long minTime = in.readLong();
+      long maxTime = in.readLong();
+      double latMin = in.readDouble();
+      double latMax = in.readDouble();
+      double lonMin = in.readDouble();
+      double lonMax = in.readDouble();
+      int nstations = in.readInt();
+      List<StationInfo> stations = new ArrayList<>(nstations);
+      for (int i = 0; i < nstations; i++)
+        stations.add(new StationInfo(in.readUTF(), in.readDouble(), in.readDouble(), in.readInt(), in.readLong(),
+            in.readLong()));
+      return new DsgInventory(lastModified, nobs, minTime, maxTime, latMin, latMax, lonMin, lonMax, stations);
+    }
+  }
+}
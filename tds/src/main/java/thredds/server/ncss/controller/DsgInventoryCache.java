@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package thredds.server.ncss.controller;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Formatter;
+import java.util.List;
+import javax.annotation.Nullable;
+import net.openhft.chronicle.map.ChronicleMap;
+import net.openhft.chronicle.map.ChronicleMapBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import thredds.core.DatasetManager;
+import thredds.inventory.MFile;
+import thredds.inventory.MFiles;
+import ucar.nc2.ft.DsgFeatureCollection;
+import ucar.nc2.ft.FeatureDatasetPoint;
+
+/**
+ * Persisted DsgInventory of point and station datasets, keyed by location, using ChronicleMap.
+ * An inventory is made once for each version (last modified time) of the file.
+ * Datasets that are not a single plain file (eg feature collections and NcML, whose files may change without the NcML
+ * changing) are not kept, and their inventory is made each time.
+ *
+ * @since 10/16/2026
+ */
+public class DsgInventoryCache {
+  private static final Logger logger = LoggerFactory.getLogger(DsgInventoryCache.class);
+  private static ChronicleMap<String, byte[]> cache;
+
+  public static final int DEFAULT_ENTRIES = 1000;
+  public static final int DEFAULT_AVERAGE_VALUE_SIZE = 16384;
+
+  /**
+   * Initialize the inventory cache
+   *
+   * @param cacheDir Path to the cache directory. This location will be created if it does not exist.
+   * @param maxEntries number of entries in the cache, at most; 0 to turn off the cache
+   * @param maxBloatFactor max number of times the cache size can increase
+   * @throws IOException
+   */
+  public static synchronized void init(Path cacheDir, int maxEntries, int maxBloatFactor) throws IOException {
+    if (cache != null || maxEntries <= 0)
+      return;
+    if (!Files.exists(cacheDir)) {
+      logger.info("Creating cache directory at {}", cacheDir.toString());
+      Files.createDirectories(cacheDir);
+    }
+    Path dbFile = cacheDir.resolve("DsgInventory.dat");
+    logger.info("DSG inventory cache at {} with maxEntries={}, maxBloatFactor={}", dbFile, maxEntries, maxBloatFactor);
+    cache = ChronicleMapBuilder.of(String.class, byte[].class).name("DsgInventory")
+        .averageKey("/data/project/analysis/file.ext").averageValueSize(DEFAULT_AVERAGE_VALUE_SIZE)
+        .entries(maxEntries).maxBloatFactor(maxBloatFactor).createOrRecoverPersistedTo(dbFile.toFile());
+  }
+
+  /**
+   * Get the inventory of the dataset's collection, making it if it's not already kept.
+   *
+   * @return null if the collection is not a point or station collection
+   */
+  @Nullable
+  public static DsgInventory get(FeatureDatasetPoint fdp) throws IOException {
+    DsgFeatureCollection dsg = getCollection(fdp);
+    if (dsg == null)
+      return null;
+    long lastModified = getFileVersion(fdp);
+    DsgInventory inv = getKept(fdp.getLocation(), lastModified);
+    if (inv != null)
+      return inv;
+
+    long start = System.currentTimeMillis();
+    inv = DsgInventory.make(dsg, lastModified);
+    logger.debug("made DsgInventory of {} in {} msecs", fdp.getLocation(), System.currentTimeMillis() - start);
+    if (inv != null && lastModified > 0 && cache != null) {
+      try {
+        cache.put(fdp.getLocation(), inv.toBytes());
+      } catch (RuntimeException e) { // eg too big for the map
+        logger.warn("Could not keep DsgInventory of {}", fdp.getLocation(), e);
+      }
+    }
+    return inv;
+  }
+
+  /**
+   * Get the inventory of the dataset's collection, only if it's already kept.
+   */
+  @Nullable
+  public static DsgInventory getIfPresent(FeatureDatasetPoint fdp) {
+    if (cache == null || getCollection(fdp) == null)
+      return null;
+    try {
+      return getKept(fdp.getLocation(), getFileVersion(fdp));
+    } catch (IOException e) {
+      logger.warn("Could not read DsgInventory of {}", fdp.getLocation(), e);
+      return null;
+    }
+  }
+
+  @Nullable
+  private static DsgInventory getKept(String location, long lastModified) throws IOException {
+    if (cache == null || lastModified <= 0)
+      return null;
+    byte[] bytes = cache.getOrDefault(location, null);
+    if (bytes == null)
+      return null;
+    DsgInventory inv = DsgInventory.fromBytes(bytes);
+    if (inv != null && inv.getLastModified() == lastModified)
+      return inv;
+    logger.debug("DsgInventory out of date for {}. Removing cache entry.", location);
+    cache.remove(location);
+    return null;
+  }
+
+  @Nullable
+  private static DsgFeatureCollection getCollection(FeatureDatasetPoint fdp) {
+    List<DsgFeatureCollection> dsgFeatCols = fdp.getPointFeatureCollectionList();
+    return dsgFeatCols.size() == 1 ? dsgFeatCols.get(0) : null;
+  }
+
+  /**
+   * The version of the file that the dataset was read from, if it is read as it is from that one file.
+   *
+   * @return last modified time of the file, or -1 if the dataset is not a plain file, eg NcML
+   */
+  public static long getFileVersion(FeatureDatasetPoint fdp) {
+    return DatasetManager.isPlainFileLocation(fdp.getLocation()) ? getLastModified(fdp) : -1;
+  }
+
+  /**
+   * The last modified time of the dataset's location.
+   *
+   * @return last modified time of the file, or -1 if the dataset is not a file
+   */
+  public static long getLastModified(FeatureDatasetPoint fdp) {
+    String location = fdp.getLocation();
+    if (location == null)
+      return -1;
+    try {
+      MFile mfile = MFiles.create(location);
+      return (mfile == null) ? -1 : mfile.getLastModified();
+    } catch (RuntimeException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Shutdown hook to close the cache.
+   */
+  public static synchronized void shutdown() {
+    if (cache != null) {
+      cache.close();
+      cache = null;
+    }
+  }
+
+  /**
+   * Display cache info
+   */
+  public static void showCache(Formatter formatter) {
+    if (cache == null) {
+      formatter.format("%nNCSS DsgInventoryCache: turned off%n");
+    } else {
+      formatter.format("%nNCSS DsgInventoryCache:%n");
+      formatter.format("numberOfEntries=%d, ", cache.longSize());
+      formatter.format("percentageFreeSpace=%d, ", cache.percentageFreeSpace());
+      formatter.format("offHeapMemoryUsed=%d", cache.offHeapMemoryUsed());
+      formatter.format("%n");
+    }
+  }
+}
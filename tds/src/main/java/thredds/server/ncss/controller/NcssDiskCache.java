@@ -8,11 +8,14 @@ package thredds.server.ncss.controller;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.DependsOn;
 import org.springframework.stereotype.Component;
+import thredds.server.admin.DebugCommands;
 import thredds.server.config.TdsContext;
 import thredds.server.config.ThreddsConfig;
 import thredds.servlet.ServletUtil;
 import ucar.nc2.util.DiskCache2;
 import java.io.File;
+import java.io.IOException;
+import java.util.Formatter;
 
 @Component
 @DependsOn("TdsContext")
@@ -21,8 +24,12 @@ public final class NcssDiskCache {
   @Autowired
   private TdsContext tdsContext;
 
+  @Autowired
+  private DebugCommands debugCommands;
+
   private DiskCache2 diskCache;
   private String cachePath;
+  private NcssResultCache resultCache; // null if not enabled
 
   public NcssDiskCache() {}
 
@@ -49,12 +56,45 @@ public final class NcssDiskCache {
     diskCache = new DiskCache2(cachePath, false, maxAgeSecs / 60, scourSecs / 60);
     ServletUtil.logServerStartup.info(
         getClass().getName() + "Ncss.Cache= " + cachePath + " scour = " + scourSecs + " maxAgeSecs = " + maxAgeSecs);
+
+    // finished results are kept in their own directory, so DiskCache2 doesnt scour them
+    long resultCacheMaxSize = ThreddsConfig.getBytes("NetcdfSubsetService.resultCacheMaxSize", 0L);
+    if (resultCacheMaxSize > 0) {
+      String defaultResultPath = new File(tdsContext.getThreddsDirectory(), "/cache/ncssResults/").getPath();
+      String resultPath = ThreddsConfig.get("NetcdfSubsetService.resultCacheDir", defaultResultPath);
+      try {
+        resultCache = new NcssResultCache(new File(resultPath), resultCacheMaxSize);
+        ServletUtil.logServerStartup.info(getClass().getName() + " Ncss.ResultCache= " + resultPath + " maxSize = "
+            + resultCacheMaxSize);
+        makeDebugActions();
+      } catch (IOException e) {
+        ServletUtil.logServerStartup.error("Cant make NCSS result cache " + resultPath, e);
+      }
+    }
+  }
+
+  private void makeDebugActions() {
+    if (debugCommands == null)
+      return;
+    DebugCommands.Category debugHandler = debugCommands.findCategory("Caches");
+    DebugCommands.Action act = new DebugCommands.Action("showNcssResultCache", "Show NCSS result cache") {
+      public void doAction(DebugCommands.Event e) {
+        resultCache.showCache(new Formatter(e.pw));
+        e.pw.flush();
+      }
+    };
+    debugHandler.addAction(act);
   }
 
   public DiskCache2 getDiskCache() {
     return this.diskCache;
   }
 
+  /** The cache of finished results, or null if not enabled. */
+  public NcssResultCache getResultCache() {
+    return this.resultCache;
+  }
+
   public String getServletCachePath() {
     String contextPath = (tdsContext == null) ? "" : tdsContext.getContextPath(); // for unit tests until i can figure
                                                                                   // out how to get a mock TdsContext
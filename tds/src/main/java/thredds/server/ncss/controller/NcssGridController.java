@@ -8,6 +8,8 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.jdom2.Document;
 import org.jdom2.Element;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Controller;
@@ -28,6 +30,9 @@ import thredds.server.ncss.params.NcssGridParamsBean;
 import thredds.server.ncss.params.NcssParamsBean;
 import thredds.server.ncss.view.dsg.DsgSubsetWriter;
 import thredds.server.ncss.view.dsg.DsgSubsetWriterFactory;
+import thredds.server.ncss.view.grid.CFGridStreamWriter;
+import thredds.server.ncss.view.grid.Netcdf3StreamWriter;
+import thredds.servlet.AdmissionControl;
 import thredds.util.Constants;
 import thredds.util.ContentType;
 import ucar.ma2.InvalidRangeException;
@@ -56,6 +61,8 @@ import ucar.nc2.write.NetcdfFormatWriter;
 @Controller
 @RequestMapping("/ncss/grid")
 public class NcssGridController extends AbstractNcssController {
+  private static final Logger logger = LoggerFactory.getLogger(NcssGridController.class);
+
   // Compression rate used to estimate the filesize of netcdf4 compressed files
   private static final short ESTIMATED_COMPRESSION_RATE = 4;
   // pattern for valid WKT lat lon point
@@ -97,13 +104,13 @@ public class NcssGridController extends AbstractNcssController {
       if (params.hasLatLonPoint()) {
         handleRequestGridAsPoint(res, params, datasetPath, gcd);
       } else {
-        handleRequestGrid(res, params, datasetPath, gcd);
+        handleRequestGrid(req, res, params, datasetPath, gcd);
       }
     }
   }
 
-  private void handleRequestGrid(HttpServletResponse res, NcssGridParamsBean params, String datasetPath,
-      CoverageCollection gcd) throws IOException, NcssException, InvalidRangeException {
+  private void handleRequestGrid(HttpServletRequest req, HttpServletResponse res, NcssGridParamsBean params,
+      String datasetPath, CoverageCollection gcd) throws Exception {
     // Supported formats are netcdf3 (default) and netcdf4ext/ netcdf4 (turned on in TdsInit if C library is present)
     SupportedFormat sf = SupportedOperation.GRID_REQUEST.getSupportedFormat(params.getAccept());
     NetcdfFileFormat version = getNetcdfFileFormat(sf);
@@ -114,9 +121,89 @@ public class NcssGridController extends AbstractNcssController {
           + "Grid requests with vertCoord must have variables with same vertical levels.");
     }
 
+    SubsetParams subset = params.makeSubset(gcd);
+    long maxFileDownloadSize = ThreddsConfig.getBytes("NetcdfSubsetService.maxFileDownloadSize", -1L);
+
+    // repeated requests are answered from the result cache, if enabled
+    NcssResultCache resultCache = ncssDiskCache.getResultCache();
+    String resultKey = (resultCache == null) ? null : makeResultKey(datasetPath, params, subset);
+    if (resultKey != null) {
+      try (NcssResultCache.Result result = resultCache.get(resultKey, sf.getFileSuffix(),
+          file -> makeCFNetcdfFile(gcd, file.getPath(), params, subset, version, maxFileDownloadSize))) {
+        sendFile(req, res, datasetPath, sf, result.getFile());
+      }
+      return;
+    }
+
+    // netcdf-3 can be laid out in advance and streamed, without a file on disk
+    boolean streamGrid = ThreddsConfig.getBoolean("NetcdfSubsetService.streamNetcdf3Grid", true);
+    if (version == NetcdfFileFormat.NETCDF3 && streamGrid) {
+      Netcdf3StreamWriter stream = CFGridStreamWriter.create(gcd, params.getVar(), subset, params.isAddLatLon());
+      if (stream != null) {
+        long size = stream.getLength();
+        if (maxFileDownloadSize > 0 && size > maxFileDownloadSize)
+          throw new RequestTooLargeException(size, maxFileDownloadSize);
+        AdmissionControl.reweigh(req, size); // about the size of the file, if it's written instead
+
+        if (isValid(stream, datasetPath)) { // otherwise write the file
+          // once the length is sent, a failure can only cut the response short, which the client sees as an error
+          setResponseHeaders(res, makeHttpHeaders(datasetPath, sf, Long.toString(size)));
+          stream.write(res.getOutputStream());
+          res.flushBuffer();
+          res.getOutputStream().close();
+          res.setStatus(HttpServletResponse.SC_OK);
+          return;
+        }
+      }
+    }
+
     String responseFile = getResponseFileName();
-    File netcdfResult = makeCFNetcdfFile(gcd, responseFile, params, version);
+    File netcdfResult = makeCFNetcdfFile(gcd, responseFile, params, subset, version, maxFileDownloadSize);
+    try {
+      sendFile(req, res, datasetPath, sf, netcdfResult);
+    } finally {
+      netcdfResult.delete();
+    }
+  }
+
+  // read a slab of each variable before the length is committed
+  private static boolean isValid(Netcdf3StreamWriter stream, String datasetPath) {
+    try {
+      stream.validate();
+      return true;
+    } catch (IOException | InvalidRangeException e) {
+      logger.debug("Grid subset of {} can not be streamed: {}", datasetPath, e.getMessage());
+      return false;
+    }
+  }
+
+  private void sendFile(HttpServletRequest req, HttpServletResponse res, String datasetPath, SupportedFormat sf,
+      File netcdfResult) throws IOException {
+    AdmissionControl.reweigh(req, netcdfResult.length());
+    setResponseHeaders(res, makeHttpHeaders(datasetPath, sf, Constants.getContentLengthValue(netcdfResult)));
+
+    IO.copyFileB(netcdfResult, res.getOutputStream(), 60000);
+    res.flushBuffer();
+    res.getOutputStream().close();
+    res.setStatus(HttpServletResponse.SC_OK);
+  }
 
+  // The result depends only on the request and the dataset file, so the key includes the file's modification time.
+  // Returns null if the answer depends on the current time, or the dataset is not a single plain file
+  // (eg feature collections, or NcML whose time does not change with the files it aggregates).
+  private static String makeResultKey(String datasetPath, NcssGridParamsBean params, SubsetParams subset) {
+    if (subset.isTrue(SubsetParams.timePresent) || !TdsRequestedDataset.isPlainFile(datasetPath))
+      return null;
+    String paramsKey = params.makeResultCacheKey();
+    if (paramsKey == null)
+      return null;
+    long lastModified = TdsRequestedDataset.getLastModified(datasetPath);
+    if (lastModified <= 0)
+      return null;
+    return datasetPath + ";" + lastModified + ";" + paramsKey;
+  }
+
+  private HttpHeaders makeHttpHeaders(String datasetPath, SupportedFormat sf, String contentLength) {
     // filename download attachment
     String suffix = sf.getFileSuffix();
     int pos = datasetPath.lastIndexOf("/");
@@ -129,18 +216,8 @@ public class NcssGridController extends AbstractNcssController {
     HttpHeaders httpHeaders = new HttpHeaders();
     httpHeaders.set(ContentType.HEADER, sf.getMimeType());
     httpHeaders.set(Constants.Content_Disposition, Constants.setContentDispositionValue(filename));
-
-    // set content length
-    httpHeaders.set(Constants.Content_Length, Constants.getContentLengthValue(netcdfResult));
-
-    setResponseHeaders(res, httpHeaders);
-
-    IO.copyFileB(netcdfResult, res.getOutputStream(), 60000);
-    res.flushBuffer();
-    res.getOutputStream().close();
-    res.setStatus(HttpServletResponse.SC_OK);
-
-    netcdfResult.delete();
+    httpHeaders.set(Constants.Content_Length, contentLength);
+    return httpHeaders;
   }
 
   private static NetcdfFileFormat getNetcdfFileFormat(SupportedFormat supportedFormat) {
@@ -158,11 +235,9 @@ public class NcssGridController extends AbstractNcssController {
   }
 
   private File makeCFNetcdfFile(CoverageCollection gcd, String responseFilename, NcssGridParamsBean params,
-      NetcdfFileFormat version) throws InvalidRangeException, IOException, NcssException {
-    SubsetParams subset = params.makeSubset(gcd);
-
+      SubsetParams subset, NetcdfFileFormat version, long maxFileDownloadSize)
+      throws InvalidRangeException, IOException, NcssException {
     // Test maxFileDownloadSize
-    long maxFileDownloadSize = ThreddsConfig.getBytes("NetcdfSubsetService.maxFileDownloadSize", -1L);
     if (version.isNetcdf4Format()) {
       maxFileDownloadSize *= ESTIMATED_COMPRESSION_RATE;
     }
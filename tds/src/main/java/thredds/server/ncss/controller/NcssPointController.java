@@ -4,11 +4,6 @@
  */
 package thredds.server.ncss.controller;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
 import org.jdom2.Document;
 import org.jdom2.Element;
 import org.slf4j.Logger;
@@ -26,14 +21,14 @@ import thredds.server.ncss.format.SupportedOperation;
 import thredds.server.ncss.params.NcssPointParamsBean;
 import thredds.server.ncss.view.dsg.DsgSubsetWriter;
 import thredds.server.ncss.view.dsg.DsgSubsetWriterFactory;
+import thredds.server.ncss.view.dsg.station.AbstractStationSubsetWriter;
+import thredds.servlet.AdmissionControl;
 import ucar.nc2.constants.FeatureType;
 import ucar.nc2.ft.DsgFeatureCollection;
 import ucar.nc2.ft.FeatureDataset;
 import ucar.nc2.ft.FeatureDatasetPoint;
 import ucar.nc2.ft.PointFeatureCollection;
 import ucar.nc2.ft.PointFeatureCollectionIterator;
-import ucar.nc2.ft.point.CollectionInfo;
-import ucar.nc2.ft.point.DsgCollectionHelper;
 import ucar.nc2.ft.point.collection.CompositeStationCollection;
 import ucar.nc2.ft.point.writer.FeatureDatasetCapabilitiesWriter;
 import ucar.nc2.ft2.coverage.SubsetParams;
@@ -65,25 +60,6 @@ public class NcssPointController extends AbstractNcssController {
     return StandardService.netcdfSubsetPoint.getBase();
   }
 
-
-  static LoadingCache<DsgFeatureCollection, CollectionInfo> boundsCache = CacheBuilder.newBuilder()
-      .expireAfterAccess(12, TimeUnit.HOURS).build(new CacheLoader<DsgFeatureCollection, CollectionInfo>() {
-        @Override
-        public CollectionInfo load(final DsgFeatureCollection dsgFeatureCollection) throws Exception {
-          return new DsgCollectionHelper(dsgFeatureCollection).calcBounds();
-        }
-      });
-
-  private static CollectionInfo getCollectionInfo(DsgFeatureCollection dsgFeatureCollection) {
-    CollectionInfo ci = null;
-    try {
-      ci = boundsCache.get(dsgFeatureCollection);
-    } catch (ExecutionException e) {
-      logger.warn("Could not get info for featureCollection %s", dsgFeatureCollection, e);
-    }
-    return ci;
-  }
-
   @RequestMapping("**")
   public void handleRequest(HttpServletRequest req, HttpServletResponse res, @Valid NcssPointParamsBean params,
       BindingResult validationResult) throws Exception {
@@ -111,6 +87,10 @@ public class NcssPointController extends AbstractNcssController {
 
       DsgSubsetWriter pds =
           DsgSubsetWriterFactory.newInstance(fdp, ncssParams, ncssDiskCache, res.getOutputStream(), format);
+      if (pds instanceof AbstractStationSubsetWriter) // more datasets of the request, to read stations concurrently
+        ((AbstractStationSubsetWriter) pds)
+            .setDatasetOpener(() -> TdsRequestedDataset.getPointDataset(req, res, datasetPath));
+      pds.setSizeListener(size -> AdmissionControl.reweigh(req, size));
       setResponseHeaders(res, pds.getHttpHeaders(datasetPath, format.isStream()));
       pds.respond(res, fdp, datasetPath, ncssParams, format);
     }
@@ -170,9 +150,10 @@ public class NcssPointController extends AbstractNcssController {
 
       DsgFeatureCollection dsgFeatCol = dsgFeatCols.get(0);
 
-      CollectionInfo info = getCollectionInfo(dsgFeatCol);
+      // made once for each version of the file
+      DsgInventory info = DsgInventoryCache.get(fdp);
 
-      LatLonRect boundingBox = info.bbox;
+      LatLonRect boundingBox = (info == null) ? null : info.getBoundingBox();
       if (boundingBox == null) {
         boundingBox = new LatLonRect(LatLonPoint.create(-90, -180), LatLonPoint.create(90, 180)); // Whole earth.
       }
@@ -185,7 +166,7 @@ public class NcssPointController extends AbstractNcssController {
       model.put("horizExtentWKT", horizExtentWKT);
 
 
-      CalendarDateRange calendarDateRange = info.getCalendarDateRange(null);
+      CalendarDateRange calendarDateRange = (info == null) ? null : info.getCalendarDateRange();
       if (calendarDateRange == null) {
         if (dsgFeatCol instanceof CompositeStationCollection) {
           // might be expensive...
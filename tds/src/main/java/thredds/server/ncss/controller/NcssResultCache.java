@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package thredds.server.ncss.controller;
+
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Formatter;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps finished NCSS result files, named by a hash of the request, so identical requests are answered from disk.
+ * The directory is bounded in size, and the least recently used files are deleted first.
+ * Identical requests that arrive while the file is being written wait for that writer, instead of writing it again.
+ * Files survive a restart; their modification time is used as the last access time.
+ *
+ * @since 10/16/2026
+ */
+public class NcssResultCache {
+  static private final Logger logger = LoggerFactory.getLogger(NcssResultCache.class);
+
+  /** Writes the result file, on a cache miss. */
+  public interface Writer {
+    void write(File file) throws Exception;
+  }
+
+  /** A result file, which wont be deleted until this is closed. */
+  public class Result implements Closeable {
+    private final Entry entry;
+
+    private Result(Entry entry) {
+      this.entry = entry;
+    }
+
+    public File getFile() {
+      return entry.file;
+    }
+
+    @Override
+    public void close() {
+      release(entry);
+    }
+  }
+
+  private static class Entry {
+    final File file;
+    final long size;
+    int readers; // guarded by NcssResultCache.this
+    boolean evicted;
+
+    Entry(File file) {
+      this.file = file;
+      this.size = file.length();
+    }
+  }
+
+  private final File dir;
+  private final long maxBytes;
+  private final Map<String, Entry> lru = new LinkedHashMap<>(100, .75f, true); // access order; guarded by this
+  private final ConcurrentHashMap<String, CompletableFuture<Entry>> inFlight = new ConcurrentHashMap<>();
+  private long totalBytes; // guarded by this
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder coalesced = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * Open the cache, and pick up the files already in the directory.
+   *
+   * @param dir the directory, created if needed
+   * @param maxBytes maximum total size of the files
+   */
+  public NcssResultCache(File dir, long maxBytes) throws IOException {
+    this.dir = dir;
+    this.maxBytes = maxBytes;
+    if (!dir.exists() && !dir.mkdirs())
+      throw new IOException("Cant make NCSS result cache directory " + dir);
+
+    File[] files = dir.listFiles();
+    if (files == null)
+      return;
+    Arrays.sort(files, Comparator.comparingLong(File::lastModified)); // oldest first, so they are evicted first
+    synchronized (this) {
+      for (File file : files) {
+        if (file.getName().contains(".tmp")) { // left over from a crash
+          if (!file.delete())
+            logger.warn("NcssResultCache cant delete {}", file);
+          continue;
+        }
+        Entry entry = new Entry(file);
+        lru.put(file.getName(), entry);
+        totalBytes += entry.size;
+      }
+      evict();
+    }
+  }
+
+  /**
+   * Get the result file for this request, writing it if needed. Close the Result when done with the file.
+   *
+   * @param key canonical form of the request, including the dataset version
+   * @param suffix file suffix, eg ".nc"
+   * @param writer writes the file on a cache miss
+   * @return the result file
+   */
+  public Result get(String key, String suffix, Writer writer) throws Exception {
+    String name = Hashing.sha256().hashString(key, StandardCharsets.UTF_8) + suffix;
+
+    Result result = acquire(name);
+    if (result != null) {
+      hits.increment();
+      return result;
+    }
+
+    CompletableFuture<Entry> mine = new CompletableFuture<>();
+    CompletableFuture<Entry> running = inFlight.putIfAbsent(name, mine);
+    if (running != null) {
+      coalesced.increment();
+      try {
+        running.get();
+      } catch (ExecutionException e) {
+        throw unwrap(e);
+      }
+      result = acquire(name);
+      if (result != null)
+        return result;
+      // evicted already; write it ourselves
+      return get(key, suffix, writer);
+    }
+
+    misses.increment();
+    try {
+      File tmp = File.createTempFile(name, ".tmp", dir);
+      File file = new File(dir, name);
+      try {
+        writer.write(tmp);
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      } finally {
+        Files.deleteIfExists(tmp.toPath());
+      }
+
+      Entry entry = new Entry(file);
+      synchronized (this) {
+        Entry old = lru.put(name, entry);
+        if (old != null)
+          totalBytes -= old.size;
+        totalBytes += entry.size;
+        entry.readers++;
+        evict();
+      }
+      mine.complete(entry);
+      return new Result(entry);
+
+    } catch (Exception e) {
+      mine.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(name, mine);
+    }
+  }
+
+  private synchronized Result acquire(String name) {
+    Entry entry = lru.get(name);
+    if (entry == null)
+      return null;
+    if (!entry.file.exists()) { // deleted behind our back
+      lru.remove(name);
+      totalBytes -= entry.size;
+      return null;
+    }
+    entry.readers++;
+    if (!entry.file.setLastModified(System.currentTimeMillis()))
+      logger.debug("NcssResultCache cant touch {}", entry.file);
+    return new Result(entry);
+  }
+
+  private synchronized void release(Entry entry) {
+    entry.readers--;
+    if (entry.evicted && entry.readers == 0)
+      delete(entry);
+  }
+
+  // remove least recently used until under the limit; files being read are deleted when released
+  private void evict() {
+    Iterator<Entry> iter = lru.values().iterator();
+    while (totalBytes > maxBytes && iter.hasNext()) {
+      Entry entry = iter.next();
+      iter.remove();
+      totalBytes -= entry.size;
+      entry.evicted = true;
+      evictions.increment();
+      if (entry.readers == 0)
+        delete(entry);
+    }
+  }
+
+  private void delete(Entry entry) {
+    if (!entry.file.delete() && entry.file.exists())
+      logger.warn("NcssResultCache cant delete {}", entry.file);
+  }
+
+  private static Exception unwrap(ExecutionException e) {
+    Throwable cause = e.getCause();
+    if (cause instanceof Exception)
+      return (Exception) cause;
+    if (cause instanceof Error)
+      throw (Error) cause;
+    return e;
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  public long getCoalesced() {
+    return coalesced.sum();
+  }
+
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  public synchronized void showCache(Formatter f) {
+    f.format("NcssResultCache %s%n", dir);
+    f.format("  files=%d bytes=%d maxBytes=%d%n", lru.size(), totalBytes, maxBytes);
+    f.format("  hits=%d misses=%d coalesced=%d evictions=%d%n", getHits(), getMisses(), getCoalesced(),
+        getEvictions());
+  }
+}
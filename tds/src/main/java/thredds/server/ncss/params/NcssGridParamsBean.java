@@ -14,6 +14,7 @@ import ucar.nc2.time.CalendarDateFormatter;
 import ucar.nc2.time.CalendarDateRange;
 import ucar.unidata.geoloc.LatLonPoint;
 import ucar.unidata.geoloc.ProjectionRect;
+import java.util.Formatter;
 
 /**
  * Parameters specific to ncss grid
@@ -180,6 +181,31 @@ public class NcssGridParamsBean extends NcssParamsBean {
     return CalendarDateFormatter.isoStringToCalendarDate(cal, getRuntime());
   }
 
+  /**
+   * Canonical form of this request, used as the key for NcssResultCache.
+   * Call after validation, which sets the parsed times.
+   *
+   * @return the key, or null if the answer depends on the current time
+   */
+  public String makeResultCacheKey() {
+    if (isPresentTime() || isPresent(time_start) || isPresent(time_end))
+      return null;
+
+    Formatter f = new Formatter();
+    f.format("accept=%s;var=%s;addLatLon=%s;", accept, var, addLatLon);
+    f.format("latlon=%s,%s,%s,%s;proj=%s,%s,%s,%s;horizStride=%s;", north, south, east, west, minx, miny, maxx, maxy,
+        horizStride);
+    f.format("point=%s,%s;vertCoord=%s;ensCoord=%s;", getLatitude(), getLongitude(), vertCoord, ensCoord);
+    f.format("date=%s;dateRange=%s;allTimes=%s;timeStride=%s;", date, dateRange, isAllTimes(), timeStride);
+    f.format("runtime=%s,%s,%s;timeOffset=%s,%s", runtimeDate, latestRuntime, allRuntime, timeOffsetVal,
+        firstTimeOffset);
+    return f.toString();
+  }
+
+  private static boolean isPresent(String time) {
+    return time != null && time.equalsIgnoreCase("present");
+  }
+
   ///////////////////////////////
 
   public SubsetParams makeSubset(CoverageCollection gcd) {
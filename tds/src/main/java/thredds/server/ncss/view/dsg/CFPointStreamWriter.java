@@ -0,0 +1,452 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package thredds.server.ncss.view.dsg;
+
+import thredds.server.ncss.view.grid.Netcdf3StreamWriter;
+import ucar.ma2.Array;
+import ucar.ma2.ArrayChar;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.StructureData;
+import ucar.ma2.StructureMembers;
+import ucar.nc2.Attribute;
+import ucar.nc2.Dimension;
+import ucar.nc2.VariableSimpleIF;
+import ucar.nc2.constants.ACDD;
+import ucar.nc2.constants.CDM;
+import ucar.nc2.constants.CF;
+import ucar.nc2.ft.PointFeature;
+import ucar.nc2.ft.point.StationFeature;
+import ucar.nc2.ft.point.StationPointFeature;
+import ucar.nc2.time.CalendarDate;
+import ucar.nc2.time.CalendarDateUnit;
+import ucar.nc2.units.SimpleUnit;
+import ucar.unidata.geoloc.Station;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Writes a CF point or station (timeSeries) collection as a netCDF-3 file to a stream, in two passes.
+ * The first pass counts the observations, and finds the time range and bounding box; then the file is laid out with
+ * Netcdf3StreamWriter, so its length is known before it is written. The counts are read from the data, not taken from
+ * an inventory, since a wrong count can only be found once the header is sent. The second pass writes each observation as a
+ * record. Station observations must come one station at a time, in the order they were counted, since the file is the
+ * contiguous ragged array representation (CF H.2.4).
+ * <p/>
+ * The variables and attributes are the ones CFPointWriter writes. Data of a type not allowed in netCDF-3 (eg String)
+ * can't be streamed; then layout() returns false and the caller uses CFPointWriter instead.
+ *
+ * @since 10/16/2026
+ */
+public class CFPointStreamWriter {
+  private static final String OBS = "obs";
+  private static final String STATION = "station";
+  private static final String LAT = "latitude";
+  private static final String LON = "longitude";
+  private static final String ALT = "altitude";
+  private static final String STATION_ALT = "stationAltitude";
+  private static final String STATION_ID = "station_id";
+  private static final String STATION_DESC = "station_description";
+  private static final String WMO_ID = "wmo_id";
+  private static final String ROW_SIZE = "rowSize";
+  private static final String STRLEN = "_strlen";
+
+  private final boolean isStation;
+  private final List<Attribute> globalAtts;
+  private final List<VariableSimpleIF> dataVars;
+  private final CalendarDateUnit timeUnit;
+  private final String altUnits;
+
+  // found by the first pass
+  private int nobs;
+  private CalendarDate minDate, maxDate;
+  private double latMin = Double.NaN, latMax = Double.NaN, lonMin = Double.NaN, lonMax = Double.NaN;
+  private StructureData firstData;
+  private final List<StationFeature> stations = new ArrayList<>();
+  private final List<Integer> rowSizes = new ArrayList<>();
+
+  // made by layout()
+  private Netcdf3StreamWriter writer;
+  private final List<String> members = new ArrayList<>(); // names of the data variables in each record
+
+  // second pass
+  private int station, stationObs;
+
+  /**
+   * Write a point collection (CF H.1).
+   *
+   * @param globalAtts added to the global attributes
+   * @param dataVars the variables wanted; those not in the observations are left out
+   * @param timeUnit of the observation times
+   * @param altUnits units of the altitude, or null if there is none
+   */
+  public static CFPointStreamWriter forPoints(List<Attribute> globalAtts, List<VariableSimpleIF> dataVars,
+      CalendarDateUnit timeUnit, String altUnits) {
+    return new CFPointStreamWriter(false, globalAtts, dataVars, timeUnit, altUnits);
+  }
+
+  /**
+   * Write a station collection (CF H.2.4).
+   *
+   * @param globalAtts added to the global attributes
+   * @param dataVars the variables wanted; those not in the observations are left out
+   * @param timeUnit of the observation times
+   * @param altUnits units of the station altitude, or null if there is none
+   */
+  public static CFPointStreamWriter forStations(List<Attribute> globalAtts, List<VariableSimpleIF> dataVars,
+      CalendarDateUnit timeUnit, String altUnits) {
+    return new CFPointStreamWriter(true, globalAtts, dataVars, timeUnit, altUnits);
+  }
+
+  private CFPointStreamWriter(boolean isStation, List<Attribute> globalAtts, List<VariableSimpleIF> dataVars,
+      CalendarDateUnit timeUnit, String altUnits) {
+    this.isStation = isStation;
+    this.globalAtts = globalAtts;
+    this.dataVars = dataVars;
+    this.timeUnit = timeUnit;
+    this.altUnits = altUnits;
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  // first pass
+
+  /**
+   * Count an observation. For a point collection, its location is added to the bounding box.
+   */
+  public void countObs(PointFeature pf) throws IOException {
+    nobs++;
+    addDate(pf.getObservationTimeAsCalendarDate());
+    if (!isStation)
+      addLocation(pf.getLocation().getLatitude(), pf.getLocation().getLongitude());
+    if (firstData == null)
+      firstData = getData(pf);
+  }
+
+  /**
+   * Add a station, and the number of observations that will be written for it, which may be 0.
+   * Stations are written in the order they are added.
+   */
+  public void addStation(StationFeature stationFeat, int nobs) {
+    stations.add(stationFeat);
+    rowSizes.add(nobs);
+  }
+
+  /** @return the number of observations counted */
+  public int getNobs() {
+    return nobs;
+  }
+
+  private void addDate(CalendarDate date) {
+    if (minDate == null || date.isBefore(minDate))
+      minDate = date;
+    if (maxDate == null || date.isAfter(maxDate))
+      maxDate = date;
+  }
+
+  private void addLocation(double lat, double lon) {
+    if (Double.isNaN(lat) || Double.isNaN(lon))
+      return;
+    latMin = Double.isNaN(latMin) ? lat : Math.min(latMin, lat);
+    latMax = Double.isNaN(latMax) ? lat : Math.max(latMax, lat);
+    lonMin = Double.isNaN(lonMin) ? lon : Math.min(lonMin, lon);
+    lonMax = Double.isNaN(lonMax) ? lon : Math.max(lonMax, lon);
+  }
+
+  // as passed to CFPointWriter.writeRecord()
+  private StructureData getData(PointFeature pf) throws IOException {
+    return isStation ? ((StationPointFeature) pf).getFeatureData() : pf.getDataAll();
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  // layout
+
+  /**
+   * Lay out the file, after the first pass.
+   *
+   * @param timeName name of the time variable
+   * @return false if the observations can't be written to netCDF-3 this way, or there are none
+   */
+  public boolean layout(String timeName) {
+    if (firstData == null || nobs == 0)
+      return false;
+    try {
+      writer = new Netcdf3StreamWriter();
+      members.clear();
+      return isStation ? layoutStations(timeName) : layoutPoints(timeName);
+    } catch (IllegalArgumentException e) {
+      return false; // eg a variable too large for netCDF-3
+    }
+  }
+
+  private boolean layoutPoints(String timeName) {
+    writer.addRecordDimension(OBS, nobs);
+    addGlobalAttributes(CF.FeatureType.point.name(), "Point Data, H.1");
+    if (!Double.isNaN(latMin)) {
+      writer.addAttribute(new Attribute(ACDD.LAT_MIN, latMin));
+      writer.addAttribute(new Attribute(ACDD.LAT_MAX, latMax));
+      writer.addAttribute(new Attribute(ACDD.LON_MIN, lonMin));
+      writer.addAttribute(new Attribute(ACDD.LON_MAX, lonMax));
+    }
+
+    List<String> obsDim = Collections.singletonList(OBS);
+    writer.addVariable(timeName, DataType.DOUBLE, obsDim, timeAttributes(), null);
+    writer.addVariable(LAT, DataType.DOUBLE, obsDim,
+        attributes(CDM.UNITS, CDM.LAT_UNITS, CDM.LONG_NAME, "latitude of measurement"), null);
+    writer.addVariable(LON, DataType.DOUBLE, obsDim,
+        attributes(CDM.UNITS, CDM.LON_UNITS, CDM.LONG_NAME, "longitude of measurement"), null);
+    String coords = timeName + " " + LAT + " " + LON;
+    if (altUnits != null) {
+      writer.addVariable(ALT, DataType.DOUBLE, obsDim,
+          attributes(CDM.UNITS, altUnits, CDM.LONG_NAME, "altitude of measurement", CF.POSITIVE, getZisPositive()),
+          null);
+      coords += " " + ALT;
+    }
+
+    return addDataVariables(coords, timeName, LAT, LON, ALT);
+  }
+
+  private boolean layoutStations(String timeName) {
+    writer.addRecordDimension(OBS, nobs);
+    writer.addDimension(STATION, stations.size());
+    addGlobalAttributes(CF.FeatureType.timeSeries.name(),
+        "Timeseries of station data in the contiguous ragged array representation, H.2.4");
+
+    // To give a little "wiggle room", the bounding box is slightly expanded, as CFPointWriter does
+    for (Station s : stations)
+      addLocation(s.getLatitude(), s.getLongitude());
+    if (!Double.isNaN(latMin)) {
+      writer.addAttribute(new Attribute(ACDD.LAT_MIN, latMin - .0005));
+      writer.addAttribute(new Attribute(ACDD.LAT_MAX, latMax + .0005));
+      writer.addAttribute(new Attribute(ACDD.LON_MIN, lonMin - .0005));
+      writer.addAttribute(new Attribute(ACDD.LON_MAX, lonMax + .0005));
+    }
+
+    // station variables
+    List<String> stnDim = Collections.singletonList(STATION);
+    writer.addVariable(LAT, DataType.DOUBLE, stnDim,
+        attributes(CDM.UNITS, CDM.LAT_UNITS, CDM.LONG_NAME, "station latitude"),
+        () -> stationValues(Station::getLatitude));
+    writer.addVariable(LON, DataType.DOUBLE, stnDim,
+        attributes(CDM.UNITS, CDM.LON_UNITS, CDM.LONG_NAME, "station longitude"),
+        () -> stationValues(Station::getLongitude));
+    String coords = timeName + " " + LAT + " " + LON;
+    if (altUnits != null) {
+      writer.addVariable(STATION_ALT, DataType.DOUBLE, stnDim, attributes(CDM.UNITS, altUnits, CDM.LONG_NAME,
+          "station altitude", CF.STANDARD_NAME, "station_altitude"), () -> stationValues(Station::getAltitude));
+      coords += " " + STATION_ALT;
+    }
+    addStationStrings(STATION_ID, Station::getName,
+        attributes(CDM.LONG_NAME, "station identifier", CF.CF_ROLE, CF.TIMESERIES_ID));
+    addStationStrings(STATION_DESC, Station::getDescription,
+        attributes(CDM.LONG_NAME, "station description", CF.STANDARD_NAME, "platform_name"));
+    addStationStrings(WMO_ID, Station::getWmoId, attributes(CDM.LONG_NAME, "station WMO id"));
+    writer.addVariable(ROW_SIZE, DataType.INT, stnDim,
+        attributes(CDM.LONG_NAME, "number of observations for this station", CF.SAMPLE_DIMENSION, OBS), () -> {
+          int[] values = new int[rowSizes.size()];
+          for (int i = 0; i < values.length; i++)
+            values[i] = rowSizes.get(i);
+          return Array.factory(DataType.INT, new int[] {values.length}, values);
+        });
+
+    // observation variables
+    writer.addVariable(timeName, DataType.DOUBLE, Collections.singletonList(OBS), timeAttributes(), null);
+    return addDataVariables(coords, timeName);
+  }
+
+  private void addGlobalAttributes(String featureType, String representation) {
+    writer.addAttribute(new Attribute(CDM.CONVENTIONS, CDM.CF_VERSION));
+    writer.addAttribute(new Attribute(CDM.HISTORY, "Written by CFPointWriter"));
+    for (Attribute att : globalAtts)
+      writer.addAttribute(att);
+    writer.addAttribute(new Attribute(ACDD.TIME_START, minDate.toString()));
+    writer.addAttribute(new Attribute(ACDD.TIME_END, maxDate.toString()));
+    writer.addAttribute(new Attribute(CF.FEATURE_TYPE, featureType));
+    writer.addAttribute(new Attribute(CF.DSG_REPRESENTATION, representation));
+  }
+
+  private List<Attribute> timeAttributes() {
+    return attributes(CDM.UNITS, timeUnit.getUdUnit(), CDM.LONG_NAME, "time of measurement", CF.CALENDAR,
+        timeUnit.getCalendar().toString());
+  }
+
+  private String getZisPositive() {
+    return SimpleUnit.isCompatible("millibar", altUnits) ? CF.POSITIVE_DOWN : CF.POSITIVE_UP;
+  }
+
+  private Array stationValues(Function<Station, Double> value) {
+    double[] values = new double[stations.size()];
+    for (int i = 0; i < values.length; i++)
+      values[i] = value.apply(stations.get(i));
+    return Array.factory(DataType.DOUBLE, new int[] {values.length}, values);
+  }
+
+  // a char variable, only if some station has a value
+  private void addStationStrings(String name, Function<Station, String> value, List<Attribute> atts) {
+    int strlen = 0;
+    for (Station s : stations) {
+      String val = value.apply(s);
+      if (val != null)
+        strlen = Math.max(strlen, val.length());
+    }
+    if (strlen == 0)
+      return;
+
+    int len = strlen;
+    writer.addDimension(name + STRLEN, len);
+    writer.addVariable(name, DataType.CHAR, Arrays.asList(STATION, name + STRLEN), atts, () -> {
+      ArrayChar.D2 values = new ArrayChar.D2(stations.size(), len);
+      for (int i = 0; i < stations.size(); i++) {
+        String val = value.apply(stations.get(i));
+        values.setString(i, val == null ? "" : val);
+      }
+      return values;
+    });
+  }
+
+  // The wanted variables found in the first observation, with the attributes CFPointWriter gives them.
+  // Returns false if one can't be written to netCDF-3.
+  private boolean addDataVariables(String coords, String... coordNames) {
+    Map<String, Integer> dims = new HashMap<>();
+    List<String> used = new ArrayList<>(Arrays.asList(coordNames));
+
+    for (VariableSimpleIF dataVar : dataVars) {
+      String name = dataVar.getShortName();
+      StructureMembers.Member m = firstData.findMember(name);
+      if (m == null || used.contains(name))
+        continue;
+      if (!Netcdf3StreamWriter.isSupported(m.getDataType()))
+        return false;
+      used.add(name);
+
+      List<String> dimNames = new ArrayList<>();
+      dimNames.add(OBS);
+      dimNames.addAll(addDimensions(dataVar, m, dims));
+
+      List<Attribute> atts = new ArrayList<>();
+      if (dataVar.getUnitsString() != null)
+        atts.add(new Attribute(CDM.UNITS, dataVar.getUnitsString()));
+      if (dataVar.getDescription() != null)
+        atts.add(new Attribute(CDM.LONG_NAME, dataVar.getDescription()));
+      for (Attribute att : dataVar.attributes()) {
+        String attName = att.getShortName();
+        if (attName.equals(CDM.UNITS) || attName.equals(CDM.LONG_NAME) || attName.equals(CF.COORDINATES)
+            || attName.equals(CF.SAMPLE_DIMENSION) || attName.equals(CF.INSTANCE_DIMENSION))
+          continue;
+        if (!attName.startsWith("_") || attName.equals(CDM.FILL_VALUE))
+          atts.add(att);
+      }
+      atts.add(new Attribute(CF.COORDINATES, coords));
+
+      writer.addVariable(name, m.getDataType(), dimNames, atts, null);
+      members.add(name);
+    }
+    return true;
+  }
+
+  // Dimensions of the member, other than obs. The original dimension names are used if their lengths match.
+  private List<String> addDimensions(VariableSimpleIF dataVar, StructureMembers.Member m, Map<String, Integer> dims) {
+    int[] shape = m.getShape();
+    List<Dimension> orgDims = dataVar.getDimensions();
+    int offset = orgDims.size() - shape.length;
+
+    List<String> result = new ArrayList<>();
+    for (int i = 0; i < shape.length; i++) {
+      String dimName = null;
+      if (offset >= 0) {
+        Dimension org = orgDims.get(offset + i);
+        if (org.getShortName() != null && org.getLength() == shape[i])
+          dimName = org.getShortName();
+      }
+      if (dimName == null || dimName.equals(OBS) || dimName.equals(STATION)
+          || (dims.containsKey(dimName) && dims.get(dimName) != shape[i]))
+        dimName = (m.getDataType() == DataType.CHAR && i == shape.length - 1) ? m.getName() + STRLEN
+            : m.getName() + "_" + i;
+      if (!dims.containsKey(dimName)) {
+        writer.addDimension(dimName, shape[i]);
+        dims.put(dimName, shape[i]);
+      }
+      result.add(dimName);
+    }
+    return result;
+  }
+
+  private static List<Attribute> attributes(String... namesAndValues) {
+    List<Attribute> result = new ArrayList<>();
+    for (int i = 0; i < namesAndValues.length; i += 2)
+      result.add(new Attribute(namesAndValues[i], namesAndValues[i + 1]));
+    return result;
+  }
+
+  /** @return the length of the file in bytes; call after layout() */
+  public long getLength() throws IOException {
+    return writer.getLength();
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  // second pass
+
+  /**
+   * Write the header and the station variables.
+   */
+  public void start(OutputStream out) throws IOException, InvalidRangeException {
+    writer.start(out);
+  }
+
+  /**
+   * Write an observation, in the same order as counted.
+   */
+  public void writeObs(PointFeature pf) throws IOException {
+    List<Array> values = new ArrayList<>(members.size() + 4);
+    values.add(scalar(pf.getObservationTime()));
+    if (isStation) {
+      nextStation(((StationPointFeature) pf).getStation().getName());
+    } else {
+      values.add(scalar(pf.getLocation().getLatitude()));
+      values.add(scalar(pf.getLocation().getLongitude()));
+      if (altUnits != null)
+        values.add(scalar(pf.getLocation().getAltitude()));
+    }
+
+    StructureData data = getData(pf);
+    for (String name : members) {
+      StructureMembers.Member m = data.findMember(name);
+      values.add(m == null ? null : data.getArray(m));
+    }
+    writer.writeRecord(values);
+  }
+
+  // the observations of a station are contiguous, so they must come in the order of the stations
+  private void nextStation(String name) throws IOException {
+    while (station < stations.size()
+        && (stationObs == rowSizes.get(station) || !name.equals(stations.get(station).getName()))) {
+      if (stationObs != rowSizes.get(station))
+        throw new IOException("Station " + stations.get(station).getName() + " has " + stationObs
+            + " observations, header says " + rowSizes.get(station));
+      station++;
+      stationObs = 0;
+    }
+    if (station == stations.size())
+      throw new IOException("Station " + name + " has more observations than counted, or is out of order");
+    stationObs++;
+  }
+
+  /**
+   * Check that all the observations were written, and flush the stream.
+   */
+  public void finish() throws IOException {
+    writer.finish();
+  }
+
+  private static Array scalar(double value) {
+    return Array.factory(DataType.DOUBLE, new int[0], new double[] {value});
+  }
+}
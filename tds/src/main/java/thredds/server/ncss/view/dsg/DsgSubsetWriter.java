@@ -17,6 +17,7 @@ import ucar.nc2.time.CalendarDateRange;
 import ucar.nc2.time.CalendarPeriod;
 import jakarta.servlet.http.HttpServletResponse;
 import java.util.*;
+import java.util.function.LongConsumer;
 
 /**
  * Created by cwardgar on 2014/05/20.
@@ -27,6 +28,8 @@ public abstract class DsgSubsetWriter {
   protected final List<VariableSimpleIF> wantedVariables;
   protected final CalendarDateRange wantedRange;
 
+  private LongConsumer sizeListener;
+
   public DsgSubsetWriter(FeatureDatasetPoint fdPoint, SubsetParams ncssParams) throws NcssException {
     this.fdPoint = fdPoint;
     this.ncssParams = ncssParams;
@@ -38,6 +41,19 @@ public abstract class DsgSubsetWriter {
 
   abstract public void write() throws Exception;
 
+  /**
+   * Be told the size of the response, by writers that know it before sending it.
+   */
+  public void setSizeListener(LongConsumer sizeListener) {
+    this.sizeListener = sizeListener;
+  }
+
+  // call before any of the response is sent, so that the listener may still reject it
+  protected void sizeKnown(long size) {
+    if (sizeListener != null)
+      sizeListener.accept(size);
+  }
+
   ////////////////////////////////////////////////////// Static //////////////////////////////////////////////////////
 
   public void respond(HttpServletResponse res, FeatureDataset ft, String requestPathInfo, SubsetParams queryParams,
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package thredds.server.ncss.view.dsg;
+
+import java.io.IOException;
+import java.io.Writer;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import ucar.ma2.DataType;
+import ucar.ma2.StructureData;
+import ucar.ma2.StructureMembers;
+import ucar.nc2.time.Calendar;
+import ucar.nc2.time.CalendarDate;
+import ucar.nc2.time.CalendarDateFormatter;
+import ucar.unidata.util.Format;
+
+/**
+ * Formats the values of the CSV and XML DSG writers into one buffer that is reused for every row, instead of making
+ * new Strings for each value. The text is the same as CalendarDateFormatter.toDateTimeStringISO(), Format.dfrac() and
+ * Array.toString().trim(), which are still used for the values that this class does not know how to format.
+ * CSV rows are written out a batch at a time.
+ *
+ * @since 10/16/2026
+ */
+public class DsgTextFormatter {
+  private static final int BATCH = 8192; // chars
+  private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+  private static final String NEWLINE = System.lineSeparator();
+
+  private final StringBuilder buffer = new StringBuilder(BATCH + 1024);
+  private char[] chars = new char[BATCH + 1024];
+
+  // the text of the day of the last time, which is the same for all the times of that day
+  private long day = Long.MIN_VALUE;
+  private Calendar calendar;
+  private String dayPrefix; // "yyyy-MM-ddT", or null if the times of the day can't be formatted here
+  private String zoneSuffix; // "Z"
+
+  public DsgTextFormatter append(char c) {
+    buffer.append(c);
+    return this;
+  }
+
+  public DsgTextFormatter append(String s) {
+    buffer.append(s);
+    return this;
+  }
+
+  /** Same as PrintWriter.print(d). */
+  public DsgTextFormatter append(double d) {
+    buffer.append(d);
+    return this;
+  }
+
+  /** End a CSV row, the same as PrintWriter.println(). */
+  public DsgTextFormatter newLine() {
+    buffer.append(NEWLINE);
+    return this;
+  }
+
+  /** Same as CalendarDateFormatter.toDateTimeStringISO(date). */
+  public DsgTextFormatter appendTime(CalendarDate date) {
+    long millis = date.getMillis();
+    long thisDay = Math.floorDiv(millis, MILLIS_PER_DAY);
+    int millisOfDay = (int) (millis - thisDay * MILLIS_PER_DAY);
+
+    if (millisOfDay % 1000 != 0) { // rare; only whole seconds are done here
+      buffer.append(CalendarDateFormatter.toDateTimeStringISO(date));
+      return this;
+    }
+
+    if (thisDay != day || date.getCalendar() != calendar) {
+      // the first time of a new day: keep the text of its day, if formatting it here gives the same as the formatter
+      String iso = CalendarDateFormatter.toDateTimeStringISO(date);
+      day = thisDay;
+      calendar = date.getCalendar();
+      dayPrefix = null;
+      int t = iso.indexOf('T');
+      if (t > 0 && iso.length() >= t + 9) {
+        dayPrefix = iso.substring(0, t + 1);
+        zoneSuffix = iso.substring(t + 9);
+        int start = buffer.length();
+        appendTimeOfDay(millisOfDay);
+        if (!iso.contentEquals(buffer.subSequence(start, buffer.length())))
+          dayPrefix = null;
+        buffer.setLength(start);
+      }
+      buffer.append(iso);
+      return this;
+    }
+
+    if (dayPrefix == null) {
+      buffer.append(CalendarDateFormatter.toDateTimeStringISO(date));
+      return this;
+    }
+    appendTimeOfDay(millisOfDay);
+    return this;
+  }
+
+  private void appendTimeOfDay(int millisOfDay) {
+    int secs = millisOfDay / 1000;
+    buffer.append(dayPrefix);
+    appendTwoDigits(secs / 3600);
+    buffer.append(':');
+    appendTwoDigits((secs / 60) % 60);
+    buffer.append(':');
+    appendTwoDigits(secs % 60);
+    buffer.append(zoneSuffix);
+  }
+
+  private void appendTwoDigits(int n) {
+    buffer.append((char) ('0' + n / 10));
+    buffer.append((char) ('0' + n % 10));
+  }
+
+  /**
+   * Same as Format.dfrac(value, decimals): the digits of Double.toString(value), with the fraction cut or padded with
+   * zeros to the number of decimals.
+   */
+  public DsgTextFormatter appendFixed(double value, int decimals) {
+    String s = Double.toString(value);
+    int dot = s.indexOf('.');
+    if (!Double.isFinite(value) || dot < 0 || s.indexOf('E') >= 0) {
+      buffer.append(Format.dfrac(value, decimals));
+      return this;
+    }
+
+    buffer.append(s, 0, dot);
+    if (decimals > 0) {
+      int fracDigits = s.length() - dot - 1;
+      buffer.append(s, dot, dot + 1 + Math.min(fracDigits, decimals));
+      for (int i = fracDigits; i < decimals; i++)
+        buffer.append('0');
+    }
+    return this;
+  }
+
+  /**
+   * Append a member with one number, the same as structureData.getArray(name).toString().trim().
+   *
+   * @return false, and append nothing, if the member is missing, or not one number of a signed type
+   */
+  public boolean appendNumber(StructureData structureData, String name) {
+    StructureMembers.Member m = structureData.findMember(name);
+    if (m == null || m.getSize() != 1)
+      return false;
+    DataType dataType = m.getDataType();
+    if (dataType.isUnsigned())
+      return false;
+
+    switch (dataType) {
+      case DOUBLE:
+        buffer.append(structureData.getScalarDouble(m));
+        return true;
+      case FLOAT:
+        buffer.append(structureData.getScalarFloat(m));
+        return true;
+      case LONG:
+        buffer.append(structureData.getScalarLong(m));
+        return true;
+      case INT:
+        buffer.append(structureData.getScalarInt(m));
+        return true;
+      case SHORT:
+        buffer.append(structureData.getScalarShort(m));
+        return true;
+      case BYTE:
+        buffer.append(structureData.getScalarByte(m));
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /** Append a member the same as structureData.getArray(name).toString().trim(). */
+  public DsgTextFormatter appendValue(StructureData structureData, String name) {
+    if (!appendNumber(structureData, name))
+      buffer.append(structureData.getArray(name).toString().trim());
+    return this;
+  }
+
+  ////////////////////////////////////////////////////////////////
+
+  public int length() {
+    return buffer.length();
+  }
+
+  public void clear() {
+    buffer.setLength(0);
+  }
+
+  /** @return the text appended since the buffer had this length, which is taken out of the buffer */
+  public String take(int start) {
+    String result = buffer.substring(start);
+    buffer.setLength(start);
+    return result;
+  }
+
+  /** Write the buffer as XML characters, and clear it. */
+  public void writeCharacters(XMLStreamWriter staxWriter) throws XMLStreamException {
+    staxWriter.writeCharacters(toChars(), 0, buffer.length());
+    buffer.setLength(0);
+  }
+
+  /** Write the buffer out if it holds a batch of rows. */
+  public void writeIfFull(Writer writer) throws IOException {
+    if (buffer.length() >= BATCH)
+      write(writer);
+  }
+
+  /** Write the buffer out, and clear it. */
+  public void write(Writer writer) throws IOException {
+    writer.write(toChars(), 0, buffer.length());
+    buffer.setLength(0);
+  }
+
+  private char[] toChars() {
+    int len = buffer.length();
+    if (chars.length < len)
+      chars = new char[Math.max(len, 2 * chars.length)];
+    buffer.getChars(0, len, chars, 0);
+    return chars;
+  }
+}
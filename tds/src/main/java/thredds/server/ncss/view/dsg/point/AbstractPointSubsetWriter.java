@@ -4,10 +4,15 @@
  */
 package thredds.server.ncss.view.dsg.point;
 
+import thredds.server.ncss.controller.DsgInventory;
+import thredds.server.ncss.controller.DsgInventoryCache;
 import thredds.server.ncss.exception.NcssException;
 import thredds.server.ncss.view.dsg.DsgSubsetWriter;
 import ucar.nc2.ft.*;
 import ucar.nc2.ft2.coverage.SubsetParams;
+import ucar.nc2.time.CalendarDateRange;
+import ucar.unidata.geoloc.LatLonRect;
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -41,12 +46,9 @@ public abstract class AbstractPointSubsetWriter extends DsgSubsetWriter {
 
   @Override
   public void write() throws Exception {
-
-    // Perform spatial and temporal subset.
-    PointFeatureCollection subsettedPointFeatColl =
-        pointFeatureCollection.subset(ncssParams.getLatLonBoundingBox(), wantedRange);
+    PointFeatureCollection subsettedPointFeatColl = getSubset();
     if (subsettedPointFeatColl == null) // means theres nothing in the subset
-      return;
+      throw new NcssException("No features are in the requested subset");
 
     int count = 0;
     boolean headerDone = false;
@@ -64,4 +66,29 @@ public abstract class AbstractPointSubsetWriter extends DsgSubsetWriter {
 
     writeFooter();
   }
+
+  /**
+   * Perform spatial and temporal subset.
+   *
+   * @return null if there's nothing in the subset
+   */
+  protected PointFeatureCollection getSubset() throws IOException {
+    // Nothing to read if the collection is outside the wanted box or range, if we know that already.
+    DsgInventory inventory = DsgInventoryCache.getIfPresent(fdPoint);
+    if (inventory != null && !intersects(inventory))
+      return null;
+
+    return pointFeatureCollection.subset(ncssParams.getLatLonBoundingBox(), wantedRange);
+  }
+
+  private boolean intersects(DsgInventory inventory) {
+    LatLonRect wantedBox = ncssParams.getLatLonBoundingBox();
+    LatLonRect bbox = inventory.getBoundingBox();
+    if (wantedBox != null && bbox != null && wantedBox.intersect(bbox) == null)
+      return false;
+    CalendarDateRange dateRange = inventory.getCalendarDateRange();
+    if (dateRange == null)
+      return inventory.getNobs() > 0;
+    return wantedRange == null || wantedRange.intersects(dateRange);
+  }
 }
@@ -7,16 +7,14 @@ package thredds.server.ncss.view.dsg.point;
 import java.nio.charset.StandardCharsets;
 import org.springframework.http.HttpHeaders;
 import thredds.server.ncss.exception.NcssException;
+import thredds.server.ncss.view.dsg.DsgTextFormatter;
 import thredds.server.ncss.view.dsg.HttpHeaderWriter;
-import ucar.ma2.Array;
 import ucar.ma2.StructureData;
 import ucar.nc2.VariableSimpleIF;
 import ucar.nc2.ft.FeatureDatasetPoint;
 import ucar.nc2.ft.PointFeature;
 import ucar.nc2.ft2.coverage.SubsetParams;
-import ucar.nc2.time.CalendarDateFormatter;
 import ucar.unidata.geoloc.EarthLocation;
-import ucar.unidata.util.Format;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
@@ -27,6 +25,7 @@ import java.io.PrintWriter;
  */
 public class PointSubsetWriterCSV extends AbstractPointSubsetWriter {
   final protected PrintWriter writer;
+  private final DsgTextFormatter text = new DsgTextFormatter();
 
   public PointSubsetWriterCSV(FeatureDatasetPoint fdPoint, SubsetParams ncssParams, OutputStream out)
       throws NcssException {
@@ -60,23 +59,21 @@ public class PointSubsetWriterCSV extends AbstractPointSubsetWriter {
   public void writePoint(PointFeature pointFeat) throws IOException {
     EarthLocation loc = pointFeat.getLocation();
 
-    writer.print(CalendarDateFormatter.toDateTimeStringISO(pointFeat.getObservationTimeAsCalendarDate()));
-    writer.print(',');
-    writer.print(Format.dfrac(loc.getLatitude(), 3));
-    writer.print(',');
-    writer.print(Format.dfrac(loc.getLongitude(), 3));
+    text.appendTime(pointFeat.getObservationTimeAsCalendarDate());
+    text.append(',').appendFixed(loc.getLatitude(), 3);
+    text.append(',').appendFixed(loc.getLongitude(), 3);
 
     StructureData structureData = pointFeat.getDataAll();
     for (VariableSimpleIF wantedVar : wantedVariables) {
-      writer.print(',');
-      Array dataArray = structureData.getArray(wantedVar.getShortName());
-      writer.print(dataArray.toString().trim());
+      text.append(',').appendValue(structureData, wantedVar.getShortName());
     }
-    writer.println();
+    text.newLine();
+    text.writeIfFull(writer);
   }
 
   @Override
-  public void writeFooter() {
+  public void writeFooter() throws IOException {
+    text.write(writer);
     writer.flush();
   }
 }
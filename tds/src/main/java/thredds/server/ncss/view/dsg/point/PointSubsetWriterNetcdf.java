@@ -5,19 +5,25 @@
 package thredds.server.ncss.view.dsg.point;
 
 import org.springframework.http.HttpHeaders;
+import thredds.server.config.ThreddsConfig;
 import thredds.server.ncss.controller.NcssDiskCache;
 import thredds.server.ncss.exception.NcssException;
+import thredds.server.ncss.format.SupportedFormat;
+import thredds.server.ncss.view.dsg.CFPointStreamWriter;
 import thredds.server.ncss.view.dsg.HttpHeaderWriter;
 import ucar.nc2.Attribute;
 import ucar.nc2.NetcdfFileWriter.Version;
 import ucar.nc2.constants.CDM;
+import ucar.nc2.ft.FeatureDataset;
 import ucar.nc2.ft.FeatureDatasetPoint;
 import ucar.nc2.ft.PointFeature;
+import ucar.nc2.ft.PointFeatureCollection;
 import ucar.nc2.ft.point.writer.CFPointWriterConfig;
 import ucar.nc2.ft.point.writer.WriterCFPointCollection;
 import ucar.nc2.ft2.coverage.SubsetParams;
 import ucar.nc2.time.CalendarDateUnit;
 import ucar.nc2.util.IO;
+import jakarta.servlet.http.HttpServletResponse;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -26,14 +32,22 @@ import java.util.List;
 
 /**
  * Created by cwardgar on 2014/06/04.
+ * NetCDF-3 is counted first and then streamed to out by CFPointStreamWriter; otherwise the file is written in the
+ * disk cache by WriterCFPointCollection, and copied to out.
  */
 public class PointSubsetWriterNetcdf extends AbstractPointSubsetWriter {
   private final NcssDiskCache ncssDiskCache;
   private final OutputStream out;
   private final Version version;
 
-  private final File netcdfResult;
-  private final WriterCFPointCollection cfWriter;
+  private final List<Attribute> attribs = new ArrayList<>();
+  private final CalendarDateUnit timeUnit;
+  private final String altUnit;
+
+  private boolean prepared;
+  private CFPointStreamWriter streamWriter;
+  private File netcdfResult;
+  private WriterCFPointCollection cfWriter;
 
   public PointSubsetWriterNetcdf(FeatureDatasetPoint fdPoint, SubsetParams ncssParams, NcssDiskCache ncssDiskCache,
       OutputStream out, Version version) throws NcssException, IOException {
@@ -46,8 +60,6 @@ public class PointSubsetWriterNetcdf extends AbstractPointSubsetWriter {
     this.out = out;
     this.version = version;
 
-    this.netcdfResult = ncssDiskCache.getDiskCache().createUniqueFile("ncss-point", ".nc");
-    List<Attribute> attribs = new ArrayList<>();
     attribs.add(new Attribute(CDM.TITLE, "Extracted data from TDS Feature Collection " + fdPoint.getLocation()));
 
     // get the timeUnit and altUnit from the FeatureCollection
@@ -55,10 +67,8 @@ public class PointSubsetWriterNetcdf extends AbstractPointSubsetWriter {
     if (timeUnit == null) {
       timeUnit = CalendarDateUnit.unixDateUnit;
     }
-    String altUnit = this.pointFeatureCollection.getAltUnits();
-
-    this.cfWriter = new WriterCFPointCollection(netcdfResult.getAbsolutePath(), attribs, wantedVariables, timeUnit,
-        altUnit, new CFPointWriterConfig(version));
+    this.timeUnit = timeUnit;
+    this.altUnit = this.pointFeatureCollection.getAltUnits();
   }
 
   @Override
@@ -67,19 +77,77 @@ public class PointSubsetWriterNetcdf extends AbstractPointSubsetWriter {
   }
 
   @Override
-  public void writeHeader(PointFeature pf) throws IOException {
-    cfWriter.writeHeader(pf);
+  public void respond(HttpServletResponse res, FeatureDataset ft, String requestPathInfo, SubsetParams queryParams,
+      SupportedFormat format) throws Exception {
+    prepare();
+    if (streamWriter != null) {
+      sizeKnown(streamWriter.getLength());
+      res.setContentLengthLong(streamWriter.getLength());
+    }
+    write();
+  }
+
+  @Override
+  public void write() throws Exception {
+    prepare();
+    super.write();
+  }
+
+  // The first pass of a NetCDF-3 response: count the points and find their bounds, so the file can be laid out
+  // before any of it is written.
+  private void prepare() throws Exception {
+    if (prepared)
+      return;
+    prepared = true;
+
+    if (version == Version.netcdf3 && ThreddsConfig.getBoolean("NetcdfSubsetService.streamNetcdf3", false)) {
+      PointFeatureCollection subset = getSubset();
+      if (subset == null)
+        return; // nothing is written
+
+      // the count is always read from the data, since the header can't be changed once it's sent
+      CFPointStreamWriter stream = CFPointStreamWriter.forPoints(attribs, wantedVariables, timeUnit, altUnit);
+      for (PointFeature pointFeat : subset)
+        stream.countObs(pointFeat);
+
+      if (stream.getNobs() == 0)
+        return; // write() reports that there are no features
+      if (stream.layout(pointFeatureCollection.getTimeName())) {
+        streamWriter = stream;
+        return;
+      }
+    }
+
+    this.netcdfResult = ncssDiskCache.getDiskCache().createUniqueFile("ncss-point", ".nc");
+    this.cfWriter = new WriterCFPointCollection(netcdfResult.getAbsolutePath(), attribs, wantedVariables, timeUnit,
+        altUnit, new CFPointWriterConfig(version));
+  }
+
+  @Override
+  public void writeHeader(PointFeature pf) throws Exception {
+    if (streamWriter != null)
+      streamWriter.start(out);
+    else
+      cfWriter.writeHeader(pf);
   }
 
   @Override
   public void writePoint(PointFeature pointFeat) throws Exception {
-    cfWriter.writeRecord(pointFeat, pointFeat.getDataAll());
+    if (streamWriter != null)
+      streamWriter.writeObs(pointFeat);
+    else
+      cfWriter.writeRecord(pointFeat, pointFeat.getDataAll());
   }
 
   @Override
   public void writeFooter() throws IOException {
-    cfWriter.finish();
-    IO.copyFileB(netcdfResult, out, 60000); // Copy the file in to the OutputStream.
+    if (streamWriter != null) {
+      streamWriter.finish();
+    } else {
+      cfWriter.finish();
+      sizeKnown(netcdfResult.length());
+      IO.copyFileB(netcdfResult, out, 60000); // Copy the file in to the OutputStream.
+    }
     out.flush();
   }
 }
@@ -6,6 +6,7 @@ package thredds.server.ncss.view.dsg.point;
 
 import org.springframework.http.HttpHeaders;
 import thredds.server.ncss.exception.NcssException;
+import thredds.server.ncss.view.dsg.DsgTextFormatter;
 import thredds.server.ncss.view.dsg.HttpHeaderWriter;
 import ucar.ma2.Array;
 import ucar.ma2.StructureData;
@@ -14,9 +15,7 @@ import ucar.nc2.constants.CDM;
 import ucar.nc2.ft.FeatureDatasetPoint;
 import ucar.nc2.ft.PointFeature;
 import ucar.nc2.ft2.coverage.SubsetParams;
-import ucar.nc2.time.CalendarDateFormatter;
 import ucar.unidata.geoloc.EarthLocation;
-import ucar.unidata.util.Format;
 import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
@@ -28,6 +27,7 @@ import java.io.OutputStream;
  */
 public class PointSubsetWriterXML extends AbstractPointSubsetWriter {
   private final XMLStreamWriter staxWriter;
+  private final DsgTextFormatter text = new DsgTextFormatter();
 
   private final boolean isNested;
 
@@ -70,15 +70,14 @@ public class PointSubsetWriterXML extends AbstractPointSubsetWriter {
 
     staxWriter.writeCharacters("\n    ");
     staxWriter.writeStartElement("pointFeature");
-    staxWriter.writeAttribute("date",
-        CalendarDateFormatter.toDateTimeStringISO(pointFeat.getObservationTimeAsCalendarDate()));
+    staxWriter.writeAttribute("date", text.appendTime(pointFeat.getObservationTimeAsCalendarDate()).take(0));
 
     staxWriter.writeCharacters("\n        ");
     staxWriter.writeEmptyElement("location");
-    staxWriter.writeAttribute("latitude", Format.dfrac(loc.getLatitude(), 3));
-    staxWriter.writeAttribute("longitude", Format.dfrac(loc.getLongitude(), 3));
+    staxWriter.writeAttribute("latitude", text.appendFixed(loc.getLatitude(), 3).take(0));
+    staxWriter.writeAttribute("longitude", text.appendFixed(loc.getLongitude(), 3).take(0));
     if (!Double.isNaN(loc.getAltitude()))
-      staxWriter.writeAttribute("altitude", Format.dfrac(loc.getAltitude(), 0));
+      staxWriter.writeAttribute("altitude", text.appendFixed(loc.getAltitude(), 0).take(0));
 
     StructureData structureData = pointFeat.getDataAll();
     for (VariableSimpleIF wantedVar : wantedVariables) {
@@ -88,12 +87,16 @@ public class PointSubsetWriterXML extends AbstractPointSubsetWriter {
       if (wantedVar.getUnitsString() != null)
         staxWriter.writeAttribute(CDM.UNITS, wantedVar.getUnitsString());
 
-      Array dataArray = structureData.getArray(wantedVar.getShortName());
-      String ss = dataArray.toString();
-      Class elemType = dataArray.getElementType();
-      if ((elemType == String.class) || (elemType == char.class) || (elemType == StructureData.class))
-        ss = ucar.nc2.util.xml.Parse.cleanCharacterData(ss); // make sure no bad chars
-      staxWriter.writeCharacters(ss.trim());
+      if (text.appendNumber(structureData, wantedVar.getShortName())) {
+        text.writeCharacters(staxWriter);
+      } else {
+        Array dataArray = structureData.getArray(wantedVar.getShortName());
+        String ss = dataArray.toString();
+        Class elemType = dataArray.getElementType();
+        if ((elemType == String.class) || (elemType == char.class) || (elemType == StructureData.class))
+          ss = ucar.nc2.util.xml.Parse.cleanCharacterData(ss); // make sure no bad chars
+        staxWriter.writeCharacters(ss.trim());
+      }
       staxWriter.writeEndElement();
     }
 
@@ -36,7 +36,7 @@ public abstract class AbstractStationProfileSubsetWriter extends DsgSubsetWriter
         collectionIndex) instanceof StationProfileFeatureCollection : "This class only deals with StationProfileFeatureCollections.";
 
     this.stationFeatureCollection = (StationProfileFeatureCollection) featColList.get(collectionIndex);
-    this.wantedStations = StationWriterUtils.getStationsInSubset(stationFeatureCollection, ncssParams);
+    this.wantedStations = StationWriterUtils.getStationsInSubset(fdPoint, stationFeatureCollection, ncssParams);
 
     if (this.wantedStations.isEmpty()) {
       throw new FeaturesNotFoundException("No stations found in subset.");
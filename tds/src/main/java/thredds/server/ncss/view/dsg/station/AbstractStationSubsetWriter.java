@@ -4,6 +4,8 @@
  */
 package thredds.server.ncss.view.dsg.station;
 
+import thredds.server.ncss.controller.DsgInventory;
+import thredds.server.ncss.controller.DsgInventoryCache;
 import thredds.server.ncss.exception.FeaturesNotFoundException;
 import thredds.server.ncss.exception.NcssException;
 import thredds.server.ncss.view.dsg.DsgSubsetWriter;
@@ -18,6 +20,9 @@ import ucar.nc2.time.CalendarDate;
 import ucar.nc2.time.CalendarDateRange;
 import javax.annotation.Nonnull;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -28,6 +33,9 @@ public abstract class AbstractStationSubsetWriter extends DsgSubsetWriter {
   protected final List<StationFeature> wantedStations;
   protected boolean headerDone = false;
 
+  private final int collectionIndex;
+  private ParallelStationReader.DatasetOpener datasetOpener; // null = read sequentially
+
   public AbstractStationSubsetWriter(FeatureDatasetPoint fdPoint, SubsetParams ncssParams)
       throws NcssException, IOException {
     this(fdPoint, ncssParams, 0);
@@ -42,8 +50,9 @@ public abstract class AbstractStationSubsetWriter extends DsgSubsetWriter {
     assert featColList.get(
         collectionIndex) instanceof StationTimeSeriesFeatureCollection : "This class only deals with StationTimeSeriesFeatureCollections.";
 
+    this.collectionIndex = collectionIndex;
     this.stationFeatureCollection = (StationTimeSeriesFeatureCollection) featColList.get(collectionIndex);
-    this.wantedStations = StationWriterUtils.getStationsInSubset(stationFeatureCollection, ncssParams);
+    this.wantedStations = StationWriterUtils.getStationsInSubset(fdPoint, stationFeatureCollection, ncssParams);
 
     if (this.wantedStations.isEmpty()) {
       throw new FeaturesNotFoundException("No stations found in subset.");
@@ -56,28 +65,38 @@ public abstract class AbstractStationSubsetWriter extends DsgSubsetWriter {
 
   protected abstract void writeFooter() throws Exception;
 
-  @Override
-  public void write() throws Exception {
+  /**
+   * Let the stations be read concurrently, if ParallelStationReader is configured, each reader thread with another
+   * dataset of the request from the opener.
+   */
+  public void setDatasetOpener(ParallelStationReader.DatasetOpener datasetOpener) {
+    this.datasetOpener = datasetOpener;
+  }
 
-    // Perform spatial subset.
-    StationTimeSeriesFeatureCollection subsettedStationFeatCol =
-        stationFeatureCollection.subsetFeatures(wantedStations);
-    int count = 0;
+  /** Whether the response is made from writeStationPointFeature(), so the stations can be read concurrently. */
+  protected boolean canReadStationsInParallel() {
+    return true;
+  }
 
-    for (StationTimeSeriesFeature stationFeat : subsettedStationFeatCol) {
+  @Override
+  public void write() throws Exception {
+    int count;
+    if (canReadStationsInParallel()) {
+      count = readStations(getSubset(), new ParallelStationReader.ObsWriter() {
+        @Override
+        public void write(PointFeature obs) throws Exception {
+          writePointFeature(obs);
+        }
 
-      // Perform temporal subset. We do this even when a time instant is specified, in which case wantedRange
-      // represents a sanity check (i.e. "give me the feature closest to the specified time, but it must at
-      // least be within an hour").
-      StationTimeSeriesFeature subsettedStationFeat = stationFeat.subset(wantedRange);
+        @Override
+        public void endStation(StationFeature station, int nobs) {}
+      });
 
-      if (ncssParams.getTime() != null) {
-        CalendarDate wantedTime = ncssParams.getTime();
-        subsettedStationFeat =
-            new ClosestTimeStationFeatureSubset((StationTimeSeriesFeatureImpl) subsettedStationFeat, wantedTime);
+    } else {
+      count = 0;
+      for (StationTimeSeriesFeature stationFeat : getSubset()) {
+        count += writeStationTimeSeriesFeature(subsetTime(stationFeat));
       }
-
-      count += writeStationTimeSeriesFeature(subsettedStationFeat);
     }
 
     if (count == 0) {
@@ -87,25 +106,106 @@ public abstract class AbstractStationSubsetWriter extends DsgSubsetWriter {
     writeFooter();
   }
 
+  /**
+   * Perform spatial subset.
+   * Leaves out stations that have no observations in the wanted range, if we know that already.
+   */
+  protected StationTimeSeriesFeatureCollection getSubset() throws NcssException, IOException {
+    List<StationFeature> stations = wantedStations;
+    DsgInventory inventory = DsgInventoryCache.getIfPresent(fdPoint);
+    if (inventory != null)
+      stations = inventory.filterStations(wantedStations, wantedRange);
+    if (stations.isEmpty()) {
+      throw new NcssException("No features are in the requested subset");
+    }
+
+    return stationFeatureCollection.subsetFeatures(stations);
+  }
+
+  /**
+   * Perform temporal subset. We do this even when a time instant is specified, in which case wantedRange
+   * represents a sanity check (i.e. "give me the feature closest to the specified time, but it must at
+   * least be within an hour").
+   */
+  protected StationTimeSeriesFeature subsetTime(StationTimeSeriesFeature stationFeat) throws IOException {
+    StationTimeSeriesFeature subsettedStationFeat = stationFeat.subset(wantedRange);
+
+    if (ncssParams.getTime() != null) {
+      CalendarDate wantedTime = ncssParams.getTime();
+      subsettedStationFeat =
+          new ClosestTimeStationFeatureSubset((StationTimeSeriesFeatureImpl) subsettedStationFeat, wantedTime);
+    }
+    return subsettedStationFeat;
+  }
+
+  /**
+   * Give the time subset of each station to obsWriter, in the order of the stations. The stations are read
+   * concurrently by ParallelStationReader if it is configured and there is a dataset opener, otherwise one after
+   * another.
+   *
+   * @return number of observations
+   */
+  protected int readStations(StationTimeSeriesFeatureCollection subset, ParallelStationReader.ObsWriter obsWriter)
+      throws Exception {
+    ParallelStationReader parallelReader = ParallelStationReader.getDefault();
+    if (parallelReader != null && datasetOpener != null) {
+      List<StationFeature> stations = subset.getStationFeatures();
+      if (stations.size() > 1) {
+        int count = parallelReader.read(fdPoint, stations, datasetOpener, this::readStation, obsWriter);
+        if (count >= 0)
+          return count;
+      }
+    }
+
+    int count = 0;
+    for (StationTimeSeriesFeature stationFeat : subset) {
+      int nobs = 0;
+      for (PointFeature pointFeat : subsetTime(stationFeat)) {
+        obsWriter.write(pointFeat);
+        nobs++;
+      }
+      obsWriter.endStation(stationFeat, nobs);
+      count += nobs;
+    }
+    return count;
+  }
+
+  // the time subset of the station in another dataset of the request; called in a reader thread
+  private Iterable<PointFeature> readStation(FeatureDatasetPoint fdp, StationFeature station) throws IOException {
+    StationTimeSeriesFeatureCollection coll =
+        (StationTimeSeriesFeatureCollection) fdp.getPointFeatureCollectionList().get(collectionIndex);
+    List<StationFeature> found = coll.getStationFeatures(Collections.singletonList(station.getName()));
+    if (found.isEmpty())
+      return Collections.emptyList();
+    for (StationTimeSeriesFeature stationFeat : coll.subsetFeatures(found))
+      return subsetTime(stationFeat);
+    return Collections.emptyList();
+  }
+
   protected int writeStationTimeSeriesFeature(StationTimeSeriesFeature stationFeat) throws Exception {
     int count = 0;
     for (PointFeature pointFeat : stationFeat) {
-      assert pointFeat instanceof StationPointFeature : "Expected pointFeat to be a StationPointFeature, not a "
-          + pointFeat.getClass().getSimpleName();
-
-      if (!headerDone) {
-        writeHeader((StationPointFeature) pointFeat);
-        headerDone = true;
-      }
-      writeStationPointFeature((StationPointFeature) pointFeat);
+      writePointFeature(pointFeat);
       count++;
     }
     return count;
   }
 
+  private void writePointFeature(PointFeature pointFeat) throws Exception {
+    assert pointFeat instanceof StationPointFeature : "Expected pointFeat to be a StationPointFeature, not a "
+        + pointFeat.getClass().getSimpleName();
+
+    if (!headerDone) {
+      writeHeader((StationPointFeature) pointFeat);
+      headerDone = true;
+    }
+    writeStationPointFeature((StationPointFeature) pointFeat);
+  }
+
   protected static class ClosestTimeStationFeatureSubset extends StationTimeSeriesFeatureImpl {
     private final StationTimeSeriesFeature stationFeat;
     private CalendarDate closestTime;
+    private final List<PointFeature> closest = new ArrayList<>(); // the observations at closestTime
 
     protected ClosestTimeStationFeatureSubset(StationTimeSeriesFeatureImpl stationFeat, CalendarDate wantedTime)
         throws IOException {
@@ -129,7 +229,10 @@ public abstract class AbstractStationSubsetWriter extends DsgSubsetWriter {
           if (diff < smallestDiff) {
             closestTime = obsTime;
             smallestDiff = diff;
+            closest.clear();
           }
+          if (obsTime.equals(closestTime))
+            closest.add(pointFeat);
         }
       } finally {
         stationFeat.finish();
@@ -156,6 +259,14 @@ public abstract class AbstractStationSubsetWriter extends DsgSubsetWriter {
       }
     }
 
+    // the observations kept while looking for the closest time, instead of reading the station again
+    @Override
+    public Iterator<PointFeature> iterator() {
+      if (closestTime == null)
+        return super.iterator();
+      return closest.iterator();
+    }
+
     @Override
     public PointFeatureIterator getPointFeatureIterator() throws IOException {
       if (closestTime == null) {
@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package thredds.server.ncss.view.dsg.station;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import ucar.nc2.ft.FeatureDatasetPoint;
+import ucar.nc2.ft.PointFeature;
+import ucar.nc2.ft.point.StationFeature;
+
+/**
+ * Read the stations of an NCSS station request concurrently, and give their observations to the writer in the order
+ * of the stations, so the response is the same as when the stations are read one after another.
+ * <p/>
+ * A dataset is not thread safe, so each reader thread uses its own FeatureDatasetPoint of the requested dataset,
+ * usually made from another NetcdfFile in the file cache, and it stays open until the request is done. An opener
+ * that gives back the requested dataset itself, or one it already gave (eg the shared dataset of a point feature
+ * collection), can't be used, and the stations are read sequentially.
+ * Each station hands its observations to the writer through a queue of at most queueSize, so a request holds at most
+ * concurrency * queueSize observations in memory.
+ * <p/>
+ * The reader threads are shared by all requests, and take the stations in the order they were submitted, so the
+ * first station in flight of each request is always being read, or done, and no request waits for another forever.
+ *
+ * @since 10/16/2026
+ */
+public class ParallelStationReader {
+  private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(ParallelStationReader.class);
+
+  public static final int DEFAULT_CONCURRENCY = 1;
+  public static final int DEFAULT_QUEUE_SIZE = 1000;
+  public static final int DEFAULT_THREADS = 16;
+
+  /** Opens another dataset of the request. */
+  public interface DatasetOpener {
+    @Nullable
+    FeatureDatasetPoint open() throws IOException;
+  }
+
+  /** Reads the observations of a station from a dataset; called in a reader thread. */
+  interface StationReader {
+    Iterable<PointFeature> read(FeatureDatasetPoint fdp, StationFeature station) throws IOException;
+  }
+
+  /** Takes the observations; called in the request thread, in the order of the stations. */
+  interface ObsWriter {
+    void write(PointFeature obs) throws Exception;
+
+    void endStation(StationFeature station, int nobs) throws Exception;
+  }
+
+  private static volatile ParallelStationReader defaultReader = null; // null = read sequentially
+  private static ExecutorService defaultExecutor;
+
+  /**
+   * Set how NCSS station requests are read. Called from TdsInit.
+   *
+   * @param concurrency stations read at once per request; 1 or less to read sequentially
+   * @param queueSize maximum observations of a station read ahead of writing
+   * @param nthreads threads reading stations, shared by all requests
+   */
+  public static synchronized void setDefault(int concurrency, int queueSize, int nthreads) {
+    shutdown();
+    if (concurrency <= 1 || queueSize <= 0 || nthreads <= 0)
+      return;
+    AtomicInteger count = new AtomicInteger();
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(nthreads, nthreads, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), r -> {
+          Thread t = new Thread(r, "ParallelStationReader-" + count.incrementAndGet());
+          t.setDaemon(true);
+          return t;
+        });
+    pool.allowCoreThreadTimeOut(true);
+    defaultExecutor = pool;
+    defaultReader = new ParallelStationReader(defaultExecutor, concurrency, queueSize);
+    log.info("ParallelStationReader: concurrency={} queueSize={} threads={}", concurrency, queueSize, nthreads);
+  }
+
+  /** @return the configured reader, or null to read sequentially */
+  static ParallelStationReader getDefault() {
+    return defaultReader;
+  }
+
+  public static synchronized void shutdown() {
+    defaultReader = null;
+    if (defaultExecutor != null) {
+      defaultExecutor.shutdownNow();
+      defaultExecutor = null;
+    }
+  }
+
+  ///////////////////////////////////////////////////////////////////////
+
+  private static final Object END = new Object(); // the last item in the queue of a station
+
+  private final ExecutorService executor;
+  private final int concurrency;
+  private final int queueSize;
+
+  ParallelStationReader(ExecutorService executor, int concurrency, int queueSize) {
+    this.executor = executor;
+    this.concurrency = Math.max(1, concurrency);
+    this.queueSize = Math.max(1, queueSize);
+  }
+
+  /**
+   * Read the stations, and write their observations in order.
+   *
+   * @param requested the dataset of the request, used by the request thread
+   * @param stations of the requested dataset
+   * @param opener opens the datasets of the reader threads
+   * @return number of observations, or -1 if no dataset could be opened, and nothing was read
+   */
+  int read(FeatureDatasetPoint requested, List<StationFeature> stations, DatasetOpener opener, StationReader reader,
+      ObsWriter writer) throws Exception {
+    int nreaders = Math.min(concurrency, stations.size());
+    BlockingQueue<FeatureDatasetPoint> datasets = new LinkedBlockingQueue<>();
+    List<FeatureDatasetPoint> opened = new ArrayList<>();
+    Deque<Pending> inFlight = new ArrayDeque<>();
+    Pending pending = null; // being written
+    try {
+      while (opened.size() < nreaders) {
+        FeatureDatasetPoint fdp = opener.open();
+        if (fdp == null || isInUse(fdp, requested, opened))
+          break; // not ours to read from another thread, or to close
+        opened.add(fdp);
+        datasets.add(fdp);
+      }
+      if (opened.isEmpty())
+        return -1;
+
+      // no more stations in flight than datasets, so every station in flight is being read
+      int count = 0;
+      int next = 0;
+      for (int done = 0; done < stations.size(); done++) {
+        while (next < stations.size() && inFlight.size() < opened.size()) {
+          StationFeature station = stations.get(next++);
+          BlockingQueue<Object> queue = new ArrayBlockingQueue<>(queueSize);
+          Future<?> future = executor.submit(() -> readStation(datasets, reader, station, queue));
+          inFlight.add(new Pending(station, queue, future));
+        }
+
+        pending = inFlight.remove();
+        int nobs = 0;
+        for (Object item = take(pending.queue); item != END; item = take(pending.queue)) {
+          if (item instanceof Failure)
+            throw ((Failure) item).rethrow();
+          writer.write((PointFeature) item);
+          nobs++;
+        }
+        StationFeature written = pending.station;
+        pending = null; // its reader is done
+        writer.endStation(written, nobs);
+        count += nobs;
+      }
+      return count;
+
+    } finally {
+      // only if something failed
+      if (pending != null)
+        pending.future.cancel(true);
+      for (Pending other : inFlight)
+        other.future.cancel(true);
+      awaitReaders(datasets, opened.size());
+      for (FeatureDatasetPoint fdp : opened) {
+        try {
+          fdp.close();
+        } catch (IOException e) {
+          log.warn("ParallelStationReader: failed to close {}", fdp.getLocation(), e);
+        }
+      }
+    }
+  }
+
+  // the same instance as a dataset already used by the request
+  private static boolean isInUse(FeatureDatasetPoint fdp, FeatureDatasetPoint requested,
+      List<FeatureDatasetPoint> opened) {
+    if (fdp == requested)
+      return true;
+    for (FeatureDatasetPoint other : opened) {
+      if (fdp == other)
+        return true;
+    }
+    return false;
+  }
+
+  private static void readStation(BlockingQueue<FeatureDatasetPoint> datasets, StationReader reader,
+      StationFeature station, BlockingQueue<Object> queue) {
+    FeatureDatasetPoint fdp;
+    try {
+      fdp = datasets.take();
+    } catch (InterruptedException e) {
+      return; // cancelled
+    }
+
+    try {
+      for (PointFeature obs : reader.read(fdp, station))
+        queue.put(obs);
+      queue.put(END);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt(); // cancelled
+    } catch (Throwable t) {
+      try {
+        queue.put(new Failure(t)); // the writer is waiting for this station, so it will take it
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    } finally {
+      datasets.add(fdp);
+    }
+  }
+
+  private static Object take(BlockingQueue<Object> queue) throws InterruptedIOException {
+    try {
+      return queue.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("ParallelStationReader: interrupted");
+    }
+  }
+
+  // wait for reads to give back their dataset, before it is closed
+  private static void awaitReaders(BlockingQueue<FeatureDatasetPoint> datasets, int n) {
+    try {
+      for (int i = 0; i < n; i++)
+        datasets.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static class Failure {
+    final Throwable cause;
+
+    Failure(Throwable cause) {
+      this.cause = cause;
+    }
+
+    Exception rethrow() {
+      if (cause instanceof Error)
+        throw (Error) cause;
+      return (Exception) cause;
+    }
+  }
+
+  private static class Pending {
+    final StationFeature station;
+    final BlockingQueue<Object> queue;
+    final Future<?> future;
+
+    Pending(StationFeature station, BlockingQueue<Object> queue, Future<?> future) {
+      this.station = station;
+      this.queue = queue;
+      this.future = future;
+    }
+  }
+}
@@ -2,15 +2,14 @@ package thredds.server.ncss.view.dsg.station;
 
 import org.springframework.http.HttpHeaders;
 import thredds.server.ncss.exception.NcssException;
+import thredds.server.ncss.view.dsg.DsgTextFormatter;
 import thredds.server.ncss.view.dsg.HttpHeaderWriter;
-import ucar.ma2.Array;
+import ucar.ma2.StructureData;
 import ucar.nc2.VariableSimpleIF;
 import ucar.nc2.ft.FeatureDatasetPoint;
 import ucar.nc2.ft.StationProfileFeature;
 import ucar.nc2.ft.point.StationPointFeature;
 import ucar.nc2.ft2.coverage.SubsetParams;
-import ucar.nc2.time.CalendarDateFormatter;
-import ucar.unidata.util.Format;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -21,6 +20,7 @@ import java.nio.charset.StandardCharsets;
 public class StationProfileSubsetWriterCSV extends AbstractStationProfileSubsetWriter {
 
   final protected PrintWriter writer;
+  private final DsgTextFormatter text = new DsgTextFormatter();
 
   public StationProfileSubsetWriterCSV(FeatureDatasetPoint fdPoint, SubsetParams ncssParams, OutputStream out)
       throws NcssException, IOException {
@@ -54,26 +54,23 @@ public class StationProfileSubsetWriterCSV extends AbstractStationProfileSubsetW
 
   @Override
   protected void writeStationPointFeature(StationProfileFeature stn, StationPointFeature pointFeat) throws IOException {
-    writer.print(CalendarDateFormatter.toDateTimeStringISO(pointFeat.getObservationTimeAsCalendarDate()));
-    writer.print(',');
-    writer.print(pointFeat.getLocation().getAltitude());
-    writer.print(',');
-    writer.print(stn.getName());
-    writer.print(',');
-    writer.print(Format.dfrac(stn.getLatitude(), 3));
-    writer.print(',');
-    writer.print(Format.dfrac(stn.getLongitude(), 3));
+    text.appendTime(pointFeat.getObservationTimeAsCalendarDate());
+    text.append(',').append(pointFeat.getLocation().getAltitude());
+    text.append(',').append(stn.getName());
+    text.append(',').appendFixed(stn.getLatitude(), 3);
+    text.append(',').appendFixed(stn.getLongitude(), 3);
 
+    StructureData structureData = pointFeat.getDataAll();
     for (VariableSimpleIF wantedVar : wantedVariables) {
-      writer.print(',');
-      Array dataArray = pointFeat.getDataAll().getArray(wantedVar.getShortName());
-      writer.print(dataArray.toString().trim());
+      text.append(',').appendValue(structureData, wantedVar.getShortName());
     }
-    writer.println();
+    text.newLine();
+    text.writeIfFull(writer);
   }
 
   @Override
   protected void writeFooter() throws IOException {
+    text.write(writer);
     writer.flush();
   }
 }
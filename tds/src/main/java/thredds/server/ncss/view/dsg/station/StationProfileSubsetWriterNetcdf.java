@@ -105,6 +105,7 @@ public class StationProfileSubsetWriterNetcdf extends AbstractStationProfileSubs
   @Override
   protected void writeFooter() throws Exception {
     cfWriter.finish();
+    sizeKnown(netcdfResult.length());
     IO.copyFileB(netcdfResult, out, 60000); // Copy the file in to the OutputStream.
     out.flush();
   }
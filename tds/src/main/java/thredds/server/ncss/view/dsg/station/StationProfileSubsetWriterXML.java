@@ -2,6 +2,7 @@ package thredds.server.ncss.view.dsg.station;
 
 import org.springframework.http.HttpHeaders;
 import thredds.server.ncss.exception.NcssException;
+import thredds.server.ncss.view.dsg.DsgTextFormatter;
 import thredds.server.ncss.view.dsg.HttpHeaderWriter;
 import ucar.ma2.Array;
 import ucar.ma2.StructureData;
@@ -11,8 +12,6 @@ import ucar.nc2.ft.FeatureDatasetPoint;
 import ucar.nc2.ft.StationProfileFeature;
 import ucar.nc2.ft.point.StationPointFeature;
 import ucar.nc2.ft2.coverage.SubsetParams;
-import ucar.nc2.time.CalendarDateFormatter;
-import ucar.unidata.util.Format;
 
 import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
@@ -22,6 +21,7 @@ import java.io.OutputStream;
 
 public class StationProfileSubsetWriterXML extends AbstractStationProfileSubsetWriter {
   private final XMLStreamWriter staxWriter;
+  private final DsgTextFormatter text = new DsgTextFormatter();
 
   private final boolean isNested;
 
@@ -63,21 +63,22 @@ public class StationProfileSubsetWriterXML extends AbstractStationProfileSubsetW
     staxWriter.writeCharacters("\n    ");
     staxWriter.writeStartElement("stationFeature");
     staxWriter.writeAttribute("date",
-        CalendarDateFormatter.toDateTimeStringISO(stationPointFeat.getObservationTimeAsCalendarDate()));
-    staxWriter.writeAttribute("altitude", Format.dfrac(stationPointFeat.getLocation().getAltitude(), 0));
+        text.appendTime(stationPointFeat.getObservationTimeAsCalendarDate()).take(0));
+    staxWriter.writeAttribute("altitude", text.appendFixed(stationPointFeat.getLocation().getAltitude(), 0).take(0));
     staxWriter.writeCharacters("\n        ");
     staxWriter.writeStartElement("station");
     staxWriter.writeAttribute("name", stn.getName());
-    staxWriter.writeAttribute("latitude", Format.dfrac(stn.getLatitude(), 3));
-    staxWriter.writeAttribute("longitude", Format.dfrac(stn.getLongitude(), 3));
+    staxWriter.writeAttribute("latitude", text.appendFixed(stn.getLatitude(), 3).take(0));
+    staxWriter.writeAttribute("longitude", text.appendFixed(stn.getLongitude(), 3).take(0));
     if (!Double.isNaN(stn.getAltitude())) {
-      staxWriter.writeAttribute("altitude", Format.dfrac(stn.getAltitude(), 0));
+      staxWriter.writeAttribute("altitude", text.appendFixed(stn.getAltitude(), 0).take(0));
     }
     if (stn.getDescription() != null) {
       staxWriter.writeCharacters(stn.getDescription());
     }
     staxWriter.writeEndElement();
 
+    StructureData structureData = stationPointFeat.getDataAll();
     for (VariableSimpleIF wantedVar : wantedVariables) {
       staxWriter.writeCharacters("\n        ");
       staxWriter.writeStartElement("data");
@@ -86,13 +87,17 @@ public class StationProfileSubsetWriterXML extends AbstractStationProfileSubsetW
         staxWriter.writeAttribute(CDM.UNITS, wantedVar.getUnitsString());
       }
 
-      Array dataArray = stationPointFeat.getDataAll().getArray(wantedVar.getShortName());
-      String ss = dataArray.toString();
-      Class elemType = dataArray.getElementType();
-      if ((elemType == String.class) || (elemType == char.class) || (elemType == StructureData.class)) {
-        ss = ucar.nc2.util.xml.Parse.cleanCharacterData(ss); // make sure no bad chars
+      if (text.appendNumber(structureData, wantedVar.getShortName())) {
+        text.writeCharacters(staxWriter);
+      } else {
+        Array dataArray = structureData.getArray(wantedVar.getShortName());
+        String ss = dataArray.toString();
+        Class elemType = dataArray.getElementType();
+        if ((elemType == String.class) || (elemType == char.class) || (elemType == StructureData.class)) {
+          ss = ucar.nc2.util.xml.Parse.cleanCharacterData(ss); // make sure no bad chars
+        }
+        staxWriter.writeCharacters(ss.trim());
       }
-      staxWriter.writeCharacters(ss.trim());
       staxWriter.writeEndElement();
     }
     staxWriter.writeCharacters("\n    ");
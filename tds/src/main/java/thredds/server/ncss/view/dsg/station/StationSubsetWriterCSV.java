@@ -11,15 +11,14 @@ import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
 import org.springframework.http.HttpHeaders;
 import thredds.server.ncss.exception.NcssException;
+import thredds.server.ncss.view.dsg.DsgTextFormatter;
 import thredds.server.ncss.view.dsg.HttpHeaderWriter;
-import ucar.ma2.Array;
+import ucar.ma2.StructureData;
 import ucar.nc2.VariableSimpleIF;
 import ucar.nc2.ft.FeatureDatasetPoint;
 import ucar.nc2.ft.point.StationPointFeature;
 import ucar.nc2.ft2.coverage.SubsetParams;
-import ucar.nc2.time.CalendarDateFormatter;
 import ucar.unidata.geoloc.Station;
-import ucar.unidata.util.Format;
 
 /**
  * Created by cwardgar on 2014-05-24.
@@ -27,6 +26,11 @@ import ucar.unidata.util.Format;
 public class StationSubsetWriterCSV extends AbstractStationSubsetWriter {
 
   final protected PrintWriter writer;
+  private final DsgTextFormatter text = new DsgTextFormatter();
+
+  // ",name,latitude,longitude" of the last station
+  private Station lastStation;
+  private String stationColumns;
 
   public StationSubsetWriterCSV(FeatureDatasetPoint fdPoint, SubsetParams ncssParams, OutputStream out)
       throws NcssException, IOException {
@@ -60,24 +64,29 @@ public class StationSubsetWriterCSV extends AbstractStationSubsetWriter {
   protected void writeStationPointFeature(StationPointFeature stationPointFeat) throws IOException {
     Station station = stationPointFeat.getStation();
 
-    writer.print(CalendarDateFormatter.toDateTimeStringISO(stationPointFeat.getObservationTimeAsCalendarDate()));
-    writer.print(',');
-    writer.print(station.getName());
-    writer.print(',');
-    writer.print(Format.dfrac(station.getLatitude(), 3));
-    writer.print(',');
-    writer.print(Format.dfrac(station.getLongitude(), 3));
+    if (station != lastStation) {
+      int start = text.length();
+      text.append(',').append(station.getName());
+      text.append(',').appendFixed(station.getLatitude(), 3);
+      text.append(',').appendFixed(station.getLongitude(), 3);
+      stationColumns = text.take(start);
+      lastStation = station;
+    }
+
+    text.appendTime(stationPointFeat.getObservationTimeAsCalendarDate());
+    text.append(stationColumns);
 
+    StructureData structureData = stationPointFeat.getDataAll();
     for (VariableSimpleIF wantedVar : wantedVariables) {
-      writer.print(',');
-      Array dataArray = stationPointFeat.getDataAll().getArray(wantedVar.getShortName());
-      writer.print(dataArray.toString().trim());
+      text.append(',').appendValue(structureData, wantedVar.getShortName());
     }
-    writer.println();
+    text.newLine();
+    text.writeIfFull(writer);
   }
 
   @Override
   protected void writeFooter() throws IOException {
+    text.write(writer);
     writer.flush();
   }
 }
@@ -5,13 +5,19 @@
 package thredds.server.ncss.view.dsg.station;
 
 import org.springframework.http.HttpHeaders;
+import thredds.server.config.ThreddsConfig;
 import thredds.server.ncss.controller.NcssDiskCache;
 import thredds.server.ncss.exception.NcssException;
+import thredds.server.ncss.format.SupportedFormat;
+import thredds.server.ncss.view.dsg.CFPointStreamWriter;
 import thredds.server.ncss.view.dsg.HttpHeaderWriter;
 import ucar.nc2.Attribute;
 import ucar.nc2.NetcdfFileWriter;
 import ucar.nc2.constants.CDM;
+import ucar.nc2.ft.FeatureDataset;
 import ucar.nc2.ft.FeatureDatasetPoint;
+import ucar.nc2.ft.PointFeature;
+import ucar.nc2.ft.point.StationFeature;
 import ucar.nc2.ft.point.StationPointFeature;
 import ucar.nc2.ft.point.writer.CFPointWriterConfig;
 import ucar.nc2.ft.point.writer.WriterCFStationCollection;
@@ -19,6 +25,7 @@ import ucar.nc2.ft2.coverage.SubsetParams;
 import ucar.nc2.time.CalendarDateUnit;
 import ucar.nc2.util.IO;
 import ucar.unidata.geoloc.Station;
+import jakarta.servlet.http.HttpServletResponse;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -27,15 +34,23 @@ import java.util.List;
 
 /**
  * Created by cwardgar on 2014/05/29.
+ * NetCDF-3 is counted first and then streamed to out by CFPointStreamWriter, as a contiguous ragged array;
+ * otherwise the file is written in the disk cache by WriterCFStationCollection, and copied to out.
  */
 public class StationSubsetWriterNetcdf extends AbstractStationSubsetWriter {
   private final OutputStream out;
   private final NetcdfFileWriter.Version version;
-
-  private final File netcdfResult;
-  private final WriterCFStationCollection cfWriter;
   private final NcssDiskCache ncssDiskCache;
 
+  private final List<Attribute> attribs = new ArrayList<>();
+  private final CalendarDateUnit timeUnit;
+  private final String altUnit;
+
+  private boolean prepared;
+  private CFPointStreamWriter streamWriter;
+  private File netcdfResult;
+  private WriterCFStationCollection cfWriter;
+
   public StationSubsetWriterNetcdf(FeatureDatasetPoint fdPoint, SubsetParams ncssParams, NcssDiskCache ncssDiskCache,
       OutputStream out, NetcdfFileWriter.Version version) throws NcssException, IOException {
     super(fdPoint, ncssParams);
@@ -47,8 +62,6 @@ public class StationSubsetWriterNetcdf extends AbstractStationSubsetWriter {
     this.out = out;
     this.version = version;
 
-    this.netcdfResult = ncssDiskCache.getDiskCache().createUniqueFile("ncss-station", ".nc");
-    List<Attribute> attribs = new ArrayList<>();
     attribs.add(new Attribute(CDM.TITLE, "Extracted data from TDS Feature Collection " + fdPoint.getLocation()));
 
     // get the timeUnit and altUnit from the FeatureCollection
@@ -56,10 +69,8 @@ public class StationSubsetWriterNetcdf extends AbstractStationSubsetWriter {
     if (timeUnit == null) {
       timeUnit = CalendarDateUnit.unixDateUnit;
     }
-    String altUnit = this.stationFeatureCollection.getAltUnits();
-
-    this.cfWriter = new WriterCFStationCollection(netcdfResult.getAbsolutePath(), attribs, wantedVariables, timeUnit,
-        altUnit, new CFPointWriterConfig(version));
+    this.timeUnit = timeUnit;
+    this.altUnit = this.stationFeatureCollection.getAltUnits();
   }
 
   @Override
@@ -67,21 +78,86 @@ public class StationSubsetWriterNetcdf extends AbstractStationSubsetWriter {
     return HttpHeaderWriter.getHttpHeadersForNetcdf(datasetPath, ncssDiskCache, version);
   }
 
+  @Override
+  public void respond(HttpServletResponse res, FeatureDataset ft, String requestPathInfo, SubsetParams queryParams,
+      SupportedFormat format) throws Exception {
+    prepare();
+    if (streamWriter != null) {
+      sizeKnown(streamWriter.getLength());
+      res.setContentLengthLong(streamWriter.getLength());
+    }
+    write();
+  }
+
+  @Override
+  public void write() throws Exception {
+    prepare();
+    super.write();
+  }
+
+  // The first pass of a NetCDF-3 response: count the observations of each station, so the file can be laid out
+  // before any of it is written.
+  private void prepare() throws Exception {
+    if (prepared)
+      return;
+    prepared = true;
+
+    if (version == NetcdfFileWriter.Version.netcdf3
+        && ThreddsConfig.getBoolean("NetcdfSubsetService.streamNetcdf3", false)) {
+      // the counts are always read from the data, since the header can't be changed once it's sent
+      CFPointStreamWriter stream = CFPointStreamWriter.forStations(attribs, wantedVariables, timeUnit, altUnit);
+      readStations(getSubset(), new ParallelStationReader.ObsWriter() {
+        @Override
+        public void write(PointFeature obs) throws IOException {
+          stream.countObs(obs);
+        }
+
+        @Override
+        public void endStation(StationFeature station, int nobs) {
+          stream.addStation(station, nobs);
+        }
+      });
+
+      if (stream.getNobs() == 0)
+        return; // write() reports that there are no features
+      if (stream.layout(stationFeatureCollection.getTimeName())) {
+        streamWriter = stream;
+        return;
+      }
+    }
+
+    this.netcdfResult = ncssDiskCache.getDiskCache().createUniqueFile("ncss-station", ".nc");
+    this.cfWriter = new WriterCFStationCollection(netcdfResult.getAbsolutePath(), attribs, wantedVariables, timeUnit,
+        altUnit, new CFPointWriterConfig(version));
+  }
+
   @Override
   protected void writeHeader(StationPointFeature stationPointFeat) throws Exception {
-    cfWriter.writeHeader(wantedStations, stationPointFeat);
+    if (streamWriter != null)
+      streamWriter.start(out);
+    else
+      cfWriter.writeHeader(wantedStations, stationPointFeat);
   }
 
   @Override
   protected void writeStationPointFeature(StationPointFeature stationPointFeat) throws Exception {
-    Station station = stationPointFeat.getStation();
-    cfWriter.writeRecord(station, stationPointFeat, stationPointFeat.getFeatureData());
+    if (streamWriter != null) {
+      streamWriter.writeObs(stationPointFeat);
+    } else {
+      Station station = stationPointFeat.getStation();
+      cfWriter.writeRecord(station, stationPointFeat, stationPointFeat.getFeatureData());
+    }
   }
 
   @Override
   protected void writeFooter() throws Exception {
-    cfWriter.finish();
-    IO.copyFileB(netcdfResult, out, 60000); // Copy the file in to the OutputStream.
+    if (streamWriter != null) {
+      streamWriter.finish();
+    } else {
+      cfWriter.finish();
+      sizeKnown(netcdfResult.length());
+      IO.copyFileB(netcdfResult, out, 60000); // Copy the file in to the OutputStream.
+    }
     out.flush();
   }
 }
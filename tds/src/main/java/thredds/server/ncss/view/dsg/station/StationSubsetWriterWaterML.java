@@ -59,6 +59,11 @@ public class StationSubsetWriterWaterML extends AbstractStationSubsetWriter {
     NcDocumentMetadataPropertyType.initMetadata(collection.addNewMetadata());
   }
 
+  @Override
+  protected boolean canReadStationsInParallel() {
+    return false; // writes whole stations
+  }
+
   @Override
   protected int writeStationTimeSeriesFeature(StationTimeSeriesFeature stationFeat) throws Exception {
     if (!headerDone) {
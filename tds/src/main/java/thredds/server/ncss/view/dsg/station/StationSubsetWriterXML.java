@@ -11,6 +11,7 @@ import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 import org.springframework.http.HttpHeaders;
 import thredds.server.ncss.exception.NcssException;
+import thredds.server.ncss.view.dsg.DsgTextFormatter;
 import thredds.server.ncss.view.dsg.HttpHeaderWriter;
 import ucar.ma2.Array;
 import ucar.ma2.StructureData;
@@ -19,15 +20,18 @@ import ucar.nc2.constants.CDM;
 import ucar.nc2.ft.FeatureDatasetPoint;
 import ucar.nc2.ft.point.StationPointFeature;
 import ucar.nc2.ft2.coverage.SubsetParams;
-import ucar.nc2.time.CalendarDateFormatter;
 import ucar.unidata.geoloc.Station;
-import ucar.unidata.util.Format;
 
 /**
  * Created by cwardgar on 2014/05/27.
  */
 public class StationSubsetWriterXML extends AbstractStationSubsetWriter {
   private final XMLStreamWriter staxWriter;
+  private final DsgTextFormatter text = new DsgTextFormatter();
+
+  // the attributes of the last station
+  private Station lastStation;
+  private String stationLatitude, stationLongitude, stationAltitude;
 
   private final boolean isNested;
 
@@ -71,21 +75,28 @@ public class StationSubsetWriterXML extends AbstractStationSubsetWriter {
     staxWriter.writeCharacters("\n    ");
     staxWriter.writeStartElement("stationFeature");
     staxWriter.writeAttribute("date",
-        CalendarDateFormatter.toDateTimeStringISO(stationPointFeat.getObservationTimeAsCalendarDate()));
+        text.appendTime(stationPointFeat.getObservationTimeAsCalendarDate()).take(0));
 
     staxWriter.writeCharacters("\n        ");
     staxWriter.writeStartElement("station");
     staxWriter.writeAttribute("name", station.getName());
-    staxWriter.writeAttribute("latitude", Format.dfrac(station.getLatitude(), 3));
-    staxWriter.writeAttribute("longitude", Format.dfrac(station.getLongitude(), 3));
-    if (!Double.isNaN(station.getAltitude())) {
-      staxWriter.writeAttribute("altitude", Format.dfrac(station.getAltitude(), 0));
+    if (station != lastStation) {
+      stationLatitude = text.appendFixed(station.getLatitude(), 3).take(0);
+      stationLongitude = text.appendFixed(station.getLongitude(), 3).take(0);
+      stationAltitude = Double.isNaN(station.getAltitude()) ? null : text.appendFixed(station.getAltitude(), 0).take(0);
+      lastStation = station;
+    }
+    staxWriter.writeAttribute("latitude", stationLatitude);
+    staxWriter.writeAttribute("longitude", stationLongitude);
+    if (stationAltitude != null) {
+      staxWriter.writeAttribute("altitude", stationAltitude);
     }
     if (station.getDescription() != null) {
       staxWriter.writeCharacters(station.getDescription());
     }
     staxWriter.writeEndElement();
 
+    StructureData structureData = stationPointFeat.getDataAll();
     for (VariableSimpleIF wantedVar : wantedVariables) {
       staxWriter.writeCharacters("\n        ");
       staxWriter.writeStartElement("data");
@@ -94,13 +105,17 @@ public class StationSubsetWriterXML extends AbstractStationSubsetWriter {
         staxWriter.writeAttribute(CDM.UNITS, wantedVar.getUnitsString());
       }
 
-      Array dataArray = stationPointFeat.getDataAll().getArray(wantedVar.getShortName());
-      String ss = dataArray.toString();
-      Class elemType = dataArray.getElementType();
-      if ((elemType == String.class) || (elemType == char.class) || (elemType == StructureData.class)) {
-        ss = ucar.nc2.util.xml.Parse.cleanCharacterData(ss); // make sure no bad chars
+      if (text.appendNumber(structureData, wantedVar.getShortName())) {
+        text.writeCharacters(staxWriter);
+      } else {
+        Array dataArray = structureData.getArray(wantedVar.getShortName());
+        String ss = dataArray.toString();
+        Class elemType = dataArray.getElementType();
+        if ((elemType == String.class) || (elemType == char.class) || (elemType == StructureData.class)) {
+          ss = ucar.nc2.util.xml.Parse.cleanCharacterData(ss); // make sure no bad chars
+        }
+        staxWriter.writeCharacters(ss.trim());
       }
-      staxWriter.writeCharacters(ss.trim());
       staxWriter.writeEndElement();
     }
 
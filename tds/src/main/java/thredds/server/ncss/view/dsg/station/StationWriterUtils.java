@@ -1,22 +1,32 @@
 package thredds.server.ncss.view.dsg.station;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import thredds.server.ncss.controller.DsgInventoryCache;
+import thredds.util.StationIndex;
+import ucar.nc2.ft.FeatureDatasetPoint;
 import ucar.nc2.ft.StationFeatureCollection;
 import ucar.nc2.ft.point.StationFeature;
 import ucar.nc2.ft2.coverage.SubsetParams;
 import ucar.unidata.geoloc.LatLonPoint;
-import ucar.unidata.geoloc.LatLonPoints;
 import ucar.unidata.geoloc.LatLonRect;
-import ucar.unidata.geoloc.Station;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 public class StationWriterUtils {
 
+  // the index of the station names of each collection, for each version of the file
+  private static final Cache<String, StationIndex<String>> stationIndexes =
+      CacheBuilder.newBuilder().maximumSize(100).softValues().build();
+
   // LOOK could do better : "all", and maybe HashSet<Name>
-  public static List<StationFeature> getStationsInSubset(StationFeatureCollection stationFeatCol,
-      SubsetParams ncssParams) throws IOException {
+  public static List<StationFeature> getStationsInSubset(FeatureDatasetPoint fdPoint,
+      StationFeatureCollection stationFeatCol, SubsetParams ncssParams) throws IOException {
     List<StationFeature> wantedStations;
 
     // verify SpatialSelection has some stations
@@ -30,12 +40,14 @@ public class StationWriterUtils {
       }
     } else if (ncssParams.getLatLonBoundingBox() != null) {
       LatLonRect llrect = ncssParams.getLatLonBoundingBox();
-      wantedStations = stationFeatCol.getStationFeatures(llrect);
+      List<String> stnList = getStationIndex(fdPoint, stationFeatCol).findInside(llrect);
+      wantedStations = stationFeatCol.getStationFeatures(stnList);
 
     } else if (ncssParams.getLatLonPoint() != null) {
-      Station closestStation = findClosestStation(stationFeatCol, ncssParams.getLatLonPoint());
+      String closestStation = getStationIndex(fdPoint, stationFeatCol).findNearest(ncssParams.getLatLonPoint());
       List<String> stnList = new ArrayList<>();
-      stnList.add(closestStation.getName());
+      if (closestStation != null)
+        stnList.add(closestStation);
       wantedStations = stationFeatCol.getStationFeatures(stnList);
 
     } else { // Want all.
@@ -46,38 +58,28 @@ public class StationWriterUtils {
   }
 
   /**
-   * @param stationFeatCol
-   * @param pt
-   * @return
-   * @throws IOException
-   */
-  /**
-   * Find the station closest to the specified point.
-   * The metric is (lat-lat0)**2 + (cos(lat0)*(lon-lon0))**2
-   *
-   * @param stationFeatCol - StationFeatureCollection to be searched
-   * @param pt - target LatLonPoint
-   * @return The Station in stationFeatCol closest to pt
+   * The spatial index of the station names of the collection. Built once for each version of the file,
+   * or for each request if the dataset is not a plain file (eg NcML, whose files may change without it changing).
    */
-  public static Station findClosestStation(StationFeatureCollection stationFeatCol, LatLonPoint pt) {
-    double lat = pt.getLatitude();
-    double lon = pt.getLongitude();
-    double cos = Math.cos(Math.toRadians(lat));
-    List<StationFeature> stations = stationFeatCol.getStationFeatures();
-    Station min_station = stations.get(0);
-    double min_dist = Double.MAX_VALUE;
+  static StationIndex<String> getStationIndex(FeatureDatasetPoint fdPoint, StationFeatureCollection stationFeatCol) {
+    long lastModified = DsgInventoryCache.getFileVersion(fdPoint);
+    if (lastModified <= 0)
+      return makeStationIndex(stationFeatCol);
 
-    for (Station s : stations) {
-      double lat1 = s.getLatitude();
-      double lon1 = LatLonPoints.lonNormal(s.getLongitude(), lon);
-      double dy = Math.toRadians(lat - lat1);
-      double dx = cos * Math.toRadians(lon - lon1);
-      double dist = dy * dy + dx * dx;
-      if (dist < min_dist) {
-        min_dist = dist;
-        min_station = s;
-      }
+    String key = fdPoint.getLocation() + "#" + stationFeatCol.getName() + "#" + lastModified;
+    try {
+      return stationIndexes.get(key, () -> makeStationIndex(stationFeatCol));
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
     }
-    return min_station;
+  }
+
+  // keeps only the names, not the features, which belong to the dataset of one request
+  private static StationIndex<String> makeStationIndex(StationFeatureCollection stationFeatCol) {
+    Map<String, LatLonPoint> locations = new LinkedHashMap<>();
+    for (StationFeature s : stationFeatCol.getStationFeatures())
+      locations.put(s.getName(), LatLonPoint.create(s.getLatitude(), s.getLongitude()));
+    return StationIndex.of(locations.keySet(), name -> locations.get(name).getLatitude(),
+        name -> locations.get(name).getLongitude());
   }
 }
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package thredds.server.ncss.view.grid;
+
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.Attribute;
+import ucar.nc2.constants.ACDD;
+import ucar.nc2.constants.CDM;
+import ucar.nc2.constants.CF;
+import ucar.nc2.constants._Coordinate;
+import ucar.nc2.ft2.coverage.*;
+import ucar.nc2.time.CalendarDate;
+import ucar.unidata.geoloc.LatLonRect;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Lays out a CF grid subset as a netCDF-3 file that can be streamed, with the same variables that
+ * CFGridCoverageWriter writes: the coordinate axes and their bounds, the coverages, and the horizontal transforms.
+ * Returns null when the subset needs something only CFGridCoverageWriter does (2D lat/lon, dependent axes, types not
+ * allowed in netCDF-3); then the caller writes the file to disk instead.
+ * A coverage with more than one time is read one time at a time, so only one time of one coverage is in memory.
+ *
+ * @since 10/16/2026
+ */
+public class CFGridStreamWriter {
+  private static final String BOUNDS = "_bounds";
+  private static final String BOUNDS_DIM = "bounds_dim";
+
+  // the subset parameters that NcssGridParamsBean sets, copied for each time slab
+  private static final String[] SUBSET_KEYS = {SubsetParams.variables, SubsetParams.latlonBB, SubsetParams.projBB,
+      SubsetParams.horizStride, SubsetParams.latlonPoint, SubsetParams.vertCoord, SubsetParams.vertRange,
+      SubsetParams.ensCoord, SubsetParams.runtime, SubsetParams.runtimeAll, SubsetParams.runtimeLatest,
+      SubsetParams.timeOffset, SubsetParams.timeOffsetFirst};
+
+  /**
+   * Lay out the file; no data is read until Netcdf3StreamWriter.write() is called.
+   *
+   * @param gcd the original dataset
+   * @param gridNames the coverages wanted
+   * @param subset the subset, as passed to CFGridCoverageWriter
+   * @param tryToAddLatLon2D if lat/lon should be added to a projected dataset
+   * @return the writer, or null if this subset cant be streamed
+   */
+  public static Netcdf3StreamWriter create(CoverageCollection gcd, List<String> gridNames, SubsetParams subset,
+      boolean tryToAddLatLon2D) {
+    try {
+      return makeWriter(gcd, gridNames, subset, tryToAddLatLon2D);
+    } catch (IllegalArgumentException e) {
+      return null; // eg a variable too large for netCDF-3
+    }
+  }
+
+  private static Netcdf3StreamWriter makeWriter(CoverageCollection gcd, List<String> gridNames, SubsetParams subset,
+      boolean tryToAddLatLon2D) {
+    if (tryToAddLatLon2D && gcd.getHorizCoordSys().isProjection())
+      return null;
+
+    ucar.nc2.util.Optional<CoverageCollection> opt =
+        CoverageSubsetter2.makeCoverageDatasetSubset(gcd, gridNames, subset);
+    if (!opt.isPresent())
+      return null; // let CFGridCoverageWriter report the error
+    CoverageCollection subsetDataset = opt.get();
+
+    Netcdf3StreamWriter writer = new Netcdf3StreamWriter();
+
+    for (Attribute att : makeGlobalAttributes(subsetDataset))
+      writer.addAttribute(att);
+
+    // dimensions
+    boolean hasBounds = false;
+    for (CoverageCoordAxis axis : subsetDataset.getCoordAxes()) {
+      if (!Netcdf3StreamWriter.isSupported(axis.getDataType()))
+        return null;
+      switch (axis.getDependenceType()) {
+        case independent:
+          writer.addDimension(axis.getName(), axis.getNcoords());
+          break;
+        case scalar:
+          break;
+        default:
+          return null; // dependent or 2D axes
+      }
+      hasBounds |= axis.isInterval();
+    }
+    if (hasBounds)
+      writer.addDimension(BOUNDS_DIM, 2);
+
+    // coordinate variables
+    for (CoverageCoordAxis axis : subsetDataset.getCoordAxes()) {
+      List<String> dims = (axis.getDependenceType() == CoverageCoordAxis.DependenceType.scalar)
+          ? Collections.emptyList() : Collections.singletonList(axis.getName());
+
+      List<Attribute> atts = new ArrayList<>();
+      for (Attribute att : axis.attributes()) {
+        if (!att.getShortName().equals(CF.BOUNDS))
+          atts.add(att);
+      }
+      if (axis.isInterval())
+        atts.add(new Attribute(CF.BOUNDS, axis.getName() + BOUNDS));
+      writer.addVariable(axis.getName(), axis.getDataType(), dims, atts, axis::getCoordsAsArray);
+
+      if (axis.isInterval()) {
+        List<String> boundsDims = new ArrayList<>(dims);
+        boundsDims.add(BOUNDS_DIM);
+        writer.addVariable(axis.getName() + BOUNDS, axis.getDataType(), boundsDims, Collections.emptyList(),
+            axis::getCoordBoundsAsArray);
+      }
+    }
+
+    // coverages; data is read from the original, as CFGridCoverageWriter does
+    for (Coverage grid : subsetDataset.getCoverages()) {
+      if (!Netcdf3StreamWriter.isSupported(grid.getDataType()))
+        return null;
+
+      List<String> dims = new ArrayList<>();
+      StringBuilder coords = new StringBuilder();
+      for (CoverageCoordAxis axis : grid.getCoordSys().getAxes()) {
+        if (axis.getDependenceType() == CoverageCoordAxis.DependenceType.independent)
+          dims.add(axis.getName());
+        coords.append(axis.getName()).append(" ");
+      }
+
+      List<Attribute> atts = new ArrayList<>();
+      for (Attribute att : grid.attributes()) {
+        String name = att.getShortName();
+        if (!name.equals(CF.COORDINATES) && !name.equals(CF.GRID_MAPPING))
+          atts.add(att);
+      }
+      atts.add(new Attribute(CF.COORDINATES, coords.toString().trim()));
+      CoverageTransform ct = grid.getCoordSys().getHorizTransform();
+      if (ct != null && ct.isHoriz())
+        atts.add(new Attribute(CF.GRID_MAPPING, ct.getName()));
+
+      Coverage coverageOrg = gcd.findCoverage(grid.getName());
+      CoverageCoordAxis time = grid.getCoordSys().getTimeAxis();
+      if (time instanceof CoverageCoordAxis1D && time.getNcoords() > 1 && dims.get(0).equals(time.getName())) {
+        CoverageCoordAxis1D time1D = (CoverageCoordAxis1D) time;
+        writer.addVariable(grid.getName(), grid.getDataType(), dims, atts, time.getNcoords(),
+            slab -> readTime(coverageOrg, subset, time1D.makeDate(time1D.getCoordMidpoint(slab))));
+      } else {
+        writer.addVariable(grid.getName(), grid.getDataType(), dims, atts,
+            () -> coverageOrg.readData(subset).getData());
+      }
+    }
+
+    // horizontal transforms are scalar variables with only attributes
+    for (CoverageTransform ct : subsetDataset.getCoordTransforms()) {
+      if (ct.isHoriz())
+        writer.addVariable(ct.getName(), DataType.INT, Collections.emptyList(), ct.attributes(), null);
+    }
+
+    return writer;
+  }
+
+  // read the subset at just this time, and check that it is the time asked for
+  private static Array readTime(Coverage coverageOrg, SubsetParams subset, CalendarDate date)
+      throws IOException, InvalidRangeException {
+    SubsetParams slab = new SubsetParams();
+    for (String key : SUBSET_KEYS) {
+      Object value = subset.get(key);
+      if (value != null)
+        slab.set(key, value);
+    }
+    slab.set(SubsetParams.time, date);
+
+    GeoReferencedArray geoArray = coverageOrg.readData(slab);
+    CoverageCoordAxis time = geoArray.getCoordSysForData().getTimeAxis();
+    if (!(time instanceof CoverageCoordAxis1D) || time.getNcoords() != 1
+        || !date.equals(time.makeDate(((CoverageCoordAxis1D) time).getCoordMidpoint(0))))
+      throw new IOException("Coverage " + coverageOrg.getName() + " read at time " + date + " has other times");
+    return geoArray.getData();
+  }
+
+  // the same global attributes, in the same order, as CFGridCoverageWriter
+  static List<Attribute> makeGlobalAttributes(CoverageCollection subsetDataset) {
+    List<Attribute> atts = new ArrayList<>();
+    for (Attribute att : subsetDataset.attributes()) {
+      if (att.getShortName().equals(CDM.FILE_FORMAT) || att.getShortName().equals(_Coordinate._CoordSysBuilder))
+        continue;
+      putAttribute(atts, att);
+    }
+
+    Attribute conventions = subsetDataset.attributes().findAttributeIgnoreCase(CDM.CONVENTIONS);
+    if (conventions == null || !conventions.isString() || !conventions.getStringValue().startsWith("CF-"))
+      putAttribute(atts, new Attribute(CDM.CONVENTIONS, "CF-1.0")); // a CF convention of its own is kept
+    putAttribute(atts,
+        new Attribute("History", "Translated to CF-1.0 Conventions by Netcdf-Java CDM (CFGridCoverageWriter)\n"
+            + "Original Dataset = " + subsetDataset.getName() + "; Translation Date = " + CalendarDate.present()));
+
+    LatLonRect llbb = subsetDataset.getLatlonBoundingBox();
+    if (llbb != null) {
+      putAttribute(atts, new Attribute(ACDD.LAT_MIN, llbb.getLatMin()));
+      putAttribute(atts, new Attribute(ACDD.LAT_MAX, llbb.getLatMax()));
+      putAttribute(atts, new Attribute(ACDD.LON_MIN, llbb.getLonMin()));
+      putAttribute(atts, new Attribute(ACDD.LON_MAX, llbb.getLonMax()));
+    }
+    return atts;
+  }
+
+  // replaces an attribute with the same name, as a netCDF-Java attribute container does
+  private static void putAttribute(List<Attribute> atts, Attribute att) {
+    atts.removeIf(a -> a.getShortName().equals(att.getShortName()));
+    atts.add(att);
+  }
+}
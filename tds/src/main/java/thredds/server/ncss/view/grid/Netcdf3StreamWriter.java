@@ -0,0 +1,566 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package thredds.server.ncss.view.grid;
+
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.IndexIterator;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.MAMath;
+import ucar.nc2.Attribute;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a netCDF-3 classic (or 64-bit offset) file to a stream, without a RandomAccessFile.
+ * The number of records must be known when the file is defined, so the header and the position of every variable
+ * can be computed before any data is read, the length of the file is known in advance, and the data is written in
+ * file order as it is read. Non-record variable data is read when it is needed, one variable or one slab of a
+ * variable at a time; records are passed to writeRecord() one at a time, after start().
+ *
+ * @since 10/16/2026
+ */
+public class Netcdf3StreamWriter {
+  private static final byte[] MAGIC = {'C', 'D', 'F'};
+  private static final int NC_DIMENSION = 10;
+  private static final int NC_VARIABLE = 11;
+  private static final int NC_ATTRIBUTE = 12;
+  private static final long MAX_VSIZE = 0xFFFFFFFCL; // vsize is an unsigned 32 bit int
+
+  private static final int NC_BYTE = 1, NC_CHAR = 2, NC_SHORT = 3, NC_INT = 4, NC_FLOAT = 5, NC_DOUBLE = 6;
+
+  /** Supplies the data of a variable, when it is written. */
+  public interface DataSource {
+    Array read() throws IOException, InvalidRangeException;
+  }
+
+  /** Supplies the data of a variable one slab at a time, each slab being one index of its first dimension. */
+  public interface SlabSource {
+    Array read(int slab) throws IOException, InvalidRangeException;
+  }
+
+  private static class Var {
+    final String name;
+    final int ncType;
+    final DataType dataType;
+    final int[] dimIds;
+    final long nelems; // of one record, for a record variable
+    final boolean isRecord;
+    final List<Attribute> atts;
+    final SlabSource source; // null means write fill values
+    final int nslabs;
+    long vsize;
+    long begin;
+
+    Var(String name, DataType dataType, int[] dimIds, long nelems, boolean isRecord, List<Attribute> atts,
+        SlabSource source, int nslabs) {
+      this.name = name;
+      this.dataType = dataType;
+      this.ncType = ncType(dataType);
+      this.dimIds = dimIds;
+      this.nelems = nelems;
+      this.isRecord = isRecord;
+      this.atts = atts;
+      this.source = source;
+      this.nslabs = nslabs;
+      this.vsize = pad(nelems * elemSize(ncType));
+    }
+  }
+
+  private final Map<String, Integer> dimIds = new LinkedHashMap<>();
+  private final List<Integer> dimLengths = new ArrayList<>();
+  private final List<Attribute> gatts = new ArrayList<>();
+  private final List<Var> vars = new ArrayList<>();
+  private final List<Var> recordVars = new ArrayList<>();
+  private int recordDimId = -1;
+  private int numrecs;
+  private byte[] header; // computed by layout()
+  private long length;
+
+  private DataOutputStream dout; // set by start()
+  private int nrecsWritten;
+
+  /** @return true if variables or attributes of this type can be written to a classic file */
+  public static boolean isSupported(DataType dataType) {
+    return ncType(dataType) > 0;
+  }
+
+  public void addDimension(String name, int length) {
+    if (dimIds.containsKey(name))
+      throw new IllegalArgumentException("Duplicate dimension " + name);
+    dimIds.put(name, dimLengths.size());
+    dimLengths.add(length);
+    header = null;
+  }
+
+  /**
+   * Add the record (unlimited) dimension. It must be the first dimension of the variables that use it.
+   *
+   * @param name dimension name
+   * @param numrecs the number of records that will be written
+   */
+  public void addRecordDimension(String name, int numrecs) {
+    if (recordDimId >= 0)
+      throw new IllegalArgumentException("Only one record dimension is allowed, not " + name);
+    if (numrecs < 0)
+      throw new IllegalArgumentException("Record dimension " + name + " has " + numrecs + " records");
+    addDimension(name, 0);
+    this.recordDimId = dimIds.get(name);
+    this.numrecs = numrecs;
+  }
+
+  public void addAttribute(Attribute att) {
+    gatts.add(att);
+    header = null;
+  }
+
+  /**
+   * Add a variable. Variables are written in the order they are added.
+   *
+   * @param name variable name
+   * @param dataType must be a classic data type (unsigned types are written as the signed type)
+   * @param dimNames names of previously added dimensions, in order; empty for a scalar
+   * @param atts variable attributes
+   * @param source supplies the data, or null to write fill values; not used for a record variable
+   */
+  public void addVariable(String name, DataType dataType, List<String> dimNames, Iterable<Attribute> atts,
+      DataSource source) {
+    SlabSource slabs = (source == null) ? null : slab -> source.read();
+    addVariable(name, dataType, dimNames, atts, slabs, 1);
+  }
+
+  /**
+   * Add a non-record variable whose data is read one slab at a time, so that only one slab is in memory.
+   *
+   * @param name variable name
+   * @param dataType must be a classic data type (unsigned types are written as the signed type)
+   * @param dimNames names of previously added dimensions, in order
+   * @param atts variable attributes
+   * @param nslabs the number of slabs: the length of the first dimension, or 1 to read all at once
+   * @param source supplies the data of each slab, in order
+   */
+  public void addVariable(String name, DataType dataType, List<String> dimNames, Iterable<Attribute> atts,
+      int nslabs, SlabSource source) {
+    if (nslabs > 1) {
+      Integer id = dimNames.isEmpty() ? null : dimIds.get(dimNames.get(0));
+      if (id == null || dimLengths.get(id) != nslabs)
+        throw new IllegalArgumentException("Variable " + name + " has " + nslabs + " slabs, not its first dimension");
+    }
+    addVariable(name, dataType, dimNames, atts, source, nslabs);
+  }
+
+  private void addVariable(String name, DataType dataType, List<String> dimNames, Iterable<Attribute> atts,
+      SlabSource source, int nslabs) {
+    if (!isSupported(dataType))
+      throw new IllegalArgumentException("Variable " + name + " has type " + dataType + " not allowed in netCDF-3");
+    int[] ids = new int[dimNames.size()];
+    long nelems = 1;
+    for (int i = 0; i < ids.length; i++) {
+      Integer id = dimIds.get(dimNames.get(i));
+      if (id == null)
+        throw new IllegalArgumentException("Variable " + name + " has unknown dimension " + dimNames.get(i));
+      if (id == recordDimId && i > 0)
+        throw new IllegalArgumentException("Variable " + name + " must have the record dimension first");
+      ids[i] = id;
+      if (id != recordDimId)
+        nelems *= dimLengths.get(id);
+    }
+    boolean isRecord = ids.length > 0 && ids[0] == recordDimId;
+    List<Attribute> attList = new ArrayList<>();
+    atts.forEach(attList::add);
+    if (dataType.isUnsigned() && attList.stream().noneMatch(att -> att.getShortName().equals("_Unsigned")))
+      attList.add(new Attribute("_Unsigned", "true"));
+    if (isRecord && nslabs > 1)
+      throw new IllegalArgumentException("Record variable " + name + " can not be read in slabs");
+    Var v = new Var(name, dataType, ids, nelems, isRecord, attList, source, nslabs);
+    if (v.vsize > MAX_VSIZE)
+      throw new IllegalArgumentException("Variable " + name + " is too large for netCDF-3: " + v.vsize + " bytes");
+    vars.add(v);
+    if (isRecord)
+      recordVars.add(v);
+    header = null;
+  }
+
+  /** @return the length of the file in bytes */
+  public long getLength() throws IOException {
+    layout();
+    return length;
+  }
+
+  /**
+   * Read the first slab of each non-record variable and check that it has the size in the header; it is read again
+   * when written. Call this before the length is committed to a response, so that data that can not be written as
+   * laid out is found while the caller can still do something else.
+   *
+   * @throws IOException if a variable does not have the size in the header
+   */
+  public void validate() throws IOException, InvalidRangeException {
+    for (Var v : vars) {
+      if (v.isRecord || v.source == null)
+        continue;
+      long size = v.source.read(0).getSize();
+      if (size != v.nelems / v.nslabs)
+        throw new IOException("Variable " + v.name + " has " + size + " values, header says " + v.nelems / v.nslabs);
+    }
+  }
+
+  /**
+   * Write the file, when there are no records. The stream is flushed but not closed.
+   *
+   * @param out write to this stream
+   */
+  public void write(OutputStream out) throws IOException, InvalidRangeException {
+    start(out);
+    finish();
+  }
+
+  /**
+   * Write the header and the non-record variables. Then call writeRecord() for each record, and finish().
+   *
+   * @param out write to this stream
+   */
+  public void start(OutputStream out) throws IOException, InvalidRangeException {
+    layout();
+    dout = new DataOutputStream(new BufferedOutputStream(out, 64 * 1000));
+    dout.write(header);
+
+    for (Var v : vars) {
+      if (v.isRecord)
+        continue;
+      if (v.source == null)
+        writeFill(v, dout);
+      else {
+        for (int slab = 0; slab < v.nslabs; slab++)
+          writeData(v, v.source.read(slab), v.nelems / v.nslabs, dout);
+      }
+      writePadding(v.nelems * elemSize(v.ncType), dout);
+    }
+  }
+
+  /**
+   * Write the next record.
+   *
+   * @param values the data of each record variable, in the order they were added; null to write fill values
+   */
+  public void writeRecord(List<Array> values) throws IOException {
+    if (dout == null)
+      throw new IllegalStateException("start() was not called");
+    if (values.size() != recordVars.size())
+      throw new IllegalArgumentException("Record has " + values.size() + " values, not " + recordVars.size());
+    if (nrecsWritten >= numrecs)
+      throw new IOException("Writing more records than the " + numrecs + " in the header");
+
+    boolean pad = recordVars.size() > 1; // a single record variable is not padded
+    for (int i = 0; i < values.size(); i++) {
+      Var v = recordVars.get(i);
+      Array data = values.get(i);
+      if (data == null)
+        writeFill(v, dout);
+      else
+        writeData(v, data, v.nelems, dout);
+      if (pad)
+        writePadding(v.nelems * elemSize(v.ncType), dout);
+    }
+    nrecsWritten++;
+  }
+
+  /**
+   * Check that all the records were written, and flush the stream; it is not closed.
+   */
+  public void finish() throws IOException {
+    if (dout == null)
+      throw new IllegalStateException("start() was not called");
+    if (nrecsWritten != numrecs)
+      throw new IOException("Wrote " + nrecsWritten + " records, header says " + numrecs);
+    dout.flush();
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  // layout
+
+  private void layout() throws IOException {
+    if (header != null)
+      return;
+
+    // 64 bit offsets only if needed; the header length does not depend on the begin values
+    boolean largeOffsets = false;
+    if (setBegins(makeHeader(false).length) > Integer.MAX_VALUE) {
+      largeOffsets = true;
+      setBegins(makeHeader(true).length);
+    }
+    this.header = makeHeader(largeOffsets);
+  }
+
+  // non-record variables come first, then the records. Returns the largest begin.
+  private long setBegins(long headerLength) {
+    long begin = headerLength;
+    long lastBegin = 0;
+    for (Var v : vars) {
+      if (!v.isRecord) {
+        v.begin = lastBegin = begin;
+        begin += v.vsize;
+      }
+    }
+
+    long recordsBegin = begin;
+    for (Var v : recordVars) {
+      v.begin = lastBegin = begin;
+      begin += v.vsize;
+    }
+    // a single record variable is not padded
+    long recsize = (recordVars.size() == 1) ? recordVars.get(0).nelems * elemSize(recordVars.get(0).ncType)
+        : begin - recordsBegin;
+    this.length = recordsBegin + numrecs * recsize;
+    return lastBegin;
+  }
+
+  private byte[] makeHeader(boolean largeOffsets) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream(10 * 1000);
+    DataOutputStream out = new DataOutputStream(bos);
+
+    out.write(MAGIC);
+    out.write(largeOffsets ? 2 : 1);
+    out.writeInt(numrecs);
+
+    // dimensions
+    if (dimIds.isEmpty()) {
+      out.writeInt(0);
+      out.writeInt(0);
+    } else {
+      out.writeInt(NC_DIMENSION);
+      out.writeInt(dimIds.size());
+      for (Map.Entry<String, Integer> entry : dimIds.entrySet()) {
+        writeName(entry.getKey(), out);
+        out.writeInt(dimLengths.get(entry.getValue()));
+      }
+    }
+
+    writeAttributes(gatts, out);
+
+    // variables
+    if (vars.isEmpty()) {
+      out.writeInt(0);
+      out.writeInt(0);
+    } else {
+      out.writeInt(NC_VARIABLE);
+      out.writeInt(vars.size());
+      for (Var v : vars) {
+        writeName(v.name, out);
+        out.writeInt(v.dimIds.length);
+        for (int id : v.dimIds)
+          out.writeInt(id);
+        writeAttributes(v.atts, out);
+        out.writeInt(v.ncType);
+        out.writeInt((int) v.vsize);
+        if (largeOffsets)
+          out.writeLong(v.begin);
+        else
+          out.writeInt((int) v.begin);
+      }
+    }
+
+    out.flush();
+    return bos.toByteArray();
+  }
+
+  private void writeAttributes(List<Attribute> atts, DataOutputStream out) throws IOException {
+    List<Attribute> wanted = new ArrayList<>();
+    for (Attribute att : atts) {
+      if (att.isString() || isSupported(att.getDataType()))
+        wanted.add(att);
+    }
+
+    if (wanted.isEmpty()) {
+      out.writeInt(0);
+      out.writeInt(0);
+      return;
+    }
+
+    out.writeInt(NC_ATTRIBUTE);
+    out.writeInt(wanted.size());
+    for (Attribute att : wanted) {
+      writeName(att.getShortName(), out);
+      if (att.isString()) {
+        byte[] b = attStringValue(att).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(NC_CHAR);
+        out.writeInt(b.length);
+        out.write(b);
+        writePadding(b.length, out);
+        continue;
+      }
+
+      int ncType = ncType(att.getDataType());
+      int n = att.getLength();
+      out.writeInt(ncType);
+      out.writeInt(n);
+      for (int i = 0; i < n; i++) {
+        Number val = att.getNumericValue(i);
+        switch (ncType) {
+          case NC_BYTE:
+            out.writeByte(val.byteValue());
+            break;
+          case NC_SHORT:
+            out.writeShort(val.shortValue());
+            break;
+          case NC_INT:
+            out.writeInt(val.intValue());
+            break;
+          case NC_FLOAT:
+            out.writeFloat(val.floatValue());
+            break;
+          case NC_DOUBLE:
+            out.writeDouble(val.doubleValue());
+            break;
+        }
+      }
+      writePadding((long) n * elemSize(ncType), out);
+    }
+  }
+
+  private static String attStringValue(Attribute att) {
+    if (att.getLength() <= 1)
+      return att.getStringValue() == null ? "" : att.getStringValue();
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < att.getLength(); i++) {
+      if (i > 0)
+        sb.append("\n");
+      sb.append(att.getStringValue(i));
+    }
+    return sb.toString();
+  }
+
+  private static void writeName(String name, DataOutputStream out) throws IOException {
+    byte[] b = name.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(b.length);
+    out.write(b);
+    writePadding(b.length, out);
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+  // data
+
+  private static void writeData(Var v, Array data, long nelems, DataOutputStream out) throws IOException {
+    if (data.getSize() != nelems)
+      throw new IOException("Variable " + v.name + " has " + data.getSize() + " values, header says " + nelems);
+    if (ncType(data.getDataType()) != v.ncType)
+      data = MAMath.convert(data, v.dataType);
+
+    IndexIterator ii = data.getIndexIterator();
+    switch (v.ncType) {
+      case NC_BYTE:
+        while (ii.hasNext())
+          out.writeByte(ii.getByteNext());
+        break;
+      case NC_CHAR:
+        while (ii.hasNext())
+          out.writeByte((byte) ii.getCharNext());
+        break;
+      case NC_SHORT:
+        while (ii.hasNext())
+          out.writeShort(ii.getShortNext());
+        break;
+      case NC_INT:
+        while (ii.hasNext())
+          out.writeInt(ii.getIntNext());
+        break;
+      case NC_FLOAT:
+        while (ii.hasNext())
+          out.writeFloat(ii.getFloatNext());
+        break;
+      case NC_DOUBLE:
+        while (ii.hasNext())
+          out.writeDouble(ii.getDoubleNext());
+        break;
+    }
+  }
+
+  // use _FillValue if present, else the netCDF-3 default fill value
+  private static void writeFill(Var v, DataOutputStream out) throws IOException {
+    Number fill = null;
+    for (Attribute att : v.atts) {
+      if (att.getShortName().equals("_FillValue") && !att.isString())
+        fill = att.getNumericValue();
+    }
+
+    for (long i = 0; i < v.nelems; i++) {
+      switch (v.ncType) {
+        case NC_BYTE:
+          out.writeByte(fill != null ? fill.byteValue() : -127);
+          break;
+        case NC_CHAR:
+          out.writeByte(0);
+          break;
+        case NC_SHORT:
+          out.writeShort(fill != null ? fill.shortValue() : -32767);
+          break;
+        case NC_INT:
+          out.writeInt(fill != null ? fill.intValue() : -2147483647);
+          break;
+        case NC_FLOAT:
+          out.writeFloat(fill != null ? fill.floatValue() : 9.9692099683868690e+36f);
+          break;
+        case NC_DOUBLE:
+          out.writeDouble(fill != null ? fill.doubleValue() : 9.9692099683868690e+36);
+          break;
+      }
+    }
+  }
+
+  private static void writePadding(long size, DataOutputStream out) throws IOException {
+    long npad = pad(size) - size;
+    for (long i = 0; i < npad; i++)
+      out.writeByte(0);
+  }
+
+  private static long pad(long size) {
+    return (size + 3) & ~3L;
+  }
+
+  // 0 = not allowed in a classic file
+  private static int ncType(DataType dataType) {
+    switch (dataType) {
+      case BYTE:
+      case UBYTE:
+        return NC_BYTE;
+      case CHAR:
+        return NC_CHAR;
+      case SHORT:
+      case USHORT:
+        return NC_SHORT;
+      case INT:
+      case UINT:
+        return NC_INT;
+      case FLOAT:
+        return NC_FLOAT;
+      case DOUBLE:
+        return NC_DOUBLE;
+      default:
+        return 0;
+    }
+  }
+
+  private static int elemSize(int ncType) {
+    switch (ncType) {
+      case NC_BYTE:
+      case NC_CHAR:
+        return 1;
+      case NC_SHORT:
+        return 2;
+      case NC_INT:
+      case NC_FLOAT:
+        return 4;
+      default:
+        return 8;
+    }
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package thredds.server.opendap;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import opendap.dap.*;
+import opendap.servers.SDArray;
+import ucar.ma2.DataType;
+import ucar.nc2.Dimension;
+import ucar.nc2.Variable;
+
+/**
+ * Estimate the size of a constrained DAP2 response from the DDS and the netcdf metadata, before any data is read.
+ * Strings use the length of their char dimension, sequences the length of their dimension.
+ * When the metadata doesnt say, stringSize and sequenceRows are used instead.
+ *
+ * @since 10/16/2026
+ */
+class DodsSizeEstimator {
+  static final int DEFAULT_STRING_SIZE = 100;
+  static final int DEFAULT_SEQUENCE_ROWS = 10 * 1000;
+
+  private final boolean isAscii;
+  private final int stringSize;
+  private final long sequenceRows;
+
+  DodsSizeEstimator(boolean isAscii, int stringSize, long sequenceRows) {
+    this.isAscii = isAscii;
+    this.stringSize = stringSize;
+    this.sequenceRows = sequenceRows;
+  }
+
+  /**
+   * Size in bytes of the projected variables of ctor. If none are projected, all of them are sent.
+   * Note that the dds may be empty (e-support ZTH-269982)
+   */
+  long estimate(DConstructor ctor) throws NoSuchTypeException {
+    long projectsize = 0; // accumulate size of projected variables
+    long othersize = 0; // accumulate size of non-projected variables
+    int projectedcount = 0;
+    Enumeration vars = ctor.getVariables();
+    while (vars.hasMoreElements()) {
+      BaseType field = (BaseType) vars.nextElement();
+      long fieldsize = estimateField(field);
+      if (field.isProject()) {
+        projectsize = add(projectsize, fieldsize);
+        projectedcount++;
+      } else {
+        othersize = add(othersize, fieldsize);
+      }
+    }
+    return projectedcount > 0 ? projectsize : othersize;
+  }
+
+  long estimateField(BaseType bt) throws NoSuchTypeException {
+    if (bt instanceof DSequence) { // each row has a marker
+      long rowsize = add(estimate((DConstructor) bt), 4);
+      return add(multiply(rowsize, sequenceRows), 4);
+
+    } else if (bt instanceof DConstructor) { // structure or grid
+      return estimate((DConstructor) bt);
+
+    } else if (bt instanceof DArray) {
+      DArray da = (DArray) bt;
+      long count = count(da);
+      BaseType template = da.getPrimitiveVector().getTemplate();
+      if (template instanceof DByte && !isAscii) // array length is sent twice, bytes are padded to 4
+        return add(multiply(count / 4 + (count % 4 == 0 ? 0 : 1), 4), 8);
+      if (template instanceof DPrimitive)
+        return add(multiply(count, valueSize((DPrimitive) template, bt)), 8);
+      if (template instanceof DConstructor)
+        return add(multiply(count, estimateField(template)), 8);
+      throw new NoSuchTypeException("DodsSizeEstimator: unexpected type for " + bt.getLongName());
+
+    } else if (bt instanceof DPrimitive) {
+      return valueSize((DPrimitive) bt, bt);
+    }
+    throw new NoSuchTypeException("DodsSizeEstimator: unknown type for " + bt.getLongName());
+  }
+
+  // number of elements in the constrained array; dimensions of unknown length are sequences
+  private long count(DArray da) {
+    long count = 1;
+    for (int i = 0; i < da.numDimensions(); i++) {
+      long n = sequenceRows;
+      if (da instanceof SDArray) {
+        SDArray sda = (SDArray) da;
+        int start = sda.getStart(i);
+        int stop = sda.getStop(i);
+        int stride = sda.getStride(i);
+        if (start >= 0 && stop >= start && stride > 0)
+          n = (stop - start) / stride + 1;
+      } else {
+        try {
+          int size = da.getDimension(i).getSize();
+          if (size >= 0)
+            n = size;
+        } catch (InvalidDimensionException e) {
+          // use sequenceRows
+        }
+      }
+      count = multiply(count, n);
+    }
+    return count;
+  }
+
+  // bytes for one value of owner, as XDR or as ascii
+  private long valueSize(DPrimitive p, BaseType owner) {
+    if (p instanceof DString) {
+      long len = stringLength(owner, (DString) p);
+      return isAscii ? len + 4 : 4 + ((len + 3) / 4) * 4; // quotes and separator; count and padding
+    }
+    if (p instanceof DByte)
+      return isAscii ? 6 : 4;
+    if (p instanceof DInt16 || p instanceof DUInt16)
+      return isAscii ? 8 : 4; // XDR has no 16 bit type
+    if (p instanceof DFloat64)
+      return isAscii ? 26 : 8;
+    if (p instanceof DFloat32)
+      return isAscii ? 17 : 4;
+    return isAscii ? 13 : 4; // 32 bit ints
+  }
+
+  // length in bytes of the strings of a variable: from its char dimension, else from a value already set,
+  // else stringSize. The value of a DString backed by a netcdf variable is only a placeholder until it is read.
+  private long stringLength(BaseType owner, DString p) {
+    Variable v = (owner instanceof HasNetcdfVariable) ? ((HasNetcdfVariable) owner).getVariable() : null;
+    if (v != null) {
+      if (v.getDataType() != DataType.CHAR)
+        return stringSize;
+      if (v.getRank() == 0)
+        return 1;
+      Dimension last = v.getDimension(v.getRank() - 1);
+      return last.getLength() >= 0 ? last.getLength() : stringSize;
+    }
+    String value = p.getValue();
+    return (value != null && !value.isEmpty()) ? value.getBytes(StandardCharsets.UTF_8).length : stringSize;
+  }
+
+  private static long add(long a, long b) {
+    long sum = a + b;
+    return sum < 0 ? Long.MAX_VALUE : sum;
+  }
+
+  private static long multiply(long a, long b) {
+    if (a == 0 || b == 0)
+      return 0;
+    return a > Long.MAX_VALUE / b ? Long.MAX_VALUE : a * b;
+  }
+}
@@ -4,22 +4,100 @@
  */
 package thredds.server.opendap;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import opendap.dap.BaseType;
+import opendap.dap.DArray;
+import opendap.dap.DConstructor;
 import opendap.servlet.GuardedDataset;
 import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
 import javax.annotation.concurrent.Immutable;
 import java.io.IOException;
+import java.util.Enumeration;
+import java.util.Formatter;
 
 /**
  * This creates and caches DDS, DAS, then clones them when they are needed.
+ * The DDS and DAS are also kept across requests, keyed by dataset path and checked against the file's last modified
+ * time. The Variables in a kept DDS belong to the file that made it, so a clone is pointed at this request's file.
  */
 @Immutable
 public class GuardedDatasetCacheAndClone implements GuardedDataset {
   static protected org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(GuardedDataset.class);
 
+  private static class Prototype {
+    final NetcdfFile ncfile; // the file that made the DDS
+    final long lastModified;
+    final NcDDS dds;
+    final NcDAS das;
+
+    Prototype(String reqPath, NetcdfFile ncfile, long lastModified) {
+      this.ncfile = ncfile;
+      this.lastModified = lastModified;
+      this.dds = new NcDDS(reqPath, ncfile);
+      this.das = new NcDAS(ncfile);
+    }
+  }
+
+  private static volatile Cache<String, Prototype> prototypeCache =
+      CacheBuilder.newBuilder().maximumSize(100).recordStats().build();
+
+  /**
+   * Set the number of datasets whose DDS and DAS are kept across requests.
+   *
+   * @param maxDatasets 0 to turn off
+   */
+  public static void setPrototypeCache(int maxDatasets) {
+    prototypeCache =
+        (maxDatasets <= 0) ? null : CacheBuilder.newBuilder().maximumSize(maxDatasets).recordStats().build();
+  }
+
+  public static void showCache(Formatter formatter) {
+    Cache<String, Prototype> cache = prototypeCache;
+    formatter.format("%nOpendapDdsCache:%n");
+    if (cache == null) {
+      formatter.format("turned off%n");
+      return;
+    }
+    formatter.format("numberOfEntries=%d, ", cache.size());
+    formatter.format("hits=%d, ", cache.stats().hitCount());
+    formatter.format("misses=%d, ", cache.stats().missCount());
+    formatter.format("evictionCount=%d%n", cache.stats().evictionCount());
+  }
+
+  public static void resetCache() {
+    Cache<String, Prototype> cache = prototypeCache;
+    if (cache != null)
+      cache.invalidateAll();
+  }
+
+  /** Discard the DDS and DAS kept for this dataset, eg when the NcML in its catalog changes. */
+  public static void invalidate(String reqPath) {
+    Cache<String, Prototype> cache = prototypeCache;
+    if (cache != null)
+      cache.invalidate(reqPath);
+  }
+
+  private static Prototype getPrototype(String reqPath, NetcdfFile ncfile) {
+    Cache<String, Prototype> cache = prototypeCache;
+    long lastModified = ncfile.getLastModified();
+    if (cache == null || lastModified <= 0) // dont know when it changes
+      return new Prototype(reqPath, ncfile, lastModified);
+
+    Prototype proto = cache.getIfPresent(reqPath);
+    if (proto != null && proto.lastModified == lastModified)
+      return proto;
+
+    proto = new Prototype(reqPath, ncfile, lastModified);
+    cache.put(reqPath, proto);
+    return proto;
+  }
+
   private final boolean hasSession;
+  private final String reqPath;
   private final NetcdfFile org_file;
-  private final NcDDS dds;
-  private final NcDAS das;
+  private final Prototype proto;
 
   public void release() {
     if (!hasSession)
@@ -35,18 +113,59 @@ public class GuardedDatasetCacheAndClone implements GuardedDataset {
   }
 
   public GuardedDatasetCacheAndClone(String reqPath, NetcdfFile ncfile, boolean hasSession) {
+    this.reqPath = reqPath;
     this.org_file = ncfile;
-    this.dds = new NcDDS(reqPath, ncfile);
-    this.das = new NcDAS(ncfile);
+    this.proto = getPrototype(reqPath, ncfile);
     this.hasSession = hasSession;
   }
 
   public opendap.servers.ServerDDS getDDS() {
-    return (opendap.servers.ServerDDS) dds.clone();
+    NcDDS dds = (NcDDS) proto.dds.clone();
+    if (proto.ncfile == org_file)
+      return dds;
+    if (setVariables(dds.getVariables(), org_file))
+      return dds;
+    log.warn("GuardedDatasetCacheAndClone: {} doesnt match its cached DDS", reqPath);
+    return new NcDDS(reqPath, org_file);
   }
 
   public opendap.dap.DAS getDAS() {
-    return (opendap.dap.DAS) das.clone();
+    return (opendap.dap.DAS) proto.das.clone();
+  }
+
+  // point each variable at the same Variable in ncfile; false if one is missing
+  private static boolean setVariables(Enumeration vars, NetcdfFile ncfile) {
+    while (vars.hasMoreElements()) {
+      if (!setVariable((BaseType) vars.nextElement(), ncfile))
+        return false;
+    }
+    return true;
+  }
+
+  private static boolean setVariable(BaseType bt, NetcdfFile ncfile) {
+    if (bt instanceof HasNetcdfVariable) {
+      HasNetcdfVariable hasNetcdf = (HasNetcdfVariable) bt;
+      Variable v = ncfile.findVariable(hasNetcdf.getVariable().getFullNameEscaped());
+      if (v == null)
+        return false;
+      hasNetcdf.setVariable(v);
+
+    } else if (bt instanceof NcSDStructure) {
+      NcSDStructure s = (NcSDStructure) bt;
+      Variable v = ncfile.findVariable(s.getVariable().getFullNameEscaped());
+      if (v == null)
+        return false;
+      s.setVariable(v);
+    }
+
+    if (bt instanceof DArray) { // array of structures
+      BaseType template = ((DArray) bt).getPrimitiveVector().getTemplate();
+      if (template != null && !setVariable(template, ncfile))
+        return false;
+    }
+    if (bt instanceof DConstructor) // structures and grids
+      return setVariables(((DConstructor) bt).getVariables(), ncfile);
+    return true;
   }
 
   public String toString() {
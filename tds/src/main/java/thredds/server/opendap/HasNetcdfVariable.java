@@ -29,6 +29,9 @@ public interface HasNetcdfVariable {
   /** get the underlying proxy */
   public Variable getVariable();
 
+  /** use the same Variable in another open copy of the file */
+  public void setVariable(Variable v);
+
   // for structure members
   public void serialize(DataOutputStream sink, StructureData sdata, StructureMembers.Member m) throws IOException;
 }
@@ -6,11 +6,14 @@
 package thredds.server.opendap;
 
 import opendap.dap.InvalidDimensionException;
+import opendap.dap.NoSuchVariableException;
 import ucar.ma2.*;
 import ucar.nc2.*;
 import opendap.servers.*;
 import opendap.dap.BaseType;
+import opendap.dap.BaseTypePrimitiveVector;
 import opendap.dap.DArrayDimension;
+import opendap.dap.DByte;
 import opendap.dap.PrimitiveVector;
 import java.io.IOException;
 import java.io.EOFException;
@@ -25,10 +28,11 @@ import java.util.List;
  * @author jcaron
  * @see NcSDCharArray
  */
-public class NcSDArray extends SDArray implements HasNetcdfVariable {
+public class NcSDArray extends SDArray implements HasNetcdfVariable, SlabReader {
   static private org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(NcSDArray.class);
 
   private static final boolean debug = false, debugRead = false;
+  static long slabBytes = 8 * 1000 * 1000; // read this much at a time when streaming; package private for testing
   private Variable ncVar = null;
   // ignore protected BaseType elemType;
 
@@ -57,6 +61,10 @@ public class NcSDArray extends SDArray implements HasNetcdfVariable {
     return ncVar;
   }
 
+  public void setVariable(Variable v) {
+    this.ncVar = v;
+  }
+
   /**
    * Read the data values (parameters are ignored).
    * Use the start, stop and stride values, typically set by the constraint evaluator.
@@ -117,6 +125,94 @@ public class NcSDArray extends SDArray implements HasNetcdfVariable {
     return (false);
   }
 
+  /**
+   * Arrays of primitive types are read in slabs along the outer dimension and written as they are read,
+   * so the whole array is never in memory. Otherwise, read it all and let SDArray write it.
+   */
+  @Override
+  public void serialize(String dataset, DataOutputStream sink, CEEvaluator ce, Object specialO)
+      throws NoSuchVariableException, DAP2ServerSideException, IOException {
+    if (!canReadSlabs() || ce.getClauses().hasMoreElements()) {
+      super.serialize(dataset, sink, ce, specialO);
+      return;
+    }
+
+    // as SDArray does, the length is written twice
+    int length = (int) Range.computeSize(makeRanges());
+    sink.writeInt(length);
+    sink.writeInt(length);
+
+    BaseType template = getPrimitiveVector().getTemplate();
+    boolean isByte = template instanceof DByte;
+    readSlabs(dataset, specialO, values -> {
+      if (isByte) { // padded once at the end, not per slab
+        sink.write((byte[]) values);
+      } else {
+        PrimitiveVector slab = template.newPrimitiveVector();
+        slab.setInternalStorage(values);
+        slab.externalize(sink);
+      }
+    });
+
+    if (isByte) {
+      int modFour = length % 4;
+      for (int i = 0; modFour != 0 && i < 4 - modFour; i++)
+        sink.writeByte(0);
+    }
+  }
+
+  /**
+   * Arrays of primitive types that have not been read can be read in slabs.
+   */
+  @Override
+  public boolean canReadSlabs() {
+    return !isRead() && !(getPrimitiveVector() instanceof BaseTypePrimitiveVector);
+  }
+
+  /**
+   * Read the constrained array in slabs of about slabBytes along the outer dimension.
+   */
+  @Override
+  public void readSlabs(String datasetName, Object specialO, SlabReader.Consumer consumer) throws IOException {
+    try {
+      List<Range> ranges = makeRanges();
+      long length = Range.computeSize(ranges);
+      if (length == 0)
+        return;
+
+      Range outer = ranges.get(0);
+      long rowBytes = Math.max(1, (length / Math.max(1, outer.length())) * (long) ncVar.getElementSize());
+      int rowsPerSlab = (int) Math.max(1, slabBytes / rowBytes);
+      boolean isByte = getPrimitiveVector().getTemplate() instanceof DByte;
+
+      for (int row = 0; row < outer.length(); row += rowsPerSlab) {
+        int last = Math.min(row + rowsPerSlab, outer.length()) - 1;
+        ranges.set(0, new Range(outer.element(row), outer.element(last), outer.stride()));
+        Array a = ncVar.read(ranges);
+        consumer.accept(isByte ? a.get1DJavaArray(DataType.BYTE) : a.get1DJavaArray(a.getElementType()));
+      }
+
+    } catch (InvalidRangeException e) {
+      log.error(getRequestedRange(), e);
+      throw new IllegalStateException("NcSDArray readSlabs " + e.getMessage());
+    }
+  }
+
+  // the constrained ranges
+  private List<Range> makeRanges() {
+    try {
+      int n = numDimensions();
+      List<Range> ranges = new ArrayList<>(n);
+      for (int i = 0; i < n; i++)
+        ranges.add(new Range(getStart(i), getStop(i), getStride(i)));
+      return ranges;
+
+    } catch (InvalidDimensionException | InvalidRangeException e) {
+      log.error(getRequestedRange(), e);
+      throw new IllegalStateException("NcSDArray " + e.getMessage());
+    }
+  }
+
   private String getRequestedRange() {
     try {
       StringBuilder sbuff = new StringBuilder();
@@ -12,6 +12,7 @@ import opendap.servers.*;
 import opendap.dap.BaseType;
 import opendap.dap.NoSuchVariableException;
 import ucar.nc2.Variable;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 
@@ -49,4 +50,13 @@ public class NcSDGrid extends SDGrid {
     setRead(true);
     return (false);
   }
+
+  // let the arrays read their data as they write it, see NcSDArray.serialize
+  @Override
+  public void serialize(String dataset, DataOutputStream sink, CEEvaluator ce, Object specialO)
+      throws NoSuchVariableException, DAP2ServerSideException, IOException {
+    if (!ce.getClauses().hasMoreElements())
+      setRead(true);
+    super.serialize(dataset, sink, ce, specialO);
+  }
 }
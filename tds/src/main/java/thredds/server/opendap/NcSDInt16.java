@@ -36,6 +36,10 @@ public class NcSDInt16 extends SDInt16 implements HasNetcdfVariable {
     return ncVar;
   }
 
+  public void setVariable(Variable v) {
+    this.ncVar = v;
+  }
+
   /**
    * Read the value (parameters are ignored).
    */
@@ -89,6 +89,10 @@ public class NcSDString extends SDString implements HasNetcdfVariable {
     return ncVar;
   }
 
+  public void setVariable(Variable v) {
+    this.ncVar = v;
+  }
+
   public void serialize(DataOutputStream sink, StructureData sdata, StructureMembers.Member m) throws IOException {
     localVal = sdata.getScalarString(m);
     setValue(localVal);
@@ -59,6 +59,10 @@ public class NcSDStructure extends SDStructure {
     return ncVar;
   }
 
+  public void setVariable(Variable v) {
+    this.ncVar = (Structure) v;
+  }
+
   // called if its scalar
   public boolean read(String datasetName, Object specialO) throws NoSuchVariableException, IOException {
 
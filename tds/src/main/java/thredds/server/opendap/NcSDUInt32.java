@@ -50,6 +50,10 @@ public class NcSDUInt32 extends SDUInt32 implements HasNetcdfVariable {
     return ncVar;
   }
 
+  public void setVariable(Variable v) {
+    this.ncVar = v;
+  }
+
   public void serialize(DataOutputStream sink, StructureData sdata, StructureMembers.Member m) throws IOException {
     setValue(sdata.getScalarInt(m));
     externalize(sink);
@@ -13,6 +13,7 @@ import jakarta.servlet.http.HttpSession;
 import java.io.*;
 import java.util.*;
 import java.util.zip.DeflaterOutputStream;
+import com.google.common.io.CountingOutputStream;
 import java.net.URI;
 import opendap.dap.*;
 import opendap.dap.parsers.ParseException;
@@ -29,13 +30,11 @@ import thredds.core.TdsRequestedDataset;
 import thredds.server.config.TdsContext;
 import thredds.server.config.ThreddsConfig;
 import thredds.server.exception.RequestTooLargeException;
+import thredds.server.exception.ServiceBusyException;
+import thredds.servlet.AdmissionControl;
 import thredds.servlet.ServletUtil;
 import thredds.servlet.filter.CookieFilter;
 import thredds.util.TdsPathUtils;
-import ucar.ma2.DataType;
-import ucar.ma2.Range;
-import ucar.ma2.Section;
-import ucar.nc2.dods.DODSNetcdfFile;
 import ucar.nc2.NetcdfFile;
 import ucar.nc2.util.EscapeStrings;
 
@@ -63,6 +62,12 @@ public class OpendapServlet extends AbstractServlet implements InitializingBean
 
   private int ascLimit = 50;
   private int binLimit = 500;
+  private int stringSizeEstimate = DodsSizeEstimator.DEFAULT_STRING_SIZE;
+  private int sequenceRowEstimate = DodsSizeEstimator.DEFAULT_SEQUENCE_ROWS;
+
+  // request attributes with the estimated and actual response size, eg %{tds.opendap.estimatedBytes}r in the access log
+  public static final String ESTIMATED_BYTES_ATTRIBUTE = "tds.opendap.estimatedBytes";
+  public static final String ACTUAL_BYTES_ATTRIBUTE = "tds.opendap.actualBytes";
 
   private boolean debugSession = false;
 
@@ -94,10 +99,15 @@ public class OpendapServlet extends AbstractServlet implements InitializingBean
       this.ascLimit = ThreddsConfig.getInt("Opendap.ascLimit", ascLimit); // LOOK how the hell can OpendapServlet call
       // something in the tds module ??
       this.binLimit = ThreddsConfig.getInt("Opendap.binLimit", binLimit);
+      this.stringSizeEstimate = ThreddsConfig.getInt("Opendap.stringSizeEstimate", stringSizeEstimate);
+      this.sequenceRowEstimate = ThreddsConfig.getInt("Opendap.sequenceRowEstimate", sequenceRowEstimate);
 
       this.odapVersionString = ThreddsConfig.get("Opendap.serverVersion", odapVersionString);
+      int ddsCacheSize = ThreddsConfig.getInt("Opendap.ddsCacheSize", 100);
+      GuardedDatasetCacheAndClone.setPrototypeCache(ddsCacheSize);
       logServerStartup.info(getClass().getName() + " version= " + odapVersionString + " ascLimit = " + ascLimit
-          + " binLimit = " + binLimit);
+          + " binLimit = " + binLimit + " ddsCacheSize = " + ddsCacheSize + " stringSizeEstimate = " + stringSizeEstimate
+          + " sequenceRowEstimate = " + sequenceRowEstimate);
 
       if (tdsContext != null) // LOOK not set in mock testing enviro ?
       {
@@ -231,7 +241,7 @@ public class OpendapServlet extends AbstractServlet implements InitializingBean
       sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
 
       // 403 - request too big
-    } catch (RequestTooLargeException e) {
+    } catch (RequestTooLargeException | ServiceBusyException e) {
       // handled at the Spring level by TdsErrorHandling, so
       // pass it on up the stack
       throw e;
@@ -276,7 +286,7 @@ public class OpendapServlet extends AbstractServlet implements InitializingBean
       ServerDDS dds = ds.getDDS();
       CEEvaluator ce = new CEEvaluator(dds);
       ce.parseConstraint(rs);
-      checkSize(dds, true);
+      checkSize(rs, dds, true);
 
       PrintWriter pw = response.getWriter();
       dds.printConstrained(pw);
@@ -437,12 +447,14 @@ public class OpendapServlet extends AbstractServlet implements InitializingBean
       ServerDDS myDDS = ds.getDDS();
       CEEvaluator ce = new CEEvaluator(myDDS);
       ce.parseConstraint(rs);
-      checkSize(myDDS, false);
+      long estimated = checkSize(rs, myDDS, false);
 
       // Send the binary data back to the client
-      DataOutputStream sink = new DataOutputStream(bOut);
+      CountingOutputStream counter = new CountingOutputStream(bOut);
+      DataOutputStream sink = new DataOutputStream(counter);
       ce.send(myDDS.getEncodedName(), sink, ds);
       sink.flush();
+      recordSize(rs, estimated, counter.getCount());
 
       // Finish up sending the compressed stuff, but don't
       // close the stream (who knows what the Servlet may expect!)
@@ -509,7 +521,7 @@ public class OpendapServlet extends AbstractServlet implements InitializingBean
       ServerDDS myDDS = ds.getDDS();
       CEEvaluator ce = new CEEvaluator(myDDS);
       ce.parseConstraint(rs);
-      checkSize(myDDS, false);
+      long estimated = checkSize(rs, myDDS, false);
 
       // Send the constrained DDS back to the client
       PrintWriter pw = new PrintWriter(new OutputStreamWriter(bOut, StandardCharsets.UTF_8));
@@ -521,9 +533,11 @@ public class OpendapServlet extends AbstractServlet implements InitializingBean
       bOut.flush();
 
       // Send the binary data back to the client
-      DataOutputStream sink = new DataOutputStream(bOut);
+      CountingOutputStream counter = new CountingOutputStream(bOut);
+      DataOutputStream sink = new DataOutputStream(counter);
       ce.send(myDDS.getEncodedName(), sink, ds);
       sink.flush();
+      recordSize(rs, estimated, counter.getCount());
 
       // Finish up sending the compressed stuff, but don't
       // close the stream (who knows what the Servlet may expect!)
@@ -782,115 +796,30 @@ public class OpendapServlet extends AbstractServlet implements InitializingBean
     return rs;
   }
 
-  private void checkSize(ServerDDS dds, boolean isAscii) throws Exception {
-    long size = computeSize(dds, isAscii);
-    // System.err.printf("total (constrained) size=%s\n", size);
+  // Estimate the size of the response before reading any data, and reject it if too large
+  private long checkSize(ReqState rs, ServerDDS dds, boolean isAscii) throws Exception {
+    long size = new DodsSizeEstimator(isAscii, stringSizeEstimate, sequenceRowEstimate).estimate(dds);
     log.debug("total (constrained) size={}", size);
-    double dsize = size / (1000.0 * 1000.0);
+    rs.getRequest().setAttribute(ESTIMATED_BYTES_ATTRIBUTE, size);
+    // ascLimit has always been compared to the binary size of the data; ascii is several times larger
+    long limited = isAscii ? new DodsSizeEstimator(false, stringSizeEstimate, sequenceRowEstimate).estimate(dds) : size;
+    double dsize = limited / (1000.0 * 1000.0);
     double maxSize = isAscii ? ascLimit : binLimit; // Mbytes
     if (dsize > maxSize) {
       log.info("Reject request size = {} Mbytes", dsize);
       throw new RequestTooLargeException(dsize + " Mbytes, max=" + maxSize);
     }
+    AdmissionControl.reweigh(rs.getRequest(), size);
+    return size;
   }
 
-  private static final boolean debugSize = false;
-
-  // Recursively compute size of the dds to be returned
-  // Note that the dds may be empty (e-support ZTH-269982)
-  private long computeSize(DConstructor ctor, boolean isAscii) throws Exception {
-    long projectsize = 0; // accumulate size of projected variables
-    long othersize = 0; // accumulate size of non-projected variables
-    long fieldsize = 0;
-    int projectedcount = 0;
-    int fieldcount = 0;
-    Enumeration vars = ctor.getVariables();
-    while (vars.hasMoreElements()) {
-      fieldcount++;
-      BaseType field = (BaseType) vars.nextElement();
-      fieldsize = computeFieldSize(field, isAscii);
-      // accumulate the field sizes
-      if (field.isProject()) {
-        projectsize += fieldsize;
-        projectedcount++;
-      } else {
-        othersize += fieldsize;
-      }
-      if (debugSize) {
-        System.out.printf("  computeSize field %s isProject %s fieldsize=%d%n", field.getLongName(), field.isProject(),
-            fieldsize);
-      }
-    }
-    // Cases to consider:
-    // 1. If all of the fields of this ctor are projected,
-    // then return projectsize
-    // 2. If none of the fields of this ctor are projected,
-    // then return othersize
-    // 3. otherwise, at least one field, but not all, is projected,
-    // => return projectsize;
-    long result;
-    if (projectedcount == fieldcount) {
-      result = projectsize;
-    } else if (projectedcount == 0) {
-      result = othersize;
-    } else {
-      assert (projectedcount > 0 && projectedcount < fieldcount);
-      result = projectsize;
-    }
-
-    if (debugSize) {
-      System.out.printf("  computeSize return=%d (%d, %d) %n", result, projectedcount, fieldcount);
-    }
-    return result;
-  }
-
-  long computeFieldSize(BaseType bt, boolean isAscii) throws Exception {
-    long fieldsize = 0;
-    // Figure out what this field is (e.g. primitive or not)
-    // Somewhat convoluted.
-    if (bt instanceof DConstructor) {
-      // simple struct, seq, or grid => recurse
-      fieldsize = computeSize((DConstructor) bt, isAscii);
-    } else if (bt instanceof DArray) {
-      SDArray da = (SDArray) bt;
-      // Separate structure arrays from primitive arrays
-      if (da.getContainerVar() instanceof DPrimitive) {
-        fieldsize = computeArraySize(da);
-      } else if (da.getContainerVar() instanceof DStructure) {
-        fieldsize = computeSize((DStructure) da.getContainerVar(), isAscii); // recurse
-      } else { // Some kind of problem
-        throw new NoSuchTypeException("Computesize: unexpected type for " + bt.getLongName());
-      }
-    } else if (bt instanceof DPrimitive) {
-      DPrimitive dp = (DPrimitive) bt;
-      if (dp instanceof DString) {
-        String v = ((DString) dp).getValue();
-        fieldsize = (v == null ? 0 : v.length());
-      } else {
-        DataType dtype = DODSNetcdfFile.convertToNCType(bt, false);
-        fieldsize = dtype.getSize();
-      }
-    } else { // Some kind of problem
-      throw new NoSuchTypeException("Computesize: unknown type for " + bt.getLongName());
-    }
-    return fieldsize;
-  }
-
-  long computeArraySize(SDArray da) throws Exception {
-    assert (da.getContainerVar() instanceof DPrimitive);
-    BaseType base = da.getPrimitiveVector().getTemplate();
-    DataType dtype = DODSNetcdfFile.convertToNCType(base, false);
-    int elemSize = dtype.getSize();
-    int n = da.numDimensions();
-    List<Range> ranges = new ArrayList<>(n);
-    long size = 0;
-    for (int i = 0; i < n; i++) {
-      ranges.add(new Range(da.getStart(i), da.getStop(i), da.getStride(i)));
-    }
-    Section s = new Section(ranges);
-    size += s.computeSize() * elemSize;
-
-    return size;
+  // Record what was actually sent, to compare with the estimate
+  private void recordSize(ReqState rs, long estimated, long actual) {
+    rs.getRequest().setAttribute(ACTUAL_BYTES_ATTRIBUTE, actual);
+    log.debug("estimated size={} actual size={}", estimated, actual);
+    if (actual > estimated)
+      log.info("Size estimate too small: estimated={} actual={} for {}?{}", estimated, actual, rs.getDataSet(),
+          rs.getConstraintExpression());
   }
 
   /*
@@ -9,6 +9,7 @@ import org.jdom2.Document;
 import org.jdom2.Element;
 import org.jdom2.JDOMException;
 import org.jdom2.input.SAXBuilder;
+import thredds.util.StationIndex;
 import ucar.unidata.geoloc.*;
 import jakarta.xml.bind.annotation.XmlAttribute;
 import jakarta.xml.bind.annotation.XmlElement;
@@ -112,6 +113,7 @@ public class StationList {
   }
 
   private Map<String, Station> stations;
+  private volatile StationIndex<Station> index;
 
   public StationList() {
     stations = new TreeMap<>();
@@ -141,33 +143,34 @@ public class StationList {
 
   public Station addStation(String stid, LatLonPoint loc) {
     Station added = new Station(stid, new LatLonPointImmutable(loc));
-    stations.put(stid, added);
+    synchronized (this) {
+      stations.put(stid, added);
+      index = null;
+    }
     return added;
   }
 
   public Station getNearest(double longitude, double latitude) {
-    LatLonPointImmutable pt = new LatLonPointImmutable(latitude, longitude);
-    Station nearest = null;
-    double minDist = Double.POSITIVE_INFINITY;
-    for (Station s : stations.values()) {
-      Bearing b = Bearing.calculateBearing(pt, s.location);
-      if (b.getDistance() < minDist) {
-        minDist = b.getDistance();
-        nearest = s;
-      }
-    }
-    return nearest;
+    return getIndex().findNearest(latitude, longitude);
   }
 
   public List<Station> getStations(double east, double west, double north, double south) {
     LatLonRect rect = new LatLonRect(new LatLonPointImmutable(south, west), new LatLonPointImmutable(north, east));
+    return getIndex().findInside(rect);
+  }
 
-    List<Station> result = new ArrayList<>();
-
-    for (Station s : stations.values())
-      if (rect.contains(s.location))
-        result.add(s);
-
+  // built on first use after the stations change
+  private StationIndex<Station> getIndex() {
+    StationIndex<Station> result = index;
+    if (result == null) {
+      synchronized (this) {
+        result = index;
+        if (result == null) {
+          result = StationIndex.of(stations.values(), Station::getLatitude, Station::getLongitude);
+          index = result;
+        }
+      }
+    }
     return result;
   }
 
@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package thredds.servlet;
+
+import com.google.common.collect.ImmutableMap;
+import jakarta.servlet.http.HttpServletRequest;
+import java.util.Formatter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import thredds.server.config.ThreddsConfig;
+import thredds.server.exception.ServiceBusyException;
+
+/**
+ * Limits how many requests each data service runs at once, so that a burst of large requests to one service
+ * does not use up all the servlet container threads.
+ * <p/>
+ * Each service has a number of permits. A request takes one permit when it arrives (see AdmissionControlFilter),
+ * and more when the service knows how big the response will be (see reweigh()), one more for each weightUnit bytes,
+ * up to all of them. A request never waits while holding permits, so growing requests can't deadlock. Requests that
+ * can't get their permits wait in arrival order, up to maxQueue of them for up to maxWait; others are rejected at once
+ * with ServiceBusyException.
+ * <p/>
+ * Configured in threddsConfig.xml, eg:
+ *
+ * <pre>
+ *  &lt;AdmissionControl>
+ *    &lt;ncss>
+ *      &lt;maxConcurrent>8&lt;/maxConcurrent>
+ *      &lt;maxQueue>20&lt;/maxQueue>
+ *    &lt;/ncss>
+ *  &lt;/AdmissionControl>
+ * </pre>
+ *
+ * Services without a maxConcurrent are not limited.
+ *
+ * @since 10/16/2026
+ */
+public class AdmissionControl {
+  private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(AdmissionControl.class);
+
+  public static final String TICKET_ATTRIBUTE = "tds.admission.ticket";
+  public static final int DEFAULT_MAX_QUEUE = 50;
+  public static final int DEFAULT_MAX_WAIT = 30; // secs
+  public static final int DEFAULT_RETRY_AFTER = 10; // secs
+  public static final long DEFAULT_WEIGHT_UNIT = 50 * 1000 * 1000;
+
+  // service name, keyed by the first path segment of the request
+  private static final Map<String, String> services =
+      ImmutableMap.of("dodsC", "opendap", "dap4", "dap4", "ncss", "ncss", "cdmremote", "cdmremote", "wms", "wms");
+
+  private static volatile Map<String, Limiter> limiters = ImmutableMap.of(); // keyed by service name
+  private static volatile int retryAfter = DEFAULT_RETRY_AFTER;
+  private static volatile long weightUnit = DEFAULT_WEIGHT_UNIT;
+
+  /**
+   * Read the limits from threddsConfig.xml. Called from TdsInit.
+   */
+  public static synchronized void init() {
+    int maxWait = ThreddsConfig.getSeconds("AdmissionControl.maxWait", DEFAULT_MAX_WAIT);
+    retryAfter = ThreddsConfig.getSeconds("AdmissionControl.retryAfter", DEFAULT_RETRY_AFTER);
+    long unit = ThreddsConfig.getBytes("AdmissionControl.weightUnit", DEFAULT_WEIGHT_UNIT);
+    weightUnit = unit > 0 ? unit : DEFAULT_WEIGHT_UNIT;
+
+    Map<String, Limiter> result = new HashMap<>();
+    for (String service : services.values()) {
+      int maxConcurrent = ThreddsConfig.getInt("AdmissionControl." + service + ".maxConcurrent", 0);
+      if (maxConcurrent <= 0)
+        continue;
+      int maxQueue = ThreddsConfig.getInt("AdmissionControl." + service + ".maxQueue", DEFAULT_MAX_QUEUE);
+      result.put(service, new Limiter(service, maxConcurrent, maxQueue, TimeUnit.SECONDS.toMillis(maxWait)));
+      log.info("AdmissionControl: {} maxConcurrent={} maxQueue={} maxWait={} secs", service, maxConcurrent, maxQueue,
+          maxWait);
+    }
+    limiters = ImmutableMap.copyOf(result);
+  }
+
+  /**
+   * Wait for the service that handles this request to have room for it.
+   *
+   * @return hold until the request is done, then release; null if the service is not limited
+   * @throws ServiceBusyException if the service is full
+   */
+  public static Ticket admit(HttpServletRequest request) {
+    Limiter limiter = findLimiter(request);
+    if (limiter == null)
+      return null;
+    if (!limiter.acquire(1))
+      throw new ServiceBusyException(limiter.service + " is busy", retryAfter);
+    limiter.admitted.increment();
+    Ticket ticket = new Ticket(limiter);
+    request.setAttribute(TICKET_ATTRIBUTE, ticket);
+    return ticket;
+  }
+
+  /**
+   * The service now knows how big the response will be: wait for the permits a response this size needs.
+   * Does nothing if the request was not admitted by admit().
+   *
+   * @param bytes estimated size of the response
+   * @throws ServiceBusyException if the service is full
+   */
+  public static void reweigh(HttpServletRequest request, long bytes) {
+    Object ticket = request.getAttribute(TICKET_ATTRIBUTE);
+    if (!(ticket instanceof Ticket))
+      return;
+    if (!((Ticket) ticket).reweigh(bytes, weightUnit))
+      throw new ServiceBusyException(((Ticket) ticket).limiter.service + " is busy", retryAfter);
+  }
+
+  /** @return seconds a rejected client should wait before trying again */
+  public static int getRetryAfter() {
+    return retryAfter;
+  }
+
+  private static Limiter findLimiter(HttpServletRequest request) {
+    Map<String, Limiter> current = limiters;
+    if (current.isEmpty())
+      return null;
+    String path = request.getRequestURI().substring(request.getContextPath().length());
+    int start = path.startsWith("/") ? 1 : 0;
+    int end = path.indexOf('/', start);
+    String service = services.get(end < 0 ? path.substring(start) : path.substring(start, end));
+    return service == null ? null : current.get(service);
+  }
+
+  public static void showStatus(Formatter f) {
+    Map<String, Limiter> current = limiters;
+    if (current.isEmpty()) {
+      f.format("No services are limited%n");
+      return;
+    }
+    f.format("weightUnit=%d bytes retryAfter=%d secs%n%n", weightUnit, retryAfter);
+    for (Limiter limiter : current.values())
+      limiter.show(f);
+  }
+
+  ///////////////////////////////////////////////////////////////////////
+
+  /** The permits held by one request. */
+  public static class Ticket {
+    private final Limiter limiter;
+    private int weight = 1;
+    private boolean released;
+
+    Ticket(Limiter limiter) {
+      this.limiter = limiter;
+    }
+
+    /**
+     * Hold the permits for a response of this many bytes. The permits already held are given back before waiting
+     * for all of them, so that requests growing at the same time never wait on each other's permits.
+     *
+     * @return false if rejected, in which case no permits are held
+     */
+    synchronized boolean reweigh(long bytes, long weightUnit) {
+      int want = limiter.weigh(bytes, weightUnit);
+      if (released || want <= weight)
+        return true;
+      limiter.release(weight);
+      weight = 0;
+      if (!limiter.acquire(want))
+        return false;
+      weight = want;
+      return true;
+    }
+
+    /** Give back the permits; may be called more than once. */
+    public synchronized void release() {
+      if (released)
+        return;
+      released = true;
+      limiter.release(weight);
+    }
+  }
+
+  /** The permits of one service. */
+  public static class Limiter {
+    private final String service;
+    private final int maxConcurrent;
+    private final int maxQueue;
+    private final long maxWaitMillis;
+    private final Semaphore permits;
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public Limiter(String service, int maxConcurrent, int maxQueue, long maxWaitMillis) {
+      this.service = service;
+      this.maxConcurrent = maxConcurrent;
+      this.maxQueue = maxQueue;
+      this.maxWaitMillis = maxWaitMillis;
+      this.permits = new Semaphore(maxConcurrent, true);
+    }
+
+    /**
+     * @return the permits needed for a response of this many bytes, at least 1 and at most maxConcurrent.
+     */
+    int weigh(long bytes, long weightUnit) {
+      return (int) Math.max(1, Math.min(maxConcurrent, 1 + bytes / weightUnit));
+    }
+
+    /**
+     * Take n permits, waiting if there is room in the queue. Waits and rejections are counted.
+     *
+     * @return false if rejected
+     */
+    boolean acquire(int n) {
+      if (tryAcquireNow(n))
+        return true;
+      if (waiting.incrementAndGet() > maxQueue) {
+        waiting.decrementAndGet();
+        rejected.increment();
+        return false;
+      }
+      long start = System.nanoTime();
+      boolean ok;
+      try {
+        ok = permits.tryAcquire(n, maxWaitMillis, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        ok = false;
+      } finally {
+        waiting.decrementAndGet();
+      }
+
+      long wait = System.nanoTime() - start;
+      totalWaitNanos.add(wait);
+      maxWaitNanos.accumulateAndGet(wait, Math::max);
+      queued.increment();
+      if (!ok)
+        rejected.increment();
+      return ok;
+    }
+
+    // unlike tryAcquire(n), this does not take the permits ahead of requests already waiting for them
+    private boolean tryAcquireNow(int n) {
+      try {
+        return permits.tryAcquire(n, 0, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+
+    void release(int n) {
+      permits.release(n);
+    }
+
+    /** @return permits in use */
+    public int getActive() {
+      return maxConcurrent - permits.availablePermits();
+    }
+
+    public int getWaiting() {
+      return waiting.get();
+    }
+
+    public long getRejected() {
+      return rejected.sum();
+    }
+
+    void show(Formatter f) {
+      long nqueued = queued.sum();
+      double avgWait = nqueued == 0 ? 0 : totalWaitNanos.sum() / (nqueued * 1.0e6);
+      f.format("%s: active=%d/%d waiting=%d/%d admitted=%d rejected=%d queued=%d avgWait=%.1f ms maxWait=%.1f ms%n",
+          service, getActive(), maxConcurrent, getWaiting(), maxQueue, admitted.sum(), getRejected(), nqueued,
+          avgWait, maxWaitNanos.get() / 1.0e6);
+    }
+  }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package thredds.servlet;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Conditional (RFC 7232) and Range (RFC 7233) request headers, for a file of known length and last modified time.
+ *
+ * @since 10/16/2026
+ */
+public class ByteRanges {
+  // ranges closer than this are sent as one part, about the size of a part header
+  static final long COALESCE_GAP = 80;
+
+  /** An inclusive range of bytes. */
+  public static class Range {
+    public final long first;
+    public final long last;
+
+    public Range(long first, long last) {
+      this.first = first;
+      this.last = last;
+    }
+
+    public long length() {
+      return last - first + 1;
+    }
+
+    public String contentRange(long fileLength) {
+      return "bytes " + first + "-" + last + "/" + fileLength;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Range))
+        return false;
+      Range r = (Range) o;
+      return first == r.first && last == r.last;
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(first) * 31 + Long.hashCode(last);
+    }
+
+    @Override
+    public String toString() {
+      return first + "-" + last;
+    }
+  }
+
+  public enum Precondition {
+    OK, NOT_MODIFIED, FAILED
+  }
+
+  /**
+   * Strong entity tag from the file length and last modified time.
+   */
+  public static String makeETag(long length, long lastModified) {
+    return "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+  }
+
+  /**
+   * Evaluate If-Match, If-Unmodified-Since, If-None-Match and If-Modified-Since, in the order of RFC 7232 section 6.
+   *
+   * @return NOT_MODIFIED for 304, FAILED for 412, else OK
+   */
+  public static Precondition checkPreconditions(HttpServletRequest req, String etag, long lastModified) {
+    boolean getOrHead = "GET".equals(req.getMethod()) || "HEAD".equals(req.getMethod());
+
+    String ifMatch = req.getHeader("If-Match");
+    if (ifMatch != null) {
+      if (!matches(ifMatch, etag, true))
+        return Precondition.FAILED;
+    } else {
+      long ifUnmodifiedSince = getDateHeader(req, "If-Unmodified-Since");
+      if (ifUnmodifiedSince >= 0 && seconds(lastModified) > seconds(ifUnmodifiedSince))
+        return Precondition.FAILED;
+    }
+
+    String ifNoneMatch = req.getHeader("If-None-Match");
+    if (ifNoneMatch != null) {
+      if (matches(ifNoneMatch, etag, false))
+        return getOrHead ? Precondition.NOT_MODIFIED : Precondition.FAILED;
+    } else if (getOrHead) {
+      long ifModifiedSince = getDateHeader(req, "If-Modified-Since");
+      if (ifModifiedSince >= 0 && seconds(lastModified) <= seconds(ifModifiedSince))
+        return Precondition.NOT_MODIFIED;
+    }
+    return Precondition.OK;
+  }
+
+  /**
+   * Should the Range header be used? False if there is an If-Range that no longer matches the file.
+   */
+  public static boolean ifRangeMatches(HttpServletRequest req, String etag, long lastModified) {
+    String ifRange = req.getHeader("If-Range");
+    if (ifRange == null)
+      return true;
+    ifRange = ifRange.trim();
+    if (ifRange.startsWith("\"") || ifRange.startsWith("W/"))
+      return ifRange.equals(etag); // strong comparison
+    long date = getDateHeader(req, "If-Range");
+    return date >= 0 && seconds(date) == seconds(lastModified);
+  }
+
+  /**
+   * Parse a Range header. Overlapping or nearly adjacent ranges are coalesced, which RFC 7233 allows.
+   *
+   * @param header value of the Range header, may be null
+   * @param fileLength length of the file
+   * @return null if there is no usable Range header, so the whole file is sent;
+   *         an empty list if no range can be satisfied (416); else the ranges to send, in ascending order
+   */
+  public static List<Range> parse(String header, long fileLength) {
+    if (header == null)
+      return null;
+    int eq = header.indexOf('=');
+    if (eq < 0 || !header.substring(0, eq).trim().equalsIgnoreCase("bytes"))
+      return null; // only know bytes
+
+    List<Range> ranges = new ArrayList<>();
+    boolean any = false;
+    for (String spec : header.substring(eq + 1).split(",")) {
+      spec = spec.trim();
+      if (spec.isEmpty())
+        continue; // allowed by the grammar
+      int dash = spec.indexOf('-');
+      if (dash < 0)
+        return null;
+      String firstString = spec.substring(0, dash).trim();
+      String lastString = spec.substring(dash + 1).trim();
+      long first, last;
+      try {
+        if (firstString.isEmpty()) { // suffix range: the last N bytes
+          long suffix = parseNonNegative(lastString);
+          any = true;
+          if (suffix == 0)
+            continue; // not satisfiable
+          first = Math.max(0, fileLength - suffix);
+          last = fileLength - 1;
+        } else {
+          first = parseNonNegative(firstString);
+          last = lastString.isEmpty() ? Long.MAX_VALUE : parseNonNegative(lastString);
+          if (last < first)
+            return null; // syntactically invalid
+          any = true;
+          last = Math.min(last, fileLength - 1);
+        }
+      } catch (NumberFormatException e) {
+        return null;
+      }
+      if (first < fileLength && first <= last)
+        ranges.add(new Range(first, last));
+    }
+    if (!any)
+      return null;
+    return coalesce(ranges);
+  }
+
+  static List<Range> coalesce(List<Range> ranges) {
+    if (ranges.size() < 2)
+      return ranges;
+    List<Range> sorted = new ArrayList<>(ranges);
+    sorted.sort(Comparator.comparingLong(r -> r.first));
+    List<Range> result = new ArrayList<>();
+    Range current = sorted.get(0);
+    for (Range r : sorted.subList(1, sorted.size())) {
+      if (r.first <= current.last + 1 + COALESCE_GAP)
+        current = new Range(current.first, Math.max(current.last, r.last));
+      else {
+        result.add(current);
+        current = r;
+      }
+    }
+    result.add(current);
+    return result;
+  }
+
+  private static long parseNonNegative(String s) {
+    if (s.isEmpty() || s.charAt(0) == '+')
+      throw new NumberFormatException(s);
+    long value = Long.parseLong(s);
+    if (value < 0)
+      throw new NumberFormatException(s);
+    return value;
+  }
+
+  // does the If-Match or If-None-Match list match etag
+  private static boolean matches(String header, String etag, boolean strong) {
+    for (String tag : header.split(",")) {
+      tag = tag.trim();
+      if (tag.equals("*"))
+        return true;
+      if (!strong && tag.startsWith("W/"))
+        tag = tag.substring(2);
+      if (tag.equals(etag))
+        return true;
+    }
+    return false;
+  }
+
+  // -1 if missing or not a date
+  private static long getDateHeader(HttpServletRequest req, String name) {
+    try {
+      return req.getDateHeader(name);
+    } catch (IllegalArgumentException e) {
+      return -1;
+    }
+  }
+
+  // HTTP dates have a resolution of one second
+  private static long seconds(long millis) {
+    return millis / 1000;
+  }
+}
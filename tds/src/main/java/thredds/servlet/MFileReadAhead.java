@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package thredds.servlet;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Copy a byte range of a remote file (eg an MFile in object storage) by fetching several parts at once,
+ * and writing them out in order. At most concurrency parts are in memory at a time per copy, and the part buffers
+ * of all copies are taken from a shared budget; a copy that can't get a buffer fetches the next part itself,
+ * straight to the output.
+ *
+ * @since 10/16/2026
+ */
+public class MFileReadAhead {
+  private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(MFileReadAhead.class);
+
+  public static final int DEFAULT_CONCURRENCY = 4;
+  public static final int DEFAULT_PART_SIZE = 8 * 1000 * 1000;
+  public static final int DEFAULT_THREADS = 16;
+  public static final long DEFAULT_MAX_BUFFERED = 256L * 1000 * 1000;
+
+  /** Reads a byte range, eg with a ranged GET. */
+  public interface RangeReader {
+    void read(long start, long count, OutputStream out) throws IOException;
+  }
+
+  private static volatile MFileReadAhead defaultReadAhead = null; // null = copy sequentially
+  private static ExecutorService defaultExecutor;
+
+  /**
+   * Set how non-local MFiles are downloaded. Called from TdsInit.
+   *
+   * @param concurrency parts fetched at once per download; 1 or less to fetch sequentially
+   * @param partSize size of each part in bytes
+   * @param nthreads threads fetching parts, shared by all downloads
+   * @param maxBuffered bytes of parts held in memory, over all downloads
+   */
+  public static synchronized void setDefault(int concurrency, int partSize, int nthreads, long maxBuffered) {
+    shutdown();
+    if (concurrency <= 1 || partSize <= 0 || nthreads <= 0 || maxBuffered < partSize)
+      return;
+    AtomicInteger count = new AtomicInteger();
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(nthreads, nthreads, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), r -> {
+          Thread t = new Thread(r, "MFileReadAhead-" + count.incrementAndGet());
+          t.setDaemon(true);
+          return t;
+        });
+    pool.allowCoreThreadTimeOut(true);
+    defaultExecutor = pool;
+    int nbuffers = (int) Math.min(Integer.MAX_VALUE, maxBuffered / partSize);
+    defaultReadAhead = new MFileReadAhead(defaultExecutor, concurrency, partSize, new Semaphore(nbuffers));
+    log.info("MFileReadAhead: concurrency={} partSize={} threads={} buffers={}", concurrency, partSize, nthreads,
+        nbuffers);
+  }
+
+  /** @return the configured read ahead, or null to copy sequentially */
+  public static MFileReadAhead getDefault() {
+    return defaultReadAhead;
+  }
+
+  public static synchronized void shutdown() {
+    defaultReadAhead = null;
+    if (defaultExecutor != null) {
+      defaultExecutor.shutdownNow();
+      defaultExecutor = null;
+    }
+  }
+
+  ///////////////////////////////////////////////////////////////////////
+
+  private final ExecutorService executor;
+  private final int concurrency;
+  private final int partSize;
+  private final Semaphore buffers; // a permit for each part buffer in use, over all copies; null = no limit
+
+  public MFileReadAhead(ExecutorService executor, int concurrency, int partSize) {
+    this(executor, concurrency, partSize, null);
+  }
+
+  /**
+   * @param executor fetches the parts
+   * @param concurrency parts fetched at once per copy
+   * @param partSize size of each part in bytes
+   * @param buffers a permit for each part buffer, shared with other MFileReadAheads; null for no limit
+   */
+  public MFileReadAhead(ExecutorService executor, int concurrency, int partSize, Semaphore buffers) {
+    this.executor = executor;
+    this.concurrency = Math.max(1, concurrency);
+    this.partSize = partSize;
+    this.buffers = buffers;
+  }
+
+  /**
+   * Copy count bytes starting at start to out.
+   *
+   * @param reader reads one part
+   */
+  public void copy(RangeReader reader, long start, long count, OutputStream out) throws IOException {
+    if (concurrency == 1 || count <= partSize) {
+      reader.read(start, count, out);
+      return;
+    }
+
+    long nparts = (count + partSize - 1) / partSize;
+    Deque<Future<Part>> inFlight = new ArrayDeque<>();
+    Deque<byte[]> free = new ArrayDeque<>(); // the ring of buffers, at most concurrency of them
+    int nbuffers = 0; // permits taken from buffers
+    long next = 0;
+    try {
+      while (next < nparts || !inFlight.isEmpty()) {
+        while (next < nparts && inFlight.size() < concurrency) {
+          if (free.isEmpty()) {
+            if (buffers != null && !buffers.tryAcquire())
+              break; // over the budget, make do with the buffers we have
+            nbuffers++;
+            free.push(new byte[partSize]);
+          }
+          byte[] buffer = free.pop();
+          long partStart = start + next * partSize;
+          int partCount = (int) Math.min(partSize, start + count - partStart);
+          inFlight.add(executor.submit(() -> readPart(reader, partStart, partCount, buffer)));
+          next++;
+        }
+        if (inFlight.isEmpty()) { // no buffer at all: fetch the next part straight to the output
+          long partStart = start + next * partSize;
+          reader.read(partStart, Math.min(partSize, start + count - partStart), out);
+          next++;
+          continue;
+        }
+        Part part = get(inFlight.remove());
+        out.write(part.buffer, 0, part.count);
+        free.push(part.buffer);
+      }
+    } finally {
+      for (Future<Part> f : inFlight)
+        f.cancel(true); // only if something failed
+      if (buffers != null)
+        buffers.release(nbuffers);
+    }
+  }
+
+  private static class Part {
+    final byte[] buffer;
+    final int count;
+
+    Part(byte[] buffer, int count) {
+      this.buffer = buffer;
+      this.count = count;
+    }
+  }
+
+  private static Part readPart(RangeReader reader, long start, int count, byte[] buffer) throws IOException {
+    BufferOutputStream bos = new BufferOutputStream(buffer);
+    reader.read(start, count, bos);
+    if (bos.count != count)
+      throw new EOFException("Read " + bos.count + " bytes instead of " + count + " at " + start);
+    return new Part(buffer, count);
+  }
+
+  private static Part get(Future<Part> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("MFileReadAhead interrupted");
+    } catch (CancellationException e) {
+      throw new InterruptedIOException("MFileReadAhead cancelled");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException)
+        throw (IOException) cause;
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      throw new IOException(cause);
+    }
+  }
+
+  // writes into a fixed buffer
+  private static class BufferOutputStream extends OutputStream {
+    private final byte[] buffer;
+    private int count;
+
+    BufferOutputStream(byte[] buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (count + len > buffer.length)
+        throw new IOException("More bytes than requested");
+      System.arraycopy(b, off, buffer, count, len);
+      count += len;
+    }
+  }
+}
@@ -15,7 +15,6 @@ import thredds.util.ContentType;
 import thredds.util.RequestForwardUtils;
 import ucar.nc2.util.EscapeStrings;
 import ucar.nc2.util.IO;
-import ucar.unidata.io.RandomAccessFile;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.ServletOutputStream;
 import jakarta.servlet.http.HttpServlet;
@@ -25,6 +24,15 @@ import jakarta.servlet.http.HttpSession;
 import java.io.*;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 
 public class ServletUtil {
@@ -148,64 +156,34 @@ public class ServletUtil {
   }
 
   /**
-   * Write a file to the response stream. Handles Range requests.
+   * Write a file to the response stream. Handles conditional and Range requests.
    *
    * @param req request
    * @param res response
-   * @param file must exist and not be a directory
+   * @param file if it does not exist or is a directory, 404 is sent
    * @param contentType must not be null
    * @throws IOException or error
    */
   public static void returnFile(HttpServletRequest req, HttpServletResponse res, File file, String contentType)
       throws IOException {
-    res.setContentType(contentType);
-    res.addDateHeader("Last-Modified", file.lastModified());
     // res.setHeader("Content-Disposition", "attachment; filename=\"" + file.getName() + "\"");
-
-    final boolean isRangeRequest = isRangeRequest(req.getHeader("Range"));
-
-    final long startPos = getContentStartPosition(req.getHeader("Range"));
-    final long endPos = getContentEndPosition(req.getHeader("Range"), file.length());
-    final long contentLength = endPos - startPos;
-
-    addContentLengthHeader(res, contentLength);
-
     String filename = file.getPath();
-    // indicate we allow Range Requests
-    res.addHeader("Accept-Ranges", "bytes");
 
-    if (req.getMethod().equals("HEAD")) {
+    // file.length() of a missing file is 0, which would be sent as an empty 200
+    if (!file.isFile()) {
+      log.debug("returnFile(): not a file= " + filename);
+      res.sendError(HttpServletResponse.SC_NOT_FOUND);
       return;
     }
 
-    try {
-
-      if (isRangeRequest) {
-        // set before content is sent
-        res.addHeader("Content-Range", "bytes " + startPos + "-" + (endPos - 1) + "/" + file.length());
-        res.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
-
-        try (RandomAccessFile craf = RandomAccessFile.acquire(filename)) {
-          IO.copyRafB(craf, startPos, contentLength, res.getOutputStream(), new byte[60000]);
-          return;
-        }
-      }
-
-      // Return the file
-      ServletOutputStream out = res.getOutputStream();
-      IO.copyFileB(file, out, 60 * 1000);
-      /*
-       * try (WritableByteChannel cOut = Channels.newChannel(out)) {
-       * IO.copyFileWithChannels(file, cOut);
-       * res.flushBuffer();
-       * }
-       */
+    try (FileSource source = new FileSource(file.toPath())) {
+      sendBytes(req, res, contentType, file.length(), file.lastModified(), source);
     }
 
     // @todo Split up this exception handling: those from file access vs those from dealing with response
     // File access: catch and res.sendError()
     // response: don't catch (let bubble up out of doGet() etc)
-    catch (FileNotFoundException e) {
+    catch (FileNotFoundException | NoSuchFileException e) {
       log.error("returnFile(): FileNotFoundException= " + filename);
       if (!res.isCommitted())
         res.sendError(HttpServletResponse.SC_NOT_FOUND);
@@ -238,37 +216,6 @@ public class ServletUtil {
       res.setContentLength((int) contentLength);
   }
 
-  private static boolean isRangeRequest(String rangeRequest) {
-    if (rangeRequest != null) { // bytes=12-34 or bytes=12-
-      return rangeRequest.indexOf("=") > 0 && rangeRequest.indexOf("-") > 0;
-    }
-
-    return false;
-  }
-
-  private static long getContentStartPosition(String rangeRequest) {
-    final boolean isRangeRequest = isRangeRequest(rangeRequest);
-
-    if (!isRangeRequest)
-      return 0;
-
-    // bytes=12-34 or bytes=12-
-    final String startString = rangeRequest.substring(rangeRequest.indexOf("=") + 1, rangeRequest.indexOf("-"));
-    return Long.parseLong(startString);
-  }
-
-  private static long getContentEndPosition(String rangeRequest, Long fileLength) {
-    final boolean isRangeRequest = isRangeRequest(rangeRequest);
-
-    if (!isRangeRequest)
-      return fileLength;
-
-    // bytes=12-34 or bytes=12-
-    final String endString = rangeRequest.substring(rangeRequest.indexOf("-") + 1);
-    final long endPosition = endString.length() > 0 ? Long.parseLong(endString) + 1 : fileLength;
-    return Math.min(endPosition, fileLength);
-  }
-
   /**
    * Write an MFile to the response stream.
    *
@@ -301,30 +248,189 @@ public class ServletUtil {
       return;
     }
 
-    response.setContentType(getContentType(requestPath, request.getServletContext()));
-    response.addDateHeader("Last-Modified", file.getLastModified());
-    response.addHeader("Accept-Ranges", "bytes");
+    final String contentType = getContentType(requestPath, request.getServletContext());
+    final Path localPath = getLocalPath(file);
+    if (localPath != null && !Files.isRegularFile(localPath)) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND, "Could not find file with URL path: " + requestPath);
+      return;
+    }
+    try (ByteSource source = localPath != null ? new FileSource(localPath) : new MFileSource(file)) {
+      sendBytes(request, response, contentType, file.getLength(), file.getLastModified(), source);
+    }
+  }
+
+  //////////////////////////////////////////////////////////////////////////////
+  // Range requests
 
-    final long startPosition = getContentStartPosition(request.getHeader("Range"));
-    final long endPosition = getContentEndPosition(request.getHeader("Range"), file.getLength());
-    final long contentLength = endPosition - startPosition;
-    addContentLengthHeader(response, contentLength);
+  // Content ranges at least this big are left to Tomcat's sendfile, same as its DefaultServlet
+  private static final long SENDFILE_SIZE = 48 * 1024;
 
-    if (request.getMethod().equals("HEAD")) {
-      return;
+  static final String MULTIPART_BOUNDARY = "THREDDS_MIME_BOUNDARY";
+
+  /** Where the bytes of a file come from. */
+  interface ByteSource extends Closeable {
+    void writeTo(OutputStream out, long start, long count) throws IOException;
+
+    /** The file on local disk, or null. */
+    default Path getLocalPath() {
+      return null;
     }
+  }
 
-    ServletOutputStream outputStream = response.getOutputStream();
+  /** A local file, sent with FileChannel.transferTo(). */
+  private static class FileSource implements ByteSource {
+    private final Path path;
+    private FileChannel channel;
 
-    if (!isRangeRequest(request.getHeader("Range"))) {
-      file.writeToStream(outputStream);
+    FileSource(Path path) {
+      this.path = path;
+    }
+
+    @Override
+    public void writeTo(OutputStream out, long start, long count) throws IOException {
+      if (channel == null)
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+      WritableByteChannel target = Channels.newChannel(out);
+      long pos = start;
+      long end = start + count;
+      while (pos < end) {
+        long n = channel.transferTo(pos, end - pos, target);
+        if (n <= 0)
+          throw new EOFException("Unexpected end of file " + path + " at " + pos);
+        pos += n;
+      }
+    }
+
+    @Override
+    public Path getLocalPath() {
+      return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (channel != null)
+        channel.close();
+    }
+  }
+
+  /** Any other MFile, eg in object storage. Large ranges are fetched in parallel parts, if configured. */
+  static class MFileSource implements ByteSource {
+    private final MFile file;
+
+    MFileSource(MFile file) {
+      this.file = file;
+    }
+
+    @Override
+    public void writeTo(OutputStream out, long start, long count) throws IOException {
+      MFileReadAhead readAhead = MFileReadAhead.getDefault();
+      if (readAhead != null)
+        readAhead.copy((partStart, partCount, partOut) -> file.writeToStream(partOut, partStart, partCount), start,
+            count, out);
+      else if (start == 0 && count == file.getLength())
+        file.writeToStream(out);
+      else
+        file.writeToStream(out, start, count);
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  // the local file behind an MFile, or null
+  private static Path getLocalPath(MFile file) {
+    try {
+      Path path = Paths.get(file.getPath());
+      return path.isAbsolute() && Files.isRegularFile(path) ? path : null;
+    } catch (InvalidPathException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Send all or part of a file, following the conditional and Range headers of the request (RFC 7232, 7233).
+   * Several ranges are sent as multipart/byteranges.
+   */
+  private static void sendBytes(HttpServletRequest req, HttpServletResponse res, String contentType, long length,
+      long lastModified, ByteSource source) throws IOException {
+    final String etag = ByteRanges.makeETag(length, lastModified);
+    res.addDateHeader("Last-Modified", lastModified);
+    res.setHeader("ETag", etag);
+    // indicate we allow Range Requests
+    res.addHeader("Accept-Ranges", "bytes");
+
+    switch (ByteRanges.checkPreconditions(req, etag, lastModified)) {
+      case NOT_MODIFIED:
+        res.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        return;
+      case FAILED:
+        res.sendError(HttpServletResponse.SC_PRECONDITION_FAILED);
+        return;
+      default:
+        break;
+    }
+
+    // an If-Range that does not match means send the whole file
+    final List<ByteRanges.Range> ranges =
+        ByteRanges.ifRangeMatches(req, etag, lastModified) ? ByteRanges.parse(req.getHeader("Range"), length) : null;
+    if (ranges != null && ranges.isEmpty()) {
+      res.setHeader("Content-Range", "bytes */" + length);
+      res.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+      return;
+    }
+    final boolean isHead = req.getMethod().equals("HEAD");
+
+    if (ranges == null || ranges.size() == 1) {
+      ByteRanges.Range range = ranges == null ? new ByteRanges.Range(0, length - 1) : ranges.get(0);
+      res.setContentType(contentType);
+      if (ranges != null) {
+        // set before content is sent
+        res.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        res.addHeader("Content-Range", range.contentRange(length));
+      }
+      addContentLengthHeader(res, range.length());
+      if (isHead || range.length() == 0 || useSendfile(req, source.getLocalPath(), range))
+        return;
+      source.writeTo(res.getOutputStream(), range.first, range.length());
       return;
     }
 
-    response.addHeader("Content-Range", "bytes " + startPosition + "-" + (endPosition - 1) + "/" + file.getLength());
-    response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+    // multipart/byteranges
+    final List<byte[]> partHeaders = new ArrayList<>();
+    long contentLength = 0;
+    for (ByteRanges.Range range : ranges) {
+      byte[] partHeader = ("\r\n--" + MULTIPART_BOUNDARY + "\r\nContent-Type: " + contentType
+          + "\r\nContent-Range: " + range.contentRange(length) + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+      partHeaders.add(partHeader);
+      contentLength += partHeader.length + range.length();
+    }
+    final byte[] end = ("\r\n--" + MULTIPART_BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+    contentLength += end.length;
+
+    res.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+    res.setContentType("multipart/byteranges; boundary=" + MULTIPART_BOUNDARY);
+    addContentLengthHeader(res, contentLength);
+    if (isHead)
+      return;
+
+    ServletOutputStream out = res.getOutputStream();
+    for (int i = 0; i < ranges.size(); i++) {
+      ByteRanges.Range range = ranges.get(i);
+      out.write(partHeaders.get(i));
+      source.writeTo(out, range.first, range.length());
+    }
+    out.write(end);
+  }
 
-    file.writeToStream(outputStream, startPosition, contentLength);
+  // Let Tomcat send a local file with sendfile(), if it can
+  private static boolean useSendfile(HttpServletRequest req, Path path, ByteRanges.Range range) {
+    if (path == null || range.length() < SENDFILE_SIZE
+        || !Boolean.TRUE.equals(req.getAttribute("org.apache.tomcat.sendfile.support")))
+      return false;
+    req.setAttribute("org.apache.tomcat.sendfile.filename", path.toAbsolutePath().toString());
+    req.setAttribute("org.apache.tomcat.sendfile.start", range.first);
+    req.setAttribute("org.apache.tomcat.sendfile.end", range.last + 1);
+    return true;
   }
 
   /**
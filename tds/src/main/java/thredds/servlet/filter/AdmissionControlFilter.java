@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package thredds.servlet.filter;
+
+import thredds.server.exception.ServiceBusyException;
+import thredds.servlet.AdmissionControl;
+import jakarta.servlet.*;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Admit a request to its data service through AdmissionControl, and release it when done.
+ * If the service is full, send 503 (Service Unavailable) with a Retry-After header.
+ *
+ * @since 10/16/2026
+ */
+public class AdmissionControlFilter implements jakarta.servlet.Filter {
+
+  private org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(AdmissionControlFilter.class);
+
+  public void init(FilterConfig filterConfig) throws ServletException {}
+
+  public void destroy() {}
+
+  public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain)
+      throws IOException, ServletException {
+
+    if (!(servletRequest instanceof HttpServletRequest)) {
+      log.error("doFilter(): Not an HTTP request! How did this filter get here?");
+      filterChain.doFilter(servletRequest, servletResponse);
+      return;
+    }
+
+    HttpServletRequest request = (HttpServletRequest) servletRequest;
+    HttpServletResponse response = (HttpServletResponse) servletResponse;
+
+    AdmissionControl.Ticket ticket;
+    try {
+      ticket = AdmissionControl.admit(request);
+    } catch (ServiceBusyException e) {
+      log.info("doFilter(): {} - rejected {}", e.getMessage(), request.getRequestURI());
+      response.setHeader("Retry-After", Integer.toString(e.getRetryAfter()));
+      response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, e.getMessage());
+      return;
+    }
+
+    try {
+      filterChain.doFilter(request, response);
+    } finally {
+      if (ticket != null)
+        ticket.release();
+    }
+  }
+
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package thredds.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import ucar.unidata.geoloc.LatLonPoint;
+import ucar.unidata.geoloc.LatLonRect;
+
+/**
+ * An immutable spatial index of a set of stations, to find the station nearest a point, and the stations inside a
+ * lat/lon box, without looking at every station.
+ * The stations are kept in a k-d tree as points on the unit sphere, so the poles and the antimeridian need no special
+ * handling. Nearest means smallest great circle distance.
+ * Stations with a missing latitude or longitude are left out.
+ *
+ * @since 10/16/2026
+ */
+@Immutable
+public class StationIndex<T> {
+  private final Object[] stations; // in tree order
+  private final int[] position; // of each station in the original collection
+  private final double[] lat, lon; // degrees
+  private final double[] xyz; // 3 per station
+  private final byte[] axis; // that the subtree of each node is split on
+
+  /**
+   * Build the index.
+   *
+   * @param stations the stations, in the order that findInside() returns them
+   * @param latitude of a station, in degrees
+   * @param longitude of a station, in degrees
+   */
+  public static <T> StationIndex<T> of(Collection<? extends T> stations, ToDoubleFunction<? super T> latitude,
+      ToDoubleFunction<? super T> longitude) {
+    return new StationIndex<>(stations, latitude, longitude);
+  }
+
+  private StationIndex(Collection<? extends T> all, ToDoubleFunction<? super T> latitude,
+      ToDoubleFunction<? super T> longitude) {
+    List<T> kept = new ArrayList<>(all.size());
+    List<Integer> keptPosition = new ArrayList<>(all.size());
+    int count = 0;
+    for (T station : all) {
+      double stationLat = latitude.applyAsDouble(station);
+      double stationLon = longitude.applyAsDouble(station);
+      if (!Double.isNaN(stationLat) && !Double.isNaN(stationLon)) {
+        kept.add(station);
+        keptPosition.add(count);
+      }
+      count++;
+    }
+
+    int n = kept.size();
+    double[] points = new double[3 * n];
+    for (int i = 0; i < n; i++)
+      toXyz(latitude.applyAsDouble(kept.get(i)), longitude.applyAsDouble(kept.get(i)), points, 3 * i);
+
+    int[] order = new int[n];
+    for (int i = 0; i < n; i++)
+      order[i] = i;
+    this.axis = new byte[n];
+    build(order, points, 0, n);
+
+    this.stations = new Object[n];
+    this.position = new int[n];
+    this.lat = new double[n];
+    this.lon = new double[n];
+    this.xyz = new double[3 * n];
+    for (int i = 0; i < n; i++) {
+      T station = kept.get(order[i]);
+      stations[i] = station;
+      position[i] = keptPosition.get(order[i]);
+      lat[i] = latitude.applyAsDouble(station);
+      lon[i] = longitude.applyAsDouble(station);
+      System.arraycopy(points, 3 * order[i], xyz, 3 * i, 3);
+    }
+  }
+
+  // The node of the subtree [lo, hi) is its middle; split on the axis of greatest spread.
+  private void build(int[] order, double[] points, int lo, int hi) {
+    if (hi - lo < 2)
+      return;
+    int splitAxis = 0;
+    double maxSpread = -1;
+    for (int a = 0; a < 3; a++) {
+      double min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+      for (int i = lo; i < hi; i++) {
+        double v = points[3 * order[i] + a];
+        min = Math.min(min, v);
+        max = Math.max(max, v);
+      }
+      if (max - min > maxSpread) {
+        maxSpread = max - min;
+        splitAxis = a;
+      }
+    }
+
+    int mid = (lo + hi) >>> 1;
+    select(order, points, splitAxis, lo, hi - 1, mid);
+    axis[mid] = (byte) splitAxis;
+    build(order, points, lo, mid);
+    build(order, points, mid + 1, hi);
+  }
+
+  // Reorder order[lo..hi] so that order[k] has the k-th smallest coordinate on the axis, with the ones before it
+  // no bigger and the ones after it no smaller.
+  private static void select(int[] order, double[] points, int a, int lo, int hi, int k) {
+    while (lo < hi) {
+      double pivot = points[3 * order[(lo + hi) >>> 1] + a];
+      int i = lo, j = hi;
+      while (i <= j) {
+        while (points[3 * order[i] + a] < pivot)
+          i++;
+        while (points[3 * order[j] + a] > pivot)
+          j--;
+        if (i <= j) {
+          int tmp = order[i];
+          order[i] = order[j];
+          order[j] = tmp;
+          i++;
+          j--;
+        }
+      }
+      if (k <= j)
+        hi = j;
+      else if (k >= i)
+        lo = i;
+      else
+        return;
+    }
+  }
+
+  private static void toXyz(double latDegrees, double lonDegrees, double[] result, int offset) {
+    double phi = Math.toRadians(latDegrees);
+    double lambda = Math.toRadians(lonDegrees);
+    double cosPhi = Math.cos(phi);
+    result[offset] = cosPhi * Math.cos(lambda);
+    result[offset + 1] = cosPhi * Math.sin(lambda);
+    result[offset + 2] = Math.sin(phi);
+  }
+
+  /** @return number of stations in the index */
+  public int size() {
+    return stations.length;
+  }
+
+  ////////////////////////////////////////////////////////////////
+  // nearest
+
+  private static class Nearest {
+    int index = -1;
+    double dist2 = Double.POSITIVE_INFINITY; // squared chord length, which goes up with great circle distance
+  }
+
+  /**
+   * Find the station nearest a point.
+   *
+   * @return null if the index is empty, or the point is missing
+   */
+  @Nullable
+  public T findNearest(double latitude, double longitude) {
+    if (stations.length == 0 || Double.isNaN(latitude) || Double.isNaN(longitude))
+      return null;
+    double[] q = new double[3];
+    toXyz(latitude, longitude, q, 0);
+    Nearest nearest = new Nearest();
+    findNearest(q, 0, stations.length, nearest);
+    return station(nearest.index);
+  }
+
+  /** @see #findNearest(double, double) */
+  @Nullable
+  public T findNearest(LatLonPoint pt) {
+    return findNearest(pt.getLatitude(), pt.getLongitude());
+  }
+
+  private void findNearest(double[] q, int lo, int hi, Nearest nearest) {
+    if (lo >= hi)
+      return;
+    int mid = (lo + hi) >>> 1;
+    double dx = xyz[3 * mid] - q[0];
+    double dy = xyz[3 * mid + 1] - q[1];
+    double dz = xyz[3 * mid + 2] - q[2];
+    double dist2 = dx * dx + dy * dy + dz * dz;
+    if (dist2 < nearest.dist2 || (dist2 == nearest.dist2 && position[mid] < position[nearest.index])) {
+      nearest.dist2 = dist2;
+      nearest.index = mid;
+    }
+
+    int a = axis[mid];
+    double diff = q[a] - xyz[3 * mid + a];
+    if (diff < 0) {
+      findNearest(q, lo, mid, nearest);
+      if (diff * diff <= nearest.dist2)
+        findNearest(q, mid + 1, hi, nearest);
+    } else {
+      findNearest(q, mid + 1, hi, nearest);
+      if (diff * diff <= nearest.dist2)
+        findNearest(q, lo, mid, nearest);
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////
+  // inside
+
+  /**
+   * Find the stations inside a lat/lon box, as decided by LatLonRect.contains().
+   *
+   * @return the stations, in the order they were given to the index
+   */
+  public List<T> findInside(LatLonRect rect) {
+    double[] min = new double[3];
+    double[] max = new double[3];
+    boundsOf(rect, min, max);
+
+    List<Integer> found = new ArrayList<>();
+    findInside(rect, min, max, 0, stations.length, found);
+
+    found.sort(Comparator.comparingInt(index -> position[index]));
+    List<T> result = new ArrayList<>(found.size());
+    for (int index : found)
+      result.add(station(index));
+    return result;
+  }
+
+  // indices of stations that are inside; min and max bound the box on the unit sphere
+  private void findInside(LatLonRect rect, double[] min, double[] max, int lo, int hi, List<Integer> found) {
+    if (lo >= hi)
+      return;
+    int mid = (lo + hi) >>> 1;
+    int a = axis[mid];
+    double split = xyz[3 * mid + a];
+
+    if (min[a] <= split)
+      findInside(rect, min, max, lo, mid, found);
+    if (inBounds(mid, min, max) && rect.contains(LatLonPoint.create(lat[mid], lon[mid])))
+      found.add(mid);
+    if (max[a] >= split)
+      findInside(rect, min, max, mid + 1, hi, found);
+  }
+
+  private boolean inBounds(int index, double[] min, double[] max) {
+    for (int a = 0; a < 3; a++) {
+      double v = xyz[3 * index + a];
+      if (v < min[a] || v > max[a])
+        return false;
+    }
+    return true;
+  }
+
+  private static final double EPS = 1.0e-9; // so rounding never leaves out a station on the edge of the box
+
+  // The box of (x, y, z) that holds the lat/lon box on the unit sphere. Over a longitude interval, cos and sin have
+  // their extremes at the ends or at a multiple of 90 degrees.
+  private static void boundsOf(LatLonRect rect, double[] min, double[] max) {
+    double latMin = Math.toRadians(rect.getLatMin());
+    double latMax = Math.toRadians(rect.getLatMax());
+    double cosPhiMax = (latMin <= 0 && latMax >= 0) ? 1.0 : Math.max(Math.cos(latMin), Math.cos(latMax));
+    double cosPhiMin = Math.min(Math.cos(latMin), Math.cos(latMax));
+
+    double lonStart = rect.getLonMin();
+    double lonEnd = lonStart + rect.getWidth();
+    double cosMin = Double.MAX_VALUE, cosMax = -Double.MAX_VALUE;
+    double sinMin = Double.MAX_VALUE, sinMax = -Double.MAX_VALUE;
+    List<Double> lambdas = new ArrayList<>();
+    lambdas.add(lonStart);
+    lambdas.add(lonEnd);
+    for (double quarter = Math.ceil(lonStart / 90) * 90; quarter <= lonEnd; quarter += 90)
+      lambdas.add(quarter);
+    for (double lambda : lambdas) {
+      double c = Math.cos(Math.toRadians(lambda));
+      double s = Math.sin(Math.toRadians(lambda));
+      cosMin = Math.min(cosMin, c);
+      cosMax = Math.max(cosMax, c);
+      sinMin = Math.min(sinMin, s);
+      sinMax = Math.max(sinMax, s);
+    }
+
+    // x = cos(phi) cos(lambda) and y = cos(phi) sin(lambda), with cos(phi) >= 0
+    min[0] = (cosMin >= 0 ? cosPhiMin : cosPhiMax) * cosMin - EPS;
+    max[0] = (cosMax >= 0 ? cosPhiMax : cosPhiMin) * cosMax + EPS;
+    min[1] = (sinMin >= 0 ? cosPhiMin : cosPhiMax) * sinMin - EPS;
+    max[1] = (sinMax >= 0 ? cosPhiMax : cosPhiMin) * sinMax + EPS;
+    min[2] = Math.sin(latMin) - EPS;
+    max[2] = Math.sin(latMax) + EPS;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Nullable
+  private T station(int index) {
+    return index < 0 ? null : (T) stations[index];
+  }
+}
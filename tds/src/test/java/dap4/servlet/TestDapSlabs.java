@@ -0,0 +1,255 @@
+package dap4.servlet;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import dap4.core.ce.CEConstraint;
+import dap4.core.dmr.DapDataset;
+import dap4.core.dmr.DapType;
+import dap4.core.dmr.DapVariable;
+import dap4.core.dmr.TypeSort;
+import dap4.core.util.ChecksumMode;
+import dap4.core.util.DapConstants;
+import dap4.dap4lib.RequestMode;
+import dap4.dap4lib.cdm.CDMUtil;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.Range;
+import ucar.ma2.Section;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.nc2.write.NetcdfFormatWriter;
+
+/**
+ * Atomic variables serialized a slab at a time, and encoded a piece at a time, give the same bytes and checksums as
+ * reading and encoding each variable whole.
+ */
+public class TestDapSlabs {
+  private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private final long slabsize = DapSerializer.SLABSIZE;
+  private File file;
+
+  @Before
+  public void writeFile() throws Exception {
+    file = new File(tempFolder.getRoot(), "slabs.nc");
+    NetcdfFormatWriter.Builder builder = NetcdfFormatWriter.createNewNetcdf3(file.getPath());
+    builder.addDimension("t", 7);
+    builder.addDimension("y", 5);
+    builder.addDimension("x", 3);
+    builder.addDimension("row", 100);
+    builder.addDimension("col", 100);
+    builder.addDimension("n", 13);
+    builder.addVariable("f", DataType.FLOAT, "t y x");
+    builder.addVariable("d", DataType.DOUBLE, "row col"); // more than one encode buffer
+    builder.addVariable("s", DataType.SHORT, "n");
+    builder.addVariable("b", DataType.BYTE, "n");
+    builder.addVariable("i", DataType.INT, "t y");
+    try (NetcdfFormatWriter writer = builder.build()) {
+      writer.write("f", Array.factory(DataType.FLOAT, new int[] {7, 5, 3}, floats(7 * 5 * 3)));
+      writer.write("d", Array.factory(DataType.DOUBLE, new int[] {100, 100}, doubles(100 * 100)));
+      short[] s = new short[13];
+      byte[] b = new byte[13];
+      for (int k = 0; k < 13; k++) {
+        s[k] = (short) (k * 1000 - 6000);
+        b[k] = (byte) (k * 20 - 120);
+      }
+      writer.write("s", Array.factory(DataType.SHORT, new int[] {13}, s));
+      writer.write("b", Array.factory(DataType.BYTE, new int[] {13}, b));
+      int[] i = new int[7 * 5];
+      for (int k = 0; k < i.length; k++)
+        i[k] = k * 100003;
+      writer.write("i", Array.factory(DataType.INT, new int[] {7, 5}, i));
+    }
+  }
+
+  @After
+  public void restoreSlabSize() {
+    DapSerializer.SLABSIZE = slabsize;
+  }
+
+  @Test
+  public void shouldSerializeSameInSlabs() throws Exception {
+    // 1 byte: a value at a time; 100 and 150 leave a partial final slab; then whole
+    for (long size : new long[] {1, 100, 150, 1000, Long.MAX_VALUE}) {
+      DapSerializer.SLABSIZE = size;
+      for (String constraint : Arrays.asList(null, "/d[1:3:99][0:7:99];/f[2:6][1][0:2:2];/s;/i[0:2:6][4]")) {
+        Map<String, Long> checksums = new HashMap<>();
+        Map<String, Long> expectedChecksums = new HashMap<>();
+        byte[] actual = serialize(constraint, checksums);
+        byte[] expected = serializeWhole(constraint, expectedChecksums);
+        assertWithMessage("slabsize %s constraint %s", size, constraint).that(actual).isEqualTo(expected);
+        assertWithMessage("slabsize %s constraint %s", size, constraint).that(checksums)
+            .isEqualTo(expectedChecksums);
+      }
+    }
+  }
+
+  @Test
+  public void shouldSplitAlongOuterDimensions() throws Exception {
+    // 60 bytes per index of the outer dimension, 2 per slab, last one partial
+    List<Range> ranges = Arrays.asList(new Range(7), new Range(5), new Range(3));
+    assertThat(slabs(ranges, 150)).containsExactly("0-1/0-4/0-2", "2-3/0-4/0-2", "4-5/0-4/0-2", "6-6/0-4/0-2")
+        .inOrder();
+
+    // 12 bytes per index of the middle dimension: the strided outer one an index at a time
+    ranges = Arrays.asList(new Range(0, 4, 2), new Range(5), new Range(3));
+    assertThat(slabs(ranges, 40)).containsExactly("0-0/0-2/0-2", "0-0/3-4/0-2", "2-2/0-2/0-2", "2-2/3-4/0-2",
+        "4-4/0-2/0-2", "4-4/3-4/0-2").inOrder();
+  }
+
+  @Test
+  public void shouldEncodeSameInPieces() throws Exception {
+    Map<DapType, Object> arrays = new HashMap<>();
+    arrays.put(DapType.CHAR, new char[] {'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 'i', 'j'});
+    arrays.put(DapType.INT8, new byte[] {1, -2, 3, -4, 5, -6, 7, -8, 9, -10});
+    arrays.put(DapType.INT16, new short[] {1, -2, 300, -400, 5, -6, 7000, -8000, 9, -10});
+    arrays.put(DapType.INT32, new int[] {1, -2, 300000, -400000, 5, -6, 7, -8, 9, Integer.MIN_VALUE});
+    arrays.put(DapType.INT64, new long[] {1, -2, 3, -4, Long.MAX_VALUE, -6, 7, -8, 9, -10});
+    arrays.put(DapType.FLOAT32, new float[] {1.5f, -2, 3, -4, 5, Float.NaN, 7, -8, 9, -10});
+    arrays.put(DapType.FLOAT64, new double[] {1.5, -2, 3, -4, 5, -6, 7, Double.MAX_VALUE, 9, -10});
+
+    for (Map.Entry<DapType, Object> entry : arrays.entrySet()) {
+      TypeSort atomtype = entry.getKey().getAtomicType();
+      ByteBuffer whole = SerialWriter.encodeArray(entry.getKey(), entry.getValue(), ORDER);
+
+      ByteBuffer pieces = ByteBuffer.allocate(whole.capacity() + 8).order(ORDER);
+      pieces.put(new byte[8]); // not at the start of the buffer
+      SerialWriter.encodeArray(atomtype, entry.getValue(), 0, 3, pieces);
+      SerialWriter.encodeArray(atomtype, entry.getValue(), 3, 4, pieces);
+      SerialWriter.encodeArray(atomtype, entry.getValue(), 7, 3, pieces);
+      assertWithMessage(atomtype.toString()).that(pieces.position()).isEqualTo(whole.position() + 8);
+      assertWithMessage(atomtype.toString())
+          .that(Arrays.copyOfRange(pieces.array(), 8, pieces.position()))
+          .isEqualTo(Arrays.copyOf(whole.array(), whole.position()));
+    }
+  }
+
+  @Test
+  public void shouldWriteFromOffsetAcrossChunks() throws Exception {
+    byte[] data = new byte[100];
+    for (int k = 0; k < data.length; k++)
+      data[k] = (byte) k;
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ChunkWriter cw = new ChunkWriter(out, RequestMode.DAP, ORDER);
+    cw.setBufferSize(10);
+    cw.cacheDMR("<Dataset/>");
+    cw.flush();
+    cw.write(data, 5, 37); // crosses several chunks
+    cw.write(data, 60, 3);
+    cw.close();
+
+    // skip the dmr chunk, and put the data chunks back together
+    ByteBuffer in = ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.BIG_ENDIAN);
+    int header = in.getInt();
+    in.position(in.position() + (header & 0xFFFFFF));
+    ByteArrayOutputStream payload = new ByteArrayOutputStream();
+    while (in.hasRemaining()) {
+      header = in.getInt();
+      int len = header & 0xFFFFFF;
+      assertThat(len).isAtMost(10);
+      payload.write(in.array(), in.position(), len);
+      in.position(in.position() + len);
+      if (((header >>> 24) & DapConstants.CHUNK_END) != 0)
+        break;
+    }
+    assertThat(in.hasRemaining()).isFalse();
+
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    expected.write(data, 5, 37);
+    expected.write(data, 60, 3);
+    assertThat(payload.toByteArray()).isEqualTo(expected.toByteArray());
+  }
+
+  // through DapSerializer
+  private byte[] serialize(String constraint, Map<String, Long> checksums) throws Exception {
+    CDMWrap c4 = new CDMWrap().open(file.getPath());
+    try {
+      DapDataset dmr = c4.getDMR();
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      DapSerializer serializer =
+          new DapSerializer(c4, CEConstraint.compile(constraint, dmr), out, ORDER, ChecksumMode.TRUE);
+      serializer.write(dmr);
+      for (Map.Entry<DapVariable, Long> entry : serializer.getChecksums().entrySet())
+        checksums.put(entry.getKey().getFQN(), entry.getValue());
+      return out.toByteArray();
+    } finally {
+      c4.close();
+    }
+  }
+
+  // each variable read whole and encoded whole, each followed by its checksum
+  private byte[] serializeWhole(String constraint, Map<String, Long> checksums) throws Exception {
+    CDMWrap c4 = new CDMWrap().open(file.getPath());
+    try (NetcdfFile ncfile = NetcdfFiles.open(file.getPath())) {
+      DapDataset dmr = c4.getDMR();
+      CEConstraint ce = CEConstraint.compile(constraint, dmr);
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      for (DapVariable var : dmr.getTopVariables()) {
+        if (!ce.references(var))
+          continue;
+        Variable v = ncfile.findVariable(var.getShortName());
+        Section section = new Section(CDMUtil.createCDMRanges(ce.getConstrainedSlices(var)));
+        ByteBuffer buf =
+            SerialWriter.encodeArray(var.getBaseType(), v.read(section).get1DJavaArray(v.getDataType()), ORDER);
+        out.write(buf.array(), 0, buf.position());
+
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), 0, buf.position());
+        out.write(ByteBuffer.allocate(4).order(ORDER).putInt((int) crc.getValue()).array());
+        checksums.put(var.getFQN(), crc.getValue());
+      }
+      return out.toByteArray();
+    } finally {
+      c4.close();
+    }
+  }
+
+  // first-last of each range of each slab, for 4 byte values
+  private static List<String> slabs(List<Range> ranges, long maxbytes) {
+    List<String> result = new ArrayList<>();
+    Iterator<Section> iter = new CDMData.SlabIterator(ranges, 4, maxbytes);
+    while (iter.hasNext()) {
+      StringBuilder sb = new StringBuilder();
+      for (Range r : iter.next().getRanges())
+        sb.append(sb.length() == 0 ? "" : "/").append(r.first()).append("-").append(r.last());
+      result.add(sb.toString());
+    }
+    return result;
+  }
+
+  private static float[] floats(int n) {
+    float[] result = new float[n];
+    for (int k = 0; k < n; k++)
+      result[k] = k * 0.25f - 10;
+    return result;
+  }
+
+  private static double[] doubles(int n) {
+    double[] result = new double[n];
+    for (int k = 0; k < n; k++)
+      result[k] = Math.sin(k) * 1e6;
+    return result;
+  }
+}
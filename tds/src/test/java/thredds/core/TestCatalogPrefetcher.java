@@ -0,0 +1,145 @@
+package thredds.core;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import thredds.client.catalog.CatalogRef;
+import thredds.core.ConfigCatalogInitialization.ReadMode;
+import thredds.server.catalog.ConfigCatalog;
+import thredds.server.catalog.builder.ConfigCatalogBuilder;
+
+/**
+ * CatalogPrefetcher gives the crawl the catalogs parsed on its pool, reads the others in the crawl's thread, and
+ * keeps nothing once a catalog is taken.
+ */
+public class TestCatalogPrefetcher {
+  private static final String HEADER = "<?xml version='1.0' encoding='UTF-8'?>\n"
+      + "<catalog name='%s' xmlns='http://www.unidata.ucar.edu/namespaces/thredds/InvCatalog/v1.0'"
+      + " xmlns:xlink='http://www.w3.org/1999/xlink'>\n";
+
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private final Map<String, List<String>> reads = new HashMap<>(); // path -> names of the threads that read it
+  private CatalogPrefetcher prefetcher;
+
+  @Before
+  public void writeCatalogs() throws IOException {
+    write("catalog.xml", String.format(HEADER, "root")
+        + "  <catalogRef xlink:href='sub/child.xml' xlink:title='child' name=''/>\n</catalog>\n");
+    write("sub/child.xml", String.format(HEADER, "child") + "</catalog>\n");
+    write("other.xml", String.format(HEADER, "other") + "</catalog>\n");
+    write("bad.xml", String.format(HEADER, "bad") + "</catalog>\n");
+  }
+
+  @After
+  public void shutdown() {
+    if (prefetcher != null)
+      prefetcher.shutdown();
+  }
+
+  @Test
+  public void shouldTakeCatalogsParsedAhead() {
+    prefetcher = makePrefetcher(100);
+    prefetcher.submit("catalog.xml", true, 0);
+
+    assertThat(get("catalog.xml").getName()).isEqualTo("root");
+    assertThat(get("sub/child.xml").getName()).isEqualTo("child"); // submitted while the root was parsed
+    assertThat(reads.get("catalog.xml")).hasSize(1);
+    assertThat(reads.get("sub/child.xml")).hasSize(1);
+    assertThat(reads.get("sub/child.xml").get(0)).startsWith("ConfigCatalogRead-");
+    assertThat(prefetcher.getPending()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldReadMissInCallerThread() {
+    prefetcher = makePrefetcher(100);
+
+    assertThat(get("other.xml").getName()).isEqualTo("other");
+    assertThat(reads.get("other.xml")).containsExactly(Thread.currentThread().getName());
+
+    prefetcher.submit("other.xml", false, 0); // already taken, so not parsed again
+    assertThat(prefetcher.getPending()).isEqualTo(0);
+    assertThat(reads.get("other.xml")).hasSize(1);
+  }
+
+  @Test
+  public void shouldReturnNullOnFailure() {
+    prefetcher = makePrefetcher(100);
+    prefetcher.submit("bad.xml", false, 0);
+
+    assertThat(get("bad.xml")).isNull();
+    assertThat(prefetcher.getPending()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldLeaveCatalogsToCrawlWhenTooManyAhead() {
+    prefetcher = makePrefetcher(1);
+    prefetcher.submit("catalog.xml", true, 0);
+    prefetcher.submit("other.xml", false, 0); // no room
+
+    assertThat(get("catalog.xml").getName()).isEqualTo("root");
+    assertThat(get("other.xml").getName()).isEqualTo("other");
+    assertThat(reads.get("other.xml")).containsExactly(Thread.currentThread().getName());
+    assertThat(prefetcher.getPending()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldSubmitChildrenOfMiss() {
+    prefetcher = makePrefetcher(100);
+
+    assertThat(get("catalog.xml").getName()).isEqualTo("root"); // never submitted, so read here
+    assertThat(reads.get("catalog.xml")).containsExactly(Thread.currentThread().getName());
+    assertThat(get("sub/child.xml").getName()).isEqualTo("child");
+    assertThat(reads.get("sub/child.xml")).hasSize(1);
+    assertThat(reads.get("sub/child.xml").get(0)).startsWith("ConfigCatalogRead-");
+    assertThat(prefetcher.getPending()).isEqualTo(0);
+  }
+
+  private ConfigCatalog get(String path) {
+    return prefetcher.get(path, new File(tempFolder.getRoot(), path).getPath());
+  }
+
+  private CatalogPrefetcher makePrefetcher(int maxAhead) {
+    return new CatalogPrefetcher(ReadMode.always, 2, maxAhead, tempFolder.getRoot(), new HashMap<>(),
+        new CatalogPrefetcher.Reader() {
+          @Override
+          public ConfigCatalog readCatalog(String catalogRelPath, String catalogFullPath) {
+            synchronized (reads) {
+              reads.computeIfAbsent(catalogRelPath, k -> new ArrayList<>()).add(Thread.currentThread().getName());
+            }
+            if (catalogRelPath.equals("bad.xml"))
+              throw new IllegalStateException("bad catalog");
+            try {
+              return (ConfigCatalog) new ConfigCatalogBuilder("/thredds").buildFromLocation("file:" + catalogFullPath,
+                  null);
+            } catch (IOException e) {
+              return null;
+            }
+          }
+
+          @Override
+          public String resolveCatalogRef(CatalogRef catref, String dirPath) {
+            return dirPath + catref.getXlinkHref();
+          }
+        });
+  }
+
+  private void write(String path, String xml) throws IOException {
+    File file = new File(tempFolder.getRoot(), path);
+    file.getParentFile().mkdirs();
+    Files.write(file.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+  }
+}
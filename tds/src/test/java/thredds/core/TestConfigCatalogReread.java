@@ -0,0 +1,102 @@
+package thredds.core;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import thredds.core.ConfigCatalogInitialization.ReadMode;
+import thredds.server.catalog.tracker.CatalogTracker;
+import thredds.server.catalog.tracker.DatasetTrackerNoop;
+
+/**
+ * Rereading changed catalogs replaces their dataRoots, and a deleted catalog takes its dataRoots with it, whether it
+ * is reread on its own or found missing by a check of all catalogs.
+ */
+public class TestConfigCatalogReread {
+  private static final String CATALOG = "<?xml version='1.0' encoding='UTF-8'?>\n"
+      + "<catalog name='%s' xmlns='http://www.unidata.ucar.edu/namespaces/thredds/InvCatalog/v1.0'"
+      + " xmlns:xlink='http://www.w3.org/1999/xlink'>\n%s</catalog>\n";
+
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void shouldReplaceDataRootsOfChangedCatalog() throws IOException {
+    File content = writeCatalogs("subdata");
+    ConfigCatalogInitialization init = open(ReadMode.always, content);
+    assertThat(init.getDataRootPathMatcher().contains("subdata")).isTrue();
+
+    write(content, "sub.xml", "sub", datasetRoot("newdata"));
+    init.rereadCatalogs(Collections.singletonList("sub.xml"));
+
+    assertThat(init.getDataRootPathMatcher().contains("subdata")).isFalse();
+    assertThat(init.getDataRootPathMatcher().contains("newdata")).isTrue();
+  }
+
+  @Test
+  public void shouldRemoveDeletedCatalogOnReread() throws IOException {
+    File content = writeCatalogs("subdata");
+    ConfigCatalogInitialization init = open(ReadMode.always, content);
+
+    Files.delete(new File(content, "sub.xml").toPath());
+    init.rereadCatalogs(Collections.singletonList("sub.xml"));
+
+    assertThat(init.getDataRootPathMatcher().contains("subdata")).isFalse();
+    assertThat(trackedCatalog("sub.xml")).isFalse();
+  }
+
+  @Test
+  public void shouldRemoveDeletedCatalogOnCheck() throws IOException {
+    File content = writeCatalogs("subdata");
+    open(ReadMode.always, content);
+    assertThat(trackedCatalog("sub.xml")).isTrue();
+
+    // as on a restart: the dataRoots come from the tracker, and the catalogs are checked
+    Files.delete(new File(content, "sub.xml").toPath());
+    ConfigCatalogInitialization init = open(ReadMode.check, content);
+
+    assertThat(init.getDataRootPathMatcher().contains("subdata")).isFalse();
+    assertThat(init.getDataRootPathMatcher().contains("rootdata")).isTrue();
+    assertThat(trackedCatalog("sub.xml")).isFalse();
+  }
+
+  private ConfigCatalogInitialization open(ReadMode readMode, File content) throws IOException {
+    return new ConfigCatalogInitialization(readMode, content, trackerDir().getPath(), new DatasetTrackerNoop(),
+        new AllowedServices(), new ConfigCatalogInitialization.StatCallback(readMode), Long.MAX_VALUE);
+  }
+
+  private boolean trackedCatalog(String catalogRelPath) {
+    return new CatalogTracker(trackerDir().getPath(), false, 0, 0).get(catalogRelPath) != null;
+  }
+
+  private File trackerDir() {
+    File dir = new File(tempFolder.getRoot(), "tracker");
+    dir.mkdirs();
+    return dir;
+  }
+
+  private File writeCatalogs(String subRoot) throws IOException {
+    File content = new File(tempFolder.getRoot(), "content");
+    write(content, "catalog.xml", "root",
+        datasetRoot("rootdata") + "  <catalogRef xlink:href='sub.xml' xlink:title='sub' name=''/>\n");
+    write(content, "sub.xml", "sub", datasetRoot(subRoot));
+    return content;
+  }
+
+  private String datasetRoot(String path) {
+    return "  <datasetRoot path='" + path + "' location='" + tempFolder.getRoot().getPath() + "'/>\n";
+  }
+
+  private static void write(File dir, String path, String name, String body) throws IOException {
+    File file = new File(dir, path);
+    file.getParentFile().mkdirs();
+    Files.write(file.toPath(), String.format(CATALOG, name, body).getBytes(StandardCharsets.UTF_8));
+    file.setLastModified(System.currentTimeMillis() + 2000); // newer than the last read
+  }
+}
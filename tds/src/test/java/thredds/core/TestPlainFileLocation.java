@@ -0,0 +1,34 @@
+package thredds.core;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Only a data file on disk tells by its last modified time when the dataset changes.
+ */
+public class TestPlainFileLocation {
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void shouldAcceptDataFile() throws Exception {
+    File file = tempFolder.newFile("data.nc");
+    assertThat(DatasetManager.isPlainFileLocation(file.getPath())).isTrue();
+    assertThat(DatasetManager.isPlainFileLocation("file:" + file.getPath())).isTrue();
+  }
+
+  @Test
+  public void shouldRejectNcmlAndOtherLocations() throws Exception {
+    assertThat(DatasetManager.isPlainFileLocation(tempFolder.newFile("agg.ncml").getPath())).isFalse();
+    assertThat(DatasetManager.isPlainFileLocation(tempFolder.newFile("agg.NcML").getPath())).isFalse();
+    assertThat(DatasetManager.isPlainFileLocation(tempFolder.newFile("agg.xml").getPath())).isFalse();
+    assertThat(DatasetManager.isPlainFileLocation(tempFolder.getRoot().getPath())).isFalse();
+    assertThat(DatasetManager.isPlainFileLocation(new File(tempFolder.getRoot(), "missing.nc").getPath())).isFalse();
+    assertThat(DatasetManager.isPlainFileLocation("cdms3:bucket?data.nc")).isFalse();
+    assertThat(DatasetManager.isPlainFileLocation(null)).isFalse();
+  }
+}
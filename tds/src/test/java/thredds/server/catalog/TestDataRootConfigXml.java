@@ -0,0 +1,79 @@
+package thredds.server.catalog;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import org.junit.Test;
+import thredds.client.catalog.Dataset;
+import thredds.server.catalog.builder.ConfigCatalogBuilder;
+import thredds.server.catalog.tracker.DataRootExt;
+
+/**
+ * Test that a DataRoot can be rebuilt from the config saved in its DataRootExt, without the whole catalog.
+ */
+public class TestDataRootConfigXml {
+  private static final String CATALOG = "thredds/server/catalog/TestDatasetScan.xml";
+
+  @Test
+  public void shouldRebuildNestedDatasetScan() throws IOException {
+    ConfigCatalog cat = TestConfigCatalogBuilder.getFromResource(CATALOG);
+    DatasetScan org = findScan(cat.getDatasetsLocal(), "station/profiler/wind/06min");
+    assertThat(org).isNotNull();
+
+    DatasetScan rebuilt = rebuild(org, "station/profiler/wind/06min");
+    assertThat(rebuilt.getScanLocation()).isEqualTo(org.getScanLocation());
+    assertThat(rebuilt.getName()).isEqualTo(org.getName());
+    assertThat(rebuilt.getServiceNameDefault()).isEqualTo("all");
+    assertThat(rebuilt.getDocumentation("summary")).isEqualTo(org.getDocumentation("summary"));
+  }
+
+  @Test
+  public void shouldKeepNcml() throws IOException {
+    ConfigCatalog cat = TestConfigCatalogBuilder.getFromResource(CATALOG);
+    DatasetScan org = findScan(cat.getDatasetsLocal(), "ModifyDatasetScan");
+    assertThat(org).isNotNull();
+
+    DatasetScan rebuilt = rebuild(org, "ModifyDatasetScan");
+    assertThat(rebuilt.getNcmlElement()).isNotNull();
+  }
+
+  @Test
+  public void shouldDropOtherDatasets() throws IOException {
+    ConfigCatalog cat = TestConfigCatalogBuilder.getFromResource(CATALOG);
+    DatasetScan org = findScan(cat.getDatasetsLocal(), "testGridScan");
+    String configXml = new DataRootExt(new DataRoot(org), "catalog.xml").getConfigXml();
+
+    ConfigCatalog rebuilt = build(configXml);
+    assertThat(rebuilt.getDatasetsLocal()).hasSize(1);
+    assertThat(rebuilt.getDatasetRoots()).isEmpty();
+  }
+
+  private DatasetScan rebuild(DatasetScan org, String path) throws IOException {
+    DataRootExt ext = new DataRootExt(new DataRoot(org), "catalog.xml");
+    assertThat(ext.getConfigXml()).isNotNull();
+
+    DatasetScan rebuilt = findScan(build(ext.getConfigXml()).getDatasetsLocal(), path);
+    assertThat(rebuilt).isNotNull();
+    return rebuilt;
+  }
+
+  private ConfigCatalog build(String configXml) throws IOException {
+    ConfigCatalogBuilder builder = new ConfigCatalogBuilder("thredds");
+    ConfigCatalog cat = (ConfigCatalog) builder.buildFromString(configXml, URI.create("file:/content/catalog.xml"));
+    assertThat(builder.hasFatalError()).isFalse();
+    return cat;
+  }
+
+  private DatasetScan findScan(List<Dataset> datasets, String path) {
+    for (Dataset ds : datasets) {
+      if (ds instanceof DatasetScan && path.equals(((DatasetScan) ds).getPath()))
+        return (DatasetScan) ds;
+      DatasetScan nested = findScan(ds.getDatasetsLocal(), path);
+      if (nested != null)
+        return nested;
+    }
+    return null;
+  }
+}
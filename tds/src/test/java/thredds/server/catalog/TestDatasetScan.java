@@ -152,6 +152,40 @@ public class TestDatasetScan {
     assertThat(name1.compareTo(name2)).isGreaterThan(0);
   }
 
+  @Test
+  public void shouldPageDirectory() throws IOException {
+    ConfigCatalog cat = TestConfigCatalogBuilder.getFromResource(CATALOG);
+    DatasetScan dss = (DatasetScan) cat.findDatasetByID("NWS/NPN/6min");
+    String path = "station/profiler/wind/06min/20131102";
+
+    List<Dataset> all =
+        dss.makeCatalogForDirectory(path, cat.getBaseURI()).makeCatalog().getDatasets().get(0).getDatasets();
+    assertThat(all.size()).isEqualTo(3);
+
+    Dataset root = dss.makeCatalogForDirectory(path, cat.getBaseURI(), 1, 1).makeCatalog().getDatasets().get(0);
+    assertThat(root.getDatasets().size()).isEqualTo(1);
+    assertThat(root.getDatasets().get(0).getName()).isEqualTo(all.get(1).getName());
+    assertThat(root.findProperty("DatasetScanTotal")).isEqualTo("3");
+    assertThat(root.findProperty("DatasetScanNext")).isEqualTo("catalog.xml?offset=2&limit=1");
+
+    root = dss.makeCatalogForDirectory(path, cat.getBaseURI(), 2, 10).makeCatalog().getDatasets().get(0);
+    assertThat(root.getDatasets().size()).isEqualTo(1);
+    assertThat(root.getDatasets().get(0).getName()).isEqualTo(all.get(2).getName());
+    assertThat(root.findProperty("DatasetScanNext")).isNull();
+  }
+
+  @Test
+  public void shouldReuseCachedListing() throws IOException {
+    ConfigCatalog cat = TestConfigCatalogBuilder.getFromResource(CATALOG);
+    DatasetScan dss = (DatasetScan) cat.findDatasetByID("NWS/NPN/6min");
+    String path = "station/profiler/wind/06min/20131102";
+
+    Catalog first = dss.makeCatalogForDirectory(path, cat.getBaseURI()).makeCatalog();
+    Catalog second = dss.makeCatalogForDirectory(path, cat.getBaseURI()).makeCatalog();
+    CatalogXmlWriter writer = new CatalogXmlWriter();
+    assertThat(writer.writeXML(second)).isEqualTo(writer.writeXML(first));
+  }
+
   @Test
   public void shouldFilterFiles() throws IOException {
     final ConfigCatalog catalog = TestConfigCatalogBuilder.getFromResource(CATALOG);
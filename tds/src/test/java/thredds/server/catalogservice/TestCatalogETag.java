@@ -0,0 +1,88 @@
+package thredds.server.catalogservice;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import thredds.core.CatalogManager;
+import thredds.mock.web.MockTdsContextLoader;
+import ucar.unidata.util.test.category.NeedsCdmUnitTest;
+
+/**
+ * Static catalogs are served from the serialized cache, with ETag validation.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@WebAppConfiguration
+@ContextConfiguration(locations = {"/WEB-INF/applicationContext.xml", "/WEB-INF/spring-servlet.xml"},
+    loader = MockTdsContextLoader.class)
+@Category(NeedsCdmUnitTest.class)
+public class TestCatalogETag {
+  private static final String PATH = "/catalog/enhancedCatalog.xml";
+
+  @Autowired
+  private WebApplicationContext webApplicationContext;
+
+  @Autowired
+  private CatalogManager catalogManager;
+
+  private MockMvc mockMvc;
+
+  @Before
+  public void setup() {
+    this.mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+  }
+
+  @Test
+  public void shouldAnswerNotModified() throws Exception {
+    MvcResult first = get(PATH, null, 200);
+    String etag = first.getResponse().getHeader("ETag");
+    assertThat(etag).isNotNull();
+    assertThat(first.getResponse().getContentAsString()).contains("catalog");
+
+    MvcResult second = get(PATH, etag, 304);
+    assertThat(second.getResponse().getContentAsByteArray()).isEmpty();
+  }
+
+  @Test
+  public void shouldReuseSerializedCatalog() throws Exception {
+    MvcResult first = get(PATH, null, 200);
+    MvcResult second = get(PATH, null, 200);
+    assertThat(second.getResponse().getHeader("ETag")).isEqualTo(first.getResponse().getHeader("ETag"));
+    assertThat(second.getResponse().getContentAsString()).isEqualTo(first.getResponse().getContentAsString());
+  }
+
+  @Test
+  public void shouldNotMatchHtmlWithXmlETag() throws Exception {
+    String etag = get(PATH, null, 200).getResponse().getHeader("ETag");
+    MvcResult html = get(PATH.replace(".xml", ".html"), etag, 200);
+    assertThat(html.getResponse().getHeader("ETag")).isNotEqualTo(etag);
+  }
+
+  @Test
+  public void shouldRevalidateAfterInvalidate() throws Exception {
+    String etag = get(PATH, null, 200).getResponse().getHeader("ETag");
+    catalogManager.invalidateCatalogResponses();
+    // same content, so same strong ETag
+    get(PATH, etag, 304);
+  }
+
+  private MvcResult get(String path, String ifNoneMatch, int expectStatus) throws Exception {
+    MockHttpServletRequestBuilder rb = MockMvcRequestBuilders.get(path).servletPath(path);
+    if (ifNoneMatch != null)
+      rb.header("If-None-Match", ifNoneMatch);
+    return mockMvc.perform(rb).andExpect(MockMvcResultMatchers.status().is(expectStatus)).andReturn();
+  }
+}
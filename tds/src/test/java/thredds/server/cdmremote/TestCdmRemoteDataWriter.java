@@ -0,0 +1,112 @@
+package thredds.server.cdmremote;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.ParsedSectionSpec;
+import ucar.nc2.stream.NcStreamCompression;
+import ucar.nc2.stream.NcStreamWriter;
+
+/**
+ * Variables read concurrently are sent in request order, with the same bytes as when read one at a time, also when
+ * the memory budget shared by all requests is used up; the budget is given back afterwards.
+ */
+@RunWith(Parameterized.class)
+public class TestCdmRemoteDataWriter {
+  private static final String PATH = "src/test/data/testdata2/temp_air_01082000.nc";
+  private static final String QUERY = "t(0:3,3:4,4:5,0:6);levelist;longitude(1:2:8);t(1,0:17,0,0:8);latitude";
+
+  @Parameterized.Parameters(name = "{0} {1} {2}")
+  public static Collection<Object[]> getTestParameters() {
+    return Arrays.asList(new Object[][] {{2, 64_000_000L, 1_000_000}, {4, 64_000_000L, 1_000_000}, {4, 500L, 1_000_000},
+        {8, 1L, 1_000_000}, {4, 64_000_000L, 2}, {4, 64_000_000L, 0},});
+  }
+
+  private final int concurrency;
+  private final long maxReadAhead;
+  private final int permits;
+  private final Semaphore budget;
+  private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+  public TestCdmRemoteDataWriter(int concurrency, long maxReadAhead, int permits) {
+    this.concurrency = concurrency;
+    this.maxReadAhead = maxReadAhead;
+    this.permits = permits;
+    this.budget = new Semaphore(permits);
+  }
+
+  @After
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void shouldMatchSequentialReads() throws Exception {
+    for (NcStreamCompression compress : new NcStreamCompression[] {NcStreamCompression.none(),
+        NcStreamCompression.deflate(-1)}) {
+      byte[] expected;
+      try (NetcdfFile ncfile = NetcdfFiles.open(PATH)) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NcStreamWriter ncWriter = new NcStreamWriter(ncfile, "test");
+        for (ParsedSectionSpec spec : parse(ncfile))
+          ncWriter.sendData2(spec.v, spec.section, out, compress);
+        expected = out.toByteArray();
+      }
+
+      try (NetcdfFile ncfile = NetcdfFiles.open(PATH)) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CdmRemoteDataWriter writer = new CdmRemoteDataWriter(executor, concurrency, maxReadAhead, budget);
+        long size = writer.sendData(ncfile, () -> NetcdfFiles.open(PATH), "test", parse(ncfile), out, compress);
+        assertThat(out.toByteArray()).isEqualTo(expected);
+        assertThat(size).isEqualTo(expected.length);
+        assertThat(budget.availablePermits()).isEqualTo(permits);
+      }
+    }
+  }
+
+  @Test
+  public void shouldGiveBackBudgetOnFailure() throws Exception {
+    OutputStream failing = new OutputStream() {
+      @Override
+      public void write(int b) throws IOException {
+        throw new IOException("client went away");
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        throw new IOException("client went away");
+      }
+    };
+    try (NetcdfFile ncfile = NetcdfFiles.open(PATH)) {
+      CdmRemoteDataWriter writer = new CdmRemoteDataWriter(executor, concurrency, maxReadAhead, budget);
+      List<ParsedSectionSpec> sections = parse(ncfile);
+      IOException exception = assertThrows(IOException.class, () -> writer.sendData(ncfile,
+          () -> NetcdfFiles.open(PATH), "test", sections, failing, NcStreamCompression.none()));
+      assertThat(exception.getMessage()).isEqualTo("client went away");
+      assertThat(budget.availablePermits()).isEqualTo(permits);
+    }
+  }
+
+  private static List<ParsedSectionSpec> parse(NetcdfFile ncfile) throws Exception {
+    List<ParsedSectionSpec> result = new ArrayList<>();
+    for (String spec : QUERY.split(";"))
+      result.add(ParsedSectionSpec.parseVariableSection(ncfile, spec));
+    return result;
+  }
+}
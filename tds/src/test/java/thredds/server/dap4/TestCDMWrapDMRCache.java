@@ -0,0 +1,169 @@
+package thredds.server.dap4;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import dap4.core.ce.CEConstraint;
+import dap4.core.dmr.*;
+import dap4.core.util.*;
+import dap4.dap4lib.*;
+import dap4.servlet.CDMWrap;
+import dap4.servlet.ChunkWriter;
+import dap4.servlet.DapSerializer;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * A kept DMR gives the same responses as a freshly built one, also when many requests share it at once, and is
+ * rebuilt when the file changes.
+ */
+public class TestCDMWrapDMRCache {
+  private static final String DIR = "src/test/content/thredds/public/testdata/";
+
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @After
+  public void restoreDefault() {
+    CDMWrap.setDMRCacheSize(CDMWrap.DEFAULTDMRCACHESIZE);
+  }
+
+  @Test
+  public void shouldGiveSameResponsesWhenSharedConcurrently() throws Exception {
+    File file = copy("testData.nc");
+
+    // what a freshly built DMR gives
+    CDMWrap.setDMRCacheSize(0);
+    List<String> constraints = constraints(file);
+    List<byte[]> expected = new ArrayList<>();
+    for (String constraint : constraints)
+      expected.add(response(file, constraint));
+
+    CDMWrap.setDMRCacheSize(10);
+    Set<DapDataset> dmrs = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Void>> futures = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        futures.add(pool.submit((Callable<Void>) () -> {
+          for (int i = 0; i < 20; i++) {
+            int which = i % constraints.size();
+            CDMWrap c4 = new CDMWrap().open(file.getPath());
+            try {
+              dmrs.add(c4.getDMR());
+              assertThat(response(c4, constraints.get(which))).isEqualTo(expected.get(which));
+            } finally {
+              c4.close();
+            }
+          }
+          return null;
+        }));
+      }
+      for (Future<Void> future : futures)
+        future.get();
+    } finally {
+      pool.shutdownNow();
+    }
+
+    // the first opens may each have built one, after that they are shared
+    assertThat(dmrs.size()).isAtMost(8);
+    // and sharing did not change them
+    for (int i = 0; i < constraints.size(); i++)
+      assertThat(response(file, constraints.get(i))).isEqualTo(expected.get(i));
+  }
+
+  @Test
+  public void shouldRebuildWhenFileIsModified() throws Exception {
+    File file = copy("testData.nc");
+    file.setLastModified(System.currentTimeMillis() - 60 * 1000);
+    CDMWrap.setDMRCacheSize(10);
+
+    DapDataset first = openDMR(file);
+    assertThat(openDMR(file)).isSameInstanceAs(first);
+
+    Files.copy(new File(DIR + "testData2.nc").toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    file.setLastModified(System.currentTimeMillis());
+    DapDataset second = openDMR(file);
+    assertThat(second).isNotSameInstanceAs(first);
+    byte[] kept = response(file, null);
+
+    CDMWrap.setDMRCacheSize(0);
+    assertThat(kept).isEqualTo(response(file, null));
+  }
+
+  @Test
+  public void shouldNotKeepWithZeroSize() throws Exception {
+    File file = copy("testData.nc");
+    CDMWrap.setDMRCacheSize(0);
+    assertThat(openDMR(file)).isNotSameInstanceAs(openDMR(file));
+  }
+
+  // the whole file, and each variable on its own
+  private static List<String> constraints(File file) throws Exception {
+    List<String> result = new ArrayList<>();
+    result.add(null);
+    for (DapVariable var : openDMR(file).getTopVariables())
+      result.add(var.getFQN());
+    return result;
+  }
+
+  private static DapDataset openDMR(File file) throws Exception {
+    CDMWrap c4 = new CDMWrap().open(file.getPath());
+    try {
+      return c4.getDMR();
+    } finally {
+      c4.close();
+    }
+  }
+
+  private static byte[] response(File file, String constraint) throws Exception {
+    CDMWrap c4 = new CDMWrap().open(file.getPath());
+    try {
+      return response(c4, constraint);
+    } finally {
+      c4.close();
+    }
+  }
+
+  // as DapController.doData
+  private static byte[] response(CDMWrap c4, String constraint) throws Exception {
+    DapDataset dmr = c4.getDMR();
+    CEConstraint ce = CEConstraint.compile(constraint, dmr);
+    StringWriter sw = new StringWriter();
+    PrintWriter pw = new PrintWriter(sw);
+    new DMRPrinter(dmr, ce, pw, ResponseFormat.NONE, new DapContext()).print();
+    pw.close();
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ChunkWriter cw = new ChunkWriter(out, RequestMode.DAP, ByteOrder.LITTLE_ENDIAN);
+    cw.cacheDMR(sw.toString());
+    cw.flush();
+    new DapSerializer(c4, ce, cw, ByteOrder.LITTLE_ENDIAN, ChecksumMode.TRUE).write(dmr);
+    cw.flush();
+    cw.close();
+    return out.toByteArray();
+  }
+
+  private File copy(String name) throws Exception {
+    File file = new File(tempFolder.getRoot(), name);
+    Files.copy(new File(DIR + name).toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    return file;
+  }
+}
@@ -0,0 +1,104 @@
+package thredds.server.dap4;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import dap4.core.dmr.DapDataset;
+import dap4.core.dmr.DapVariable;
+import dap4.servlet.CDMWrap;
+import dap4.servlet.ChecksumCache;
+import dap4.servlet.DapController;
+import java.io.File;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Kept checksums are found again for the same file and constraint, and not after the file changes.
+ */
+public class TestChecksumCache {
+  private static final String FILE = "src/test/content/thredds/public/testdata/testData.nc";
+
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @After
+  public void restoreDefault() {
+    DapController.setChecksumCacheSize(ChecksumCache.DEFAULTMAXENTRIES);
+  }
+
+  @Test
+  public void shouldHitForSameFileAndMissAfterModify() throws Exception {
+    File file = tempFolder.newFile("testData.nc");
+    Files.copy(new File(FILE).toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    file.setLastModified(System.currentTimeMillis() - 60 * 1000);
+
+    ChecksumCache cache = new ChecksumCache(10);
+    String key = ChecksumCache.makeKey(file.getPath(), "", ByteOrder.LITTLE_ENDIAN);
+    assertThat(key).isNotNull();
+    assertThat(cache.get(key, openDMR(file))).isNull();
+
+    Map<DapVariable, Long> checksums = new HashMap<>();
+    long value = 1;
+    for (DapVariable var : openDMR(file).getTopVariables())
+      checksums.put(var, value++);
+    cache.put(key, checksums);
+
+    // another request on the same file maps the checksums onto its own DMR
+    DapDataset dmr = openDMR(file);
+    Map<DapVariable, Long> found =
+        cache.get(ChecksumCache.makeKey(file.getPath(), "", ByteOrder.LITTLE_ENDIAN), dmr);
+    assertThat(found).isNotNull();
+    assertThat(found).hasSize(checksums.size());
+    for (Map.Entry<DapVariable, Long> entry : checksums.entrySet())
+      assertThat(found.get(dmr.findVariable(entry.getKey().getFQN()))).isEqualTo(entry.getValue());
+
+    // another constraint or byte order is another entry
+    assertThat(cache.get(ChecksumCache.makeKey(file.getPath(), "x", ByteOrder.LITTLE_ENDIAN), dmr)).isNull();
+    assertThat(cache.get(ChecksumCache.makeKey(file.getPath(), "", ByteOrder.BIG_ENDIAN), dmr)).isNull();
+
+    // once the file is modified, its old checksums are not used
+    file.setLastModified(System.currentTimeMillis());
+    assertThat(cache.get(ChecksumCache.makeKey(file.getPath(), "", ByteOrder.LITTLE_ENDIAN), openDMR(file))).isNull();
+    assertThat(cache.getHits()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldDropLeastRecentlyUsed() throws Exception {
+    File file = tempFolder.newFile("testData.nc");
+    Files.copy(new File(FILE).toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    DapDataset dmr = openDMR(file);
+
+    ChecksumCache cache = new ChecksumCache(2);
+    cache.put("a", new HashMap<>());
+    cache.put("b", new HashMap<>());
+    assertThat(cache.get("a", dmr)).isNotNull(); // b is now the eldest
+    cache.put("c", new HashMap<>());
+
+    assertThat(cache.get("a", dmr)).isNotNull();
+    assertThat(cache.get("b", dmr)).isNull();
+    assertThat(cache.get("c", dmr)).isNotNull();
+  }
+
+  @Test
+  public void shouldTurnOffWithZeroSize() {
+    DapController.setChecksumCacheSize(0);
+    assertThat(DapController.getChecksumCache()).isNull();
+    DapController.setChecksumCacheSize(5);
+    assertThat(DapController.getChecksumCache()).isNotNull();
+  }
+
+  private static DapDataset openDMR(File file) throws Exception {
+    CDMWrap wrap = new CDMWrap().open(file.getPath());
+    try {
+      return wrap.getDMR();
+    } finally {
+      wrap.close();
+    }
+  }
+}
@@ -0,0 +1,166 @@
+package thredds.server.ncss.controller;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Formatter;
+import java.util.List;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import thredds.server.ncss.view.dsg.DsgSubsetTestUtils;
+import thredds.server.ncss.view.dsg.DsgSubsetWriterTest;
+import ucar.nc2.constants.FeatureType;
+import ucar.nc2.ft.FeatureDataset;
+import ucar.nc2.ft.FeatureDatasetFactoryManager;
+import ucar.nc2.ft.FeatureDatasetPoint;
+import ucar.nc2.ft.StationTimeSeriesFeatureCollection;
+import ucar.nc2.ft.point.StationFeature;
+import ucar.nc2.time.CalendarDate;
+import ucar.nc2.time.CalendarDateRange;
+import ucar.unidata.geoloc.LatLonRect;
+
+/**
+ * DsgInventory finds the bounds of point and station collections, and is kept for each version of the file.
+ */
+public class TestDsgInventory {
+
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @After
+  public void shutdown() {
+    DsgInventoryCache.shutdown();
+  }
+
+  @Test
+  public void shouldFindStationBounds() throws Exception {
+    try (FeatureDatasetPoint fdp = open(FeatureType.STATION, resource("station/input.ncml"))) {
+      DsgInventory inv = DsgInventoryCache.get(fdp);
+      assertThat(inv).isNotNull();
+      assertThat(inv.getNobs()).isEqualTo(15);
+
+      CalendarDateRange range = inv.getCalendarDateRange();
+      assertThat(range.getStart()).isEqualTo(CalendarDate.parseISOformat(null, "1970-01-01T00:00:00Z"));
+      assertThat(range.getEnd()).isEqualTo(CalendarDate.parseISOformat(null, "1970-02-10T00:00:00Z"));
+
+      LatLonRect bbox = inv.getBoundingBox();
+      assertThat(bbox.getLatMin()).isWithin(1e-6).of(40.0);
+      assertThat(bbox.getLatMax()).isWithin(1e-6).of(44.0);
+      assertThat(bbox.getLonMin()).isWithin(1e-6).of(-100.0);
+      assertThat(bbox.getLonMax()).isWithin(1e-6).of(-94.0);
+
+      assertThat(inv.getStations()).hasSize(3);
+      for (DsgInventory.StationInfo station : inv.getStations()) {
+        assertThat(station.nobs).isEqualTo(5);
+        assertThat(station.minTime).isEqualTo(range.getStart().getMillis());
+        assertThat(station.maxTime).isEqualTo(range.getEnd().getMillis());
+      }
+      assertThat(inv.findStation("BBB")).isNotNull();
+    }
+  }
+
+  @Test
+  public void shouldFilterStationsByTime() throws Exception {
+    try (FeatureDatasetPoint fdp = open(FeatureType.STATION, resource("station/input.ncml"))) {
+      DsgInventory inv = DsgInventoryCache.get(fdp);
+      List<StationFeature> all =
+          ((StationTimeSeriesFeatureCollection) fdp.getPointFeatureCollectionList().get(0)).getStationFeatures();
+
+      assertThat(inv.filterStations(all, null)).hasSize(3);
+      CalendarDateRange inside = CalendarDateRange.of(CalendarDate.parseISOformat(null, "1970-01-05T00:00:00Z"),
+          CalendarDate.parseISOformat(null, "1970-01-12T00:00:00Z"));
+      assertThat(inv.filterStations(all, inside)).hasSize(3);
+      CalendarDateRange after = CalendarDateRange.of(CalendarDate.parseISOformat(null, "1971-01-01T00:00:00Z"),
+          CalendarDate.parseISOformat(null, "1971-02-01T00:00:00Z"));
+      assertThat(inv.filterStations(all, after)).isEmpty();
+    }
+  }
+
+  @Test
+  public void shouldFindPointBounds() throws Exception {
+    try (FeatureDatasetPoint fdp = open(FeatureType.POINT, resource("point/input.ncml"))) {
+      DsgInventory inv = DsgInventoryCache.get(fdp);
+      assertThat(inv).isNotNull();
+      assertThat(inv.getNobs()).isGreaterThan(0);
+      assertThat(inv.getStations()).isEmpty();
+      assertThat(inv.getCalendarDateRange()).isNotNull();
+      // Full extension is (40.0, -100.0) to (68.0, -58.0), see DsgSubsetWriterTest
+      LatLonRect bbox = inv.getBoundingBox();
+      assertThat(bbox.getLatMin()).isWithin(1e-6).of(40.0);
+      assertThat(bbox.getLatMax()).isWithin(1e-6).of(68.0);
+      assertThat(bbox.getLonMin()).isWithin(1e-6).of(-100.0);
+      assertThat(bbox.getLonMax()).isWithin(1e-6).of(-58.0);
+    }
+  }
+
+  @Test
+  public void shouldRoundTrip() throws Exception {
+    try (FeatureDatasetPoint fdp = open(FeatureType.STATION, resource("station/input.ncml"))) {
+      DsgInventory inv = DsgInventory.make(fdp.getPointFeatureCollectionList().get(0), 1234);
+      DsgInventory copy = DsgInventory.fromBytes(inv.toBytes());
+      assertThat(copy.getLastModified()).isEqualTo(1234);
+      assertThat(copy.getNobs()).isEqualTo(inv.getNobs());
+      assertThat(copy.getCalendarDateRange()).isEqualTo(inv.getCalendarDateRange());
+      assertThat(copy.getBoundingBox().nearlyEquals(inv.getBoundingBox())).isTrue();
+      assertThat(copy.getStations()).hasSize(inv.getStations().size());
+      for (DsgInventory.StationInfo s : inv.getStations()) {
+        DsgInventory.StationInfo c = copy.findStation(s.name);
+        assertThat(c.nobs).isEqualTo(s.nobs);
+        assertThat(c.minTime).isEqualTo(s.minTime);
+        assertThat(c.maxTime).isEqualTo(s.maxTime);
+      }
+    }
+  }
+
+  @Test
+  public void shouldKeepInventoryForEachVersion() throws Exception {
+    DsgInventoryCache.init(tempFolder.newFolder("cache").toPath(), 10, 1);
+    File file = DsgSubsetTestUtils.copyToNetcdf("station/input.ncml", tempFolder.newFile("station.nc"));
+
+    try (FeatureDatasetPoint fdp = open(FeatureType.STATION, file)) {
+      assertThat(DsgInventoryCache.getIfPresent(fdp)).isNull();
+      DsgInventoryCache.get(fdp);
+      assertThat(DsgInventoryCache.getIfPresent(fdp)).isNotNull();
+    }
+
+    // a new version of the file
+    assertThat(file.setLastModified(file.lastModified() - 60 * 1000)).isTrue();
+    try (FeatureDatasetPoint fdp = open(FeatureType.STATION, file)) {
+      assertThat(DsgInventoryCache.getIfPresent(fdp)).isNull();
+      assertThat(DsgInventoryCache.get(fdp).getLastModified()).isEqualTo(file.lastModified());
+    }
+
+    Formatter f = new Formatter();
+    DsgInventoryCache.showCache(f);
+    assertThat(f.toString()).contains("numberOfEntries=1");
+  }
+
+  @Test
+  public void shouldNotKeepInventoryOfNcml() throws Exception {
+    // the files an NcML dataset reads can change without the NcML file changing
+    DsgInventoryCache.init(tempFolder.newFolder("cache").toPath(), 10, 1);
+    File ncml = tempFolder.newFile("station.ncml");
+    Files.copy(resource("station/input.ncml").toPath(), ncml.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+    try (FeatureDatasetPoint fdp = open(FeatureType.STATION, ncml)) {
+      assertThat(DsgInventoryCache.getFileVersion(fdp)).isEqualTo(-1);
+      assertThat(DsgInventoryCache.get(fdp).getNobs()).isEqualTo(15);
+      assertThat(DsgInventoryCache.getIfPresent(fdp)).isNull();
+    }
+  }
+
+  private static File resource(String name) throws Exception {
+    return new File(DsgSubsetWriterTest.class.getResource(name).toURI());
+  }
+
+  private static FeatureDatasetPoint open(FeatureType wantedType, File file) throws Exception {
+    Formatter errlog = new Formatter();
+    FeatureDataset fd = FeatureDatasetFactoryManager.open(wantedType, file.getAbsolutePath(), null, errlog);
+    assertThat(fd).isNotNull();
+    return (FeatureDatasetPoint) fd;
+  }
+}
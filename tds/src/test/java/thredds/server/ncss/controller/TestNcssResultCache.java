@@ -0,0 +1,154 @@
+package thredds.server.ncss.controller;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * NcssResultCache answers repeated requests from disk, writes each result once, and stays under its size limit.
+ */
+public class TestNcssResultCache {
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void shouldReuseResult() throws Exception {
+    NcssResultCache cache = new NcssResultCache(tempFolder.newFolder(), 1000);
+    AtomicInteger writes = new AtomicInteger();
+    NcssResultCache.Writer writer = file -> {
+      writes.incrementAndGet();
+      write(file, 10);
+    };
+
+    File first;
+    try (NcssResultCache.Result result = cache.get("a", ".nc", writer)) {
+      first = result.getFile();
+      assertThat(first.length()).isEqualTo(10);
+    }
+    try (NcssResultCache.Result result = cache.get("a", ".nc", writer)) {
+      assertThat(result.getFile()).isEqualTo(first);
+    }
+    assertThat(writes.get()).isEqualTo(1);
+    assertThat(cache.getHits()).isEqualTo(1);
+    assertThat(cache.getMisses()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsed() throws Exception {
+    NcssResultCache cache = new NcssResultCache(tempFolder.newFolder(), 25);
+    File a = get(cache, "a");
+    File b = get(cache, "b");
+    get(cache, "a"); // now b is least recently used
+    get(cache, "c");
+
+    assertThat(a.exists()).isTrue();
+    assertThat(b.exists()).isFalse();
+    assertThat(cache.getEvictions()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldNotDeleteFileInUse() throws Exception {
+    NcssResultCache cache = new NcssResultCache(tempFolder.newFolder(), 15);
+    NcssResultCache.Result result = cache.get("a", ".nc", file -> write(file, 10));
+    get(cache, "b");
+    assertThat(result.getFile().exists()).isTrue();
+    assertThat(cache.getEvictions()).isEqualTo(1);
+    result.close();
+    assertThat(result.getFile().exists()).isFalse();
+  }
+
+  @Test
+  public void shouldPickUpExistingFiles() throws Exception {
+    File dir = tempFolder.newFolder();
+    File a = get(new NcssResultCache(dir, 1000), "a");
+    write(new File(dir, "junk.tmp"), 10);
+
+    NcssResultCache cache = new NcssResultCache(dir, 1000);
+    assertThat(new File(dir, "junk.tmp").exists()).isFalse();
+    try (NcssResultCache.Result result = cache.get("a", ".nc", file -> {
+      throw new IllegalStateException("should not be written");
+    })) {
+      assertThat(result.getFile()).isEqualTo(a);
+    }
+  }
+
+  @Test
+  public void shouldCoalesceConcurrentRequests() throws Exception {
+    NcssResultCache cache = new NcssResultCache(tempFolder.newFolder(), 1000);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger writes = new AtomicInteger();
+    NcssResultCache.Writer writer = file -> {
+      writes.incrementAndGet();
+      started.countDown();
+      release.await();
+      write(file, 10);
+    };
+
+    ExecutorService exec = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Long>> futures = new ArrayList<>();
+      futures.add(exec.submit(() -> length(cache, writer)));
+      assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+      for (int i = 0; i < 3; i++)
+        futures.add(exec.submit(() -> length(cache, writer)));
+      // let the waiters reach the in-flight write
+      while (cache.getCoalesced() < 3)
+        Thread.sleep(10);
+      release.countDown();
+
+      for (Future<Long> future : futures)
+        assertThat(future.get(10, TimeUnit.SECONDS)).isEqualTo(10);
+    } finally {
+      exec.shutdownNow();
+    }
+    assertThat(writes.get()).isEqualTo(1);
+    assertThat(cache.getCoalesced()).isEqualTo(3);
+  }
+
+  @Test
+  public void shouldNotKeepFailedResult() throws Exception {
+    File dir = tempFolder.newFolder();
+    NcssResultCache cache = new NcssResultCache(dir, 1000);
+    try {
+      cache.get("a", ".nc", file -> {
+        throw new IllegalStateException("failed");
+      });
+      throw new AssertionError("expected exception");
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage()).isEqualTo("failed");
+    }
+    // nothing kept, so the next request writes it
+    assertThat(get(cache, "a").exists()).isTrue();
+    assertThat(dir.listFiles()).hasLength(1);
+  }
+
+  private static long length(NcssResultCache cache, NcssResultCache.Writer writer) throws Exception {
+    try (NcssResultCache.Result result = cache.get("same", ".nc", writer)) {
+      return result.getFile().length();
+    }
+  }
+
+  private static File get(NcssResultCache cache, String key) throws Exception {
+    try (NcssResultCache.Result result = cache.get(key, ".nc", file -> write(file, 10))) {
+      return result.getFile();
+    }
+  }
+
+  private static void write(File file, int size) throws Exception {
+    Files.write(file.toPath(), new String(new char[size]).replace('\0', 'x').getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -7,6 +7,8 @@ import ucar.nc2.Variable;
 import ucar.nc2.constants.CDM;
 import ucar.nc2.dataset.NetcdfDatasets;
 import ucar.nc2.util.CompareNetcdf2;
+import ucar.nc2.write.NetcdfCopier;
+import ucar.nc2.write.NetcdfFormatWriter;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -43,6 +45,16 @@ public class DsgSubsetTestUtils {
     }
   }
 
+  // A test dataset written as a netCDF file, for tests that need a plain file rather than NcML
+  public static File copyToNetcdf(String resource, File file) throws Exception {
+    File ncml = new File(DsgSubsetTestUtils.class.getResource(resource).toURI());
+    try (NetcdfFile ncfile = NetcdfDatasets.openFile(ncml.getAbsolutePath(), null);
+        NetcdfCopier copier = NetcdfCopier.create(ncfile, NetcdfFormatWriter.createNewNetcdf3(file.getPath()))) {
+      copier.write(null);
+    }
+    return file;
+  }
+
   public static boolean compareText(File expectedResultFile, File actualResultFile) throws IOException {
     try (BufferedReader actualReader = new BufferedReader(new FileReader(actualResultFile));
         BufferedReader expectedReader = new BufferedReader(new FileReader(expectedResultFile))) {
@@ -0,0 +1,116 @@
+package thredds.server.ncss.view.dsg;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Formatter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.mock.web.MockHttpServletResponse;
+import thredds.server.config.ThreddsConfig;
+import thredds.server.ncss.controller.DsgInventoryCache;
+import thredds.server.ncss.controller.NcssDiskCache;
+import thredds.server.ncss.format.SupportedFormat;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.constants.FeatureType;
+import ucar.nc2.ft.FeatureDataset;
+import ucar.nc2.ft.FeatureDatasetFactoryManager;
+import ucar.nc2.ft.FeatureDatasetPoint;
+import ucar.nc2.ft2.coverage.SubsetParams;
+import ucar.nc2.util.DiskCache2;
+
+/**
+ * NetCDF-3 point and station subsets are streamed with the length known in advance, and are the same whether or not
+ * the inventory of the dataset is kept.
+ */
+public class TestCFPointStreamWriter {
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private final NcssDiskCache ncssDiskCache = new NcssDiskCache(DiskCache2.getDefault().getRootDirectory());
+
+  @Before
+  public void enableStreaming() throws Exception {
+    File config = tempFolder.newFile("threddsConfig.xml");
+    Files.write(config.toPath(),
+        "<threddsConfig><NetcdfSubsetService><streamNetcdf3>true</streamNetcdf3></NetcdfSubsetService></threddsConfig>"
+            .getBytes(StandardCharsets.UTF_8));
+    ThreddsConfig.init(config.getPath());
+  }
+
+  @After
+  public void shutdown() {
+    DsgInventoryCache.shutdown();
+    ThreddsConfig.init(new File(tempFolder.getRoot(), "none.xml").getPath()); // back to the defaults
+  }
+
+  @Test
+  public void shouldSetContentLength() throws Exception {
+    for (FeatureType wantedType : new FeatureType[] {FeatureType.POINT, FeatureType.STATION}) {
+      try (FeatureDatasetPoint fdp = open(wantedType)) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MockHttpServletResponse res = new MockHttpServletResponse();
+        DsgSubsetWriter writer =
+            DsgSubsetWriterFactory.newInstance(fdp, subsetParams(), ncssDiskCache, out, SupportedFormat.NETCDF3);
+        writer.respond(res, fdp, "test", subsetParams(), SupportedFormat.NETCDF3);
+
+        assertThat(out.size()).isGreaterThan(0);
+        assertThat(res.getContentLengthLong()).isEqualTo((long) out.size());
+
+        File file = tempFolder.newFile();
+        Files.write(file.toPath(), out.toByteArray());
+        try (NetcdfFile ncfile = NetcdfFiles.open(file.getPath())) {
+          assertThat(ncfile.getUnlimitedDimension().getLength()).isEqualTo(15);
+          assertThat(ncfile.findVariable("tas").getSize()).isEqualTo(15L);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void shouldMatchWithInventory() throws Exception {
+    DsgInventoryCache.init(tempFolder.newFolder("cache").toPath(), 10, 1);
+
+    for (FeatureType wantedType : new FeatureType[] {FeatureType.POINT, FeatureType.STATION}) {
+      String name = wantedType.name().toLowerCase();
+      // the inventory is kept only for plain files
+      File file = DsgSubsetTestUtils.copyToNetcdf(name + "/input.ncml", tempFolder.newFile(name + ".nc"));
+      try (FeatureDatasetPoint fdp = DsgSubsetWriterTest.openPointDataset(wantedType, file)) {
+        byte[] counted = write(fdp);
+        assertThat(DsgInventoryCache.get(fdp)).isNotNull();
+        assertThat(DsgInventoryCache.getIfPresent(fdp)).isNotNull();
+        byte[] fromInventory = write(fdp);
+        assertThat(fromInventory).isEqualTo(counted);
+      }
+    }
+  }
+
+  private byte[] write(FeatureDatasetPoint fdp) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    DsgSubsetWriterFactory.newInstance(fdp, subsetParams(), ncssDiskCache, out, SupportedFormat.NETCDF3).write();
+    return out.toByteArray();
+  }
+
+  private static SubsetParams subsetParams() {
+    SubsetParams params = new SubsetParams();
+    params.setVariables(Arrays.asList("pr", "tas"));
+    return params;
+  }
+
+  private static FeatureDatasetPoint open(FeatureType wantedType) throws Exception {
+    File file = new File(TestCFPointStreamWriter.class
+        .getResource(wantedType.name().toLowerCase() + "/input.ncml").toURI());
+    FeatureDataset fd =
+        FeatureDatasetFactoryManager.open(wantedType, file.getAbsolutePath(), null, new Formatter());
+    assertThat(fd).isNotNull();
+    return (FeatureDatasetPoint) fd;
+  }
+}
@@ -0,0 +1,91 @@
+package thredds.server.ncss.view.dsg;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import java.io.File;
+import java.util.Formatter;
+import java.util.Random;
+import org.junit.Test;
+import ucar.ma2.StructureData;
+import ucar.ma2.StructureMembers;
+import ucar.nc2.constants.FeatureType;
+import ucar.nc2.ft.FeatureDatasetFactoryManager;
+import ucar.nc2.ft.FeatureDatasetPoint;
+import ucar.nc2.ft.PointFeature;
+import ucar.nc2.ft.PointFeatureCollection;
+import ucar.nc2.time.Calendar;
+import ucar.nc2.time.CalendarDate;
+import ucar.nc2.time.CalendarDateFormatter;
+import ucar.unidata.util.Format;
+
+/**
+ * DsgTextFormatter writes the same text as the formatters that the DSG writers used before.
+ */
+public class TestDsgTextFormatter {
+  private final DsgTextFormatter text = new DsgTextFormatter();
+
+  @Test
+  public void shouldFormatTimesLikeCalendarDateFormatter() {
+    Random random = new Random(42);
+    long start = CalendarDate.parseISOformat(null, "1999-12-31T00:00:00Z").getMillis();
+    for (Calendar calendar : new Calendar[] {Calendar.gregorian, Calendar.proleptic_gregorian, Calendar.noleap,
+        Calendar.uniform30day}) {
+      for (int i = 0; i < 1000; i++) {
+        long millis = start + (random.nextInt(3 * 24 * 60) * 60 * 1000L); // minutes over three days
+        if (i % 10 == 0)
+          millis += random.nextInt(1000);
+        CalendarDate date = CalendarDate.of(calendar, millis);
+        assertThat(text.appendTime(date).take(0)).isEqualTo(CalendarDateFormatter.toDateTimeStringISO(date));
+      }
+    }
+
+    CalendarDate early = CalendarDate.parseISOformat(null, "1066-10-14T09:30:00Z");
+    assertThat(text.appendTime(early).take(0)).isEqualTo(CalendarDateFormatter.toDateTimeStringISO(early));
+  }
+
+  @Test
+  public void shouldFormatNumbersLikeFormat() {
+    Random random = new Random(42);
+    double[] special = {0.0, -0.0, 40.0, -100.0, 1.0e-5, 1.23456789e12, 0.0005, -0.0005, Double.NaN,
+        Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.MAX_VALUE, Double.MIN_VALUE};
+    for (int decimals = 0; decimals <= 4; decimals++) {
+      for (double value : special)
+        assertWithMessage("%s", value).that(text.appendFixed(value, decimals).take(0))
+            .isEqualTo(Format.dfrac(value, decimals));
+      for (int i = 0; i < 1000; i++) {
+        double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(8));
+        assertWithMessage("%s", value).that(text.appendFixed(value, decimals).take(0))
+            .isEqualTo(Format.dfrac(value, decimals));
+      }
+    }
+  }
+
+  @Test
+  public void shouldFormatMembersLikeArrayToString() throws Exception {
+    File file = new File(getClass().getResource("point/input.ncml").toURI());
+    try (FeatureDatasetPoint fdp = (FeatureDatasetPoint) FeatureDatasetFactoryManager.open(FeatureType.POINT,
+        file.getAbsolutePath(), null, new Formatter())) {
+      PointFeatureCollection pfc = (PointFeatureCollection) fdp.getPointFeatureCollectionList().get(0);
+      int count = 0;
+      for (PointFeature pf : pfc) {
+        StructureData sdata = pf.getDataAll();
+        for (StructureMembers.Member m : sdata.getMembers()) {
+          String expected = sdata.getArray(m).toString().trim();
+          assertWithMessage(m.getName()).that(text.appendValue(sdata, m.getName()).take(0)).isEqualTo(expected);
+          count++;
+        }
+      }
+      assertThat(count).isGreaterThan(0);
+    }
+  }
+
+  @Test
+  public void shouldTakeOnlyNewText() {
+    text.append("a,b");
+    int start = text.length();
+    text.append(',').appendFixed(1.5, 3);
+    assertThat(text.take(start)).isEqualTo(",1.500");
+    assertThat(text.take(0)).isEqualTo("a,b");
+  }
+}
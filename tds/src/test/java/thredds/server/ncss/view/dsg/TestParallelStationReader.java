@@ -0,0 +1,141 @@
+package thredds.server.ncss.view.dsg;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Formatter;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+import thredds.server.ncss.controller.NcssDiskCache;
+import thredds.server.ncss.format.SupportedFormat;
+import thredds.server.ncss.view.dsg.station.AbstractStationSubsetWriter;
+import thredds.server.ncss.view.dsg.station.ParallelStationReader;
+import ucar.nc2.constants.FeatureType;
+import ucar.nc2.ft.FeatureDatasetFactoryManager;
+import ucar.nc2.ft.FeatureDatasetPoint;
+import ucar.nc2.ft2.coverage.SubsetParams;
+import ucar.nc2.time.CalendarDate;
+import ucar.nc2.util.DiskCache2;
+
+/**
+ * Station subsets are the same whether the stations are read concurrently or one after another.
+ */
+public class TestParallelStationReader {
+  private final NcssDiskCache ncssDiskCache = new NcssDiskCache(DiskCache2.getDefault().getRootDirectory());
+
+  @After
+  public void shutdown() {
+    ParallelStationReader.shutdown();
+  }
+
+  @Test
+  public void shouldWriteTheSameAsSequential() throws Exception {
+    for (SupportedFormat format : new SupportedFormat[] {SupportedFormat.CSV_FILE, SupportedFormat.XML_FILE,
+        SupportedFormat.NETCDF3}) {
+      for (SubsetParams params : new SubsetParams[] {subsetParams(), closestTimeParams()}) {
+        byte[] sequential = write(format, params, true);
+
+        ParallelStationReader.setDefault(3, 2, 2); // a small queue, so the readers wait for the writer
+        byte[] parallel = write(format, params, true);
+        ParallelStationReader.shutdown();
+
+        assertWithMessage(format.toString()).that(sequential.length).isGreaterThan(0);
+        assertWithMessage(format.toString()).that(parallel).isEqualTo(sequential);
+      }
+    }
+  }
+
+  @Test
+  public void shouldReadSequentiallyWithoutDatasets() throws Exception {
+    byte[] sequential = write(SupportedFormat.CSV_FILE, subsetParams(), true);
+
+    ParallelStationReader.setDefault(3, 2, 2);
+    assertThat(write(SupportedFormat.CSV_FILE, subsetParams(), false)).isEqualTo(sequential);
+  }
+
+  @Test
+  public void shouldReadSequentiallyFromSharedDataset() throws Exception {
+    byte[] sequential = write(SupportedFormat.CSV_FILE, subsetParams(), true);
+    ParallelStationReader.setDefault(3, 2, 2);
+
+    // the opener gives back the requested dataset, as it does for the point dataset of a feature collection
+    try (FeatureDatasetPoint fdp = open()) {
+      assertThat(write(fdp, SupportedFormat.CSV_FILE, subsetParams(), () -> fdp)).isEqualTo(sequential);
+      // still open, and not used by another thread
+      assertThat(write(fdp, SupportedFormat.CSV_FILE, subsetParams(), null)).isEqualTo(sequential);
+    }
+
+    // the opener gives back the same other dataset each time: only one reader uses it
+    try (FeatureDatasetPoint fdp = open(); FeatureDatasetPoint other = open()) {
+      assertThat(write(fdp, SupportedFormat.CSV_FILE, subsetParams(), () -> other)).isEqualTo(sequential);
+    }
+  }
+
+  @Test
+  public void shouldShareThreadsBetweenRequests() throws Exception {
+    byte[] sequential = write(SupportedFormat.CSV_FILE, subsetParams(), true);
+
+    // more stations in flight than threads, with the readers waiting for their writers
+    ParallelStationReader.setDefault(3, 1, 2);
+    ExecutorService requests = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<byte[]>> responses = new ArrayList<>();
+      for (int i = 0; i < 8; i++)
+        responses.add(requests.submit(() -> write(SupportedFormat.CSV_FILE, subsetParams(), true)));
+      for (Future<byte[]> response : responses)
+        assertThat(response.get(60, TimeUnit.SECONDS)).isEqualTo(sequential);
+    } finally {
+      requests.shutdownNow();
+    }
+  }
+
+  private byte[] write(SupportedFormat format, SubsetParams params, boolean canOpen) throws Exception {
+    try (FeatureDatasetPoint fdp = open()) {
+      return write(fdp, format, params, () -> canOpen ? open() : null);
+    }
+  }
+
+  private byte[] write(FeatureDatasetPoint fdp, SupportedFormat format, SubsetParams params,
+      ParallelStationReader.DatasetOpener opener) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    DsgSubsetWriter writer = DsgSubsetWriterFactory.newInstance(fdp, params, ncssDiskCache, out, format);
+    ((AbstractStationSubsetWriter) writer).setDatasetOpener(opener);
+    writer.write();
+    return out.toByteArray();
+  }
+
+  private static SubsetParams subsetParams() {
+    SubsetParams params = new SubsetParams();
+    params.setVariables(Arrays.asList("pr", "tas"));
+    params.setStations(Arrays.asList("all"));
+    return params;
+  }
+
+  private static SubsetParams closestTimeParams() {
+    SubsetParams params = subsetParams();
+    params.setTime(CalendarDate.parseISOformat(null, "1970-01-21 01:00:00Z"));
+    return params;
+  }
+
+  private static FeatureDatasetPoint open() throws IOException {
+    File file;
+    try {
+      file = new File(TestParallelStationReader.class.getResource("station/input.ncml").toURI());
+    } catch (URISyntaxException e) {
+      throw new IOException(e);
+    }
+    return (FeatureDatasetPoint) FeatureDatasetFactoryManager.open(FeatureType.STATION, file.getAbsolutePath(), null,
+        new Formatter());
+  }
+}
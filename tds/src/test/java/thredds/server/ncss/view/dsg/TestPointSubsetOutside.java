@@ -0,0 +1,100 @@
+package thredds.server.ncss.view.dsg;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import thredds.server.ncss.controller.DsgInventoryCache;
+import thredds.server.ncss.controller.NcssDiskCache;
+import thredds.server.ncss.exception.NcssException;
+import thredds.server.ncss.format.SupportedFormat;
+import ucar.nc2.constants.FeatureType;
+import ucar.nc2.ft.FeatureDatasetPoint;
+import ucar.nc2.ft2.coverage.SubsetParams;
+import ucar.nc2.time.CalendarDate;
+import ucar.nc2.time.CalendarDateRange;
+import ucar.nc2.util.DiskCache2;
+import ucar.unidata.geoloc.LatLonPoint;
+import ucar.unidata.geoloc.LatLonRect;
+
+/**
+ * A point subset outside the dataset is an error, not an empty response, whether or not the inventory of the
+ * dataset is already kept.
+ */
+public class TestPointSubsetOutside {
+  private static final String MESSAGE = "No features are in the requested subset";
+
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @After
+  public void shutdown() {
+    DsgInventoryCache.shutdown();
+  }
+
+  @Test
+  public void shouldRejectBoxOutsideWithoutInventory() throws Exception {
+    checkRejected(copyDataset(), outsideBox(), false);
+  }
+
+  @Test
+  public void shouldRejectBoxOutsideWithInventory() throws Exception {
+    checkRejected(copyDataset(), outsideBox(), true);
+  }
+
+  @Test
+  public void shouldRejectTimeOutsideWithoutInventory() throws Exception {
+    checkRejected(copyDataset(), outsideTime(), false);
+  }
+
+  @Test
+  public void shouldRejectTimeOutsideWithInventory() throws Exception {
+    checkRejected(copyDataset(), outsideTime(), true);
+  }
+
+  private void checkRejected(File dataset, SubsetParams params, boolean withInventory) throws Exception {
+    if (withInventory)
+      DsgInventoryCache.init(tempFolder.newFolder("cache").toPath(), 10, 1);
+    NcssDiskCache ncssDiskCache = new NcssDiskCache(DiskCache2.getDefault().getRootDirectory());
+
+    try (FeatureDatasetPoint fdPoint = DsgSubsetWriterTest.openPointDataset(FeatureType.POINT, dataset)) {
+      if (withInventory) {
+        DsgInventoryCache.get(fdPoint);
+        assertThat(DsgInventoryCache.getIfPresent(fdPoint)).isNotNull();
+      }
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      NcssException e = assertThrows(NcssException.class, () -> DsgSubsetWriterFactory
+          .newInstance(fdPoint, params, ncssDiskCache, out, SupportedFormat.CSV_FILE).write());
+      assertThat(e.getMessage()).isEqualTo(MESSAGE);
+      assertThat(out.size()).isEqualTo(0);
+    }
+  }
+
+  // the inventory is kept only for plain files, by the file's last modified time, so use a file of our own
+  private File copyDataset() throws Exception {
+    return DsgSubsetTestUtils.copyToNetcdf("point/input.ncml", tempFolder.newFile("point.nc"));
+  }
+
+  // Full extension is (40.0, -100.0) to (68.0, -58.0), see DsgSubsetWriterTest
+  private static SubsetParams outsideBox() {
+    SubsetParams params = new SubsetParams();
+    params.setVariables(Arrays.asList("pr"));
+    params.setLatLonBoundingBox(new LatLonRect(LatLonPoint.create(-10.0, 10.0), LatLonPoint.create(0.0, 20.0)));
+    return params;
+  }
+
+  private static SubsetParams outsideTime() {
+    SubsetParams params = new SubsetParams();
+    params.setVariables(Arrays.asList("pr"));
+    params.setTimeRange(CalendarDateRange.of(CalendarDate.parseISOformat(null, "1971-01-01T00:00:00Z"),
+        CalendarDate.parseISOformat(null, "1971-02-01T00:00:00Z")));
+    return params;
+  }
+}
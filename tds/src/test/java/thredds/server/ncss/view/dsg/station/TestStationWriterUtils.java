@@ -0,0 +1,45 @@
+package thredds.server.ncss.view.dsg.station;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import thredds.server.ncss.view.dsg.DsgSubsetTestUtils;
+import thredds.server.ncss.view.dsg.DsgSubsetWriterTest;
+import ucar.nc2.constants.FeatureType;
+import ucar.nc2.ft.FeatureDatasetPoint;
+import ucar.nc2.ft.StationFeatureCollection;
+
+/**
+ * The station index is kept for each version of a plain file, and made for each request of an NcML dataset.
+ */
+public class TestStationWriterUtils {
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void shouldKeepIndexOfPlainFile() throws Exception {
+    File file = DsgSubsetTestUtils.copyToNetcdf("station/input.ncml", tempFolder.newFile("station.nc"));
+    try (FeatureDatasetPoint fdPoint = DsgSubsetWriterTest.openPointDataset(FeatureType.STATION, file)) {
+      StationFeatureCollection stations = getStations(fdPoint);
+      assertThat(StationWriterUtils.getStationIndex(fdPoint, stations))
+          .isSameInstanceAs(StationWriterUtils.getStationIndex(fdPoint, stations));
+    }
+  }
+
+  @Test
+  public void shouldNotKeepIndexOfNcml() throws Exception {
+    File ncml = new File(DsgSubsetWriterTest.class.getResource("station/input.ncml").toURI());
+    try (FeatureDatasetPoint fdPoint = DsgSubsetWriterTest.openPointDataset(FeatureType.STATION, ncml)) {
+      StationFeatureCollection stations = getStations(fdPoint);
+      assertThat(StationWriterUtils.getStationIndex(fdPoint, stations))
+          .isNotSameInstanceAs(StationWriterUtils.getStationIndex(fdPoint, stations));
+    }
+  }
+
+  private static StationFeatureCollection getStations(FeatureDatasetPoint fdPoint) {
+    return (StationFeatureCollection) fdPoint.getPointFeatureCollectionList().get(0);
+  }
+}
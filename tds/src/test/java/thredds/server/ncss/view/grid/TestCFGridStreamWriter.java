@@ -0,0 +1,96 @@
+package thredds.server.ncss.view.grid;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.nc2.ft2.coverage.Coverage;
+import ucar.nc2.ft2.coverage.CoverageCollection;
+import ucar.nc2.ft2.coverage.CoverageDatasetFactory;
+import ucar.nc2.ft2.coverage.FeatureDatasetCoverage;
+import ucar.nc2.ft2.coverage.SubsetParams;
+import ucar.nc2.ft2.coverage.writer.CFGridCoverageWriter;
+import ucar.nc2.write.NetcdfFileFormat;
+import ucar.nc2.write.NetcdfFormatWriter;
+
+/**
+ * A grid subset streamed by CFGridStreamWriter is the same file that CFGridCoverageWriter writes: same header, apart
+ * from the translation date, and same data, also when the grids are read one time at a time.
+ */
+@RunWith(Parameterized.class)
+public class TestCFGridStreamWriter {
+  private static final String DIR = "src/test/content/thredds/public/testdata/";
+
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Parameterized.Parameters(name = "{0}")
+  public static List<Object[]> getTestParameters() {
+    return Arrays.asList(new Object[][] {{"testGridAsPoint.nc"}, {"2004050300_eta_211.nc"}});
+  }
+
+  private final String filename;
+
+  public TestCFGridStreamWriter(String filename) {
+    this.filename = filename;
+  }
+
+  @Test
+  public void shouldWriteSameFileAsCFGridCoverageWriter() throws Exception {
+    try (FeatureDatasetCoverage fdc = CoverageDatasetFactory.open(DIR + filename)) {
+      CoverageCollection gcd = fdc.getCoverageCollections().get(0);
+      List<String> gridNames = new ArrayList<>();
+      for (Coverage cov : gcd.getCoverages())
+        gridNames.add(cov.getName());
+      SubsetParams subset = new SubsetParams();
+      subset.setVariables(gridNames);
+      subset.set(SubsetParams.timeAll, true);
+
+      File written = tempFolder.newFile("written.nc");
+      NetcdfFormatWriter.Builder writerb =
+          NetcdfFormatWriter.builder().setLocation(written.getPath()).setFormat(NetcdfFileFormat.NETCDF3);
+      CFGridCoverageWriter.Result result = CFGridCoverageWriter.write(gcd, gridNames, subset, false, writerb, -1);
+      assertThat(result.wasWritten()).isTrue();
+
+      Netcdf3StreamWriter stream = CFGridStreamWriter.create(gcd, gridNames, subset, false);
+      assertThat(stream).isNotNull();
+      stream.validate();
+      File streamed = tempFolder.newFile("streamed.nc");
+      try (OutputStream out = new FileOutputStream(streamed)) {
+        stream.write(out);
+      }
+      assertThat(streamed.length()).isEqualTo(stream.getLength());
+
+      try (NetcdfFile expected = NetcdfFiles.open(written.getPath());
+          NetcdfFile actual = NetcdfFiles.open(streamed.getPath())) {
+        assertThat(header(actual)).isEqualTo(header(expected));
+        for (Variable v : expected.getVariables()) {
+          Variable sv = actual.findVariable(v.getFullNameEscaped());
+          assertWithMessage(v.getFullName()).that(sv).isNotNull();
+          assertWithMessage(v.getFullName()).that(sv.read().toString()).isEqualTo(v.read().toString());
+        }
+      }
+    }
+  }
+
+  // the CDL without the file name and the translation date
+  private static String header(NetcdfFile ncfile) throws IOException {
+    String cdl = ncfile.toString();
+    cdl = cdl.substring(cdl.indexOf('\n') + 1);
+    return cdl.replaceAll("Translation Date = [^\"]*", "Translation Date = ?");
+  }
+}
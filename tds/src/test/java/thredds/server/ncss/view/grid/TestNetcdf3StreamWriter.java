@@ -0,0 +1,195 @@
+package thredds.server.ncss.view.grid;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.ArrayChar;
+import ucar.ma2.DataType;
+import ucar.nc2.Attribute;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+
+/**
+ * Files written by Netcdf3StreamWriter can be read by netCDF-Java, and are exactly as long as predicted.
+ */
+public class TestNetcdf3StreamWriter {
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void shouldWriteReadableFile() throws Exception {
+    Netcdf3StreamWriter writer = new Netcdf3StreamWriter();
+    writer.addDimension("time", 2);
+    writer.addDimension("y", 3);
+    writer.addDimension("x", 5);
+    writer.addAttribute(new Attribute("Conventions", "CF-1.0"));
+    writer.addAttribute(new Attribute("version", 3));
+
+    Array time = Array.makeFromJavaArray(new double[] {6.0, 12.0});
+    writer.addVariable("time", DataType.DOUBLE, Collections.singletonList("time"),
+        Collections.singletonList(new Attribute("units", "hours since 2000-01-01")), () -> time);
+    Array y = Array.makeFromJavaArray(new byte[] {1, 2, 3});
+    writer.addVariable("y", DataType.BYTE, Collections.singletonList("y"), Collections.emptyList(), () -> y);
+    writer.addVariable("projection", DataType.INT, Collections.emptyList(),
+        Collections.singletonList(new Attribute("grid_mapping_name", "lambert_conformal_conic")), null);
+
+    float[] values = new float[2 * 3 * 5];
+    for (int i = 0; i < values.length; i++)
+      values[i] = i * 1.5f;
+    Array temp = Array.factory(DataType.FLOAT, new int[] {2, 3, 5}, values);
+    writer.addVariable("temperature", DataType.FLOAT, Arrays.asList("time", "y", "x"),
+        Collections.singletonList(new Attribute("grid_mapping", "projection")), () -> temp);
+    // double data is converted to the variable type
+    Array counts = Array.makeFromJavaArray(new double[] {1, 2, 3, 4, 5});
+    writer.addVariable("counts", DataType.SHORT, Collections.singletonList("x"), Collections.emptyList(),
+        () -> counts);
+
+    File file = tempFolder.newFile("stream.nc");
+    try (OutputStream out = new FileOutputStream(file)) {
+      writer.write(out);
+    }
+    assertThat(file.length()).isEqualTo(writer.getLength());
+
+    try (NetcdfFile ncfile = NetcdfFiles.open(file.getPath())) {
+      assertThat(ncfile.findGlobalAttribute("Conventions").getStringValue()).isEqualTo("CF-1.0");
+      assertThat(ncfile.findGlobalAttribute("version").getNumericValue()).isEqualTo(3);
+
+      Variable t = ncfile.findVariable("time");
+      assertThat(t.findAttributeString("units", null)).isEqualTo("hours since 2000-01-01");
+      assertThat((double[]) t.read().copyTo1DJavaArray()).isEqualTo(new double[] {6.0, 12.0});
+      assertThat((byte[]) ncfile.findVariable("y").read().copyTo1DJavaArray()).isEqualTo(new byte[] {1, 2, 3});
+
+      Variable proj = ncfile.findVariable("projection");
+      assertThat(proj.getRank()).isEqualTo(0);
+      assertThat(proj.findAttributeString("grid_mapping_name", null)).isEqualTo("lambert_conformal_conic");
+
+      Variable v = ncfile.findVariable("temperature");
+      assertThat(v.getShape()).isEqualTo(new int[] {2, 3, 5});
+      assertThat((float[]) v.read().copyTo1DJavaArray()).isEqualTo(values);
+      assertThat((short[]) ncfile.findVariable("counts").read().copyTo1DJavaArray())
+          .isEqualTo(new short[] {1, 2, 3, 4, 5});
+    }
+  }
+
+  @Test
+  public void shouldWriteRecords() throws Exception {
+    Netcdf3StreamWriter writer = new Netcdf3StreamWriter();
+    writer.addRecordDimension("obs", 3);
+    writer.addDimension("station", 2);
+    writer.addDimension("name_strlen", 3);
+
+    Array rowSize = Array.makeFromJavaArray(new int[] {1, 2});
+    writer.addVariable("rowSize", DataType.INT, Collections.singletonList("station"), Collections.emptyList(),
+        () -> rowSize);
+    writer.addVariable("time", DataType.DOUBLE, Collections.singletonList("obs"), Collections.emptyList(), null);
+    writer.addVariable("flag", DataType.BYTE, Collections.singletonList("obs"), Collections.emptyList(), null);
+    writer.addVariable("name", DataType.CHAR, Arrays.asList("obs", "name_strlen"), Collections.emptyList(), null);
+
+    File file = tempFolder.newFile("records.nc");
+    try (OutputStream out = new FileOutputStream(file)) {
+      writer.start(out);
+      for (int i = 0; i < 3; i++) {
+        Array name = Array.factory(DataType.CHAR, new int[] {3}, ("ab" + i).toCharArray());
+        // a missing value is written as fill
+        Array flag = (i == 1) ? null : Array.makeFromJavaArray(new byte[] {(byte) i});
+        writer.writeRecord(Arrays.asList(Array.makeFromJavaArray(new double[] {i * 10.0}), flag, name));
+      }
+      writer.finish();
+    }
+    assertThat(file.length()).isEqualTo(writer.getLength());
+
+    try (NetcdfFile ncfile = NetcdfFiles.open(file.getPath())) {
+      assertThat(ncfile.getUnlimitedDimension().getLength()).isEqualTo(3);
+      assertThat((int[]) ncfile.findVariable("rowSize").read().copyTo1DJavaArray()).isEqualTo(new int[] {1, 2});
+      assertThat((double[]) ncfile.findVariable("time").read().copyTo1DJavaArray())
+          .isEqualTo(new double[] {0.0, 10.0, 20.0});
+      assertThat((byte[]) ncfile.findVariable("flag").read().copyTo1DJavaArray())
+          .isEqualTo(new byte[] {0, -127, 2});
+      ArrayChar names = (ArrayChar) ncfile.findVariable("name").read();
+      assertThat(names.getString(2)).isEqualTo("ab2");
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void shouldCheckRecordCount() throws Exception {
+    Netcdf3StreamWriter writer = new Netcdf3StreamWriter();
+    writer.addRecordDimension("obs", 2);
+    writer.addVariable("time", DataType.DOUBLE, Collections.singletonList("obs"), Collections.emptyList(), null);
+    writer.start(new ByteArrayOutputStream());
+    writer.writeRecord(Collections.singletonList(Array.makeFromJavaArray(new double[] {1.0})));
+    writer.finish();
+  }
+
+  @Test
+  public void shouldWriteSlabs() throws Exception {
+    Netcdf3StreamWriter writer = new Netcdf3StreamWriter();
+    writer.addDimension("time", 3);
+    writer.addDimension("x", 4);
+    List<Integer> slabsRead = new ArrayList<>();
+    writer.addVariable("temperature", DataType.FLOAT, Arrays.asList("time", "x"), Collections.emptyList(), 3, slab -> {
+      slabsRead.add(slab);
+      float[] values = new float[4];
+      for (int i = 0; i < 4; i++)
+        values[i] = slab * 10 + i;
+      return Array.factory(DataType.FLOAT, new int[] {1, 4}, values);
+    });
+
+    writer.validate();
+    assertThat(slabsRead).containsExactly(0);
+
+    File file = tempFolder.newFile("slabs.nc");
+    try (OutputStream out = new FileOutputStream(file)) {
+      writer.write(out);
+    }
+    assertThat(file.length()).isEqualTo(writer.getLength());
+    assertThat(slabsRead).containsExactly(0, 0, 1, 2).inOrder();
+
+    try (NetcdfFile ncfile = NetcdfFiles.open(file.getPath())) {
+      Variable v = ncfile.findVariable("temperature");
+      assertThat(v.getShape()).isEqualTo(new int[] {3, 4});
+      assertThat((float[]) v.read().copyTo1DJavaArray())
+          .isEqualTo(new float[] {0, 1, 2, 3, 10, 11, 12, 13, 20, 21, 22, 23});
+    }
+  }
+
+  @Test
+  public void shouldFindWrongSizeBeforeWriting() {
+    Netcdf3StreamWriter writer = new Netcdf3StreamWriter();
+    writer.addDimension("time", 2);
+    writer.addDimension("x", 4);
+    // each slab has all the times
+    writer.addVariable("temperature", DataType.FLOAT, Arrays.asList("time", "x"), Collections.emptyList(), 2,
+        slab -> Array.factory(DataType.FLOAT, new int[] {2, 4}));
+
+    assertThrows(IOException.class, writer::validate);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldRejectSlabsNotOnFirstDimension() {
+    Netcdf3StreamWriter writer = new Netcdf3StreamWriter();
+    writer.addDimension("time", 2);
+    writer.addDimension("x", 4);
+    writer.addVariable("temperature", DataType.FLOAT, Arrays.asList("time", "x"), Collections.emptyList(), 4,
+        slab -> null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldRejectStrings() {
+    new Netcdf3StreamWriter().addVariable("names", DataType.STRING, Collections.emptyList(), Collections.emptyList(),
+        null);
+  }
+}
@@ -0,0 +1,59 @@
+package thredds.server.opendap;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+import opendap.servers.CEEvaluator;
+import opendap.servers.ServerDDS;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.dataset.NetcdfDatasets;
+
+/**
+ * The estimated size of a DAP2 response is an upper bound of what is sent.
+ */
+@RunWith(Parameterized.class)
+public class TestDodsSizeEstimator {
+  private static final String PATH = "src/test/data/testdata2/temp_air_01082000.nc";
+
+  @Parameterized.Parameters(name = "{0}")
+  public static Collection<Object[]> getTestParameters() {
+    return Arrays.asList(new Object[][] {{""}, {"t"}, {"t[0:2:3][3:4][4:5][0:2:6]"}, {"t.t[1][0:17][0][0:8]"},
+        {"levelist,longitude[1:2:8]"},});
+  }
+
+  private final String constraint;
+
+  public TestDodsSizeEstimator(String constraint) {
+    this.constraint = constraint;
+  }
+
+  @Test
+  public void shouldNotUnderestimate() throws Exception {
+    NetcdfFile ncfile = NetcdfDatasets.openFile(new File(PATH).getAbsolutePath(), null);
+    GuardedDatasetCacheAndClone ds = new GuardedDatasetCacheAndClone(PATH, ncfile, false);
+    try {
+      ServerDDS dds = ds.getDDS();
+      CEEvaluator ce = new CEEvaluator(dds);
+      ce.parseConstraint(constraint, null);
+      long estimated = new DodsSizeEstimator(false, DodsSizeEstimator.DEFAULT_STRING_SIZE,
+          DodsSizeEstimator.DEFAULT_SEQUENCE_ROWS).estimate(dds);
+
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      DataOutputStream sink = new DataOutputStream(bos);
+      ce.send(dds.getEncodedName(), sink, ds);
+      sink.flush();
+
+      assertThat(bos.size()).isGreaterThan(0);
+      assertThat(estimated).isAtLeast((long) bos.size());
+    } finally {
+      ds.release();
+    }
+  }
+}
@@ -0,0 +1,187 @@
+package thredds.server.opendap;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Vector;
+import opendap.dap.BaseType;
+import opendap.dap.DArray;
+import opendap.dap.DFloat64;
+import opendap.dap.DInt32;
+import opendap.dap.DSequence;
+import opendap.dap.DString;
+import opendap.dap.DStructure;
+import opendap.servers.CEEvaluator;
+import opendap.servers.ServerDDS;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.ArrayChar;
+import ucar.ma2.DataType;
+import ucar.nc2.Dimension;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.write.NetcdfFormatWriter;
+
+/**
+ * Sizes estimated for strings, structures, sequences and arrays of unknown length.
+ */
+public class TestDodsSizeEstimatorTypes {
+  private static final int STRING_SIZE = 10;
+  private static final int SEQUENCE_ROWS = 5;
+
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private File file;
+
+  @Before
+  public void writeFile() throws Exception {
+    file = new File(tempFolder.getRoot(), "strings.nc");
+    NetcdfFormatWriter.Builder builder = NetcdfFormatWriter.createNewNetcdf3(file.getPath());
+    builder.addDimension("n", 4);
+    builder.addDimension("strlen", 8);
+    builder.addDimension(Dimension.builder("time", 0).setIsUnlimited(true).build());
+    builder.addVariable("names", DataType.CHAR, "n strlen");
+    builder.addVariable("label", DataType.CHAR, "strlen");
+    builder.addVariable("time", DataType.DOUBLE, "time");
+    builder.addVariable("code", DataType.CHAR, "time strlen");
+    builder.addVariable("temp", DataType.FLOAT, "time");
+    try (NetcdfFormatWriter writer = builder.build()) {
+      ArrayChar.D2 names = new ArrayChar.D2(4, 8);
+      for (int i = 0; i < 4; i++)
+        names.setString(i, "name_00" + i);
+      writer.write("names", names);
+      ArrayChar.D1 label = new ArrayChar.D1(8);
+      label.setString("labelled");
+      writer.write("label", label);
+
+      ArrayChar.D2 code = new ArrayChar.D2(3, 8);
+      for (int i = 0; i < 3; i++)
+        code.setString(i, "code_00" + i);
+      writer.write("time", Array.factory(DataType.DOUBLE, new int[] {3}, new double[] {0.5, 1.5, 2.5}));
+      writer.write("code", code);
+      writer.write("temp", Array.factory(DataType.FLOAT, new int[] {3}, new float[] {271.5f, 272.5f, 273.5f}));
+    }
+  }
+
+  @Test
+  public void shouldUseCharDimensionForStrings() throws Exception {
+    // 4 strings of 8 chars, each with its count; the array length twice
+    assertThat(estimate("names", false)).isEqualTo(4 * (4 + 8) + 8);
+    assertThat(estimate("label", false)).isEqualTo(4 + 8);
+    // quotes and separator
+    assertThat(estimate("label", true)).isEqualTo(8 + 4);
+  }
+
+  @Test
+  public void shouldNotUnderestimateStringsAndStructures() throws Exception {
+    for (String constraint : Arrays.asList("", "names", "label", "record", "names[1:2],record.code")) {
+      long sent = send(constraint);
+      assertWithMessage(constraint).that(sent).isGreaterThan(0L);
+      assertWithMessage(constraint).that(estimate(constraint, false)).isAtLeast(sent);
+    }
+  }
+
+  @Test
+  public void shouldEstimateSequenceRows() throws Exception {
+    DSequence seq = sequence();
+    // each row: marker, int, double, string of STRING_SIZE padded to 4 with its count; then the end marker
+    long row = 4 + 4 + 8 + (4 + 12);
+    assertThat(estimator(false).estimateField(seq)).isEqualTo(row * SEQUENCE_ROWS + 4);
+    assertThat(estimator(true).estimateField(seq)).isEqualTo((4 + 13 + 26 + (STRING_SIZE + 4)) * SEQUENCE_ROWS + 4);
+
+    // filled with SEQUENCE_ROWS rows of short strings
+    for (int i = 0; i < SEQUENCE_ROWS; i++) {
+      Vector<BaseType> values = new Vector<>();
+      DInt32 id = new DInt32("id");
+      id.setValue(i);
+      values.add(id);
+      DFloat64 value = new DFloat64("value");
+      value.setValue(i * 1.5);
+      values.add(value);
+      DString name = new DString("name");
+      name.setValue("row" + i);
+      values.add(name);
+      seq.addRow(values);
+    }
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    DataOutputStream sink = new DataOutputStream(bos);
+    seq.externalize(sink);
+    sink.flush();
+    assertThat(estimator(false).estimateField(seq)).isAtLeast((long) bos.size());
+  }
+
+  @Test
+  public void shouldUseSequenceRowsForUnknownLength() throws Exception {
+    DArray vlen = new DArray("vlen");
+    vlen.addVariable(new DInt32("vlen"));
+    vlen.appendDim(-1, "vlen");
+    assertThat(estimator(false).estimateField(vlen)).isEqualTo(4 * SEQUENCE_ROWS + 8);
+
+    DArray known = new DArray("known");
+    known.addVariable(new DInt32("known"));
+    known.appendDim(3, "x");
+    assertThat(estimator(false).estimateField(known)).isEqualTo(4 * 3 + 8);
+
+    // a structure is the sum of its members, strings without a value use STRING_SIZE
+    DStructure struct = new DStructure("struct");
+    struct.addVariable(known);
+    struct.addVariable(new DString("name"));
+    DString set = new DString("set");
+    set.setValue("abcde");
+    struct.addVariable(set);
+    assertThat(estimator(false).estimateField(struct)).isEqualTo((4 * 3 + 8) + (4 + 12) + (4 + 8));
+  }
+
+  private static DodsSizeEstimator estimator(boolean isAscii) {
+    return new DodsSizeEstimator(isAscii, STRING_SIZE, SEQUENCE_ROWS);
+  }
+
+  private static DSequence sequence() {
+    DSequence seq = new DSequence("seq");
+    seq.addVariable(new DInt32("id"));
+    seq.addVariable(new DFloat64("value"));
+    seq.addVariable(new DString("name"));
+    return seq;
+  }
+
+  private long estimate(String constraint, boolean isAscii) throws Exception {
+    GuardedDatasetCacheAndClone ds = open();
+    try {
+      ServerDDS dds = ds.getDDS();
+      new CEEvaluator(dds).parseConstraint(constraint, null);
+      return estimator(isAscii).estimate(dds);
+    } finally {
+      ds.release();
+    }
+  }
+
+  private long send(String constraint) throws Exception {
+    GuardedDatasetCacheAndClone ds = open();
+    try {
+      ServerDDS dds = ds.getDDS();
+      CEEvaluator ce = new CEEvaluator(dds);
+      ce.parseConstraint(constraint, null);
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      DataOutputStream sink = new DataOutputStream(bos);
+      ce.send(dds.getEncodedName(), sink, ds);
+      sink.flush();
+      return bos.size();
+    } finally {
+      ds.release();
+    }
+  }
+
+  // with the record variables also as a structure
+  private GuardedDatasetCacheAndClone open() throws Exception {
+    NetcdfFile ncfile = NetcdfFiles.open(file.getPath(), -1, null, NetcdfFile.IOSP_MESSAGE_ADD_RECORD_STRUCTURE);
+    return new GuardedDatasetCacheAndClone(file.getPath(), ncfile, false);
+  }
+}
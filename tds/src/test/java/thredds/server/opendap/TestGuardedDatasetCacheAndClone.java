@@ -0,0 +1,61 @@
+package thredds.server.opendap;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Enumeration;
+import opendap.dap.BaseType;
+import opendap.dap.DConstructor;
+import opendap.servers.ServerDDS;
+import org.junit.Test;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+import ucar.nc2.dataset.NetcdfDatasets;
+
+/**
+ * A DDS kept from another request reads from this request's file.
+ */
+public class TestGuardedDatasetCacheAndClone {
+  private static final String PATH = "src/test/data/testdata2/temp_air_01082000.nc";
+
+  @Test
+  public void shouldUseThisRequestsFile() throws Exception {
+    String path = new File(PATH).getAbsolutePath();
+    NetcdfFile first = NetcdfDatasets.openFile(path, null);
+    GuardedDatasetCacheAndClone ds1 = new GuardedDatasetCacheAndClone(path, first, false);
+    String dds1 = print(ds1.getDDS());
+    ds1.release();
+
+    NetcdfFile second = NetcdfDatasets.openFile(path, null);
+    GuardedDatasetCacheAndClone ds2 = new GuardedDatasetCacheAndClone(path, second, false);
+    try {
+      ServerDDS dds = ds2.getDDS();
+      assertThat(print(dds)).isEqualTo(dds1);
+      checkVariables(dds.getVariables(), second);
+    } finally {
+      ds2.release();
+    }
+  }
+
+  private static void checkVariables(Enumeration vars, NetcdfFile ncfile) {
+    while (vars.hasMoreElements()) {
+      BaseType bt = (BaseType) vars.nextElement();
+      if (bt instanceof HasNetcdfVariable) {
+        Variable v = ((HasNetcdfVariable) bt).getVariable();
+        assertThat(v).isSameInstanceAs(ncfile.findVariable(v.getFullNameEscaped()));
+      }
+      if (bt instanceof DConstructor)
+        checkVariables(((DConstructor) bt).getVariables(), ncfile);
+    }
+  }
+
+  private static String print(ServerDDS dds) {
+    StringWriter sw = new StringWriter();
+    PrintWriter pw = new PrintWriter(sw);
+    dds.print(pw);
+    pw.flush();
+    return sw.toString();
+  }
+}
@@ -0,0 +1,113 @@
+package thredds.server.opendap;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import opendap.servers.CEEvaluator;
+import opendap.servers.ServerDDS;
+import opendap.servers.ServerMethods;
+import opendap.servlet.AsciiWriter;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.dataset.NetcdfDatasets;
+
+/**
+ * Arrays written as they are read give the same bytes, and the same ascii, as arrays read all at once.
+ */
+@RunWith(Parameterized.class)
+public class TestNcSDArrayStreaming {
+  private static final String PATH = "src/test/data/testdata2/temp_air_01082000.nc";
+
+  @Parameterized.Parameters(name = "{0}")
+  public static Collection<Object[]> getTestParameters() {
+    return Arrays.asList(new Object[][] {{""}, {"t"}, {"t[0:2:3][3:4][4:5][0:2:6]"}, {"t.t[1][0:17][0][0:8]"},
+        {"levelist,longitude[1:2:8]"},});
+  }
+
+  private final String constraint;
+  private final long orgSlabBytes = NcSDArray.slabBytes;
+
+  public TestNcSDArrayStreaming(String constraint) {
+    this.constraint = constraint;
+  }
+
+  @After
+  public void resetSlabs() {
+    NcSDArray.slabBytes = orgSlabBytes;
+  }
+
+  @Test
+  public void shouldMatchReadAllAtOnce() throws Exception {
+    byte[] expected = send(false);
+    NcSDArray.slabBytes = 50; // a few rows at a time
+    assertThat(send(true)).isEqualTo(expected);
+  }
+
+  @Test
+  public void shouldMatchAsciiReadAllAtOnce() throws Exception {
+    String expected = ascii(false);
+    NcSDArray.slabBytes = 50;
+    assertThat(ascii(true)).isEqualTo(expected);
+  }
+
+  private String ascii(boolean stream) throws Exception {
+    NetcdfFile ncfile = NetcdfDatasets.openFile(new File(PATH).getAbsolutePath(), null);
+    GuardedDatasetCacheAndClone ds = new GuardedDatasetCacheAndClone(PATH, ncfile, false);
+    try {
+      ServerDDS dds = ds.getDDS();
+      CEEvaluator ce = new CEEvaluator(dds);
+      ce.parseConstraint(constraint, null);
+      if (!stream)
+        readProjected(dds, ds);
+
+      StringWriter sw = new StringWriter();
+      PrintWriter pw = new PrintWriter(sw);
+      new AsciiWriter().toASCII(pw, dds, ds);
+      pw.flush();
+      return sw.toString();
+    } finally {
+      ds.release();
+    }
+  }
+
+  private static void readProjected(ServerDDS dds, GuardedDatasetCacheAndClone ds) throws Exception {
+    Enumeration vars = dds.getVariables();
+    while (vars.hasMoreElements()) {
+      ServerMethods sm = (ServerMethods) vars.nextElement();
+      if (sm.isProject())
+        sm.read(PATH, ds);
+    }
+  }
+
+  private byte[] send(boolean stream) throws Exception {
+    NetcdfFile ncfile = NetcdfDatasets.openFile(new File(PATH).getAbsolutePath(), null);
+    GuardedDatasetCacheAndClone ds = new GuardedDatasetCacheAndClone(PATH, ncfile, false);
+    try {
+      ServerDDS dds = ds.getDDS();
+      CEEvaluator ce = new CEEvaluator(dds);
+      ce.parseConstraint(constraint, null);
+
+      if (!stream)
+        readProjected(dds, ds);
+
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      DataOutputStream sink = new DataOutputStream(bos);
+      ce.send(dds.getEncodedName(), sink, ds);
+      sink.flush();
+      assertThat(bos.size()).isGreaterThan(0);
+      return bos.toByteArray();
+    } finally {
+      ds.release();
+    }
+  }
+}
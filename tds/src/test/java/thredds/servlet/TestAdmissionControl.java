@@ -0,0 +1,159 @@
+package thredds.servlet;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * AdmissionControl.Limiter admits up to maxConcurrent permits, queues up to maxQueue requests, and rejects the rest.
+ */
+public class TestAdmissionControl {
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  @After
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void shouldRejectWhenQueueIsFull() {
+    AdmissionControl.Limiter limiter = new AdmissionControl.Limiter("test", 2, 0, 1000);
+    assertThat(limiter.acquire(1)).isTrue();
+    assertThat(limiter.acquire(1)).isTrue();
+    assertThat(limiter.getActive()).isEqualTo(2);
+
+    assertThat(limiter.acquire(1)).isFalse(); // no room to wait
+    assertThat(limiter.getRejected()).isEqualTo(1);
+
+    limiter.release(1);
+    assertThat(limiter.acquire(1)).isTrue();
+  }
+
+  @Test
+  public void shouldRejectAfterMaxWait() {
+    AdmissionControl.Limiter limiter = new AdmissionControl.Limiter("test", 1, 1, 50);
+    assertThat(limiter.acquire(1)).isTrue();
+
+    long start = System.nanoTime();
+    assertThat(limiter.acquire(1)).isFalse();
+    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isAtLeast(40L);
+    assertThat(limiter.getWaiting()).isEqualTo(0);
+    assertThat(limiter.getRejected()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldAdmitWaitingRequestOnRelease() throws Exception {
+    AdmissionControl.Limiter limiter = new AdmissionControl.Limiter("test", 1, 1, 10000);
+    assertThat(limiter.acquire(1)).isTrue();
+
+    CountDownLatch started = new CountDownLatch(1);
+    Future<Boolean> waiter = executor.submit(() -> {
+      started.countDown();
+      return limiter.acquire(1);
+    });
+    started.await();
+    while (limiter.getWaiting() == 0)
+      Thread.sleep(1);
+
+    assertThat(limiter.acquire(1)).isFalse(); // the one place in the queue is taken
+
+    limiter.release(1);
+    assertThat(waiter.get(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(limiter.getActive()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldNotTakePermitsAheadOfWaitingRequest() throws Exception {
+    AdmissionControl.Limiter limiter = new AdmissionControl.Limiter("test", 2, 1, 10000);
+    assertThat(limiter.acquire(1)).isTrue();
+    assertThat(limiter.acquire(1)).isTrue();
+
+    Future<Boolean> waiter = executor.submit(() -> limiter.acquire(2));
+    while (limiter.getWaiting() == 0)
+      Thread.sleep(1);
+
+    limiter.release(1);
+    assertThat(limiter.acquire(1)).isFalse(); // the free permit is kept for the waiting request, the queue is full
+
+    limiter.release(1);
+    assertThat(waiter.get(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(limiter.getActive()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldWeighLargeResponses() {
+    AdmissionControl.Limiter limiter = new AdmissionControl.Limiter("test", 4, 0, 1000);
+    AdmissionControl.Ticket small = new AdmissionControl.Ticket(limiter);
+    assertThat(limiter.acquire(1)).isTrue();
+    AdmissionControl.Ticket large = new AdmissionControl.Ticket(limiter);
+    assertThat(limiter.acquire(1)).isTrue();
+
+    assertThat(small.reweigh(10, 100)).isTrue();
+    assertThat(limiter.getActive()).isEqualTo(2);
+
+    assertThat(large.reweigh(250, 100)).isTrue(); // 3 permits
+    assertThat(limiter.getActive()).isEqualTo(4);
+
+    assertThat(large.reweigh(Long.MAX_VALUE, 100)).isFalse(); // would be all 4, and none are free
+
+    large.release();
+    large.release(); // only once
+    assertThat(limiter.getActive()).isEqualTo(1);
+    small.release();
+    assertThat(limiter.getActive()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldNotDeadlockWhenRequestsGrowTogether() throws Exception {
+    // every permit is held, and together the requests want three times as many
+    int n = 4;
+    AdmissionControl.Limiter limiter = new AdmissionControl.Limiter("test", n, n, 10000);
+    List<AdmissionControl.Ticket> tickets = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      assertThat(limiter.acquire(1)).isTrue();
+      tickets.add(new AdmissionControl.Ticket(limiter));
+    }
+
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<Boolean>> results = new ArrayList<>();
+    for (AdmissionControl.Ticket ticket : tickets) {
+      results.add(executor.submit(() -> {
+        start.await();
+        boolean ok = ticket.reweigh(250, 100); // 3 permits
+        Thread.sleep(10); // the response is sent
+        ticket.release();
+        return ok;
+      }));
+    }
+    start.countDown();
+
+    for (Future<Boolean> result : results)
+      assertThat(result.get(5, TimeUnit.SECONDS)).isTrue(); // well before maxWait
+    assertThat(limiter.getActive()).isEqualTo(0);
+    assertThat(limiter.getRejected()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldHoldNothingWhenReweighIsRejected() {
+    AdmissionControl.Limiter limiter = new AdmissionControl.Limiter("test", 2, 0, 1000);
+    AdmissionControl.Ticket ticket = new AdmissionControl.Ticket(limiter);
+    assertThat(limiter.acquire(1)).isTrue();
+    AdmissionControl.Ticket other = new AdmissionControl.Ticket(limiter);
+    assertThat(limiter.acquire(1)).isTrue();
+
+    assertThat(ticket.reweigh(150, 100)).isFalse(); // 2 permits, other holds one
+    assertThat(limiter.getActive()).isEqualTo(1);
+    ticket.release();
+    assertThat(limiter.getActive()).isEqualTo(1);
+    other.release();
+    assertThat(limiter.getActive()).isEqualTo(0);
+  }
+}
@@ -0,0 +1,174 @@
+package thredds.servlet;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Range and conditional requests to ServletUtil.returnFile().
+ */
+public class TestByteRanges {
+  private static final String ALPHABET = "0123456789abcdefghijklmnopqrstuvwxyz";
+  private static final String CONTENT = new String(new char[10]).replace("\0", ALPHABET); // 360 bytes
+
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void shouldParseRanges() {
+    assertThat(ByteRanges.parse(null, 100)).isNull();
+    assertThat(ByteRanges.parse("lines=1-2", 100)).isNull();
+    assertThat(ByteRanges.parse("bytes=5-2", 100)).isNull();
+    assertThat(ByteRanges.parse("bytes=x-2", 100)).isNull();
+
+    assertThat(ByteRanges.parse("bytes=0-0", 100)).containsExactly(new ByteRanges.Range(0, 0));
+    assertThat(ByteRanges.parse("bytes=90-", 100)).containsExactly(new ByteRanges.Range(90, 99));
+    assertThat(ByteRanges.parse("bytes=90-1000", 100)).containsExactly(new ByteRanges.Range(90, 99));
+    assertThat(ByteRanges.parse("bytes=-10", 100)).containsExactly(new ByteRanges.Range(90, 99));
+    assertThat(ByteRanges.parse("bytes=-1000", 100)).containsExactly(new ByteRanges.Range(0, 99));
+    assertThat(ByteRanges.parse("bytes=100-", 100)).isEmpty();
+    assertThat(ByteRanges.parse("bytes=-0", 100)).isEmpty();
+  }
+
+  @Test
+  public void shouldCoalesceRanges() {
+    assertThat(ByteRanges.parse("bytes=500-600, 0-10", 10000)).containsExactly(new ByteRanges.Range(0, 10),
+        new ByteRanges.Range(500, 600)).inOrder();
+    assertThat(ByteRanges.parse("bytes=0-10, 5-20, 30-40", 10000)).containsExactly(new ByteRanges.Range(0, 40));
+    assertThat(ByteRanges.parse("bytes=0-10, 200-300, 5000-", 10000)).hasSize(3);
+  }
+
+  @Test
+  public void shouldReturnWholeFile() throws Exception {
+    MockHttpServletResponse res = send(request());
+    assertThat(res.getStatus()).isEqualTo(HttpServletResponse.SC_OK);
+    assertThat(res.getContentAsString()).isEqualTo(CONTENT);
+    assertThat(res.getHeader("ETag")).isNotNull();
+    assertThat(res.getHeader("Accept-Ranges")).isEqualTo("bytes");
+  }
+
+  @Test
+  public void shouldReturnOneRange() throws Exception {
+    MockHttpServletRequest req = request();
+    req.addHeader("Range", "bytes=-5");
+    MockHttpServletResponse res = send(req);
+    assertThat(res.getStatus()).isEqualTo(HttpServletResponse.SC_PARTIAL_CONTENT);
+    assertThat(res.getHeader("Content-Range")).isEqualTo("bytes 355-359/360");
+    assertThat(res.getContentAsString()).isEqualTo("vwxyz");
+    assertThat(res.getContentLength()).isEqualTo(5);
+  }
+
+  @Test
+  public void shouldReturnMultipleRanges() throws Exception {
+    MockHttpServletRequest req = request();
+    req.addHeader("Range", "bytes=0-1,-2");
+    MockHttpServletResponse res = send(req);
+    assertThat(res.getStatus()).isEqualTo(HttpServletResponse.SC_PARTIAL_CONTENT);
+    assertThat(res.getContentType()).startsWith("multipart/byteranges");
+
+    String boundary = ServletUtil.MULTIPART_BOUNDARY;
+    String expected = "\r\n--" + boundary + "\r\nContent-Type: text/plain\r\nContent-Range: bytes 0-1/360\r\n\r\n01"
+        + "\r\n--" + boundary + "\r\nContent-Type: text/plain\r\nContent-Range: bytes 358-359/360\r\n\r\nyz" + "\r\n--"
+        + boundary + "--\r\n";
+    assertThat(res.getContentAsString()).isEqualTo(expected);
+    assertThat(res.getContentLength()).isEqualTo(expected.length());
+  }
+
+  @Test
+  public void shouldRejectUnsatisfiableRange() throws Exception {
+    MockHttpServletRequest req = request();
+    req.addHeader("Range", "bytes=1000-2000");
+    MockHttpServletResponse res = send(req);
+    assertThat(res.getStatus()).isEqualTo(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+    assertThat(res.getHeader("Content-Range")).isEqualTo("bytes */360");
+  }
+
+  @Test
+  public void shouldHonorConditionalHeaders() throws Exception {
+    File file = makeFile();
+    String etag = send(request(), file).getHeader("ETag");
+
+    MockHttpServletRequest req = request();
+    req.addHeader("If-None-Match", etag);
+    assertThat(send(req, file).getStatus()).isEqualTo(HttpServletResponse.SC_NOT_MODIFIED);
+
+    req = request();
+    req.addHeader("If-Modified-Since", file.lastModified() + 1000);
+    assertThat(send(req, file).getStatus()).isEqualTo(HttpServletResponse.SC_NOT_MODIFIED);
+
+    req = request();
+    req.addHeader("If-Match", "\"other\"");
+    assertThat(send(req, file).getStatus()).isEqualTo(HttpServletResponse.SC_PRECONDITION_FAILED);
+
+    // If-Range that does not match sends the whole file
+    req = request();
+    req.addHeader("Range", "bytes=0-1");
+    req.addHeader("If-Range", "\"other\"");
+    MockHttpServletResponse res = send(req, file);
+    assertThat(res.getStatus()).isEqualTo(HttpServletResponse.SC_OK);
+    assertThat(res.getContentAsString()).isEqualTo(CONTENT);
+
+    req = request();
+    req.addHeader("Range", "bytes=0-1");
+    req.addHeader("If-Range", etag);
+    assertThat(send(req, file).getContentAsString()).isEqualTo("01");
+  }
+
+  @Test
+  public void shouldNotSendBodyForHead() throws Exception {
+    MockHttpServletRequest req = request();
+    req.setMethod("HEAD");
+    req.addHeader("Range", "bytes=2-5");
+    MockHttpServletResponse res = send(req);
+    assertThat(res.getStatus()).isEqualTo(HttpServletResponse.SC_PARTIAL_CONTENT);
+    assertThat(res.getContentLength()).isEqualTo(4);
+    assertThat(res.getContentAsByteArray()).isEmpty();
+  }
+
+  @Test
+  public void shouldReturnNotFoundForMissingFile() throws Exception {
+    File missing = new File(tempFolder.getRoot(), "missing.txt");
+    MockHttpServletResponse res = send(request(), missing);
+    assertThat(res.getStatus()).isEqualTo(HttpServletResponse.SC_NOT_FOUND);
+    assertThat(res.getHeader("ETag")).isNull();
+    assertThat(res.getHeader("Content-Length")).isNull();
+
+    MockHttpServletRequest req = request();
+    req.addHeader("Range", "bytes=0-1");
+    assertThat(send(req, missing).getStatus()).isEqualTo(HttpServletResponse.SC_NOT_FOUND);
+  }
+
+  @Test
+  public void shouldReturnNotFoundForDirectory() throws Exception {
+    MockHttpServletResponse res = send(request(), tempFolder.newFolder());
+    assertThat(res.getStatus()).isEqualTo(HttpServletResponse.SC_NOT_FOUND);
+  }
+
+  private static MockHttpServletRequest request() {
+    return new MockHttpServletRequest("GET", "/thredds/fileServer/test.txt");
+  }
+
+  private MockHttpServletResponse send(MockHttpServletRequest req) throws Exception {
+    return send(req, makeFile());
+  }
+
+  private static MockHttpServletResponse send(MockHttpServletRequest req, File file) throws Exception {
+    MockHttpServletResponse res = new MockHttpServletResponse();
+    ServletUtil.returnFile(req, res, file, "text/plain");
+    return res;
+  }
+
+  private File makeFile() throws Exception {
+    File file = tempFolder.newFile();
+    Files.write(file.toPath(), CONTENT.getBytes(StandardCharsets.US_ASCII));
+    return file;
+  }
+}
@@ -0,0 +1,188 @@
+package thredds.servlet;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import thredds.inventory.MFiles;
+
+/**
+ * MFileReadAhead fetches parts concurrently from a stand-in for an object store and writes them in order.
+ */
+public class TestMFileReadAhead {
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  @After
+  public void shutdown() {
+    executor.shutdownNow();
+    MFileReadAhead.shutdown();
+  }
+
+  /** Serves ranges of a byte array, slowly and out of order, like ranged GETs to an object store. */
+  private static class ObjectStore implements MFileReadAhead.RangeReader {
+    final byte[] object;
+    final AtomicInteger active = new AtomicInteger();
+    final AtomicInteger maxActive = new AtomicInteger();
+    final AtomicInteger gets = new AtomicInteger();
+    final Set<String> threads = ConcurrentHashMap.newKeySet();
+    final Random random = new Random(42);
+
+    ObjectStore(int size) {
+      object = new byte[size];
+      new Random(17).nextBytes(object);
+    }
+
+    @Override
+    public void read(long start, long count, OutputStream out) throws IOException {
+      gets.incrementAndGet();
+      threads.add(Thread.currentThread().getName());
+      maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+      try {
+        Thread.sleep(random.nextInt(20));
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      } finally {
+        active.decrementAndGet();
+      }
+      int n = (int) Math.max(0, Math.min(count, object.length - start));
+      if (n > 0)
+        out.write(object, (int) start, n);
+    }
+  }
+
+  @Test
+  public void shouldCopyInOrder() throws Exception {
+    ObjectStore store = new ObjectStore(10000);
+    MFileReadAhead readAhead = new MFileReadAhead(executor, 4, 300);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    readAhead.copy(store, 123, 9000, out);
+
+    assertThat(out.toByteArray()).isEqualTo(Arrays.copyOfRange(store.object, 123, 9123));
+    assertThat(store.gets.get()).isEqualTo(30);
+    assertThat(store.maxActive.get()).isAtMost(4);
+    assertThat(store.maxActive.get()).isGreaterThan(1);
+  }
+
+  @Test
+  public void shouldReadSmallRangeDirectly() throws Exception {
+    ObjectStore store = new ObjectStore(1000);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new MFileReadAhead(executor, 4, 300).copy(store, 10, 300, out);
+
+    assertThat(out.toByteArray()).isEqualTo(Arrays.copyOfRange(store.object, 10, 310));
+    assertThat(store.gets.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldStayWithinSharedBufferBudget() throws Exception {
+    ObjectStore store = new ObjectStore(10000);
+    Semaphore buffers = new Semaphore(3);
+    MFileReadAhead readAhead = new MFileReadAhead(executor, 4, 300, buffers);
+
+    // two downloads at once, wanting 4 buffers each
+    List<Future<byte[]>> downloads = new ArrayList<>();
+    ExecutorService clients = Executors.newFixedThreadPool(2);
+    try {
+      for (int i = 0; i < 2; i++) {
+        downloads.add(clients.submit(() -> {
+          ByteArrayOutputStream out = new ByteArrayOutputStream();
+          readAhead.copy(store, 0, 9000, out);
+          return out.toByteArray();
+        }));
+      }
+      for (Future<byte[]> download : downloads)
+        assertThat(download.get()).isEqualTo(Arrays.copyOf(store.object, 9000));
+    } finally {
+      clients.shutdownNow();
+    }
+    // 3 buffered parts plus at most one direct read per download
+    assertThat(store.maxActive.get()).isAtMost(5);
+    assertThat(buffers.availablePermits()).isEqualTo(3);
+  }
+
+  @Test
+  public void shouldReadInCallerThreadWithoutBuffers() throws Exception {
+    ObjectStore store = new ObjectStore(10000);
+    Semaphore buffers = new Semaphore(0);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new MFileReadAhead(executor, 4, 300, buffers).copy(store, 50, 5000, out);
+
+    assertThat(out.toByteArray()).isEqualTo(Arrays.copyOfRange(store.object, 50, 5050));
+    assertThat(store.threads).containsExactly(Thread.currentThread().getName());
+    assertThat(buffers.availablePermits()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldReleaseBuffersOnFailure() throws Exception {
+    ObjectStore store = new ObjectStore(1000); // smaller than asked for
+    Semaphore buffers = new Semaphore(4);
+    try {
+      new MFileReadAhead(executor, 4, 300, buffers).copy(store, 0, 2000, new ByteArrayOutputStream());
+      throw new AssertionError("expected exception");
+    } catch (IOException e) {
+      assertThat(buffers.availablePermits()).isEqualTo(4);
+    }
+  }
+
+  @Test
+  public void shouldSendMFileThroughDefaultReadAhead() throws Exception {
+    byte[] content = new byte[10000];
+    new Random(3).nextBytes(content);
+    File file = tempFolder.newFile();
+    Files.write(file.toPath(), content);
+    ServletUtil.MFileSource source = new ServletUtil.MFileSource(MFiles.create(file.getPath()));
+
+    // sequential, then parts from the shared pool, then with room for only one part buffer
+    MFileReadAhead.shutdown();
+    assertThat(copy(source, 123, 9000)).isEqualTo(Arrays.copyOfRange(content, 123, 9123));
+    MFileReadAhead.setDefault(4, 300, 2, 100 * 300);
+    assertThat(MFileReadAhead.getDefault()).isNotNull();
+    assertThat(copy(source, 123, 9000)).isEqualTo(Arrays.copyOfRange(content, 123, 9123));
+    assertThat(copy(source, 0, 10000)).isEqualTo(content);
+    MFileReadAhead.setDefault(4, 300, 2, 300);
+    assertThat(copy(source, 7, 2999)).isEqualTo(Arrays.copyOfRange(content, 7, 3006));
+
+    // less memory than one part turns it off
+    MFileReadAhead.setDefault(4, 300, 2, 299);
+    assertThat(MFileReadAhead.getDefault()).isNull();
+  }
+
+  private static byte[] copy(ServletUtil.MFileSource source, long start, long count) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    source.writeTo(out, start, count);
+    return out.toByteArray();
+  }
+
+  @Test
+  public void shouldFailOnShortRead() throws Exception {
+    ObjectStore store = new ObjectStore(1000); // smaller than asked for
+    try {
+      new MFileReadAhead(executor, 4, 300).copy(store, 0, 2000, new ByteArrayOutputStream());
+      throw new AssertionError("expected exception");
+    } catch (IOException e) {
+      assertThat(e.getMessage()).contains("instead of");
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package thredds.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import ucar.unidata.geoloc.LatLonPoint;
+import ucar.unidata.geoloc.LatLonRect;
+
+/**
+ * StationIndex finds the same stations as looking at every one, across the antimeridian and near the poles.
+ */
+public class TestStationIndex {
+
+  private static StationIndex<LatLonPoint> index(List<LatLonPoint> stations) {
+    return StationIndex.of(stations, LatLonPoint::getLatitude, LatLonPoint::getLongitude);
+  }
+
+  @Test
+  public void shouldFindNearestAcrossAntimeridian() {
+    LatLonPoint west = LatLonPoint.create(10, -179.5);
+    LatLonPoint east = LatLonPoint.create(10, 170);
+    StationIndex<LatLonPoint> index = index(Arrays.asList(west, east));
+
+    assertThat(index.findNearest(10, 179.9)).isSameInstanceAs(west);
+    assertThat(index.findNearest(10, 171)).isSameInstanceAs(east);
+  }
+
+  @Test
+  public void shouldFindNearestNearPole() {
+    LatLonPoint a = LatLonPoint.create(89, 0);
+    LatLonPoint b = LatLonPoint.create(80, 178);
+    StationIndex<LatLonPoint> index = index(Arrays.asList(a, b));
+
+    // far in longitude, but just over the pole
+    assertThat(index.findNearest(88, 180)).isSameInstanceAs(a);
+  }
+
+  @Test
+  public void shouldHandleEmptyAndMissing() {
+    StationIndex<LatLonPoint> empty = index(new ArrayList<>());
+    assertThat(empty.findNearest(0, 0)).isNull();
+    assertThat(empty.findInside(new LatLonRect(LatLonPoint.create(-10, -10), LatLonPoint.create(10, 10)))).isEmpty();
+
+    StationIndex<LatLonPoint> missing = index(Arrays.asList(LatLonPoint.create(Double.NaN, 0)));
+    assertThat(missing.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldFindInsideAcrossAntimeridian() {
+    LatLonPoint a = LatLonPoint.create(0, 179);
+    LatLonPoint b = LatLonPoint.create(0, -179);
+    LatLonPoint c = LatLonPoint.create(0, 0);
+    StationIndex<LatLonPoint> index = index(Arrays.asList(a, b, c));
+
+    LatLonRect rect = new LatLonRect(LatLonPoint.create(-5, 175), LatLonPoint.create(5, -175));
+    assertThat(index.findInside(rect)).containsExactly(a, b).inOrder();
+  }
+
+  @Test
+  public void shouldMatchLookingAtEveryStation() {
+    Random random = new Random(17);
+    List<LatLonPoint> stations = new ArrayList<>();
+    for (int i = 0; i < 2000; i++)
+      stations.add(LatLonPoint.create(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180));
+    StationIndex<LatLonPoint> index = index(stations);
+
+    for (int i = 0; i < 200; i++) {
+      double lat = random.nextDouble() * 180 - 90;
+      double lon = random.nextDouble() * 360 - 180;
+      LatLonPoint nearest = null;
+      double minDist = Double.MAX_VALUE;
+      for (LatLonPoint s : stations) {
+        double dist = greatCircle(lat, lon, s);
+        if (dist < minDist) {
+          minDist = dist;
+          nearest = s;
+        }
+      }
+      assertWithMessage("nearest to %s %s", lat, lon).that(index.findNearest(lat, lon)).isSameInstanceAs(nearest);
+
+      double lat1 = random.nextDouble() * 180 - 90;
+      double lat2 = random.nextDouble() * 180 - 90;
+      double lon1 = random.nextDouble() * 360 - 180;
+      LatLonRect rect = new LatLonRect(LatLonPoint.create(Math.min(lat1, lat2), lon1),
+          LatLonPoint.create(Math.max(lat1, lat2), lon1 + random.nextDouble() * 60));
+      List<LatLonPoint> inside = new ArrayList<>();
+      for (LatLonPoint s : stations)
+        if (rect.contains(s))
+          inside.add(s);
+      assertWithMessage("inside %s", rect).that(index.findInside(rect)).containsExactlyElementsIn(inside).inOrder();
+    }
+  }
+
+  private static double greatCircle(double lat, double lon, LatLonPoint s) {
+    double phi1 = Math.toRadians(lat), phi2 = Math.toRadians(s.getLatitude());
+    double dlambda = Math.toRadians(lon - s.getLongitude());
+    double cos = Math.sin(phi1) * Math.sin(phi2) + Math.cos(phi1) * Math.cos(phi2) * Math.cos(dlambda);
+    return Math.acos(Math.max(-1, Math.min(1, cos)));
+  }
+}